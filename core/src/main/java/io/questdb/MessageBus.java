@@ -105,4 +105,34 @@ public interface MessageBus extends Closeable {
     RingQueue<LatestByTask> getLatestByQueue();
 
     Sequence getLatestBySubSeq();
+
+    Sequence getPageFrameFilterPubSeq();
+
+    RingQueue<PageFrameFilterTask> getPageFrameFilterQueue();
+
+    Sequence getPageFrameFilterSubSeq();
+
+    Sequence getPageFrameGroupByPubSeq();
+
+    RingQueue<PageFrameGroupByTask> getPageFrameGroupByQueue();
+
+    Sequence getPageFrameGroupBySubSeq();
+
+    Sequence getPageFrameHashJoinPubSeq();
+
+    RingQueue<PageFrameHashJoinTask> getPageFrameHashJoinQueue();
+
+    Sequence getPageFrameHashJoinSubSeq();
+
+    Sequence getColumnReadAheadPubSeq();
+
+    RingQueue<ColumnReadAheadTask> getColumnReadAheadQueue();
+
+    Sequence getColumnReadAheadSubSeq();
+
+    Sequence getWalApplyPubSeq();
+
+    RingQueue<WalApplyTask> getWalApplyQueue();
+
+    Sequence getWalApplySubSeq();
 }
@@ -71,6 +71,26 @@ public class MessageBusImpl implements MessageBus {
     private final MPSequence latestByPubSeq;
     private final MCSequence latestBySubSeq;
 
+    private final RingQueue<PageFrameFilterTask> pageFrameFilterQueue;
+    private final MPSequence pageFrameFilterPubSeq;
+    private final MCSequence pageFrameFilterSubSeq;
+
+    private final RingQueue<PageFrameGroupByTask> pageFrameGroupByQueue;
+    private final MPSequence pageFrameGroupByPubSeq;
+    private final MCSequence pageFrameGroupBySubSeq;
+
+    private final RingQueue<PageFrameHashJoinTask> pageFrameHashJoinQueue;
+    private final MPSequence pageFrameHashJoinPubSeq;
+    private final MCSequence pageFrameHashJoinSubSeq;
+
+    private final RingQueue<ColumnReadAheadTask> columnReadAheadQueue;
+    private final MPSequence columnReadAheadPubSeq;
+    private final MCSequence columnReadAheadSubSeq;
+
+    private final RingQueue<WalApplyTask> walApplyQueue;
+    private final MPSequence walApplyPubSeq;
+    private final MCSequence walApplySubSeq;
+
     private final CairoConfiguration configuration;
 
     public MessageBusImpl(@NotNull CairoConfiguration configuration) {
@@ -124,6 +144,31 @@ public class MessageBusImpl implements MessageBus {
         this.latestByPubSeq = new MPSequence(latestByQueue.getCapacity());
         this.latestBySubSeq = new MCSequence(latestByQueue.getCapacity());
         latestByPubSeq.then(latestBySubSeq).then(latestByPubSeq);
+
+        this.pageFrameFilterQueue = new RingQueue<>(PageFrameFilterTask::new, configuration.getPageFrameFilterQueueCapacity());
+        this.pageFrameFilterPubSeq = new MPSequence(pageFrameFilterQueue.getCapacity());
+        this.pageFrameFilterSubSeq = new MCSequence(pageFrameFilterQueue.getCapacity());
+        pageFrameFilterPubSeq.then(pageFrameFilterSubSeq).then(pageFrameFilterPubSeq);
+
+        this.pageFrameGroupByQueue = new RingQueue<>(PageFrameGroupByTask::new, configuration.getPageFrameGroupByQueueCapacity());
+        this.pageFrameGroupByPubSeq = new MPSequence(pageFrameGroupByQueue.getCapacity());
+        this.pageFrameGroupBySubSeq = new MCSequence(pageFrameGroupByQueue.getCapacity());
+        pageFrameGroupByPubSeq.then(pageFrameGroupBySubSeq).then(pageFrameGroupByPubSeq);
+
+        this.pageFrameHashJoinQueue = new RingQueue<>(PageFrameHashJoinTask::new, configuration.getPageFrameHashJoinQueueCapacity());
+        this.pageFrameHashJoinPubSeq = new MPSequence(pageFrameHashJoinQueue.getCapacity());
+        this.pageFrameHashJoinSubSeq = new MCSequence(pageFrameHashJoinQueue.getCapacity());
+        pageFrameHashJoinPubSeq.then(pageFrameHashJoinSubSeq).then(pageFrameHashJoinPubSeq);
+
+        this.columnReadAheadQueue = new RingQueue<>(ColumnReadAheadTask::new, configuration.getColumnReadAheadQueueCapacity());
+        this.columnReadAheadPubSeq = new MPSequence(columnReadAheadQueue.getCapacity());
+        this.columnReadAheadSubSeq = new MCSequence(columnReadAheadQueue.getCapacity());
+        columnReadAheadPubSeq.then(columnReadAheadSubSeq).then(columnReadAheadPubSeq);
+
+        this.walApplyQueue = new RingQueue<>(WalApplyTask::new, configuration.getWalApplyQueueCapacity());
+        this.walApplyPubSeq = new MPSequence(walApplyQueue.getCapacity());
+        this.walApplySubSeq = new MCSequence(walApplyQueue.getCapacity());
+        walApplyPubSeq.then(walApplySubSeq).then(walApplyPubSeq);
     }
 
     @Override
@@ -280,4 +325,79 @@ public class MessageBusImpl implements MessageBus {
     public Sequence getLatestBySubSeq() {
         return latestBySubSeq;
     }
+
+    @Override
+    public Sequence getPageFrameFilterPubSeq() {
+        return pageFrameFilterPubSeq;
+    }
+
+    @Override
+    public RingQueue<PageFrameFilterTask> getPageFrameFilterQueue() {
+        return pageFrameFilterQueue;
+    }
+
+    @Override
+    public Sequence getPageFrameFilterSubSeq() {
+        return pageFrameFilterSubSeq;
+    }
+
+    @Override
+    public Sequence getPageFrameGroupByPubSeq() {
+        return pageFrameGroupByPubSeq;
+    }
+
+    @Override
+    public RingQueue<PageFrameGroupByTask> getPageFrameGroupByQueue() {
+        return pageFrameGroupByQueue;
+    }
+
+    @Override
+    public Sequence getPageFrameGroupBySubSeq() {
+        return pageFrameGroupBySubSeq;
+    }
+
+    @Override
+    public Sequence getPageFrameHashJoinPubSeq() {
+        return pageFrameHashJoinPubSeq;
+    }
+
+    @Override
+    public RingQueue<PageFrameHashJoinTask> getPageFrameHashJoinQueue() {
+        return pageFrameHashJoinQueue;
+    }
+
+    @Override
+    public Sequence getPageFrameHashJoinSubSeq() {
+        return pageFrameHashJoinSubSeq;
+    }
+
+    @Override
+    public Sequence getColumnReadAheadPubSeq() {
+        return columnReadAheadPubSeq;
+    }
+
+    @Override
+    public RingQueue<ColumnReadAheadTask> getColumnReadAheadQueue() {
+        return columnReadAheadQueue;
+    }
+
+    @Override
+    public Sequence getColumnReadAheadSubSeq() {
+        return columnReadAheadSubSeq;
+    }
+
+    @Override
+    public Sequence getWalApplyPubSeq() {
+        return walApplyPubSeq;
+    }
+
+    @Override
+    public RingQueue<WalApplyTask> getWalApplyQueue() {
+        return walApplyQueue;
+    }
+
+    @Override
+    public Sequence getWalApplySubSeq() {
+        return walApplySubSeq;
+    }
 }
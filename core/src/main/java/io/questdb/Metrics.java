@@ -24,7 +24,9 @@
 
 package io.questdb;
 
+import io.questdb.cairo.TableWriterMetrics;
 import io.questdb.cutlass.http.processors.JsonQueryMetrics;
+import io.questdb.cutlass.line.tcp.LineTcpMetrics;
 import io.questdb.metrics.MetricsRegistry;
 import io.questdb.metrics.MetricsRegistryImpl;
 import io.questdb.metrics.NullMetricsRegistry;
@@ -34,11 +36,15 @@ import io.questdb.std.str.CharSink;
 public class Metrics implements Scrapable {
     private final boolean enabled;
     private final JsonQueryMetrics jsonQuery;
+    private final TableWriterMetrics tableWriter;
+    private final LineTcpMetrics lineTcp;
     private final MetricsRegistry metricsRegistry;
 
     Metrics(boolean enabled, MetricsRegistry metricsRegistry) {
         this.enabled = enabled;
         this.jsonQuery = new JsonQueryMetrics(metricsRegistry);
+        this.tableWriter = new TableWriterMetrics(metricsRegistry);
+        this.lineTcp = new LineTcpMetrics(metricsRegistry);
         this.metricsRegistry = metricsRegistry;
     }
 
@@ -58,8 +64,17 @@ public class Metrics implements Scrapable {
         return jsonQuery;
     }
 
+    public LineTcpMetrics lineTcp() {
+        return lineTcp;
+    }
+
+    public TableWriterMetrics tableWriter() {
+        return tableWriter;
+    }
+
     @Override
     public void scrapeIntoPrometheus(CharSink sink) {
         metricsRegistry.scrapeIntoPrometheus(sink);
+        lineTcp.scrapeIntoPrometheus(sink);
     }
 }
@@ -308,7 +308,10 @@ public class PropServerConfiguration implements ServerConfiguration {
     private LineProtoTimestampAdapter lineTcpTimestampAdapter;
     private int lineTcpMsgBufferSize;
     private int lineTcpMaxMeasurementSize;
+    private int lineTcpMaxBinarySymbolDictionarySize;
+    private int lineTcpMaxSymbolLookupSize;
     private int lineTcpWriterQueueCapacity;
+    private int lineTcpWriterQueueEventSize;
     private int lineTcpWriterWorkerCount;
     private int[] lineTcpWriterWorkerAffinity;
     private boolean lineTcpWriterWorkerPoolHaltOnError;
@@ -321,6 +324,7 @@ public class PropServerConfiguration implements ServerConfiguration {
     private long lineTcpIOWorkerSleepThreshold;
     private int lineTcpNUpdatesPerLoadRebalance;
     private double lineTcpMaxLoadRatio;
+    private int lineTcpTableStealThreshold;
     private long lineTcpMaintenanceInterval;
     private String lineTcpAuthDbPath;
     private int lineDefaultPartitionBy;
@@ -343,6 +347,41 @@ public class PropServerConfiguration implements ServerConfiguration {
     private int httpMinSndBufSize;
     private final int latestByQueueCapacity;
     private final int sampleByIndexSearchPageSize;
+    private final int pageFrameFilterQueueCapacity;
+    private final boolean sqlParallelFilterEnabled;
+    private final int sqlParallelFilterFrameRowCount;
+    private final int sqlParallelFilterBatchSize;
+    private final boolean sqlCompiledFilterEnabled;
+    private final int pageFrameGroupByQueueCapacity;
+    private final boolean sqlParallelGroupByEnabled;
+    private final int sqlParallelGroupBySliceRowCount;
+    private final boolean sqlParallelSampleByEnabled;
+    private final boolean sqlSortRadixEnabled;
+    private final int sqlSortTopKMaxRows;
+    private final int pageFrameHashJoinQueueCapacity;
+    private final boolean sqlParallelHashJoinEnabled;
+    private final boolean sqlParallelHashJoinOrdered;
+    private final int sqlParallelHashJoinSliceRowCount;
+    private final int sqlJoinBloomFilterBitsPerKey;
+    private final boolean sqlAsOfJoinPageFrameEnabled;
+    private final int partitionCompressAfter;
+    private final boolean partitionStatsEnabled;
+    private final int partitionZoneMapBlockSize;
+    private final boolean columnReadAheadEnabled;
+    private final int columnReadAheadQueueCapacity;
+    private final long groupCommitWindow;
+    private final int groupCommitMaxSize;
+    private final long walSegmentSize;
+    private final int walApplyQueueCapacity;
+    private final long walApplyRetryInterval;
+    private final long walApplySweepInterval;
+    private final int walApplyMaxTxnPerCommit;
+    private final boolean walInsertEnabled;
+    private final boolean o3AdaptiveLagEnabled;
+    private final long o3AdaptiveLagMin;
+    private final long o3AdaptiveLagMax;
+    private final int o3AdaptiveMaxUncommittedRowsMin;
+    private final int o3AdaptiveMaxUncommittedRowsMax;
 
     public PropServerConfiguration(
             String root,
@@ -662,6 +701,41 @@ public class PropServerConfiguration implements ServerConfiguration {
             this.sqlAnalyticTreeKeyMaxPages = Numbers.ceilPow2(getInt(properties, env, "cairo.sql.analytic.tree.max.pages", Integer.MAX_VALUE));
             this.sqlTxnScoreboardEntryCount = Numbers.ceilPow2(getInt(properties, env, "cairo.o3.txn.scoreboard.entry.count", 16384));
             this.latestByQueueCapacity = Numbers.ceilPow2(getInt(properties, env, "cairo.latestby.queue.capacity", 32));
+            this.pageFrameFilterQueueCapacity = Numbers.ceilPow2(getInt(properties, env, "cairo.page.frame.filter.queue.capacity", 64));
+            this.sqlParallelFilterEnabled = getBoolean(properties, env, "cairo.sql.parallel.filter.enabled", true);
+            this.sqlParallelFilterFrameRowCount = getInt(properties, env, "cairo.sql.parallel.filter.frame.row.count", 1_000_000);
+            this.sqlParallelFilterBatchSize = getInt(properties, env, "cairo.sql.parallel.filter.batch.size", 16);
+            this.sqlCompiledFilterEnabled = getBoolean(properties, env, "cairo.sql.compiled.filter.enabled", true);
+            this.pageFrameGroupByQueueCapacity = Numbers.ceilPow2(getInt(properties, env, "cairo.page.frame.groupby.queue.capacity", 64));
+            this.sqlParallelGroupByEnabled = getBoolean(properties, env, "cairo.sql.parallel.groupby.enabled", true);
+            this.sqlParallelGroupBySliceRowCount = getInt(properties, env, "cairo.sql.parallel.groupby.slice.row.count", 100_000);
+            this.sqlParallelSampleByEnabled = getBoolean(properties, env, "cairo.sql.parallel.sampleby.enabled", true);
+            this.sqlSortRadixEnabled = getBoolean(properties, env, "cairo.sql.sort.radix.enabled", true);
+            this.sqlSortTopKMaxRows = getInt(properties, env, "cairo.sql.sort.topk.max.rows", 10_000);
+            this.pageFrameHashJoinQueueCapacity = Numbers.ceilPow2(getInt(properties, env, "cairo.page.frame.hash.join.queue.capacity", 64));
+            this.sqlParallelHashJoinEnabled = getBoolean(properties, env, "cairo.sql.parallel.hash.join.enabled", true);
+            this.sqlParallelHashJoinOrdered = getBoolean(properties, env, "cairo.sql.parallel.hash.join.ordered", true);
+            this.sqlParallelHashJoinSliceRowCount = getInt(properties, env, "cairo.sql.parallel.hash.join.slice.row.count", 100_000);
+            this.sqlJoinBloomFilterBitsPerKey = getInt(properties, env, "cairo.sql.join.bloom.filter.bits.per.key", 10);
+            this.sqlAsOfJoinPageFrameEnabled = getBoolean(properties, env, "cairo.sql.asof.join.page.frame.enabled", true);
+            this.partitionCompressAfter = getInt(properties, env, "cairo.partition.compress.after", 0);
+            this.partitionStatsEnabled = getBoolean(properties, env, "cairo.partition.stats.enabled", false);
+            this.partitionZoneMapBlockSize = getInt(properties, env, "cairo.partition.zone.map.block.size", 65536);
+            this.columnReadAheadEnabled = getBoolean(properties, env, "cairo.column.read.ahead.enabled", true);
+            this.columnReadAheadQueueCapacity = Numbers.ceilPow2(getInt(properties, env, "cairo.column.read.ahead.queue.capacity", 64));
+            this.groupCommitWindow = getLong(properties, env, "cairo.commit.group.window", 0);
+            this.groupCommitMaxSize = getInt(properties, env, "cairo.commit.group.max.size", 64);
+            this.walSegmentSize = getLong(properties, env, "cairo.wal.segment.size", 64 * 1024 * 1024);
+            this.walApplyQueueCapacity = Numbers.ceilPow2(getInt(properties, env, "cairo.wal.apply.queue.capacity", 64));
+            this.walApplyRetryInterval = getLong(properties, env, "cairo.wal.apply.retry.interval", 1000);
+            this.walApplySweepInterval = getLong(properties, env, "cairo.wal.apply.sweep.interval", 30_000);
+            this.walApplyMaxTxnPerCommit = getInt(properties, env, "cairo.wal.apply.max.txn.per.commit", 100);
+            this.walInsertEnabled = getBoolean(properties, env, "cairo.wal.insert.enabled", false);
+            this.o3AdaptiveLagEnabled = getBoolean(properties, env, "cairo.o3.adaptive.lag.enabled", false);
+            this.o3AdaptiveLagMin = getLong(properties, env, "cairo.o3.adaptive.lag.min", 1_000) * 1_000;
+            this.o3AdaptiveLagMax = getLong(properties, env, "cairo.o3.adaptive.lag.max", 600_000) * 1_000;
+            this.o3AdaptiveMaxUncommittedRowsMin = getInt(properties, env, "cairo.o3.adaptive.max.uncommitted.rows.min", 10_000);
+            this.o3AdaptiveMaxUncommittedRowsMax = getInt(properties, env, "cairo.o3.adaptive.max.uncommitted.rows.max", 5_000_000);
             this.telemetryEnabled = getBoolean(properties, env, "telemetry.enabled", true);
             this.telemetryQueueCapacity = getInt(properties, env, "telemetry.queue.capacity", 512);
 
@@ -705,7 +779,10 @@ public class PropServerConfiguration implements ServerConfiguration {
                     throw new IllegalArgumentException(
                             "line.tcp.max.measurement.size (" + this.lineTcpMaxMeasurementSize + ") cannot be more than line.tcp.msg.buffer.size (" + this.lineTcpMsgBufferSize + ")");
                 }
+                this.lineTcpMaxBinarySymbolDictionarySize = getIntSize(properties, env, "line.tcp.binary.max.symbol.dictionary.size", 1024 * 1024);
+                this.lineTcpMaxSymbolLookupSize = getInt(properties, env, "line.tcp.max.symbol.lookup.size", 256 * 1024);
                 this.lineTcpWriterQueueCapacity = getInt(properties, env, "line.tcp.writer.queue.capacity", 128);
+                this.lineTcpWriterQueueEventSize = getIntSize(properties, env, "line.tcp.writer.queue.event.size", 65536);
                 this.lineTcpWriterWorkerCount = getInt(properties, env, "line.tcp.writer.worker.count", 1);
                 cpuUsed += this.lineTcpWriterWorkerCount;
                 this.lineTcpWriterWorkerAffinity = getAffinity(properties, env, "line.tcp.writer.worker.affinity", lineTcpWriterWorkerCount);
@@ -729,6 +806,7 @@ public class PropServerConfiguration implements ServerConfiguration {
                 this.lineTcpIOWorkerSleepThreshold = getLong(properties, env, "line.tcp.io.worker.sleep.threshold", 10000);
                 this.lineTcpNUpdatesPerLoadRebalance = getInt(properties, env, "line.tcp.n.updates.per.load.balance", 10_000_000);
                 this.lineTcpMaxLoadRatio = getDouble(properties, env, "line.tcp.max.load.ratio", 1.9);
+                this.lineTcpTableStealThreshold = getInt(properties, env, "line.tcp.table.steal.threshold", 1000);
                 this.lineTcpMaintenanceInterval = getInt(properties, env, "line.tcp.maintenance.job.interval", 30_000);
                 this.lineTcpAuthDbPath = getString(properties, env, "line.tcp.auth.db.path", null);
                 String defaultPartitionByProperty = getString(properties, env, "line.tcp.default.partition.by", "DAY");
@@ -1921,6 +1999,181 @@ public class PropServerConfiguration implements ServerConfiguration {
         public int getLatestByQueueCapacity() {
             return latestByQueueCapacity;
         }
+
+        @Override
+        public int getPageFrameFilterQueueCapacity() {
+            return pageFrameFilterQueueCapacity;
+        }
+
+        @Override
+        public boolean isSqlParallelFilterEnabled() {
+            return sqlParallelFilterEnabled;
+        }
+
+        @Override
+        public int getSqlParallelFilterFrameRowCount() {
+            return sqlParallelFilterFrameRowCount;
+        }
+
+        @Override
+        public int getSqlParallelFilterBatchSize() {
+            return sqlParallelFilterBatchSize;
+        }
+
+        @Override
+        public boolean isSqlCompiledFilterEnabled() {
+            return sqlCompiledFilterEnabled;
+        }
+
+        @Override
+        public int getPageFrameGroupByQueueCapacity() {
+            return pageFrameGroupByQueueCapacity;
+        }
+
+        @Override
+        public boolean isSqlParallelGroupByEnabled() {
+            return sqlParallelGroupByEnabled;
+        }
+
+        @Override
+        public int getSqlParallelGroupBySliceRowCount() {
+            return sqlParallelGroupBySliceRowCount;
+        }
+
+        @Override
+        public boolean isSqlParallelSampleByEnabled() {
+            return sqlParallelSampleByEnabled;
+        }
+
+        @Override
+        public boolean isSqlSortRadixEnabled() {
+            return sqlSortRadixEnabled;
+        }
+
+        @Override
+        public int getSqlSortTopKMaxRows() {
+            return sqlSortTopKMaxRows;
+        }
+
+        @Override
+        public int getPageFrameHashJoinQueueCapacity() {
+            return pageFrameHashJoinQueueCapacity;
+        }
+
+        @Override
+        public boolean isSqlParallelHashJoinEnabled() {
+            return sqlParallelHashJoinEnabled;
+        }
+
+        @Override
+        public boolean isSqlParallelHashJoinOrdered() {
+            return sqlParallelHashJoinOrdered;
+        }
+
+        @Override
+        public int getSqlParallelHashJoinSliceRowCount() {
+            return sqlParallelHashJoinSliceRowCount;
+        }
+
+        @Override
+        public int getSqlJoinBloomFilterBitsPerKey() {
+            return sqlJoinBloomFilterBitsPerKey;
+        }
+
+        @Override
+        public boolean isSqlAsOfJoinPageFrameEnabled() {
+            return sqlAsOfJoinPageFrameEnabled;
+        }
+
+        @Override
+        public int getPartitionCompressAfter() {
+            return partitionCompressAfter;
+        }
+
+        @Override
+        public boolean isPartitionStatsEnabled() {
+            return partitionStatsEnabled;
+        }
+
+        @Override
+        public int getPartitionZoneMapBlockSize() {
+            return partitionZoneMapBlockSize;
+        }
+
+        @Override
+        public boolean isColumnReadAheadEnabled() {
+            return columnReadAheadEnabled;
+        }
+
+        @Override
+        public int getColumnReadAheadQueueCapacity() {
+            return columnReadAheadQueueCapacity;
+        }
+
+        @Override
+        public long getGroupCommitWindow() {
+            return groupCommitWindow;
+        }
+
+        @Override
+        public int getGroupCommitMaxSize() {
+            return groupCommitMaxSize;
+        }
+
+        @Override
+        public long getWalSegmentSize() {
+            return walSegmentSize;
+        }
+
+        @Override
+        public int getWalApplyQueueCapacity() {
+            return walApplyQueueCapacity;
+        }
+
+        @Override
+        public long getWalApplyRetryInterval() {
+            return walApplyRetryInterval;
+        }
+
+        @Override
+        public long getWalApplySweepInterval() {
+            return walApplySweepInterval;
+        }
+
+        @Override
+        public int getWalApplyMaxTxnPerCommit() {
+            return walApplyMaxTxnPerCommit;
+        }
+
+        @Override
+        public boolean isWalInsertEnabled() {
+            return walInsertEnabled;
+        }
+
+        @Override
+        public boolean isO3AdaptiveLagEnabled() {
+            return o3AdaptiveLagEnabled;
+        }
+
+        @Override
+        public long getO3AdaptiveLagMin() {
+            return o3AdaptiveLagMin;
+        }
+
+        @Override
+        public long getO3AdaptiveLagMax() {
+            return o3AdaptiveLagMax;
+        }
+
+        @Override
+        public int getO3AdaptiveMaxUncommittedRowsMin() {
+            return o3AdaptiveMaxUncommittedRowsMin;
+        }
+
+        @Override
+        public int getO3AdaptiveMaxUncommittedRowsMax() {
+            return o3AdaptiveMaxUncommittedRowsMax;
+        }
     }
 
     private class PropLineUdpReceiverConfiguration implements LineUdpReceiverConfiguration {
@@ -2203,6 +2456,16 @@ public class PropServerConfiguration implements ServerConfiguration {
             return lineTcpMaxMeasurementSize;
         }
 
+        @Override
+        public int getMaxBinarySymbolDictionarySize() {
+            return lineTcpMaxBinarySymbolDictionarySize;
+        }
+
+        @Override
+        public int getMaxSymbolLookupSize() {
+            return lineTcpMaxSymbolLookupSize;
+        }
+
         @Override
         public MicrosecondClock getMicrosecondClock() {
             return MicrosecondClockImpl.INSTANCE;
@@ -2223,6 +2486,11 @@ public class PropServerConfiguration implements ServerConfiguration {
             return lineTcpNUpdatesPerLoadRebalance;
         }
 
+        @Override
+        public int getTableStealThreshold() {
+            return lineTcpTableStealThreshold;
+        }
+
         @Override
         public IODispatcherConfiguration getNetDispatcherConfiguration() {
             return lineTcpReceiverDispatcherConfiguration;
@@ -2248,6 +2516,11 @@ public class PropServerConfiguration implements ServerConfiguration {
             return lineTcpWriterQueueCapacity;
         }
 
+        @Override
+        public int getWriterQueueEventSize() {
+            return lineTcpWriterQueueEventSize;
+        }
+
         @Override
         public WorkerPoolAwareConfiguration getWriterWorkerPoolConfiguration() {
             return lineTcpWriterWorkerPoolConfiguration;
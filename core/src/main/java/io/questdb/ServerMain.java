@@ -54,6 +54,7 @@ import io.questdb.cairo.O3PartitionJob;
 import io.questdb.cairo.O3PurgeDiscoveryJob;
 import io.questdb.cairo.O3PurgeJob;
 import io.questdb.cairo.O3Utils;
+import io.questdb.cairo.WalApplyJob;
 import io.questdb.cutlass.http.HttpServer;
 import io.questdb.cutlass.json.JsonException;
 import io.questdb.cutlass.line.tcp.LineTcpServer;
@@ -155,7 +156,14 @@ public class ServerMain {
         final ObjList<Closeable> instancesToClean = new ObjList<>();
 
         LogFactory.configureFromSystemProperties(workerPool);
-        final CairoEngine cairoEngine = new CairoEngine(configuration.getCairoConfiguration());
+        final Metrics metrics;
+        if (configuration.getMetricsConfiguration().isEnabled()) {
+            metrics = Metrics.enabled();
+        } else {
+            metrics = Metrics.disabled();
+        }
+
+        final CairoEngine cairoEngine = new CairoEngine(configuration.getCairoConfiguration(), metrics);
         workerPool.assign(cairoEngine.getWriterMaintenanceJob());
         instancesToClean.add(cairoEngine);
 
@@ -175,15 +183,11 @@ public class ServerMain {
         workerPool.assign(new O3CopyJob(cairoEngine.getMessageBus()));
         workerPool.assign(new O3PurgeDiscoveryJob(cairoEngine.getMessageBus(), workerPool.getWorkerCount()));
         workerPool.assign(new O3PurgeJob(cairoEngine.getMessageBus()));
+        final WalApplyJob walApplyJob = new WalApplyJob(cairoEngine, workerPool.getWorkerCount());
+        workerPool.assign(walApplyJob);
+        instancesToClean.add(walApplyJob);
         O3Utils.initBuf(workerPool.getWorkerCount() + 1);
 
-        Metrics metrics;
-        if (configuration.getMetricsConfiguration().isEnabled()) {
-            metrics = Metrics.enabled();
-        } else {
-            metrics = Metrics.disabled();
-        }
-
         try {
             initQuestDb(workerPool, cairoEngine, log);
 
@@ -246,4 +246,188 @@ public interface CairoConfiguration {
     boolean isO3QuickSortEnabled();
 
     int getLatestByQueueCapacity();
+
+    int getPageFrameFilterQueueCapacity();
+
+    /**
+     * When enabled, filters that are safe to evaluate concurrently are executed
+     * by the worker pool over page frames of the table.
+     */
+    boolean isSqlParallelFilterEnabled();
+
+    /**
+     * Maximum number of rows in a single unit of work of the parallel filter. Page frames
+     * larger than this are split into several tasks.
+     */
+    int getSqlParallelFilterFrameRowCount();
+
+    /**
+     * Maximum number of parallel filter tasks dispatched at once. Rows that satisfy the filter
+     * are buffered for one batch at a time, this bounds memory of the filter to roughly
+     * batch size * frame row count * 8 bytes.
+     */
+    int getSqlParallelFilterBatchSize();
+
+    /**
+     * Enables evaluation of simple filters over fixed-size columns by compiled filter
+     * programs instead of filter functions.
+     */
+    boolean isSqlCompiledFilterEnabled();
+
+    int getPageFrameGroupByQueueCapacity();
+
+    /**
+     * When enabled, keyed GROUP BY over page frames is computed by the worker pool. Each worker
+     * aggregates a slice of the table into its own map and the maps are merged at the end.
+     */
+    boolean isSqlParallelGroupByEnabled();
+
+    /**
+     * Minimum number of rows aggregated by a single worker of the parallel GROUP BY. Smaller
+     * tables are split between fewer workers.
+     */
+    int getSqlParallelGroupBySliceRowCount();
+
+    /**
+     * When enabled, SAMPLE BY with FILL(NONE) over page frames is computed by the worker pool.
+     * It shares the queue and the slice row count with the parallel GROUP BY.
+     */
+    boolean isSqlParallelSampleByEnabled();
+
+    /**
+     * When enabled, ORDER BY on fixed-size columns over random access cursor sorts row ids
+     * with native radix sort instead of inserting rows into red-black tree.
+     */
+    boolean isSqlSortRadixEnabled();
+
+    /**
+     * Largest constant LIMIT of ORDER BY on fixed-size columns that keeps only the top rows in a
+     * heap instead of sorting the entire cursor. Zero disables the heap.
+     */
+    int getSqlSortTopKMaxRows();
+
+    int getPageFrameHashJoinQueueCapacity();
+
+    /**
+     * When enabled, inner hash joins of two page frame sources are computed by the worker pool.
+     * Rows of both sides are partitioned by hash of the join key and every partition is built
+     * and probed by a single worker.
+     */
+    boolean isSqlParallelHashJoinEnabled();
+
+    /**
+     * When enabled, parallel hash join returns rows in the order of the master (left) side, same as
+     * the single-threaded join. Otherwise rows are returned partition by partition, which is cheaper
+     * but drops the designated timestamp of the join.
+     */
+    boolean isSqlParallelHashJoinOrdered();
+
+    /**
+     * Minimum number of rows partitioned by a single worker of the parallel hash join. Joins of
+     * smaller tables use fewer partitions.
+     */
+    int getSqlParallelHashJoinSliceRowCount();
+
+    /**
+     * Size of the bloom filter hash join builds from keys of the slave side, in bits per key.
+     * Master rows whose keys miss the filter are skipped before the map lookup. Zero disables
+     * the filter.
+     */
+    int getSqlJoinBloomFilterBitsPerKey();
+
+    boolean isSqlAsOfJoinPageFrameEnabled();
+
+    /**
+     * Number of most recent partitions table writer keeps uncompressed. Older partitions
+     * are compressed on commit. Zero disables automatic compression.
+     */
+    int getPartitionCompressAfter();
+
+    /**
+     * When enabled table writer maintains min/max statistics of columns in partitions it no longer
+     * appends to and SQL filters skip partitions that cannot satisfy simple column predicates.
+     * Statistics are computed by commit, which scans partitions it closed or rewrote out of order,
+     * so the feature is off by default.
+     */
+    boolean isPartitionStatsEnabled();
+
+    /**
+     * Number of rows per block of column zone maps, which are kept alongside partition statistics.
+     * Data frames are narrowed down to blocks that may satisfy the filter. Zero disables zone maps.
+     */
+    int getPartitionZoneMapBlockSize();
+
+    /**
+     * When enabled sequential scans ask worker threads to bring column files of the current and the
+     * next partition into page cache, so that query thread does not stall on page faults.
+     */
+    boolean isColumnReadAheadEnabled();
+
+    int getColumnReadAheadQueueCapacity();
+
+    /**
+     * Time in microseconds during which {@link CommitMode#SYNC} commits of different tables are gathered
+     * into a group and made durable together, see {@link GroupCommit}. Zero disables group commit.
+     */
+    long getGroupCommitWindow();
+
+    /**
+     * Number of commits that closes the group before its window elapses.
+     */
+    int getGroupCommitMaxSize();
+
+    /**
+     * Size in bytes after which {@link WalWriter} continues in a new segment file. Applied
+     * segments are removed as a whole.
+     */
+    long getWalSegmentSize();
+
+    int getWalApplyQueueCapacity();
+
+    /**
+     * Interval in milliseconds at which {@link WalApplyJob} retries tables whose writer was busy
+     * when their write-ahead log was due to be applied.
+     */
+    long getWalApplyRetryInterval();
+
+    /**
+     * Interval in milliseconds at which {@link WalApplyJob} looks for tables with committed
+     * write-ahead log transactions that are not applied, e.g. because notification did not fit
+     * the queue. The first sweep runs when the job starts.
+     */
+    long getWalApplySweepInterval();
+
+    /**
+     * Maximum number of write-ahead log transactions merged into the table by one commit.
+     * Limits amount of out-of-order data table writer has to sort and keep in memory at once.
+     */
+    int getWalApplyMaxTxnPerCommit();
+
+    /**
+     * When enabled SQL INSERT appends rows to the write-ahead log of the table instead of
+     * locking the table writer, concurrent inserts into the same table do not wait for each
+     * other. Inserted rows become visible once {@link WalApplyJob} applies them. Inserts
+     * of PostgreSQL wire protocol keep using table writer, they can span transactions.
+     */
+    boolean isWalInsertEnabled();
+
+    /**
+     * When enabled table writers adapt commit lag and max uncommitted rows to observed O3 rewrite
+     * amplification, see {@link O3LagTuner}. Table values are the starting point.
+     */
+    boolean isO3AdaptiveLagEnabled();
+
+    /**
+     * @return lower bound of adaptive commit lag in microseconds
+     */
+    long getO3AdaptiveLagMin();
+
+    /**
+     * @return upper bound of adaptive commit lag in microseconds
+     */
+    long getO3AdaptiveLagMax();
+
+    int getO3AdaptiveMaxUncommittedRowsMin();
+
+    int getO3AdaptiveMaxUncommittedRowsMax();
 }
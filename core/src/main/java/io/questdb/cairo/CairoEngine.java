@@ -26,6 +26,7 @@ package io.questdb.cairo;
 
 import io.questdb.MessageBus;
 import io.questdb.MessageBusImpl;
+import io.questdb.Metrics;
 import io.questdb.cairo.pool.PoolListener;
 import io.questdb.cairo.pool.ReaderPool;
 import io.questdb.cairo.pool.WriterPool;
@@ -54,17 +55,26 @@ public class CairoEngine implements Closeable, WriterSource {
     private final CairoConfiguration configuration;
     private final WriterMaintenanceJob writerMaintenanceJob;
     private final MessageBus messageBus;
+    private final GroupCommit groupCommit;
+    private final CharSequenceObjHashMap<WalSequencer> walSequencers = new CharSequenceObjHashMap<>();
     private final RingQueue<TelemetryTask> telemetryQueue;
     private final MPSequence telemetryPubSeq;
     private final SCSequence telemetrySubSeq;
     private final long tableIdMemSize;
+    private final Metrics metrics;
     private long tableIdFd = -1;
     private long tableIdMem = 0;
 
     public CairoEngine(CairoConfiguration configuration) {
+        this(configuration, Metrics.disabled());
+    }
+
+    public CairoEngine(CairoConfiguration configuration, Metrics metrics) {
         this.configuration = configuration;
+        this.metrics = metrics;
         this.messageBus = new MessageBusImpl(configuration);
-        this.writerPool = new WriterPool(configuration, messageBus);
+        this.groupCommit = new GroupCommit(configuration);
+        this.writerPool = new WriterPool(configuration, messageBus, groupCommit, metrics.tableWriter());
         this.readerPool = new ReaderPool(configuration);
         this.writerMaintenanceJob = new WriterMaintenanceJob(configuration);
         if (configuration.getTelemetryConfiguration().getEnabled()) {
@@ -117,6 +127,12 @@ public class CairoEngine implements Closeable, WriterSource {
     public void close() {
         Misc.free(writerPool);
         Misc.free(readerPool);
+        synchronized (walSequencers) {
+            for (int i = 0, n = walSequencers.size(); i < n; i++) {
+                walSequencers.valueQuick(i).close();
+            }
+            walSequencers.clear();
+        }
         freeTableId();
         Misc.free(messageBus);
     }
@@ -200,6 +216,14 @@ public class CairoEngine implements Closeable, WriterSource {
         return configuration;
     }
 
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    public GroupCommit getGroupCommit() {
+        return groupCommit;
+    }
+
     public MessageBus getMessageBus() {
         return messageBus;
     }
@@ -286,6 +310,39 @@ public class CairoEngine implements Closeable, WriterSource {
         return writerPool.get(tableName, lockReason);
     }
 
+    /**
+     * Opens write-ahead log writer of a table. Writers of the same table append to separate
+     * shards and can be used from different threads concurrently. Committed transactions are
+     * applied to the table by {@link WalApplyJob} or by {@link #applyWal(CairoSecurityContext, CharSequence)}.
+     */
+    public WalWriter getWalWriter(CairoSecurityContext securityContext, CharSequence tableName) {
+        securityContext.checkWritePermission();
+        WalSequencer sequencer;
+        int shardId;
+        synchronized (walSequencers) {
+            sequencer = walSequencers.get(tableName);
+            if (sequencer == null || (shardId = sequencer.acquireShard()) == -1) {
+                // sequencer closes when the last writer of the table is closed
+                sequencer = new WalSequencer(configuration, tableName);
+                walSequencers.put(sequencer.getTableName(), sequencer);
+                shardId = sequencer.acquireShard();
+            }
+        }
+        return new WalWriter(configuration, tableName, sequencer, shardId, messageBus);
+    }
+
+    /**
+     * Applies pending write-ahead log transactions of a table on the calling thread.
+     *
+     * @return number of applied transactions
+     */
+    public long applyWal(CairoSecurityContext securityContext, CharSequence tableName) {
+        securityContext.checkWritePermission();
+        try (WalApplier applier = new WalApplier(configuration)) {
+            return WalApplyJob.applyWal(this, applier, tableName);
+        }
+    }
+
     public Job getWriterMaintenanceJob() {
         return writerMaintenanceJob;
     }
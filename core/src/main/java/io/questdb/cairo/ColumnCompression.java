@@ -0,0 +1,203 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cairo;
+
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.*;
+import io.questdb.std.str.LPSZ;
+import io.questdb.std.str.Path;
+
+/**
+ * Compressed column file (.z) layout:
+ * <pre>
+ * int  magic
+ * int  codec, see {@link ColumnCodecs}
+ * long value count
+ * ...  codec payload
+ * </pre>
+ * Compressed file replaces .d file of the column in a partition. Writer only compresses
+ * partitions it does not append to, readers decode the file in full when column data is first
+ * accessed.
+ */
+public final class ColumnCompression {
+    public static final int MAGIC = 0x315a4451;
+    public static final long HEADER_OFFSET_CODEC = 4;
+    public static final long HEADER_OFFSET_VALUE_COUNT = 8;
+    public static final long PAYLOAD_OFFSET = 16;
+    private static final Log LOG = LogFactory.getLog(ColumnCompression.class);
+
+    private ColumnCompression() {
+    }
+
+    /**
+     * Rewrites column .d file as .z file and removes .d file. Column is left untouched
+     * when it does not benefit from compression.
+     *
+     * @param path       path to partition directory
+     * @param plen       length of partition directory path
+     * @param valueCount number of values in the .d file, e.g. partition size minus column top
+     * @return true when .d file has been replaced with .z file
+     */
+    public static boolean compressColumn(FilesFacade ff, Path path, int plen, CharSequence columnName, int columnType, long valueCount) {
+        final int codec = getCodec(columnType);
+        if (codec == ColumnCodecs.CODEC_NONE || valueCount < 1) {
+            return false;
+        }
+
+        final long rawSize = valueCount << ColumnType.pow2SizeOf(columnType);
+        final long bufSize = PAYLOAD_OFFSET + ColumnCodecs.getMaxEncodedSize(codec, valueCount);
+        long srcFd = -1;
+        long srcAddr = 0;
+        long buf = 0;
+        try {
+            srcFd = TableUtils.openRO(ff, TableUtils.dFile(path.trimTo(plen), columnName), LOG);
+            if (ff.length(srcFd) < rawSize) {
+                throw CairoException.instance(0).put("column file is too short [path=").put(path).put(", expectedSize=").put(rawSize).put(']');
+            }
+            srcAddr = mapRO(ff, srcFd, rawSize, path);
+            buf = Unsafe.malloc(bufSize);
+            Unsafe.getUnsafe().putInt(buf, MAGIC);
+            Unsafe.getUnsafe().putInt(buf + HEADER_OFFSET_CODEC, codec);
+            Unsafe.getUnsafe().putLong(buf + HEADER_OFFSET_VALUE_COUNT, valueCount);
+            final long len = PAYLOAD_OFFSET + ColumnCodecs.encode(codec, srcAddr, valueCount, buf + PAYLOAD_OFFSET);
+            if (len >= rawSize) {
+                LOG.info().$("column is not compressible [path=").$(path).$(", size=").$(rawSize).$(", compressedSize=").$(len).$(']').$();
+                return false;
+            }
+
+            // .z is written before .d is removed, readers always prefer .d when both files exist
+            writeFile(ff, TableUtils.zFile(path.trimTo(plen), columnName), buf, len);
+            if (!ff.remove(TableUtils.dFile(path.trimTo(plen), columnName))) {
+                LOG.error().$("could not remove [path=").$(path).$(", errno=").$(ff.errno()).$(']').$();
+            }
+            LOG.info().$("compressed [path=").$(path.trimTo(plen).concat(columnName)).$(", size=").$(rawSize).$(", compressedSize=").$(len).$(']').$();
+            return true;
+        } finally {
+            if (buf != 0) {
+                Unsafe.free(buf, bufSize);
+            }
+            if (srcAddr != 0) {
+                ff.munmap(srcAddr, rawSize);
+            }
+            if (srcFd != -1) {
+                ff.close(srcFd);
+            }
+            path.trimTo(plen);
+        }
+    }
+
+    /**
+     * Restores .d file of compressed column and removes the .z file. Decompressed data
+     * is written to a temporary file, which is then renamed to .d so that concurrent readers
+     * never observe partially written .d file.
+     *
+     * @param path  path to partition directory
+     * @param other scratch path, its content is discarded
+     * @param plen  length of partition directory path
+     */
+    public static void decompressColumn(FilesFacade ff, Path path, Path other, int plen, CharSequence columnName) {
+        long fd = -1;
+        long addr = 0;
+        long fileSize = 0;
+        long buf = 0;
+        long rawSize = 0;
+        try {
+            fd = TableUtils.openRO(ff, TableUtils.zFile(path.trimTo(plen), columnName), LOG);
+            fileSize = ff.length(fd);
+            addr = mapRO(ff, fd, fileSize, path);
+            final int codec = readCodec(addr, fileSize, path);
+            final long valueCount = Unsafe.getUnsafe().getLong(addr + HEADER_OFFSET_VALUE_COUNT);
+            rawSize = valueCount << ColumnCodecs.getValueSizePow2(codec);
+            buf = Unsafe.malloc(rawSize);
+            ColumnCodecs.decode(codec, addr + PAYLOAD_OFFSET, valueCount, buf);
+
+            other.of(path).trimTo(plen).concat(columnName).put(TableUtils.FILE_SUFFIX_D).put(".tmp").$();
+            writeFile(ff, other, buf, rawSize);
+            if (!ff.rename(other, TableUtils.dFile(path.trimTo(plen), columnName))) {
+                throw CairoException.instance(ff.errno()).put("could not rename ").put(other).put(" -> ").put(path);
+            }
+            if (!ff.remove(TableUtils.zFile(path.trimTo(plen), columnName))) {
+                LOG.error().$("could not remove [path=").$(path).$(", errno=").$(ff.errno()).$(']').$();
+            }
+            LOG.info().$("decompressed [path=").$(path.trimTo(plen).concat(columnName)).$(", size=").$(rawSize).$(']').$();
+        } finally {
+            if (buf != 0) {
+                Unsafe.free(buf, rawSize);
+            }
+            if (addr != 0) {
+                ff.munmap(addr, fileSize);
+            }
+            if (fd != -1) {
+                ff.close(fd);
+            }
+            path.trimTo(plen);
+        }
+    }
+
+    public static int getCodec(int columnType) {
+        switch (columnType) {
+            case ColumnType.LONG:
+            case ColumnType.DATE:
+            case ColumnType.TIMESTAMP:
+                return ColumnCodecs.CODEC_DELTA_OF_DELTA;
+            case ColumnType.DOUBLE:
+                return ColumnCodecs.CODEC_XOR;
+            case ColumnType.INT:
+            case ColumnType.SYMBOL:
+                return ColumnCodecs.CODEC_BIT_PACK;
+            default:
+                return ColumnCodecs.CODEC_NONE;
+        }
+    }
+
+    public static int readCodec(long addr, long fileSize, LPSZ path) {
+        if (fileSize < PAYLOAD_OFFSET || Unsafe.getUnsafe().getInt(addr) != MAGIC) {
+            throw CairoException.instance(0).put("invalid compressed column file [path=").put(path).put(']');
+        }
+        return Unsafe.getUnsafe().getInt(addr + HEADER_OFFSET_CODEC);
+    }
+
+    private static long mapRO(FilesFacade ff, long fd, long size, LPSZ path) {
+        final long addr = ff.mmap(fd, size, 0, Files.MAP_RO);
+        if (addr == FilesFacade.MAP_FAILED) {
+            throw CairoException.instance(ff.errno()).put("could not mmap [path=").put(path).put(", size=").put(size).put(']');
+        }
+        return addr;
+    }
+
+    private static void writeFile(FilesFacade ff, LPSZ path, long buf, long len) {
+        final long fd = TableUtils.openFileRWOrFail(ff, path);
+        try {
+            if (!ff.truncate(fd, 0) || ff.write(fd, buf, len, 0) != len) {
+                throw CairoException.instance(ff.errno()).put("could not write [path=").put(path).put(", size=").put(len).put(']');
+            }
+            ff.fsync(fd);
+        } finally {
+            ff.close(fd);
+        }
+    }
+}
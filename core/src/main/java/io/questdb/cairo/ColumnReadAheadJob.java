@@ -0,0 +1,171 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cairo;
+
+import io.questdb.MessageBus;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.cairo.vm.ColumnReadAhead;
+import io.questdb.mp.AbstractQueueConsumerJob;
+import io.questdb.std.Files;
+import io.questdb.std.FilesFacade;
+import io.questdb.std.Unsafe;
+import io.questdb.std.str.LPSZ;
+import io.questdb.std.str.Path;
+import io.questdb.tasks.ColumnReadAheadTask;
+
+/**
+ * Populates OS page cache with the parts of column files that queries are about to scan.
+ * Only the pages holding the published row range are mapped read-only and touched one at a
+ * time, which has the effect of MADV_WILLNEED without blocking query thread on page faults.
+ * Compressed column files are touched as a whole. Tasks are published by
+ * {@link io.questdb.cairo.vm.ColumnReadAhead}, touching stops as soon as the publishing cursor
+ * is rewound or closed.
+ */
+public class ColumnReadAheadJob extends AbstractQueueConsumerJob<ColumnReadAheadTask> {
+    private static final Log LOG = LogFactory.getLog(ColumnReadAheadJob.class);
+    // number of pages touched between checks that the task is still wanted
+    private static final long CANCEL_CHECK_MASK = 63;
+    private final FilesFacade ff;
+    // keeps page reads observable so that they are not optimised away
+    private long touched;
+
+    public ColumnReadAheadJob(MessageBus messageBus) {
+        super(messageBus.getColumnReadAheadQueue(), messageBus.getColumnReadAheadSubSeq());
+        this.ff = messageBus.getConfiguration().getFilesFacade();
+    }
+
+    /**
+     * Touches pages of the file that hold bytes [lo, hi).
+     *
+     * @return sum of touched bytes
+     */
+    public static long readAhead(FilesFacade ff, LPSZ name, long lo, long hi, ColumnReadAhead owner, int epoch) {
+        final long fd = ff.openRO(name);
+        if (fd < 0) {
+            // partition could have been purged or column dropped since task was published
+            return 0;
+        }
+        try {
+            hi = Math.min(hi, ff.length(fd));
+            if (lo >= hi) {
+                return 0;
+            }
+            final long mapLo = lo - lo % ff.getPageSize();
+            final long mapLen = hi - mapLo;
+            final long addr = ff.mmap(fd, mapLen, mapLo, Files.MAP_RO);
+            if (addr == FilesFacade.MAP_FAILED) {
+                LOG.debug().$("could not map for read-ahead [file=").$(name).$(", errno=").$(ff.errno()).$(']').$();
+                return 0;
+            }
+            try {
+                return touch(addr, mapLen, owner, epoch);
+            } finally {
+                ff.munmap(addr, mapLen);
+            }
+        } finally {
+            ff.close(fd);
+        }
+    }
+
+    private static long touch(long addr, long len, ColumnReadAhead owner, int epoch) {
+        long sum = 0;
+        for (long p = 0, page = 0; p < len; p += Files.PAGE_SIZE, page++) {
+            if ((page & CANCEL_CHECK_MASK) == 0 && !owner.isCurrent(epoch)) {
+                break;
+            }
+            sum += Unsafe.getUnsafe().getByte(addr + p);
+        }
+        return sum;
+    }
+
+    // touches index entries of rows [lo, hi) and then the data they point to
+    private long readAheadVarColumn(Path path, int plen, long lo, long hi, ColumnReadAhead owner, int epoch) {
+        final long fd = ff.openRO(path.trimTo(plen).put(TableUtils.FILE_SUFFIX_I).$());
+        if (fd < 0) {
+            return 0;
+        }
+        long sum;
+        long dataLo;
+        long dataHi;
+        try {
+            final long indexLen = ff.length(fd);
+            final long indexLo = lo * Long.BYTES;
+            // entry of row hi, when present, is where data of the range ends
+            final long indexEnd = (hi + 1) * Long.BYTES;
+            final long indexHi = Math.min(indexEnd, indexLen);
+            if (indexLo >= indexHi) {
+                return 0;
+            }
+            final long mapLo = indexLo - indexLo % ff.getPageSize();
+            final long mapLen = indexHi - mapLo;
+            final long addr = ff.mmap(fd, mapLen, mapLo, Files.MAP_RO);
+            if (addr == FilesFacade.MAP_FAILED) {
+                LOG.debug().$("could not map for read-ahead [file=").$(path).$(", errno=").$(ff.errno()).$(']').$();
+                return 0;
+            }
+            try {
+                sum = touch(addr, mapLen, owner, epoch);
+                dataLo = Unsafe.getUnsafe().getLong(addr + indexLo - mapLo);
+                dataHi = indexHi == indexEnd ? Unsafe.getUnsafe().getLong(addr + indexHi - Long.BYTES - mapLo) : Long.MAX_VALUE;
+            } finally {
+                ff.munmap(addr, mapLen);
+            }
+        } finally {
+            ff.close(fd);
+        }
+        return sum + readAhead(ff, path.trimTo(plen).put(TableUtils.FILE_SUFFIX_D).$(), dataLo, dataHi, owner, epoch);
+    }
+
+    @Override
+    protected boolean doRun(int workerId, long cursor) {
+        final ColumnReadAheadTask task = queue.get(cursor);
+        // copy values and release queue item
+        final Path path = Path.getThreadLocal(task.getPartitionPath()).concat(task.getColumnName());
+        final int columnType = task.getColumnType();
+        final long rowLo = task.getRowLo();
+        final long rowHi = task.getRowHi();
+        final ColumnReadAhead owner = task.getOwner();
+        final int epoch = task.getEpoch();
+        final boolean compressed = task.isCompressed();
+        subSeq.done(cursor);
+
+        if (!owner.isCurrent(epoch)) {
+            return true;
+        }
+
+        // compressed column is decoded as a whole, its byte ranges do not follow rows
+        if (compressed) {
+            touched += readAhead(ff, path.put(TableUtils.FILE_SUFFIX_Z).$(), 0, Long.MAX_VALUE, owner, epoch);
+        } else if (columnType == ColumnType.STRING || columnType == ColumnType.BINARY) {
+            touched += readAheadVarColumn(path, path.length(), rowLo, rowHi, owner, epoch);
+        } else {
+            final int shift = ColumnType.pow2SizeOf(columnType);
+            touched += readAhead(ff, path.put(TableUtils.FILE_SUFFIX_D).$(), rowLo << shift, rowHi << shift, owner, epoch);
+        }
+        return true;
+    }
+}
@@ -555,4 +555,179 @@ public class DefaultCairoConfiguration implements CairoConfiguration {
     public int getLatestByQueueCapacity() {
         return 32;
     }
+
+    @Override
+    public int getPageFrameFilterQueueCapacity() {
+        return 64;
+    }
+
+    @Override
+    public boolean isSqlParallelFilterEnabled() {
+        return true;
+    }
+
+    @Override
+    public int getSqlParallelFilterFrameRowCount() {
+        return 1_000_000;
+    }
+
+    @Override
+    public int getSqlParallelFilterBatchSize() {
+        return 16;
+    }
+
+    @Override
+    public boolean isSqlCompiledFilterEnabled() {
+        return true;
+    }
+
+    @Override
+    public int getPageFrameGroupByQueueCapacity() {
+        return 64;
+    }
+
+    @Override
+    public boolean isSqlParallelGroupByEnabled() {
+        return true;
+    }
+
+    @Override
+    public int getSqlParallelGroupBySliceRowCount() {
+        return 100_000;
+    }
+
+    @Override
+    public boolean isSqlParallelSampleByEnabled() {
+        return true;
+    }
+
+    @Override
+    public boolean isSqlSortRadixEnabled() {
+        return true;
+    }
+
+    @Override
+    public int getSqlSortTopKMaxRows() {
+        return 10_000;
+    }
+
+    @Override
+    public int getPageFrameHashJoinQueueCapacity() {
+        return 64;
+    }
+
+    @Override
+    public boolean isSqlParallelHashJoinEnabled() {
+        return true;
+    }
+
+    @Override
+    public boolean isSqlParallelHashJoinOrdered() {
+        return true;
+    }
+
+    @Override
+    public int getSqlParallelHashJoinSliceRowCount() {
+        return 100_000;
+    }
+
+    @Override
+    public int getSqlJoinBloomFilterBitsPerKey() {
+        return 10;
+    }
+
+    @Override
+    public boolean isSqlAsOfJoinPageFrameEnabled() {
+        return true;
+    }
+
+    @Override
+    public int getPartitionCompressAfter() {
+        return 0;
+    }
+
+    @Override
+    public boolean isPartitionStatsEnabled() {
+        return false;
+    }
+
+    @Override
+    public int getPartitionZoneMapBlockSize() {
+        return 65536;
+    }
+
+    @Override
+    public boolean isColumnReadAheadEnabled() {
+        return true;
+    }
+
+    @Override
+    public int getColumnReadAheadQueueCapacity() {
+        return 64;
+    }
+
+    @Override
+    public long getGroupCommitWindow() {
+        return 0;
+    }
+
+    @Override
+    public int getGroupCommitMaxSize() {
+        return 64;
+    }
+
+    @Override
+    public long getWalSegmentSize() {
+        return 64 * 1024 * 1024;
+    }
+
+    @Override
+    public int getWalApplyQueueCapacity() {
+        return 64;
+    }
+
+    @Override
+    public long getWalApplyRetryInterval() {
+        return 1000;
+    }
+
+    @Override
+    public long getWalApplySweepInterval() {
+        return 30_000;
+    }
+
+    @Override
+    public int getWalApplyMaxTxnPerCommit() {
+        return 100;
+    }
+
+    @Override
+    public boolean isWalInsertEnabled() {
+        return false;
+    }
+
+    @Override
+    public boolean isO3AdaptiveLagEnabled() {
+        return false;
+    }
+
+    @Override
+    public long getO3AdaptiveLagMin() {
+        return 1_000_000;
+    }
+
+    @Override
+    public long getO3AdaptiveLagMax() {
+        return 600_000_000;
+    }
+
+    @Override
+    public int getO3AdaptiveMaxUncommittedRowsMin() {
+        return 10_000;
+    }
+
+    @Override
+    public int getO3AdaptiveMaxUncommittedRowsMax() {
+        return 5_000_000;
+    }
 }
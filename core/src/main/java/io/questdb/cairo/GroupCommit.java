@@ -0,0 +1,222 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cairo;
+
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.ObjList;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Coordinates durable ({@link CommitMode#SYNC}) commits of table writers that run on different threads.
+ * <p>
+ * The first writer to arrive becomes the leader of a group and waits for the group commit window
+ * to let other writers join. The leader stops waiting once no other writer is on its way to commit,
+ * so a lone committer does not pay for the window. The leader then makes the whole group durable in bulk: asynchronous msync
+ * starts write-back of data files of every table, synchronous msync waits for all of it, then
+ * _txn files are published and synced the same way. Writers of the group wait for the leader and carry
+ * on with their commit, so the group pays for a couple of sync rounds rather than one round per table.
+ * Writers that arrive while the leader is busy form the next group. When data of a writer cannot be
+ * made durable, its transaction is not published and its commit fails, other members are not affected.
+ */
+public class GroupCommit {
+    private static final Log LOG = LogFactory.getLog(GroupCommit.class);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition groupDone = lock.newCondition();
+    private final Condition groupJoined = lock.newCondition();
+    // writers between announce() and commit()
+    private final AtomicInteger arriving = new AtomicInteger();
+    private final long windowNanos;
+    private final int maxGroupSize;
+    private ObjList<TableWriter> members = new ObjList<>();
+    private ObjList<TableWriter> spare = new ObjList<>();
+    private long openGroup = 0;
+    private long doneGroup = -1;
+    private boolean leaderPresent = false;
+
+    public GroupCommit(CairoConfiguration configuration) {
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(configuration.getGroupCommitWindow());
+        this.maxGroupSize = configuration.getGroupCommitMaxSize();
+    }
+
+    public boolean isEnabled() {
+        return windowNanos > 0;
+    }
+
+    /**
+     * Tells leader of the open group that writer is about to commit and is worth waiting for.
+     * Must be followed by either {@link #commit(TableWriter)} or {@link #cancel()}.
+     */
+    void announce() {
+        arriving.incrementAndGet();
+    }
+
+    void cancel() {
+        arriving.decrementAndGet();
+        lock.lock();
+        try {
+            groupJoined.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Makes data of the writer durable and publishes its transaction, possibly on another thread.
+     * Column indexes must be up to date before this method is called.
+     */
+    void commit(TableWriter writer) {
+        final long group;
+        final ObjList<TableWriter> closed;
+        lock.lock();
+        try {
+            group = openGroup;
+            writer.groupCommitError = null;
+            members.add(writer);
+            arriving.decrementAndGet();
+            if (leaderPresent) {
+                groupJoined.signal();
+                while (doneGroup < group) {
+                    groupDone.awaitUninterruptibly();
+                }
+                rethrow(writer);
+                return;
+            }
+
+            leaderPresent = true;
+            long nanos = windowNanos;
+            while (nanos > 0 && members.size() < maxGroupSize && arriving.get() > 0) {
+                try {
+                    nanos = groupJoined.awaitNanos(nanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+
+            // groups are made durable in order, previous group also owns the spare member list
+            while (doneGroup < group - 1) {
+                groupDone.awaitUninterruptibly();
+            }
+
+            // close the group, writers arriving from now on elect a new leader
+            closed = members;
+            members = spare;
+            spare = closed;
+            openGroup++;
+            leaderPresent = false;
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            commitGroup(closed);
+        } finally {
+            lock.lock();
+            try {
+                closed.clear();
+                doneGroup = group;
+                groupDone.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+        rethrow(writer);
+    }
+
+    private static void commitGroup(ObjList<TableWriter> group) {
+        final int n = group.size();
+        LOG.debug().$("group commit [size=").$(n).$(']').$();
+
+        // each stage skips members that failed earlier, their transactions must not be published
+        for (int i = 0; i < n; i++) {
+            final TableWriter writer = group.getQuick(i);
+            try {
+                writer.groupCommitSyncColumns(true);
+            } catch (Throwable e) {
+                writer.groupCommitError = e;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            final TableWriter writer = group.getQuick(i);
+            if (writer.groupCommitError == null) {
+                try {
+                    writer.groupCommitSyncColumns(false);
+                } catch (Throwable e) {
+                    writer.groupCommitError = e;
+                }
+            }
+        }
+
+        // data is durable, transactions can be made visible
+        for (int i = 0; i < n; i++) {
+            final TableWriter writer = group.getQuick(i);
+            if (writer.groupCommitError == null) {
+                try {
+                    writer.groupCommitPublishTxn();
+                } catch (Throwable e) {
+                    writer.groupCommitError = e;
+                }
+            }
+        }
+
+        for (int i = 0; i < n; i++) {
+            final TableWriter writer = group.getQuick(i);
+            if (writer.groupCommitError == null) {
+                try {
+                    writer.groupCommitSyncTxn(true);
+                } catch (Throwable e) {
+                    writer.groupCommitError = e;
+                }
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            final TableWriter writer = group.getQuick(i);
+            if (writer.groupCommitError == null) {
+                try {
+                    writer.groupCommitSyncTxn(false);
+                } catch (Throwable e) {
+                    writer.groupCommitError = e;
+                }
+            }
+        }
+    }
+
+    private static void rethrow(TableWriter writer) {
+        final Throwable e = writer.groupCommitError;
+        if (e != null) {
+            writer.groupCommitError = null;
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            throw (Error) e;
+        }
+    }
+}
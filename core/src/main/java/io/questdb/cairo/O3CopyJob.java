@@ -362,11 +362,11 @@ public class O3CopyJob extends AbstractQueueConsumerJob<O3CopyTask> {
                 );
             }
 
-            // unmap memory
+            // unmap memory, rewritten partition must be durable before transaction is committed
             O3Utils.unmapAndClose(ff, srcDataFixFd, srcDataFixAddr, srcDataFixSize);
             O3Utils.unmapAndClose(ff, srcDataVarFd, srcDataVarAddr, srcDataVarSize);
-            O3Utils.unmapAndClose(ff, dstFixFd, dstFixAddr, dstFixSize);
-            O3Utils.unmapAndClose(ff, dstVarFd, dstVarAddr, dstVarSize);
+            O3Utils.syncUnmapAndClose(ff, dstFixFd, dstFixAddr, dstFixSize, tableWriter.getO3CommitMode());
+            O3Utils.syncUnmapAndClose(ff, dstVarFd, dstVarAddr, dstVarSize, tableWriter.getO3CommitMode());
 
             final int columnsRemaining = columnCounter.decrementAndGet();
             LOG.debug()
@@ -0,0 +1,139 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cairo;
+
+/**
+ * Tracks how O3 commits of a table writer behave and, when enabled, adapts commit lag
+ * and max uncommitted rows within configured bounds, starting from the table values.
+ * <p>
+ * Rewrite amplification is the number of existing partition rows copied per committed
+ * O3 row. When it is high, rows keep landing inside already written data and a longer
+ * lag would let them be sorted in memory instead, so lag and row limit grow. When it
+ * is low, lag shrinks towards twice the observed lateness, which is how far behind
+ * the table max timestamp rows arrive, to save memory. Row limit also grows when the
+ * lag had to be cut short by it.
+ */
+public class O3LagTuner {
+    static final double AMPLIFICATION_HIGH = 1.0;
+    static final double AMPLIFICATION_LOW = 0.1;
+    // weight of the latest commit in moving averages
+    private static final double ALPHA = 0.25;
+    private final boolean enabled;
+    private final long lagMin;
+    private final long lagMax;
+    private final int rowsMin;
+    private final int rowsMax;
+    private long commitLag;
+    private int maxUncommittedRows;
+    private double amplification;
+    private double lateness;
+    private long commitCount;
+
+    public O3LagTuner(CairoConfiguration configuration) {
+        this.enabled = configuration.isO3AdaptiveLagEnabled();
+        this.lagMin = configuration.getO3AdaptiveLagMin();
+        this.lagMax = Math.max(lagMin, configuration.getO3AdaptiveLagMax());
+        this.rowsMin = configuration.getO3AdaptiveMaxUncommittedRowsMin();
+        this.rowsMax = Math.max(rowsMin, configuration.getO3AdaptiveMaxUncommittedRowsMax());
+    }
+
+    public double getAmplification() {
+        return amplification;
+    }
+
+    public long getCommitLag() {
+        return commitLag;
+    }
+
+    public double getLateness() {
+        return lateness;
+    }
+
+    public int getMaxUncommittedRows() {
+        return maxUncommittedRows;
+    }
+
+    /**
+     * Resets statistics and effective values to the ones of the table.
+     */
+    public void of(long commitLag, int maxUncommittedRows) {
+        if (enabled) {
+            this.commitLag = Math.min(Math.max(commitLag, lagMin), lagMax);
+            this.maxUncommittedRows = Math.min(Math.max(maxUncommittedRows, rowsMin), rowsMax);
+        } else {
+            this.commitLag = commitLag;
+            this.maxUncommittedRows = maxUncommittedRows;
+        }
+        this.amplification = 0;
+        this.lateness = 0;
+        this.commitCount = 0;
+    }
+
+    /**
+     * @param committedRows O3 rows committed to partitions
+     * @param rewrittenRows existing partition rows copied to merge them in
+     * @param lagRows       rows kept uncommitted in the lag
+     * @param lateness      distance between table max timestamp and min O3 timestamp
+     * @return +1 when lag was increased, -1 when decreased, 0 otherwise
+     */
+    public int onO3Commit(long committedRows, long rewrittenRows, long lagRows, long lateness) {
+        final double sample = committedRows > 0 ? (double) rewrittenRows / committedRows : 0;
+        if (commitCount++ == 0) {
+            this.amplification = sample;
+            this.lateness = lateness;
+        } else {
+            this.amplification += ALPHA * (sample - amplification);
+            this.lateness += ALPHA * (lateness - this.lateness);
+        }
+
+        if (!enabled) {
+            return 0;
+        }
+
+        if (amplification > AMPLIFICATION_HIGH) {
+            if (commitLag < lagMax || maxUncommittedRows < rowsMax) {
+                commitLag = Math.min(lagMax, Math.max(commitLag * 2, 1));
+                maxUncommittedRows = (int) Math.min(rowsMax, maxUncommittedRows * 2L);
+                return 1;
+            }
+            return 0;
+        }
+
+        if (lagRows >= maxUncommittedRows && maxUncommittedRows < rowsMax) {
+            maxUncommittedRows = (int) Math.min(rowsMax, maxUncommittedRows * 2L);
+        }
+
+        if (amplification < AMPLIFICATION_LOW) {
+            final long target = Math.max(lagMin, (long) (this.lateness * 2));
+            if (commitLag > target) {
+                commitLag = Math.max(target, commitLag * 3 / 4);
+                maxUncommittedRows = (int) Math.min(rowsMax, Math.max(rowsMin, Math.max(maxUncommittedRows * 3L / 4, lagRows * 2)));
+                return -1;
+            }
+        }
+        return 0;
+    }
+}
@@ -113,6 +113,16 @@ public class O3Utils {
         Vect.copyFromTimestampIndex(src, srcLo, srcHi, dstAddr);
     }
 
+    static void syncUnmapAndClose(FilesFacade ff, long dstFd, long dstAddr, long dstSize, int commitMode) {
+        // negative size denotes memory owned by the writer, which syncs it on commit
+        if (commitMode != CommitMode.NOSYNC && dstAddr != 0 && dstSize > 0) {
+            if (ff.msync(dstAddr, dstSize, commitMode == CommitMode.ASYNC) != 0) {
+                LOG.error().$("could not msync [fd=").$(dstFd).$(", errno=").$(ff.errno()).$(']').$();
+            }
+        }
+        unmapAndClose(ff, dstFd, dstAddr, dstSize);
+    }
+
     static void unmapAndClose(FilesFacade ff, long dstFixFd, long dstFixAddr, long dstFixSize) {
         unmap(ff, dstFixAddr, dstFixSize);
         close(ff, dstFixFd);
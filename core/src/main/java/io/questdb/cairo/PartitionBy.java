@@ -39,9 +39,11 @@ public final class PartitionBy {
      * all data is stored in a single directory
      */
     public static final int NONE = 3;
+    public static final int HOUR = 4;
     private final static CharSequenceIntHashMap nameToIndexMap = new CharSequenceIntHashMap();
 
     static {
+        nameToIndexMap.put("HOUR", HOUR);
         nameToIndexMap.put("DAY", DAY);
         nameToIndexMap.put("MONTH", MONTH);
         nameToIndexMap.put("YEAR", YEAR);
@@ -57,6 +59,8 @@ public final class PartitionBy {
 
     public static String toString(int partitionBy) {
         switch (partitionBy) {
+            case HOUR:
+                return "HOUR";
             case DAY:
                 return "DAY";
             case MONTH:
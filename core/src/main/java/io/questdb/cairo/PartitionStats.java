@@ -0,0 +1,443 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cairo;
+
+import io.questdb.cairo.sql.SymbolTable;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.*;
+import io.questdb.std.str.LPSZ;
+import io.questdb.std.str.Path;
+
+/**
+ * Per-partition column statistics file (.st) layout:
+ * <pre>
+ * long row count, partition size statistics were computed for
+ * long min, long value or double bits for FLOAT and DOUBLE columns
+ * long max
+ * long null count, includes column top
+ * long distinct count, SYMBOL columns only, -1 otherwise
+ * </pre>
+ * Min and max are computed over non-null values. When all values are null min is greater than max.
+ * Column top rows of BYTE and SHORT columns read as zero and are accounted for as values.
+ * Statistics are written for partitions table writer no longer appends to. Readers must
+ * ignore files whose row count does not match partition size.
+ * <p>
+ * Partitions larger than zone map block size also have zone map file (.zm):
+ * <pre>
+ * long row count, partition size zone map was computed for
+ * long block size, number of rows per block
+ * block statistics, {@link #SIZE} bytes each, laid out as above with row count of the block
+ * and distinct count of -1
+ * </pre>
+ */
+public final class PartitionStats {
+    public static final long OFFSET_ROW_COUNT = 0;
+    public static final long OFFSET_MIN = 8;
+    public static final long OFFSET_MAX = 16;
+    public static final long OFFSET_NULL_COUNT = 24;
+    public static final long OFFSET_DISTINCT_COUNT = 32;
+    public static final int SIZE = 40;
+    public static final long ZONE_MAP_OFFSET_BLOCK_SIZE = 8;
+    public static final int ZONE_MAP_HEADER_SIZE = 16;
+    private static final Log LOG = LogFactory.getLog(PartitionStats.class);
+
+    private PartitionStats() {
+    }
+
+    /**
+     * Computes statistics of column in partition and writes them to .st file, zone map is
+     * written to .zm file. Columns that are compressed are skipped.
+     *
+     * @param path             path to partition directory
+     * @param plen             length of partition directory path
+     * @param partitionSize    number of rows in partition
+     * @param zoneMapBlockSize rows per zone map block, zero disables zone map
+     * @param buf              scratch memory of at least {@link #SIZE} bytes
+     */
+    public static void compute(FilesFacade ff, Path path, int plen, CharSequence columnName, int columnType, long partitionSize, int zoneMapBlockSize, long buf) {
+        if (!isSupported(columnType)) {
+            return;
+        }
+        long zoneMap = 0;
+        long zoneMapSize = 0;
+        try {
+            final long columnTop;
+            if (ff.exists(TableUtils.dFile(path.trimTo(plen), columnName))) {
+                columnTop = Math.min(TableUtils.readColumnTop(ff, path.trimTo(plen), columnName, plen, buf), partitionSize);
+            } else if (ff.exists(TableUtils.zFile(path.trimTo(plen), columnName))) {
+                return;
+            } else {
+                // column was added after partition had been written
+                columnTop = partitionSize;
+            }
+
+            final long valueCount = partitionSize - columnTop;
+            final long size = valueCount << ColumnType.pow2SizeOf(columnType);
+            long fd = -1;
+            long addr = 0;
+            try {
+                if (valueCount > 0) {
+                    fd = TableUtils.openRO(ff, TableUtils.dFile(path.trimTo(plen), columnName), LOG);
+                    if (ff.length(fd) < size) {
+                        LOG.error().$("column file is too short, skipping stats [path=").$(path).$(", expectedSize=").$(size).$(']').$();
+                        return;
+                    }
+                    addr = ff.mmap(fd, size, 0, Files.MAP_RO);
+                    if (addr == FilesFacade.MAP_FAILED) {
+                        throw CairoException.instance(ff.errno()).put("could not mmap [path=").put(path).put(", size=").put(size).put(']');
+                    }
+                }
+                Unsafe.getUnsafe().putLong(buf + OFFSET_ROW_COUNT, partitionSize);
+                Unsafe.getUnsafe().putLong(buf + OFFSET_DISTINCT_COUNT, -1);
+                if (zoneMapBlockSize > 0 && partitionSize > zoneMapBlockSize) {
+                    // partition statistics are merged from block statistics
+                    zoneMapSize = ZONE_MAP_HEADER_SIZE + (partitionSize + zoneMapBlockSize - 1) / zoneMapBlockSize * SIZE;
+                    zoneMap = Unsafe.malloc(zoneMapSize);
+                    computeZoneMap(columnType, addr, columnTop, partitionSize, zoneMapBlockSize, zoneMap, buf);
+                } else {
+                    computeMinMax(columnType, addr, valueCount, columnTop, buf);
+                }
+                if (columnType == ColumnType.SYMBOL) {
+                    computeDistinctKeys(addr, valueCount, buf);
+                }
+            } finally {
+                if (addr != 0) {
+                    ff.munmap(addr, size);
+                }
+                if (fd != -1) {
+                    ff.close(fd);
+                }
+            }
+
+            // writer recomputes statistics when .st file is missing, zone map goes first
+            if (zoneMap != 0) {
+                write(ff, TableUtils.zoneMapFile(path.trimTo(plen), columnName), zoneMap, zoneMapSize);
+            }
+            write(ff, TableUtils.statsFile(path.trimTo(plen), columnName), buf, SIZE);
+        } finally {
+            if (zoneMap != 0) {
+                Unsafe.free(zoneMap, zoneMapSize);
+            }
+            path.trimTo(plen);
+        }
+    }
+
+    public static boolean isSupported(int columnType) {
+        switch (columnType) {
+            case ColumnType.BYTE:
+            case ColumnType.SHORT:
+            case ColumnType.INT:
+            case ColumnType.SYMBOL:
+            case ColumnType.LONG:
+            case ColumnType.DATE:
+            case ColumnType.TIMESTAMP:
+            case ColumnType.FLOAT:
+            case ColumnType.DOUBLE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Reads statistics of column in partition into buf.
+     *
+     * @param path     path to partition directory, it is left unchanged
+     * @param rowCount partition size statistics are expected to be computed for
+     * @param buf      memory of at least {@link #SIZE} bytes
+     * @return false when statistics are absent or stale
+     */
+    public static boolean read(FilesFacade ff, Path path, CharSequence columnName, long rowCount, long buf) {
+        final int plen = path.length();
+        try {
+            final long fd = ff.openRO(TableUtils.statsFile(path, columnName));
+            if (fd < 0) {
+                return false;
+            }
+            try {
+                return ff.read(fd, buf, SIZE, 0) == SIZE && Unsafe.getUnsafe().getLong(buf + OFFSET_ROW_COUNT) == rowCount;
+            } finally {
+                ff.close(fd);
+            }
+        } finally {
+            path.trimTo(plen);
+        }
+    }
+
+    /**
+     * Reads zone map of column in partition.
+     *
+     * @param path     path to partition directory, it is left unchanged
+     * @param rowCount partition size zone map is expected to be computed for
+     * @param zoneMap  list to read zone map into, see {@link #getBlockAddress(DirectLongList, long)}
+     * @return false when zone map is absent or stale
+     */
+    public static boolean readZoneMap(FilesFacade ff, Path path, CharSequence columnName, long rowCount, DirectLongList zoneMap) {
+        final int plen = path.length();
+        zoneMap.clear();
+        try {
+            final long fd = ff.openRO(TableUtils.zoneMapFile(path, columnName));
+            if (fd < 0) {
+                return false;
+            }
+            try {
+                final long len = ff.length(fd);
+                if (len < ZONE_MAP_HEADER_SIZE || (len - ZONE_MAP_HEADER_SIZE) % SIZE != 0) {
+                    return false;
+                }
+                final long longCount = len / Long.BYTES;
+                if (zoneMap.getCapacity() < longCount) {
+                    zoneMap.extend(longCount);
+                }
+                if (ff.read(fd, zoneMap.getAddress(), len, 0) != len || zoneMap.get(0) != rowCount) {
+                    return false;
+                }
+                zoneMap.setPos(longCount);
+                return true;
+            } finally {
+                ff.close(fd);
+            }
+        } finally {
+            path.trimTo(plen);
+        }
+    }
+
+    /**
+     * @return address of statistics of the block containing row, 0 when row is outside of zone map
+     */
+    public static long getBlockAddress(DirectLongList zoneMap, long row) {
+        final long block = row / getBlockSize(zoneMap);
+        if (block < (zoneMap.size() * Long.BYTES - ZONE_MAP_HEADER_SIZE) / SIZE) {
+            return zoneMap.getAddress() + ZONE_MAP_HEADER_SIZE + block * SIZE;
+        }
+        return 0;
+    }
+
+    public static long getBlockSize(DirectLongList zoneMap) {
+        return zoneMap.get(ZONE_MAP_OFFSET_BLOCK_SIZE / Long.BYTES);
+    }
+
+    private static void computeByte(long addr, long count, long columnTop, long buf) {
+        long min = columnTop > 0 ? 0 : Long.MAX_VALUE;
+        long max = columnTop > 0 ? 0 : Long.MIN_VALUE;
+        for (long i = 0; i < count; i++) {
+            final byte v = Unsafe.getUnsafe().getByte(addr + i);
+            min = Math.min(min, v);
+            max = Math.max(max, v);
+        }
+        putMinMax(buf, min, max, 0);
+    }
+
+    private static void computeDistinctKeys(long addr, long count, long buf) {
+        final long max = Unsafe.getUnsafe().getLong(buf + OFFSET_MAX);
+        if (max < 0) {
+            Unsafe.getUnsafe().putLong(buf + OFFSET_DISTINCT_COUNT, 0);
+            return;
+        }
+        final long bitsetSize = (max >>> 3) + 1;
+        final long bitset = Unsafe.calloc(bitsetSize);
+        try {
+            long distinct = 0;
+            for (long i = 0; i < count; i++) {
+                final int key = Unsafe.getUnsafe().getInt(addr + i * Integer.BYTES);
+                if (key > -1) {
+                    final long p = bitset + (key >>> 3);
+                    final int b = Unsafe.getUnsafe().getByte(p);
+                    final int mask = 1 << (key & 7);
+                    if ((b & mask) == 0) {
+                        Unsafe.getUnsafe().putByte(p, (byte) (b | mask));
+                        distinct++;
+                    }
+                }
+            }
+            Unsafe.getUnsafe().putLong(buf + OFFSET_DISTINCT_COUNT, distinct);
+        } finally {
+            Unsafe.free(bitset, bitsetSize);
+        }
+    }
+
+    private static void computeDouble(long addr, long count, long columnTop, long buf) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        long nullCount = columnTop;
+        for (long i = 0; i < count; i++) {
+            final double v = Unsafe.getUnsafe().getDouble(addr + i * Double.BYTES);
+            if (v != v) {
+                nullCount++;
+            } else {
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+            }
+        }
+        putMinMaxDouble(buf, min, max, nullCount);
+    }
+
+    private static void computeFloat(long addr, long count, long columnTop, long buf) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        long nullCount = columnTop;
+        for (long i = 0; i < count; i++) {
+            final float v = Unsafe.getUnsafe().getFloat(addr + i * Float.BYTES);
+            if (v != v) {
+                nullCount++;
+            } else {
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+            }
+        }
+        putMinMaxDouble(buf, min, max, nullCount);
+    }
+
+    private static void computeInt(long addr, long count, long columnTop, long buf) {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        long nullCount = columnTop;
+        for (long i = 0; i < count; i++) {
+            final int v = Unsafe.getUnsafe().getInt(addr + i * Integer.BYTES);
+            if (v == SymbolTable.VALUE_IS_NULL) {
+                nullCount++;
+            } else {
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+            }
+        }
+        putMinMax(buf, min, max, nullCount);
+    }
+
+    private static void computeLong(long addr, long count, long columnTop, long buf) {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        long nullCount = columnTop;
+        for (long i = 0; i < count; i++) {
+            final long v = Unsafe.getUnsafe().getLong(addr + i * Long.BYTES);
+            if (v == Numbers.LONG_NaN) {
+                nullCount++;
+            } else {
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+            }
+        }
+        putMinMax(buf, min, max, nullCount);
+    }
+
+    private static void computeShort(long addr, long count, long columnTop, long buf) {
+        long min = columnTop > 0 ? 0 : Long.MAX_VALUE;
+        long max = columnTop > 0 ? 0 : Long.MIN_VALUE;
+        for (long i = 0; i < count; i++) {
+            final short v = Unsafe.getUnsafe().getShort(addr + i * Short.BYTES);
+            min = Math.min(min, v);
+            max = Math.max(max, v);
+        }
+        putMinMax(buf, min, max, 0);
+    }
+
+    private static void computeMinMax(int columnType, long addr, long count, long columnTop, long buf) {
+        switch (columnType) {
+            case ColumnType.BYTE:
+                computeByte(addr, count, columnTop, buf);
+                break;
+            case ColumnType.SHORT:
+                computeShort(addr, count, columnTop, buf);
+                break;
+            case ColumnType.INT:
+            case ColumnType.SYMBOL:
+                computeInt(addr, count, columnTop, buf);
+                break;
+            case ColumnType.FLOAT:
+                computeFloat(addr, count, columnTop, buf);
+                break;
+            case ColumnType.DOUBLE:
+                computeDouble(addr, count, columnTop, buf);
+                break;
+            default:
+                computeLong(addr, count, columnTop, buf);
+                break;
+        }
+    }
+
+    private static void computeZoneMap(int columnType, long addr, long columnTop, long rowCount, long blockSize, long zoneMap, long buf) {
+        Unsafe.getUnsafe().putLong(zoneMap + OFFSET_ROW_COUNT, rowCount);
+        Unsafe.getUnsafe().putLong(zoneMap + ZONE_MAP_OFFSET_BLOCK_SIZE, blockSize);
+        final int shl = ColumnType.pow2SizeOf(columnType);
+        long block = zoneMap + ZONE_MAP_HEADER_SIZE;
+        for (long lo = 0; lo < rowCount; lo += blockSize, block += SIZE) {
+            final long hi = Math.min(lo + blockSize, rowCount);
+            // rows of the block below column top are not in column file
+            final long valueLo = Math.min(Math.max(lo, columnTop), hi);
+            Unsafe.getUnsafe().putLong(block + OFFSET_ROW_COUNT, hi - lo);
+            Unsafe.getUnsafe().putLong(block + OFFSET_DISTINCT_COUNT, -1);
+            computeMinMax(columnType, addr + ((valueLo - columnTop) << shl), hi - valueLo, valueLo - lo, block);
+            mergeMinMax(columnType, block, buf, lo == 0);
+        }
+    }
+
+    private static void mergeMinMax(int columnType, long src, long dst, boolean first) {
+        final long nullCount = Unsafe.getUnsafe().getLong(src + OFFSET_NULL_COUNT);
+        if (first) {
+            Unsafe.getUnsafe().putLong(dst + OFFSET_MIN, Unsafe.getUnsafe().getLong(src + OFFSET_MIN));
+            Unsafe.getUnsafe().putLong(dst + OFFSET_MAX, Unsafe.getUnsafe().getLong(src + OFFSET_MAX));
+            Unsafe.getUnsafe().putLong(dst + OFFSET_NULL_COUNT, nullCount);
+        } else if (columnType == ColumnType.FLOAT || columnType == ColumnType.DOUBLE) {
+            putMinMaxDouble(
+                    dst,
+                    Math.min(Unsafe.getUnsafe().getDouble(src + OFFSET_MIN), Unsafe.getUnsafe().getDouble(dst + OFFSET_MIN)),
+                    Math.max(Unsafe.getUnsafe().getDouble(src + OFFSET_MAX), Unsafe.getUnsafe().getDouble(dst + OFFSET_MAX)),
+                    nullCount + Unsafe.getUnsafe().getLong(dst + OFFSET_NULL_COUNT)
+            );
+        } else {
+            putMinMax(
+                    dst,
+                    Math.min(Unsafe.getUnsafe().getLong(src + OFFSET_MIN), Unsafe.getUnsafe().getLong(dst + OFFSET_MIN)),
+                    Math.max(Unsafe.getUnsafe().getLong(src + OFFSET_MAX), Unsafe.getUnsafe().getLong(dst + OFFSET_MAX)),
+                    nullCount + Unsafe.getUnsafe().getLong(dst + OFFSET_NULL_COUNT)
+            );
+        }
+    }
+
+    private static void putMinMax(long buf, long min, long max, long nullCount) {
+        Unsafe.getUnsafe().putLong(buf + OFFSET_MIN, min);
+        Unsafe.getUnsafe().putLong(buf + OFFSET_MAX, max);
+        Unsafe.getUnsafe().putLong(buf + OFFSET_NULL_COUNT, nullCount);
+    }
+
+    private static void putMinMaxDouble(long buf, double min, double max, long nullCount) {
+        Unsafe.getUnsafe().putDouble(buf + OFFSET_MIN, min);
+        Unsafe.getUnsafe().putDouble(buf + OFFSET_MAX, max);
+        Unsafe.getUnsafe().putLong(buf + OFFSET_NULL_COUNT, nullCount);
+    }
+
+    private static void write(FilesFacade ff, LPSZ name, long buf, long size) {
+        final long fd = TableUtils.openFileRWOrFail(ff, name);
+        try {
+            if (ff.write(fd, buf, size, 0) != size) {
+                throw CairoException.instance(ff.errno()).put("could not write [path=").put(name).put(']');
+            }
+        } finally {
+            ff.close(fd);
+        }
+    }
+}
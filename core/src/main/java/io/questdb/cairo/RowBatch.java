@@ -0,0 +1,316 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cairo;
+
+import io.questdb.cairo.sql.RecordMetadata;
+import io.questdb.cairo.sql.SymbolTable;
+import io.questdb.cairo.vm.ContiguousVirtualMemory;
+import io.questdb.std.*;
+
+import java.io.Closeable;
+
+/**
+ * Rows of a table laid out column by column, to be appended with {@link TableWriter#appendBatch(RowBatch)}.
+ * <p>
+ * Values of each column are kept in the on-disk format of the column type, so that the writer can
+ * copy ranges of rows into column files as blocks. Strings and binaries are kept in a per-column arena
+ * with an offset per row. Symbols are kept as strings in the same way and are resolved to keys by the
+ * writer. Null values are stored as the null value of the column type.
+ * <p>
+ * i-th value put into a column belongs to the i-th row. Columns that have fewer values than the
+ * batch has rows are padded with nulls.
+ */
+public class RowBatch implements Closeable, Mutable {
+    private static final long PAGE_SIZE = 64 * 1024;
+    private final ObjList<ContiguousVirtualMemory> dataMem = new ObjList<>();
+    private final ObjList<ContiguousVirtualMemory> offsetMem = new ObjList<>();
+    private final IntList columnTypes = new IntList();
+    private final LongList valueCounts = new LongList();
+    private int columnCount;
+    private int timestampIndex = -1;
+    private long rowCount;
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < columnCount; i++) {
+            dataMem.getQuick(i).jumpTo(0);
+            final ContiguousVirtualMemory mem = offsetMem.getQuick(i);
+            if (mem != null) {
+                mem.jumpTo(0);
+            }
+        }
+        valueCounts.setAll(columnCount, 0);
+        rowCount = 0;
+    }
+
+    @Override
+    public void close() {
+        Misc.freeObjList(dataMem);
+        Misc.freeObjList(offsetMem);
+        dataMem.clear();
+        offsetMem.clear();
+        columnTypes.clear();
+        valueCounts.clear();
+        columnCount = 0;
+        rowCount = 0;
+    }
+
+    /**
+     * Completes current row, columns that did not get a value are set to null.
+     */
+    public void endRow() {
+        rowCount++;
+        pad();
+    }
+
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    public int getColumnType(int columnIndex) {
+        return columnTypes.getQuick(columnIndex);
+    }
+
+    public int getTimestampIndex() {
+        return timestampIndex;
+    }
+
+    public RowBatch of(RecordMetadata metadata) {
+        final int columnCount = metadata.getColumnCount();
+        boolean sameLayout = this.columnCount == columnCount;
+        for (int i = 0; sameLayout && i < columnCount; i++) {
+            sameLayout = columnTypes.getQuick(i) == metadata.getColumnType(i);
+        }
+        if (sameLayout) {
+            clear();
+        } else {
+            close();
+            for (int i = 0; i < columnCount; i++) {
+                final int type = metadata.getColumnType(i);
+                columnTypes.add(type);
+                dataMem.add(new ContiguousVirtualMemory(PAGE_SIZE, Integer.MAX_VALUE));
+                offsetMem.add(isVarSize(type) ? new ContiguousVirtualMemory(PAGE_SIZE, Integer.MAX_VALUE) : null);
+                valueCounts.add(0);
+            }
+            this.columnCount = columnCount;
+        }
+        this.timestampIndex = metadata.getTimestampIndex();
+        return this;
+    }
+
+    public void putBin(int columnIndex, BinarySequence value) {
+        assert columnTypes.getQuick(columnIndex) == ColumnType.BINARY;
+        final ContiguousVirtualMemory mem = dataMem.getQuick(columnIndex);
+        offsetMem.getQuick(columnIndex).putLong(mem.putBin(value));
+        valueCounts.increment(columnIndex);
+    }
+
+    /**
+     * Copies values of a fixed size column from native memory.
+     *
+     * @param columnIndex index of the column
+     * @param address     address of values in the on-disk format of the column
+     * @param count       number of values
+     */
+    public void putBlock(int columnIndex, long address, long count) {
+        final int type = columnTypes.getQuick(columnIndex);
+        assert !isVarSize(type) && type != ColumnType.SYMBOL;
+        dataMem.getQuick(columnIndex).putBlockOfBytes(address, count << ColumnType.pow2SizeOf(type));
+        valueCounts.setQuick(columnIndex, valueCounts.getQuick(columnIndex) + count);
+    }
+
+    public void putBool(int columnIndex, boolean value) {
+        assert columnTypes.getQuick(columnIndex) == ColumnType.BOOLEAN;
+        dataMem.getQuick(columnIndex).putBool(value);
+        valueCounts.increment(columnIndex);
+    }
+
+    public void putByte(int columnIndex, byte value) {
+        assert columnTypes.getQuick(columnIndex) == ColumnType.BYTE;
+        dataMem.getQuick(columnIndex).putByte(value);
+        valueCounts.increment(columnIndex);
+    }
+
+    public void putChar(int columnIndex, char value) {
+        assert columnTypes.getQuick(columnIndex) == ColumnType.CHAR;
+        dataMem.getQuick(columnIndex).putChar(value);
+        valueCounts.increment(columnIndex);
+    }
+
+    public void putDouble(int columnIndex, double value) {
+        assert columnTypes.getQuick(columnIndex) == ColumnType.DOUBLE;
+        dataMem.getQuick(columnIndex).putDouble(value);
+        valueCounts.increment(columnIndex);
+    }
+
+    public void putFloat(int columnIndex, float value) {
+        assert columnTypes.getQuick(columnIndex) == ColumnType.FLOAT;
+        dataMem.getQuick(columnIndex).putFloat(value);
+        valueCounts.increment(columnIndex);
+    }
+
+    public void putInt(int columnIndex, int value) {
+        assert columnTypes.getQuick(columnIndex) == ColumnType.INT;
+        dataMem.getQuick(columnIndex).putInt(value);
+        valueCounts.increment(columnIndex);
+    }
+
+    /**
+     * Puts value of LONG, DATE or TIMESTAMP column.
+     */
+    public void putLong(int columnIndex, long value) {
+        assert ColumnType.pow2SizeOf(columnTypes.getQuick(columnIndex)) == 3;
+        dataMem.getQuick(columnIndex).putLong(value);
+        valueCounts.increment(columnIndex);
+    }
+
+    public void putLong256(int columnIndex, long l0, long l1, long l2, long l3) {
+        assert columnTypes.getQuick(columnIndex) == ColumnType.LONG256;
+        dataMem.getQuick(columnIndex).putLong256(l0, l1, l2, l3);
+        valueCounts.increment(columnIndex);
+    }
+
+    public void putNull(int columnIndex) {
+        final ContiguousVirtualMemory mem = dataMem.getQuick(columnIndex);
+        switch (columnTypes.getQuick(columnIndex)) {
+            case ColumnType.BOOLEAN:
+            case ColumnType.BYTE:
+                mem.putByte((byte) 0);
+                break;
+            case ColumnType.DOUBLE:
+                mem.putDouble(Double.NaN);
+                break;
+            case ColumnType.FLOAT:
+                mem.putFloat(Float.NaN);
+                break;
+            case ColumnType.INT:
+                mem.putInt(Numbers.INT_NaN);
+                break;
+            case ColumnType.LONG:
+            case ColumnType.DATE:
+            case ColumnType.TIMESTAMP:
+                mem.putLong(Numbers.LONG_NaN);
+                break;
+            case ColumnType.LONG256:
+                mem.putLong256(Numbers.LONG_NaN, Numbers.LONG_NaN, Numbers.LONG_NaN, Numbers.LONG_NaN);
+                break;
+            case ColumnType.SHORT:
+                mem.putShort((short) 0);
+                break;
+            case ColumnType.CHAR:
+                mem.putChar((char) 0);
+                break;
+            case ColumnType.STRING:
+            case ColumnType.SYMBOL:
+                offsetMem.getQuick(columnIndex).putLong(mem.putNullStr());
+                break;
+            case ColumnType.BINARY:
+                offsetMem.getQuick(columnIndex).putLong(mem.putNullBin());
+                break;
+            default:
+                break;
+        }
+        valueCounts.increment(columnIndex);
+    }
+
+    public void putShort(int columnIndex, short value) {
+        assert columnTypes.getQuick(columnIndex) == ColumnType.SHORT;
+        dataMem.getQuick(columnIndex).putShort(value);
+        valueCounts.increment(columnIndex);
+    }
+
+    public void putStr(int columnIndex, CharSequence value) {
+        assert columnTypes.getQuick(columnIndex) == ColumnType.STRING;
+        putStr0(columnIndex, value);
+    }
+
+    public void putSym(int columnIndex, CharSequence value) {
+        assert columnTypes.getQuick(columnIndex) == ColumnType.SYMBOL;
+        putStr0(columnIndex, value);
+    }
+
+    public void putTimestamp(int columnIndex, long value) {
+        putLong(columnIndex, value);
+    }
+
+    /**
+     * @return number of rows, which is the largest number of values put into a column
+     */
+    public long size() {
+        pad();
+        return rowCount;
+    }
+
+    private static boolean isVarSize(int type) {
+        return type == ColumnType.STRING || type == ColumnType.BINARY || type == ColumnType.SYMBOL;
+    }
+
+    long getDataAddress(int columnIndex, long offset) {
+        return dataMem.getQuick(columnIndex).addressOf(offset);
+    }
+
+    long getDataSize(int columnIndex) {
+        return dataMem.getQuick(columnIndex).getAppendOffset();
+    }
+
+    BinarySequence getBin(int columnIndex, long row) {
+        return dataMem.getQuick(columnIndex).getBin(getVarOffset(columnIndex, row));
+    }
+
+    CharSequence getStr(int columnIndex, long row) {
+        return dataMem.getQuick(columnIndex).getStr(getVarOffset(columnIndex, row));
+    }
+
+    long getTimestamp(long row) {
+        return dataMem.getQuick(timestampIndex).getLong(row * Long.BYTES);
+    }
+
+    long getVarOffset(int columnIndex, long row) {
+        return offsetMem.getQuick(columnIndex).getLong(row * Long.BYTES);
+    }
+
+    // end of row values in the arena of the column
+    long getVarOffsetHi(int columnIndex, long row) {
+        return row + 1 < rowCount ? getVarOffset(columnIndex, row + 1) : getDataSize(columnIndex);
+    }
+
+    private void pad() {
+        for (int i = 0; i < columnCount; i++) {
+            rowCount = Math.max(rowCount, valueCounts.getQuick(i));
+        }
+        for (int i = 0; i < columnCount; i++) {
+            for (long n = valueCounts.getQuick(i); n < rowCount; n++) {
+                putNull(i);
+            }
+        }
+    }
+
+    private void putStr0(int columnIndex, CharSequence value) {
+        final ContiguousVirtualMemory mem = dataMem.getQuick(columnIndex);
+        offsetMem.getQuick(columnIndex).putLong(mem.putStr(value));
+        valueCounts.increment(columnIndex);
+    }
+}
@@ -262,6 +262,9 @@ public class TableBlockWriter implements Closeable {
         nEnqueuedConcurrentTasks = 0;
         nCompletedConcurrentTasks.set(0);
         switch (partitionBy) {
+            case PartitionBy.HOUR:
+                timestampFloorMethod = Timestamps.FLOOR_HH;
+                break;
             case PartitionBy.DAY:
                 timestampFloorMethod = Timestamps.FLOOR_DD;
                 break;
@@ -24,8 +24,10 @@
 
 package io.questdb.cairo;
 
+import io.questdb.MessageBus;
 import io.questdb.cairo.sql.PageFrame;
 import io.questdb.cairo.sql.PageFrameCursor;
+import io.questdb.cairo.vm.ColumnReadAhead;
 import io.questdb.cairo.vm.ReadOnlyVirtualMemory;
 import io.questdb.cairo.vm.VmUtils;
 import io.questdb.std.IntList;
@@ -39,6 +41,9 @@ public class TablePageFrameCursor implements PageFrameCursor {
     private final LongList columnFrameLengths = new LongList();
     private final LongList columnTops = new LongList();
     private final ReplicationPageFrame frame = new ReplicationPageFrame();
+    private final ColumnReadAhead readAhead = new ColumnReadAhead();
+    // partitions whose decoded columns are referenced by returned frames
+    private final IntList pinnedPartitions = new IntList();
 
     private TableReader reader;
     private long maxRowsPerFrame;
@@ -58,7 +63,9 @@ public class TablePageFrameCursor implements PageFrameCursor {
 
     @Override
     public void close() {
+        readAhead.close();
         if (null != reader) {
+            unpinPartitions();
             reader = Misc.free(reader);
             reader = null;
             columnIndexes = null;
@@ -75,6 +82,9 @@ public class TablePageFrameCursor implements PageFrameCursor {
                     frameFirstRow = 0;
                     continue;
                 }
+                readAhead.onFrame(partitionIndex, frameFirstRow, nPartitionRows);
+                reader.pinDecodedColumns(partitionIndex);
+                pinnedPartitions.add(partitionIndex);
                 columnBase = reader.getColumnBase(partitionIndex);
                 checkNFrameRowsForColumnTops = false;
                 for (int i = 0; i < columnCount; i++) {
@@ -191,6 +201,8 @@ public class TablePageFrameCursor implements PageFrameCursor {
         moveToNextPartition = true;
         partitionCount = reader.getPartitionCount();
         firstTimestamp = Long.MIN_VALUE;
+        readAhead.toTop();
+        unpinPartitions();
     }
 
     @Override
@@ -204,7 +216,22 @@ public class TablePageFrameCursor implements PageFrameCursor {
     }
 
     public TablePageFrameCursor of(TableReader reader, long maxRowsPerFrame, int timestampColumnIndex, IntList columnIndexes, IntList columnSizes) {
+        return of(reader, maxRowsPerFrame, timestampColumnIndex, columnIndexes, columnSizes, null);
+    }
+
+    public TablePageFrameCursor of(
+            TableReader reader,
+            long maxRowsPerFrame,
+            int timestampColumnIndex,
+            IntList columnIndexes,
+            IntList columnSizes,
+            @Nullable MessageBus messageBus
+    ) {
+        if (this.reader != null) {
+            unpinPartitions();
+        }
         this.reader = reader;
+        readAhead.of(messageBus, reader, columnIndexes);
         this.maxRowsPerFrame = maxRowsPerFrame;
         this.columnIndexes = columnIndexes;
         this.columnSizes = columnSizes;
@@ -217,6 +244,13 @@ public class TablePageFrameCursor implements PageFrameCursor {
         return this;
     }
 
+    private void unpinPartitions() {
+        for (int i = 0, n = pinnedPartitions.size(); i < n; i++) {
+            reader.unpinDecodedColumns(pinnedPartitions.getQuick(i));
+        }
+        pinnedPartitions.clear();
+    }
+
     private long calculateBinaryPagePosition(final ReadOnlyVirtualMemory col, final ReadOnlyVirtualMemory binLenCol, long row, long maxRows) {
         assert row > 0 && row <= maxRows;
 
@@ -26,6 +26,7 @@ package io.questdb.cairo;
 
 import io.questdb.cairo.sql.SymbolTable;
 import io.questdb.cairo.sql.SymbolTableSource;
+import io.questdb.cairo.vm.CompressedColumnReadOnlyMemory;
 import io.questdb.cairo.vm.MappedReadOnlyMemory;
 import io.questdb.cairo.vm.ReadOnlyVirtualMemory;
 import io.questdb.cairo.vm.SinglePageMappedReadOnlyPageMemory;
@@ -302,6 +303,10 @@ public class TableReader implements Closeable, SymbolTableSource {
         if (active) {
             active = false;
             txnScoreboard.releaseTxn(txn);
+            // pooled reader must not hold on to decoded partitions
+            for (int i = 0; i < partitionCount; i++) {
+                releaseDecodedColumns(i);
+            }
         }
     }
 
@@ -359,6 +364,58 @@ public class TableReader implements Closeable, SymbolTableSource {
         return openPartition0(partitionIndex);
     }
 
+    /**
+     * Reads statistics of column values in partition, see {@link PartitionStats} for layout.
+     *
+     * @param buf memory of at least {@link PartitionStats#SIZE} bytes
+     * @return false when partition does not have statistics for the column or they are stale
+     */
+    public boolean readColumnStats(int partitionIndex, int columnIndex, long buf) {
+        // last partition is being appended to, writer does not maintain its statistics
+        if (partitionIndex >= partitionCount - 1) {
+            return false;
+        }
+        try {
+            final Path path = pathGenPartitioned(partitionIndex);
+            TableUtils.txnPartitionConditionally(path, txFile.getPartitionNameTxn(partitionIndex));
+            return PartitionStats.read(ff, path, metadata.getColumnName(columnIndex), txFile.getPartitionSize(partitionIndex), buf);
+        } finally {
+            path.trimTo(rootLen);
+        }
+    }
+
+    /**
+     * Reads zone map of column in partition, see {@link PartitionStats} for layout.
+     *
+     * @return false when partition does not have zone map for the column or it is stale
+     */
+    public boolean readColumnZoneMap(int partitionIndex, int columnIndex, DirectLongList zoneMap) {
+        if (partitionIndex >= partitionCount - 1) {
+            zoneMap.clear();
+            return false;
+        }
+        try {
+            final Path path = pathGenPartitioned(partitionIndex);
+            TableUtils.txnPartitionConditionally(path, txFile.getPartitionNameTxn(partitionIndex));
+            return PartitionStats.readZoneMap(ff, path, metadata.getColumnName(columnIndex), txFile.getPartitionSize(partitionIndex), zoneMap);
+        } finally {
+            path.trimTo(rootLen);
+        }
+    }
+
+    /**
+     * Appends path of partition directory to the sink, partition does not have to be open.
+     */
+    public void putPartitionPath(int partitionIndex, CharSink sink) {
+        try {
+            final Path path = pathGenPartitioned(partitionIndex);
+            TableUtils.txnPartitionConditionally(path, txFile.getPartitionNameTxn(partitionIndex));
+            sink.put(path);
+        } finally {
+            path.trimTo(rootLen);
+        }
+    }
+
     public void reconcileOpenPartitionsFrom(int partitionIndex) {
         int txPartitionCount = txFile.getPartitionCount();
         int txPartitionIndex = partitionIndex;
@@ -432,6 +489,46 @@ public class TableReader implements Closeable, SymbolTableSource {
         return reload(false);
     }
 
+    /**
+     * Frees decoded data of compressed columns of the partition. Freed columns are decoded
+     * again when accessed, cursors call this when they move past a partition.
+     */
+    public void releaseDecodedColumns(int partitionIndex) {
+        final int base = getColumnBase(partitionIndex);
+        for (int i = 0; i < columnCount; i++) {
+            final MappedReadOnlyMemory mem = columns.getQuick(getPrimaryColumnIndex(base, i));
+            if (mem instanceof CompressedColumnReadOnlyMemory) {
+                ((CompressedColumnReadOnlyMemory) mem).release();
+            }
+        }
+    }
+
+    /**
+     * Decodes compressed columns of the partition and keeps them decoded until
+     * {@link #unpinDecodedColumns(int)}, {@link #releaseDecodedColumns(int)} does not free
+     * pinned columns. Page frame cursors pin partitions because their frames are read
+     * after cursor moved on, often by other threads.
+     */
+    public void pinDecodedColumns(int partitionIndex) {
+        final int base = getColumnBase(partitionIndex);
+        for (int i = 0; i < columnCount; i++) {
+            final MappedReadOnlyMemory mem = columns.getQuick(getPrimaryColumnIndex(base, i));
+            if (mem instanceof CompressedColumnReadOnlyMemory) {
+                ((CompressedColumnReadOnlyMemory) mem).pin();
+            }
+        }
+    }
+
+    public void unpinDecodedColumns(int partitionIndex) {
+        final int base = getColumnBase(partitionIndex);
+        for (int i = 0; i < columnCount; i++) {
+            final MappedReadOnlyMemory mem = columns.getQuick(getPrimaryColumnIndex(base, i));
+            if (mem instanceof CompressedColumnReadOnlyMemory) {
+                ((CompressedColumnReadOnlyMemory) mem).unpin();
+            }
+        }
+    }
+
     public void reshuffleSymbolMapReaders(long pTransitionIndex) {
         final int columnCount = Unsafe.getUnsafe().getInt(pTransitionIndex + 4);
         final long index = pTransitionIndex + 8;
@@ -880,7 +977,23 @@ public class TableReader implements Closeable, SymbolTableSource {
     }
 
     @NotNull
+    private MappedReadOnlyMemory openOrCreateCompressedMemory(Path path, ObjList<MappedReadOnlyMemory> columns, int primaryIndex, MappedReadOnlyMemory mem) {
+        if (mem instanceof CompressedColumnReadOnlyMemory) {
+            mem.of(ff, path, ff.getMapPageSize());
+        } else {
+            Misc.free(mem);
+            mem = new CompressedColumnReadOnlyMemory(ff, path);
+            columns.setQuick(primaryIndex, mem);
+        }
+        return mem;
+    }
+
     private MappedReadOnlyMemory openOrCreateMemory(Path path, ObjList<MappedReadOnlyMemory> columns, boolean lastPartition, int primaryIndex, MappedReadOnlyMemory mem) {
+        if (mem instanceof CompressedColumnReadOnlyMemory) {
+            // partition column is no longer compressed
+            Misc.free(mem);
+            mem = null;
+        }
         if (mem != null && mem != NullColumn.INSTANCE) {
             mem.of(ff, path, ff.getMapPageSize(), ff.length(path));
         } else {
@@ -1115,9 +1228,18 @@ public class TableReader implements Closeable, SymbolTableSource {
             MappedReadOnlyMemory mem1 =  columns.getQuick(primaryIndex);
             MappedReadOnlyMemory mem2 = columns.getQuick(secondaryIndex);
 
+            final boolean exists;
             if (ff.exists(TableUtils.dFile(path.trimTo(plen), name))) {
-
                 mem1 = openOrCreateMemory(path, columns, lastPartition, primaryIndex, mem1);
+                exists = true;
+            } else if (ff.exists(TableUtils.zFile(path.trimTo(plen), name))) {
+                mem1 = openOrCreateCompressedMemory(path, columns, primaryIndex, mem1);
+                exists = true;
+            } else {
+                exists = false;
+            }
+
+            if (exists) {
 
                 final long columnTop = TableUtils.readColumnTop(ff, path.trimTo(plen), name, plen, tempMem8b);
                 final int type = metadata.getColumnType(columnIndex);
@@ -139,6 +139,10 @@ public class TableReaderRecordCursor implements RecordCursor {
     }
 
     private boolean switchPartition0() {
+        if (partitionIndex > partitionLo) {
+            // scan has moved past the previous partition
+            reader.releaseDecodedColumns(partitionIndex - 1);
+        }
         while (partitionIndex < partitionLimit) {
             final long partitionSize = reader.openPartition(partitionIndex);
             if (partitionSize > 0) {
@@ -69,7 +69,7 @@ public class TableReaderRecordCursorFactory extends AbstractRecordCursorFactory
 
     @Override
     public RecordCursor getCursor(SqlExecutionContext executionContext) {
-        cursor.of(engine.getReader(executionContext.getCairoSecurityContext(), tableName, tableVersion));
+        cursor.of(engine.getReader(executionContext.getCairoSecurityContext(), tableName, tableVersion), executionContext.getMessageBus());
         return cursor;
     }
 
@@ -82,11 +82,11 @@ public class TableReaderRecordCursorFactory extends AbstractRecordCursorFactory
     public PageFrameCursor getPageFrameCursor(SqlExecutionContext executionContext) {
         if (pageFrameCursor != null) {
             return pageFrameCursor.of(engine.getReader(executionContext.getCairoSecurityContext(), tableName), Long.MAX_VALUE, -1,
-                    columnIndexes, columnSizes);
+                    columnIndexes, columnSizes, executionContext.getMessageBus());
         } else if (framingSupported) {
             pageFrameCursor = new TablePageFrameCursor();
             return pageFrameCursor.of(engine.getReader(executionContext.getCairoSecurityContext(), tableName), Long.MAX_VALUE, -1,
-                    columnIndexes, columnSizes);
+                    columnIndexes, columnSizes, executionContext.getMessageBus());
         } else {
             return null;
         }
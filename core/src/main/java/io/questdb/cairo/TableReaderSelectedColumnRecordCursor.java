@@ -24,18 +24,22 @@
 
 package io.questdb.cairo;
 
+import io.questdb.MessageBus;
 import io.questdb.cairo.sql.Record;
 import io.questdb.cairo.sql.RecordCursor;
 import io.questdb.cairo.sql.SymbolTable;
+import io.questdb.cairo.vm.ColumnReadAhead;
 import io.questdb.std.IntList;
 import io.questdb.std.Misc;
 import io.questdb.std.Rows;
+import org.jetbrains.annotations.Nullable;
 
 public class TableReaderSelectedColumnRecordCursor implements RecordCursor {
 
     protected final TableReaderSelectedColumnRecord recordA;
     private final TableReaderSelectedColumnRecord recordB;
     private final IntList columnIndexes;
+    private final ColumnReadAhead readAhead = new ColumnReadAhead();
     protected TableReader reader;
     private int partitionIndex = 0;
     private int partitionLimit;
@@ -53,6 +57,7 @@ public class TableReaderSelectedColumnRecordCursor implements RecordCursor {
 
     @Override
     public void close() {
+        readAhead.close();
         reader = Misc.free(reader);
     }
 
@@ -95,6 +100,7 @@ public class TableReaderSelectedColumnRecordCursor implements RecordCursor {
         }
         maxRecordIndex = recodLo - 1;
         recordA.jumpTo(0, maxRecordIndex);
+        readAhead.toTop();
     }
 
     @Override
@@ -112,6 +118,11 @@ public class TableReaderSelectedColumnRecordCursor implements RecordCursor {
         of0(reader);
     }
 
+    public void of(TableReader reader, @Nullable MessageBus messageBus) {
+        of(reader);
+        readAhead.of(messageBus, reader, columnIndexes);
+    }
+
     public void of(TableReader reader, int partitionLo, long recordLo, int partitionHi, long recordHi) {
         this.partitionLo = partitionLo;
         this.partitionHi = partitionHi;
@@ -125,6 +136,7 @@ public class TableReaderSelectedColumnRecordCursor implements RecordCursor {
         this.reader = reader;
         this.recordA.of(reader);
         this.recordB.of(reader);
+        readAhead.of(null, reader, columnIndexes);
         toTop();
     }
 
@@ -136,6 +148,10 @@ public class TableReaderSelectedColumnRecordCursor implements RecordCursor {
     }
 
     private boolean switchPartition0() {
+        if (partitionIndex > partitionLo) {
+            // scan has moved past the previous partition
+            reader.releaseDecodedColumns(partitionIndex - 1);
+        }
         while (partitionIndex < partitionLimit) {
             final long partitionSize = reader.openPartition(partitionIndex);
             if (partitionSize > 0) {
@@ -144,6 +160,7 @@ public class TableReaderSelectedColumnRecordCursor implements RecordCursor {
                 } else {
                     maxRecordIndex = partitionSize - 1;
                 }
+                readAhead.onFrame(partitionIndex, 0, maxRecordIndex + 1);
                 recordA.jumpTo(partitionIndex, -1);
                 partitionIndex++;
                 return true;
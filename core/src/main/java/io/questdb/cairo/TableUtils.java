@@ -64,11 +64,15 @@ public final class TableUtils {
     public static final long META_OFFSET_COMMIT_LAG = 24;
     public static final String FILE_SUFFIX_I = ".i";
     public static final String FILE_SUFFIX_D = ".d";
+    public static final String FILE_SUFFIX_Z = ".z";
+    public static final String FILE_SUFFIX_STATS = ".st";
+    public static final String FILE_SUFFIX_ZONE_MAP = ".zm";
     public static final int LONGS_PER_TX_ATTACHED_PARTITION = 4;
     public static final int LONGS_PER_TX_ATTACHED_PARTITION_MSB = Numbers.msb(LONGS_PER_TX_ATTACHED_PARTITION);
     static final int MIN_INDEX_VALUE_BLOCK_SIZE = Numbers.ceilPow2(4);
     static final byte TODO_RESTORE_META = 2;
     static final byte TODO_TRUNCATE = 1;
+    static final DateFormat fmtHour;
     static final DateFormat fmtDay;
     static final DateFormat fmtMonth;
     static final DateFormat fmtYear;
@@ -243,6 +247,8 @@ public final class TableUtils {
 
     public static Timestamps.TimestampAddMethod getPartitionAdd(int partitionBy) {
         switch (partitionBy) {
+            case PartitionBy.HOUR:
+                return Timestamps.ADD_HH;
             case PartitionBy.DAY:
                 return Timestamps.ADD_DD;
             case PartitionBy.MONTH:
@@ -467,6 +473,23 @@ public final class TableUtils {
         int y, m, d;
         boolean leap;
         switch (partitionBy) {
+            case PartitionBy.HOUR:
+                y = Timestamps.getYear(timestamp);
+                leap = Timestamps.isLeapYear(y);
+                m = Timestamps.getMonthOfYear(timestamp, y, leap);
+                d = Timestamps.getDayOfMonth(timestamp, y, m, leap);
+                TimestampFormatUtils.append000(path, y);
+                path.put('-');
+                TimestampFormatUtils.append0(path, m);
+                path.put('-');
+                TimestampFormatUtils.append0(path, d);
+                path.put('T');
+                TimestampFormatUtils.append0(path, Timestamps.getHourOfDay(timestamp));
+
+                if (calculatePartitionMax) {
+                    return Timestamps.floorHH(timestamp) + Timestamps.HOUR_MICROS - 1;
+                }
+                return 0;
             case PartitionBy.DAY:
                 y = Timestamps.getYear(timestamp);
                 leap = Timestamps.isLeapYear(y);
@@ -675,6 +698,18 @@ public final class TableUtils {
         return path.concat(columnName).put(FILE_SUFFIX_D).$();
     }
 
+    static LPSZ zFile(Path path, CharSequence columnName) {
+        return path.concat(columnName).put(FILE_SUFFIX_Z).$();
+    }
+
+    static LPSZ statsFile(Path path, CharSequence columnName) {
+        return path.concat(columnName).put(FILE_SUFFIX_STATS).$();
+    }
+
+    static LPSZ zoneMapFile(Path path, CharSequence columnName) {
+        return path.concat(columnName).put(FILE_SUFFIX_ZONE_MAP).$();
+    }
+
     static LPSZ topFile(Path path, CharSequence columnName) {
         return path.concat(columnName).put(".top").$();
     }
@@ -755,6 +790,8 @@ public final class TableUtils {
         switch (partitionBy) {
             case PartitionBy.NONE:
                 return true;
+            case PartitionBy.HOUR:
+                return Timestamps.floorHH(timestampA) == Timestamps.floorHH(timestampB);
             case PartitionBy.DAY:
                 return Timestamps.floorDD(timestampA) == Timestamps.floorDD(timestampB);
             case PartitionBy.MONTH:
@@ -768,6 +805,8 @@ public final class TableUtils {
 
     static DateFormat getPartitionDateFmt(int partitionBy) {
         switch (partitionBy) {
+            case PartitionBy.HOUR:
+                return fmtHour;
             case PartitionBy.DAY:
                 return fmtDay;
             case PartitionBy.MONTH:
@@ -783,6 +822,8 @@ public final class TableUtils {
 
     static Timestamps.TimestampFloorMethod getPartitionFloor(int partitionBy) {
         switch (partitionBy) {
+            case PartitionBy.HOUR:
+                return Timestamps.FLOOR_HH;
             case PartitionBy.DAY:
                 return Timestamps.FLOOR_DD;
             case PartitionBy.MONTH:
@@ -796,6 +837,8 @@ public final class TableUtils {
 
     static Timestamps.TimestampCeilMethod getPartitionCeil(int partitionBy) {
         switch (partitionBy) {
+            case PartitionBy.HOUR:
+                return Timestamps.CEIL_HH;
             case PartitionBy.DAY:
                 return Timestamps.CEIL_DD;
             case PartitionBy.MONTH:
@@ -882,6 +925,7 @@ public final class TableUtils {
 
     static {
         TimestampFormatCompiler compiler = new TimestampFormatCompiler();
+        fmtHour = compiler.compile("yyyy-MM-ddTHH");
         fmtDay = compiler.compile("yyyy-MM-dd");
         fmtMonth = compiler.compile("yyyy-MM");
         fmtYear = compiler.compile("yyyy");
@@ -54,7 +54,6 @@ import java.util.function.LongConsumer;
 
 import static io.questdb.cairo.StatusCode.*;
 import static io.questdb.cairo.TableUtils.*;
-import static io.questdb.std.Files.isDots;
 
 public class TableWriter implements Closeable {
     public static final int TIMESTAMP_MERGE_ENTRY_BYTES = Long.BYTES * 2;
@@ -78,7 +77,7 @@ public class TableWriter implements Closeable {
     private final Path path;
     private final Path other;
     private final LongList refs = new LongList();
-    private final Row row = new Row();
+    private final RowImpl row = new RowImpl();
     private final int rootLen;
     private final MappedReadOnlyMemory metaMem;
     private final int partitionBy;
@@ -120,6 +119,10 @@ public class TableWriter implements Closeable {
     private final SOUnboundedCountDownLatch o3DoneLatch = new SOUnboundedCountDownLatch();
     private final AtomicLong o3PartitionUpdRemaining = new AtomicLong();
     private final AtomicInteger o3ErrorCount = new AtomicInteger();
+    // existing partition rows copied by the O3 commit in progress
+    private final AtomicLong o3RewrittenRowCount = new AtomicLong();
+    private final O3LagTuner o3LagTuner;
+    private TableWriterMetrics metrics;
     private final MappedReadWriteMemory todoMem = new PagedMappedReadWriteMemory();
     private final TxWriter txFile;
     private final FindVisitor removePartitionDirsNotAttached = this::removePartitionDirsNotAttached;
@@ -160,7 +163,17 @@ public class TableWriter implements Closeable {
     private LifecycleManager lifecycleManager;
     private String designatedTimestampColumnName;
     private long o3RowCount;
+    // partitions below this index have been compressed by automatic compression policy
+    private int compressedPartitionWatermark = 0;
+    // partitions below this index have column statistics, see PartitionStats
+    private int statsPartitionWatermark = 0;
     private final O3ColumnUpdateMethod o3MoveUncommittedRef = this::o3MoveUncommitted0;
+    private final O3ColumnUpdateMethod syncColumnRef = this::syncColumn;
+    // commit mode of the commit in progress, O3 jobs sync partitions they rewrite accordingly
+    private int o3CommitMode = CommitMode.NOSYNC;
+    private GroupCommit groupCommit;
+    // error of publishing transaction on behalf of this writer by the group commit leader
+    Throwable groupCommitError;
     private long lastPartitionTimestamp;
     private boolean o3InError = false;
 
@@ -201,6 +214,7 @@ public class TableWriter implements Closeable {
         this.fileOperationRetryCount = configuration.getFileOperationRetryCount();
         this.tableName = Chars.toString(tableName);
         this.o3QuickSortEnabled = configuration.isO3QuickSortEnabled();
+        this.o3LagTuner = new O3LagTuner(configuration);
         this.o3PartitionUpdateQueue = new RingQueue<O3PartitionUpdateTask>(O3PartitionUpdateTask.CONSTRUCTOR, configuration.getO3PartitionUpdateQueueCapacity());
         this.o3PartitionUpdatePubSeq = new MPSequence(this.o3PartitionUpdateQueue.getCapacity());
         this.o3PartitionUpdateSubSeq = new SCSequence();
@@ -231,6 +245,7 @@ public class TableWriter implements Closeable {
             this.metaMem = new SinglePageMappedReadOnlyPageMemory();
             openMetaFile(ff, path, rootLen, metaMem);
             this.metadata = new TableWriterMetadata(ff, metaMem);
+            this.o3LagTuner.of(metadata.getCommitLag(), metadata.getMaxUncommittedRows());
             this.partitionBy = metaMem.getInt(META_OFFSET_PARTITION_BY);
             this.txFile = new TxWriter(ff, path, partitionBy);
             this.txnScoreboard = new TxnScoreboard(ff, path.trimTo(rootLen), configuration.getTxnScoreboardEntryCount());
@@ -281,6 +296,9 @@ public class TableWriter implements Closeable {
             timestampSetter = configureTimestampSetter();
             this.appendTimestampSetter = timestampSetter;
             this.txFile.readRowCounts();
+            // statistics are maintained for partitions closed by this writer onwards
+            this.statsPartitionWatermark = Math.max(0, txFile.getPartitionCount() - 1);
+            this.compressedPartitionWatermark = findCompressedPartitionWatermark();
             configureAppendPosition();
             purgeUnusedPartitions();
             clearTodoLog();
@@ -305,6 +323,8 @@ public class TableWriter implements Closeable {
 
     public static DateFormat selectPartitionDirFmt(int partitionBy) {
         switch (partitionBy) {
+            case PartitionBy.HOUR:
+                return fmtHour;
             case PartitionBy.DAY:
                 return fmtDay;
             case PartitionBy.MONTH:
@@ -440,6 +460,9 @@ public class TableWriter implements Closeable {
 
         metadata.addColumn(name, type, isIndexed, indexValueBlockCapacity);
 
+        // statistics of the new column are computed for closed partitions on next commit
+        statsPartitionWatermark = 0;
+
         LOG.info().$("ADDED column '").utf8(name).$('[').$(ColumnType.nameOf(type)).$("]' to ").$(path).$();
     }
 
@@ -547,6 +570,82 @@ public class TableWriter implements Closeable {
         LOG.info().$("ADDED index to '").utf8(columnName).$('[').$(ColumnType.nameOf(existingType)).$("]' to ").$(path).$();
     }
 
+    /**
+     * Appends rows of the batch. Runs of rows that are in timestamp order within a partition are
+     * copied into column files as blocks, rows that arrive out of order are copied into O3 memory
+     * as blocks, to be merged on commit. Symbols are resolved to keys one row at a time. Tables
+     * without designated timestamp or partitioning and first row of an empty table go through
+     * the row API. Row that was not appended yet is cancelled.
+     *
+     * @param batch rows with the same column layout as this table
+     */
+    public void appendBatch(RowBatch batch) {
+        final long rowCount = batch.size();
+        boolean sameLayout = batch.getColumnCount() == columnCount;
+        for (int i = 0; sameLayout && i < columnCount; i++) {
+            sameLayout = batch.getColumnType(i) == metadata.getColumnType(i);
+        }
+        if (!sameLayout) {
+            throw CairoException.instance(0).put("row batch does not match table columns [table=").put(tableName).put(']');
+        }
+
+        if (rowCount == 0) {
+            return;
+        }
+
+        if ((masterRef & 1) != 0) {
+            cancelRow();
+        }
+
+        if (metadata.getTimestampIndex() < 0 || partitionBy == PartitionBy.NONE) {
+            appendBatchRows(batch, 0, rowCount);
+            return;
+        }
+
+        long lo = 0;
+        if (rowFunction == openPartitionFunction) {
+            appendBatchRows(batch, 0, 1);
+            lo = 1;
+        }
+
+        while (lo < rowCount && rowFunction == switchPartitionFunction) {
+            long timestamp = batch.getTimestamp(lo);
+            if (timestamp < txFile.getMaxTimestamp()) {
+                // there is no row in flight, first o3 row is yet to bump master ref
+                switchToO3(masterRef + 1);
+                break;
+            }
+
+            if (timestamp > partitionTimestampHi) {
+                switchPartition(timestamp);
+            }
+
+            long hi = lo + 1;
+            while (hi < rowCount) {
+                final long ts = batch.getTimestamp(hi);
+                if (ts < timestamp || ts > partitionTimestampHi) {
+                    break;
+                }
+                timestamp = ts;
+                hi++;
+            }
+
+            for (int i = 0; i < columnCount; i++) {
+                final AppendOnlyVirtualMemory mem1 = getPrimaryColumn(i);
+                appendBatchColumn(batch, i, lo, hi, mem1, getSecondaryColumn(i), mem1.getAppendOffset());
+            }
+            txFile.append(hi - lo);
+            txFile.updateMaxTimestamp(timestamp);
+            masterRef += 2 * (hi - lo);
+            lo = hi;
+        }
+
+        if (lo < rowCount) {
+            assert rowFunction == o3RowFunction;
+            appendBatchO3(batch, lo, rowCount);
+        }
+    }
+
     public int attachPartition(long timestamp) {
         // Partitioned table must have a timestamp
         // SQL compiler will check that table is partitioned
@@ -655,7 +754,7 @@ public class TableWriter implements Closeable {
     }
 
     public boolean checkMaxAndCommitLag() {
-        if (getO3RowCount() < metadata.getMaxUncommittedRows()) {
+        if (getO3RowCount() < o3LagTuner.getMaxUncommittedRows()) {
             return false;
         }
         commitWithLag();
@@ -681,13 +780,66 @@ public class TableWriter implements Closeable {
     }
 
     public void commitWithLag() {
-        commit(defaultCommitMode, metadata.getCommitLag());
+        commit(defaultCommitMode, o3LagTuner.getCommitLag());
     }
 
     public void commitWithLag(long lagMicros) {
         commit(defaultCommitMode, lagMicros);
     }
 
+    /**
+     * Compresses column files of the partition the timestamp belongs to. Active partition
+     * is never compressed. Readers decompress column files transparently.
+     *
+     * @param timestamp any timestamp within the partition
+     * @return false when partition does not exist or cannot be compressed
+     */
+    public boolean compressPartition(long timestamp) {
+        if (partitionBy == PartitionBy.NONE) {
+            return false;
+        }
+
+        // partition being appended to in current transaction must not be compressed
+        commit();
+
+        timestamp = getPartitionLo(timestamp);
+        final int index = txFile.findAttachedPartitionIndexByLoTimestamp(timestamp);
+        if (index < 0) {
+            LOG.error().$("partition does not exist [path=").$(path).$(", timestamp=").$ts(timestamp).$(']').$();
+            return false;
+        }
+
+        final long maxTimestamp = txFile.getMaxTimestamp();
+        if (timestamp == getPartitionLo(maxTimestamp)) {
+            LOG.error()
+                    .$("cannot compress active partition [path=").$(path)
+                    .$(", maxTimestamp=").$ts(maxTimestamp)
+                    .$(']').$();
+            return false;
+        }
+
+        compressPartition0(index / LONGS_PER_TX_ATTACHED_PARTITION);
+        return true;
+    }
+
+    public void compressPartition(Function function, int posForError) throws SqlException {
+        if (partitionBy == PartitionBy.NONE) {
+            throw SqlException.$(posForError, "table is not partitioned");
+        }
+
+        if (txFile.getPartitionCount() == 0) {
+            throw SqlException.$(posForError, "table is empty");
+        }
+
+        for (int i = 0, n = txFile.getPartitionCount(); i < n; i++) {
+            long partitionTimestamp = txFile.getPartitionTimestamp(i);
+            dropPartitionFunctionRec.setTimestamp(partitionTimestamp);
+            if (function.getBool(dropPartitionFunctionRec)) {
+                compressPartition(partitionTimestamp);
+            }
+        }
+    }
+
     public int getColumnIndex(CharSequence name) {
         int index = metadata.getColumnIndexQuiet(name);
         if (index > -1) {
@@ -712,6 +864,10 @@ public class TableWriter implements Closeable {
         return metadata;
     }
 
+    public O3LagTuner getO3LagTuner() {
+        return o3LagTuner;
+    }
+
     public long getO3RowCount() {
         return (masterRef - o3MasterRef + 1) / 2;
     }
@@ -732,6 +888,21 @@ public class TableWriter implements Closeable {
         return symbolMapWriters.getQuick(columnIndex).put(symValue);
     }
 
+    /**
+     * Number of symbol values of the column as of the last commit. Keys below this count
+     * survive rollback and release of the writer.
+     *
+     * @param columnIndex index of symbol column
+     * @return committed number of symbol values
+     */
+    public int getCommittedSymbolCount(int columnIndex) {
+        final SymbolMapWriter symbolMapWriter = symbolMapWriters.getQuiet(columnIndex);
+        if (symbolMapWriter == null) {
+            return 0;
+        }
+        return txFile.readSymbolCount(denseSymbolMapWriters.indexOf(symbolMapWriter));
+    }
+
     public CharSequence getTableName() {
         return tableName;
     }
@@ -740,6 +911,13 @@ public class TableWriter implements Closeable {
         return txFile.getTxn();
     }
 
+    /**
+     * @return count of write-ahead log transactions applied by committed transactions of this table
+     */
+    public long getWalTxn() {
+        return txFile.getWalTxn();
+    }
+
     public TxnScoreboard getTxnScoreboard() {
         return txnScoreboard;
     }
@@ -780,6 +958,9 @@ public class TableWriter implements Closeable {
         } catch (NumericException e) {
             final CairoException ee = CairoException.instance(0);
             switch (partitionBy) {
+                case PartitionBy.HOUR:
+                    ee.put("'YYYY-MM-DDTHH'");
+                    break;
                 case PartitionBy.DAY:
                     ee.put("'YYYY-MM-DD'");
                     break;
@@ -914,6 +1095,13 @@ public class TableWriter implements Closeable {
             if (timestamp == txFile.getPartitionTimestamp(0)) {
                 nextMinTimestamp = readMinTimestamp(txFile.getPartitionTimestamp(1));
             }
+            final int partitionIndex = txFile.findAttachedPartitionIndexByLoTimestamp(timestamp) / LONGS_PER_TX_ATTACHED_PARTITION;
+            if (partitionIndex < compressedPartitionWatermark) {
+                compressedPartitionWatermark--;
+            }
+            if (partitionIndex < statsPartitionWatermark) {
+                statsPartitionWatermark--;
+            }
             txFile.beginPartitionSizeUpdate();
             txFile.removeAttachedPartitions(timestamp);
             txFile.setMinTimestamp(nextMinTimestamp);
@@ -1010,6 +1198,7 @@ public class TableWriter implements Closeable {
 
     public void rollback() {
         checkDistressed();
+        txFile.setPendingWalTxn(txFile.getWalTxn());
         if (o3InError || inTransaction()) {
             try {
                 LOG.info().$("tx rollback [name=").$(tableName).$(']').$();
@@ -1031,6 +1220,25 @@ public class TableWriter implements Closeable {
         }
     }
 
+    /**
+     * Sets count of write-ahead log transactions that rows of current transaction bring the
+     * table up to. The count is stored by the next commit together with the rows and is
+     * discarded on rollback.
+     *
+     * @param walTxn count of applied write-ahead log transactions
+     */
+    public void setPendingWalTxn(long walTxn) {
+        txFile.setPendingWalTxn(walTxn);
+    }
+
+    public void setGroupCommit(GroupCommit groupCommit) {
+        this.groupCommit = groupCommit;
+    }
+
+    public void setMetrics(TableWriterMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     public void setLifecycleManager(LifecycleManager lifecycleManager) {
         this.lifecycleManager = lifecycleManager;
     }
@@ -1050,6 +1258,7 @@ public class TableWriter implements Closeable {
 
             finishMetaSwapUpdate();
             metadata.setCommitLag(commitLag);
+            o3LagTuner.of(commitLag, metadata.getMaxUncommittedRows());
             clearTodoLog();
         } finally {
             ddlMem.close();
@@ -1071,6 +1280,7 @@ public class TableWriter implements Closeable {
 
             finishMetaSwapUpdate();
             metadata.setMaxUncommittedRows(maxUncommittedRows);
+            o3LagTuner.of(metadata.getCommitLag(), maxUncommittedRows);
             clearTodoLog();
         } finally {
             ddlMem.close();
@@ -1141,6 +1351,8 @@ public class TableWriter implements Closeable {
 
         txFile.resetTimestamp();
         txFile.truncate();
+        compressedPartitionWatermark = 0;
+        statsPartitionWatermark = 0;
 
         try {
             clearTodoLog();
@@ -1516,6 +1728,95 @@ public class TableWriter implements Closeable {
         return index;
     }
 
+    private void appendBatchColumn(
+            RowBatch batch,
+            int columnIndex,
+            long lo,
+            long hi,
+            WriteOnlyVirtualMemory mem1,
+            WriteOnlyVirtualMemory mem2,
+            long appendOffset
+    ) {
+        final int type = metadata.getColumnType(columnIndex);
+        switch (type) {
+            case ColumnType.STRING:
+            case ColumnType.BINARY: {
+                final long offsetLo = batch.getVarOffset(columnIndex, lo);
+                mem1.putBlockOfBytes(
+                        batch.getDataAddress(columnIndex, offsetLo),
+                        batch.getVarOffsetHi(columnIndex, hi - 1) - offsetLo
+                );
+                for (long r = lo; r < hi; r++) {
+                    mem2.putLong(appendOffset + batch.getVarOffset(columnIndex, r) - offsetLo);
+                }
+                break;
+            }
+            case ColumnType.SYMBOL: {
+                final SymbolMapWriter symbolMapWriter = symbolMapWriters.getQuick(columnIndex);
+                for (long r = lo; r < hi; r++) {
+                    mem1.putInt(symbolMapWriter.put(batch.getStr(columnIndex, r)));
+                }
+                break;
+            }
+            default: {
+                final int shl = ColumnType.pow2SizeOf(type);
+                mem1.putBlockOfBytes(batch.getDataAddress(columnIndex, lo << shl), (hi - lo) << shl);
+                break;
+            }
+        }
+    }
+
+    private void appendBatchO3(RowBatch batch, long lo, long hi) {
+        final int timestampIndex = metadata.getTimestampIndex();
+        final long o3RowCount = getO3RowCount();
+        for (int i = 0; i < columnCount; i++) {
+            if (i == timestampIndex) {
+                for (long r = lo; r < hi; r++) {
+                    o3TimestampMem.putLong128(batch.getTimestamp(r), o3RowCount + r - lo);
+                }
+            } else {
+                final ContiguousVirtualMemory mem1 = o3Columns.getQuick(getPrimaryColumnIndex(i));
+                appendBatchColumn(batch, i, lo, hi, mem1, o3Columns.getQuick(getSecondaryColumnIndex(i)), mem1.getAppendOffset());
+            }
+        }
+        masterRef += 2 * (hi - lo);
+    }
+
+    private void appendBatchRows(RowBatch batch, long lo, long hi) {
+        final int timestampIndex = metadata.getTimestampIndex();
+        for (long r = lo; r < hi; r++) {
+            if (timestampIndex > -1) {
+                newRow(batch.getTimestamp(r));
+            } else {
+                newRow();
+            }
+            // row functions always hand out the same row
+            final RowImpl row = this.row;
+            for (int i = 0; i < columnCount; i++) {
+                if (i == timestampIndex) {
+                    continue;
+                }
+                final int type = metadata.getColumnType(i);
+                switch (type) {
+                    case ColumnType.STRING:
+                        row.putStr(i, batch.getStr(i, r));
+                        break;
+                    case ColumnType.SYMBOL:
+                        row.putSym(i, batch.getStr(i, r));
+                        break;
+                    case ColumnType.BINARY:
+                        row.putBin(i, batch.getBin(i, r));
+                        break;
+                    default:
+                        final int shl = ColumnType.pow2SizeOf(type);
+                        row.putBlockOfBytes(i, batch.getDataAddress(i, r << shl), 1L << shl);
+                        break;
+                }
+            }
+            row.append();
+        }
+    }
+
     private void bumpMasterRef() {
         if ((masterRef & 1) == 0) {
             masterRef++;
@@ -1697,17 +1998,172 @@ public class TableWriter implements Closeable {
 
         if (inTransaction()) {
 
+            this.o3CommitMode = commitMode;
             if (hasO3() && o3Commit(commitLag)) {
                 return;
             }
 
-            if (commitMode != CommitMode.NOSYNC) {
-                syncColumns(commitMode);
-            }
+            if (commitMode == CommitMode.SYNC && groupCommit != null && groupCommit.isEnabled()) {
+                groupCommit.announce();
+                try {
+                    updateIndexes();
+                } catch (Throwable e) {
+                    groupCommit.cancel();
+                    throw e;
+                }
+                groupCommit.commit(this);
+            } else {
+                if (commitMode != CommitMode.NOSYNC) {
+                    syncColumns(commitMode);
+                }
 
-            updateIndexes();
-            txFile.commit(commitMode, this.denseSymbolMapWriters);
+                updateIndexes();
+                txFile.commit(commitMode, this.denseSymbolMapWriters);
+            }
             o3ProcessPartitionRemoveCandidates();
+            computePartitionStats();
+            compressOldPartitions();
+        }
+    }
+
+    private void computePartitionStats() {
+        if (partitionBy == PartitionBy.NONE || !configuration.isPartitionStatsEnabled()) {
+            return;
+        }
+        // the last partition is being appended to, its statistics would go stale
+        final int hi = txFile.getPartitionCount() - 1;
+        if (statsPartitionWatermark >= hi) {
+            return;
+        }
+        final int zoneMapBlockSize = configuration.getPartitionZoneMapBlockSize();
+        final long buf = Unsafe.malloc(PartitionStats.SIZE);
+        try {
+            for (int partitionIndex = statsPartitionWatermark; partitionIndex < hi; partitionIndex++) {
+                final long partitionSize = txFile.getPartitionSize(partitionIndex);
+                if (partitionSize < 1) {
+                    continue;
+                }
+                try {
+                    TableUtils.setPathForPartition(path, partitionBy, txFile.getPartitionTimestamp(partitionIndex), false);
+                    TableUtils.txnPartitionConditionally(path, txFile.getPartitionNameTxn(partitionIndex));
+                    final int plen = path.length();
+                    for (int i = 0; i < columnCount; i++) {
+                        final int type = metadata.getColumnType(i);
+                        if (PartitionStats.isSupported(type) && !ff.exists(statsFile(path.trimTo(plen), metadata.getColumnName(i)))) {
+                            PartitionStats.compute(ff, path, plen, metadata.getColumnName(i), type, partitionSize, zoneMapBlockSize, buf);
+                        }
+                    }
+                } catch (CairoException e) {
+                    // statistics are optional, partitions without them are scanned
+                    LOG.error().$("could not compute partition stats [path=").$(path).$(", errno=").$(e.getErrno()).$(", msg=").$(e.getFlyweightMessage()).$(']').$();
+                } finally {
+                    path.trimTo(rootLen);
+                }
+            }
+            statsPartitionWatermark = hi;
+        } finally {
+            Unsafe.free(buf, PartitionStats.SIZE);
+        }
+    }
+
+    private void compressOldPartitions() {
+        final int keep = configuration.getPartitionCompressAfter();
+        if (keep > 0 && partitionBy != PartitionBy.NONE) {
+            // the last partition is always kept uncompressed, it is being appended to
+            final int hi = txFile.getPartitionCount() - keep;
+            for (int i = compressedPartitionWatermark; i < hi; i++) {
+                compressPartition0(i);
+            }
+            compressedPartitionWatermark = Math.max(compressedPartitionWatermark, hi);
+        }
+    }
+
+    // partitions are compressed oldest first, the newest partition that has compressed
+    // columns shows how far compression got before the writer was reopened
+    private int findCompressedPartitionWatermark() {
+        if (configuration.getPartitionCompressAfter() < 1 || partitionBy == PartitionBy.NONE) {
+            return 0;
+        }
+        for (int partitionIndex = txFile.getPartitionCount() - 1; partitionIndex > -1; partitionIndex--) {
+            try {
+                TableUtils.setPathForPartition(path, partitionBy, txFile.getPartitionTimestamp(partitionIndex), false);
+                TableUtils.txnPartitionConditionally(path, txFile.getPartitionNameTxn(partitionIndex));
+                final int plen = path.length();
+                for (int i = 0; i < columnCount; i++) {
+                    if (ColumnCompression.getCodec(metadata.getColumnType(i)) != ColumnCodecs.CODEC_NONE
+                            && ff.exists(zFile(path.trimTo(plen), metadata.getColumnName(i)))) {
+                        return partitionIndex + 1;
+                    }
+                }
+            } finally {
+                path.trimTo(rootLen);
+            }
+        }
+        return 0;
+    }
+
+    private void compressPartition0(int partitionIndex) {
+        final long partitionTimestamp = txFile.getPartitionTimestamp(partitionIndex);
+        final long partitionSize = txFile.getPartitionSize(partitionIndex);
+        try {
+            TableUtils.setPathForPartition(path, partitionBy, partitionTimestamp, false);
+            TableUtils.txnPartitionConditionally(path, txFile.getPartitionNameTxn(partitionIndex));
+            final int plen = path.length();
+            for (int i = 0; i < columnCount; i++) {
+                final int type = metadata.getColumnType(i);
+                if (ColumnCompression.getCodec(type) == ColumnCodecs.CODEC_NONE) {
+                    continue;
+                }
+                final CharSequence columnName = metadata.getColumnName(i);
+                // column is either already compressed or it is absent from partition
+                if (!ff.exists(dFile(path.trimTo(plen), columnName))) {
+                    continue;
+                }
+                final long columnTop = readColumnTop(ff, path.trimTo(plen), columnName, plen, tempMem16b);
+                ColumnCompression.compressColumn(ff, path.trimTo(plen), plen, columnName, type, partitionSize - columnTop);
+            }
+        } finally {
+            path.trimTo(rootLen);
+        }
+    }
+
+    private void removePartitionStats(long partitionTimestamp, long partitionNameTxn, int partitionIndex) {
+        // partition may be appended to in place, statistics will be recomputed on commit
+        try {
+            TableUtils.setPathForPartition(path, partitionBy, partitionTimestamp, false);
+            TableUtils.txnPartitionConditionally(path, partitionNameTxn);
+            final int plen = path.length();
+            for (int i = 0; i < columnCount; i++) {
+                if (PartitionStats.isSupported(metadata.getColumnType(i))) {
+                    removeFileAndOrLog(ff, statsFile(path.trimTo(plen), metadata.getColumnName(i)));
+                    removeFileAndOrLog(ff, zoneMapFile(path.trimTo(plen), metadata.getColumnName(i)));
+                }
+            }
+            statsPartitionWatermark = Math.min(statsPartitionWatermark, partitionIndex / LONGS_PER_TX_ATTACHED_PARTITION);
+        } finally {
+            path.trimTo(rootLen);
+        }
+    }
+
+    private void decompressPartition(long partitionTimestamp, long partitionNameTxn, int partitionIndex) {
+        try {
+            TableUtils.setPathForPartition(path, partitionBy, partitionTimestamp, false);
+            TableUtils.txnPartitionConditionally(path, partitionNameTxn);
+            final int plen = path.length();
+            boolean decompressed = false;
+            for (int i = 0; i < columnCount; i++) {
+                if (ColumnCompression.getCodec(metadata.getColumnType(i)) != ColumnCodecs.CODEC_NONE
+                        && ff.exists(zFile(path.trimTo(plen), metadata.getColumnName(i)))) {
+                    ColumnCompression.decompressColumn(ff, path.trimTo(plen), other, plen, metadata.getColumnName(i));
+                    decompressed = true;
+                }
+            }
+            if (decompressed) {
+                compressedPartitionWatermark = Math.min(compressedPartitionWatermark, partitionIndex / LONGS_PER_TX_ATTACHED_PARTITION);
+            }
+        } finally {
+            path.trimTo(rootLen);
+            other.trimTo(rootLen);
         }
     }
 
@@ -2203,8 +2659,9 @@ public class TableWriter implements Closeable {
             final long maxTimestamp = timestampFloorMethod.floor(ts);
             long timestamp = txFile.getMinTimestamp();
 
-            //noinspection TryFinallyCanBeTryWithResources
-            try (final MappedReadOnlyMemory roMem = new SinglePageMappedReadOnlyPageMemory()) {
+            final MappedReadOnlyMemory roMem = new SinglePageMappedReadOnlyPageMemory();
+            MappedReadOnlyMemory zMem = null;
+            try {
 
                 while (timestamp < maxTimestamp) {
 
@@ -2216,33 +2673,51 @@ public class TableWriter implements Closeable {
 
                         final int plen = path.length();
 
-                        TableUtils.dFile(path.trimTo(plen), columnName);
-
-                        if (ff.exists(path)) {
+                        final boolean compressed;
+                        if (ff.exists(TableUtils.dFile(path.trimTo(plen), columnName))) {
+                            compressed = false;
+                        } else if (ff.exists(TableUtils.zFile(path.trimTo(plen), columnName))) {
+                            compressed = true;
+                        } else {
+                            timestamp = timestampAddMethod.calculate(timestamp, 1);
+                            continue;
+                        }
 
-                            path.trimTo(plen);
+                        path.trimTo(plen);
 
-                            LOG.info().$("indexing [path=").$(path).$(']').$();
+                        LOG.info().$("indexing [path=").$(path).$(']').$();
 
-                            createIndexFiles(columnName, indexValueBlockSize, plen, true);
+                        createIndexFiles(columnName, indexValueBlockSize, plen, true);
 
-                            final long partitionSize = txFile.getPartitionSizeByPartitionTimestamp(timestamp);
-                            final long columnTop = TableUtils.readColumnTop(ff, path.trimTo(plen), columnName, plen, tempMem16b);
+                        final long partitionSize = txFile.getPartitionSizeByPartitionTimestamp(timestamp);
+                        final long columnTop = TableUtils.readColumnTop(ff, path.trimTo(plen), columnName, plen, tempMem16b);
 
-                            if (partitionSize > columnTop) {
+                        if (partitionSize > columnTop) {
+                            final MappedReadOnlyMemory mem;
+                            if (compressed) {
+                                TableUtils.zFile(path.trimTo(plen), columnName);
+                                if (zMem == null) {
+                                    zMem = new CompressedColumnReadOnlyMemory(ff, path);
+                                } else {
+                                    zMem.of(ff, path, ff.getPageSize());
+                                }
+                                mem = zMem;
+                            } else {
                                 TableUtils.dFile(path.trimTo(plen), columnName);
-
                                 roMem.of(ff, path, ff.getPageSize(), 0);
                                 roMem.grow((partitionSize - columnTop) << ColumnType.pow2SizeOf(ColumnType.INT));
-
-                                indexer.configureWriter(configuration, path.trimTo(plen), columnName, columnTop);
-                                indexer.index(roMem, columnTop, partitionSize);
+                                mem = roMem;
                             }
+
+                            indexer.configureWriter(configuration, path.trimTo(plen), columnName, columnTop);
+                            indexer.index(mem, columnTop, partitionSize);
                         }
                     }
                     timestamp = timestampAddMethod.calculate(timestamp, 1);
                 }
             } finally {
+                Misc.free(roMem);
+                Misc.free(zMem);
                 indexer.close();
             }
             return timestamp;
@@ -2413,11 +2888,12 @@ public class TableWriter implements Closeable {
         o3RowCount = getO3RowCount();
         o3PartitionRemoveCandidates.clear();
         o3ErrorCount.set(0);
+        o3RewrittenRowCount.set(0);
         o3ColumnCounters.clear();
         o3BasketPool.clear();
 
         long o3LagRowCount = 0;
-        long maxUncommittedRows = metadata.getMaxUncommittedRows();
+        long maxUncommittedRows = o3LagTuner.getMaxUncommittedRows();
 
         final int timestampIndex = metadata.getTimestampIndex();
         this.lastPartitionTimestamp = timestampFloorMethod.floor(partitionTimestampHi);
@@ -2667,6 +3143,16 @@ public class TableWriter implements Closeable {
                                 Vect.flattenIndex(sortedTimestampsAddr, o3RowCount);
                                 flattenTimestamp = false;
                             }
+                            if (!last) {
+                                if (partitionIndex > -1) {
+                                    // o3 jobs operate on uncompressed column files
+                                    decompressPartition(partitionTimestamp, srcNameTxn, partitionIndex);
+                                    removePartitionStats(partitionTimestamp, srcNameTxn, partitionIndex);
+                                } else {
+                                    // new partition is inserted before existing ones
+                                    statsPartitionWatermark = Math.min(statsPartitionWatermark, (-partitionIndex - 1) / LONGS_PER_TX_ATTACHED_PARTITION);
+                                }
+                            }
                             o3CommitPartitionAsync(
                                     columnCounter,
                                     maxTimestamp,
@@ -2714,6 +3200,24 @@ public class TableWriter implements Closeable {
             if (o3LagRowCount > 0) {
                 o3ShiftLagRowsUp(timestampIndex, o3LagRowCount, srcOooMax);
             }
+
+            final long rewrittenRowCount = o3RewrittenRowCount.get();
+            final int lagChange = o3LagTuner.onO3Commit(
+                    srcOooMax,
+                    rewrittenRowCount,
+                    o3LagRowCount,
+                    maxTimestamp > o3TimestampMin ? maxTimestamp - o3TimestampMin : 0
+            );
+            if (metrics != null) {
+                metrics.onO3Commit(srcOooMax, rewrittenRowCount, o3LagRowCount, lagChange);
+            }
+            if (lagChange != 0) {
+                LOG.info().$("o3 lag adjusted [table=").$(tableName)
+                        .$(", amplification=").$(o3LagTuner.getAmplification())
+                        .$(", lag=").$(o3LagTuner.getCommitLag())
+                        .$(", maxUncommittedRows=").$(o3LagTuner.getMaxUncommittedRows())
+                        .I$();
+            }
         } finally {
             if (denseIndexers.size() == 0) {
                 populateDenseIndexerList();
@@ -2936,6 +3440,26 @@ public class TableWriter implements Closeable {
         }
     }
 
+    void groupCommitPublishTxn() {
+        txFile.commit(CommitMode.NOSYNC, denseSymbolMapWriters);
+    }
+
+    void groupCommitSyncColumns(boolean async) {
+        syncColumns(async ? CommitMode.ASYNC : CommitMode.SYNC);
+    }
+
+    void groupCommitSyncTxn(boolean async) {
+        txFile.sync(async);
+    }
+
+    int getO3CommitMode() {
+        return o3CommitMode;
+    }
+
+    void o3CountRewrittenRows(long rowCount) {
+        o3RewrittenRowCount.addAndGet(rowCount);
+    }
+
     void o3CountDownDoneLatch() {
         o3DoneLatch.countDown();
     }
@@ -3708,22 +4232,29 @@ public class TableWriter implements Closeable {
     private long readMinTimestamp(long partitionTimestamp) {
         setStateForTimestamp(other, partitionTimestamp, false);
         try {
-            dFile(other, metadata.getColumnName(metadata.getTimestampIndex()));
-            if (ff.exists(other)) {
-                // read min timestamp value
-                final long fd = TableUtils.openRO(ff, other, LOG);
-                try {
-                    long n = ff.read(fd, tempMem16b, Long.BYTES, 0);
-                    if (n != Long.BYTES) {
-                        throw CairoException.instance(Os.errno()).put("could not read timestamp value");
-                    }
-                    return Unsafe.getUnsafe().getLong(tempMem16b);
-                } finally {
-                    ff.close(fd);
-                }
+            final int plen = other.length();
+            final CharSequence timestampColumnName = metadata.getColumnName(metadata.getTimestampIndex());
+            final long offset;
+            if (ff.exists(dFile(other, timestampColumnName))) {
+                offset = 0;
+            } else if (ff.exists(zFile(other.trimTo(plen), timestampColumnName))) {
+                // compressed timestamp column starts with the first value stored as is
+                offset = ColumnCompression.PAYLOAD_OFFSET;
             } else {
                 throw CairoException.instance(0).put("Partition does not exist [path=").put(other).put(']');
             }
+
+            // read min timestamp value
+            final long fd = TableUtils.openRO(ff, other, LOG);
+            try {
+                long n = ff.read(fd, tempMem16b, Long.BYTES, offset);
+                if (n != Long.BYTES) {
+                    throw CairoException.instance(Os.errno()).put("could not read timestamp value");
+                }
+                return Unsafe.getUnsafe().getLong(tempMem16b);
+            } finally {
+                ff.close(fd);
+            }
         } finally {
             other.trimTo(rootLen);
         }
@@ -3798,6 +4329,9 @@ public class TableWriter implements Closeable {
                     path.concat(nativeLPSZ);
                     int plen = path.length();
                     removeLambda.remove(ff, dFile(path, columnName));
+                    removeLambda.remove(ff, zFile(path.trimTo(plen), columnName));
+                    removeLambda.remove(ff, statsFile(path.trimTo(plen), columnName));
+                    removeLambda.remove(ff, zoneMapFile(path.trimTo(plen), columnName));
                     removeLambda.remove(ff, iFile(path.trimTo(plen), columnName));
                     removeLambda.remove(ff, topFile(path.trimTo(plen), columnName));
                     removeLambda.remove(ff, BitmapIndexUtils.keyFileName(path.trimTo(plen), columnName));
@@ -3916,7 +4450,7 @@ public class TableWriter implements Closeable {
 
     private void removePartitionDirsNotAttached(long pName, int type) {
         nativeLPSZ.of(pName);
-        if (!isDots(nativeLPSZ) && type == Files.DT_DIR) {
+        if (IGNORED_FILES.excludes(nativeLPSZ) && type == Files.DT_DIR) {
             if (Chars.endsWith(nativeLPSZ, DETACHED_DIR_MARKER)) {
                 // Do not remove detached partitions
                 // They are probably about to be attached.
@@ -4027,6 +4561,9 @@ public class TableWriter implements Closeable {
                     other.concat(nativeLPSZ);
                     int plen = path.length();
                     renameFileOrLog(ff, dFile(path.trimTo(plen), columnName), dFile(other.trimTo(plen), newName));
+                    renameFileOrLog(ff, zFile(path.trimTo(plen), columnName), zFile(other.trimTo(plen), newName));
+                    renameFileOrLog(ff, statsFile(path.trimTo(plen), columnName), statsFile(other.trimTo(plen), newName));
+                    renameFileOrLog(ff, zoneMapFile(path.trimTo(plen), columnName), zoneMapFile(other.trimTo(plen), newName));
                     renameFileOrLog(ff, iFile(path.trimTo(plen), columnName), iFile(other.trimTo(plen), newName));
                     renameFileOrLog(ff, topFile(path.trimTo(plen), columnName), topFile(other.trimTo(plen), newName));
                     renameFileOrLog(ff, BitmapIndexUtils.keyFileName(path.trimTo(plen), columnName), BitmapIndexUtils.keyFileName(other.trimTo(plen), newName));
@@ -4360,15 +4897,69 @@ public class TableWriter implements Closeable {
         setAppendPosition(0, false);
     }
 
+    private void switchToO3(long o3MasterRef) {
+        LOG.info().$("switched to o3 [table=").utf8(tableName).$(']').$();
+        txFile.beginPartitionSizeUpdate();
+        o3OpenColumns();
+        o3InError = false;
+        this.o3MasterRef = o3MasterRef;
+        rowFunction = o3RowFunction;
+    }
+
+    private void syncColumn(int columnIndex, boolean async) {
+        columns.getQuick(columnIndex * 2).sync(async);
+        final AppendOnlyVirtualMemory m2 = columns.getQuick(columnIndex * 2 + 1);
+        if (m2 != null) {
+            m2.sync(false);
+        }
+    }
+
+    private void syncColumn(int columnIndex, int columnType, long ignore1, long ignore2) {
+        syncColumn(columnIndex, false);
+    }
+
     private void syncColumns(int commitMode) {
         final boolean async = commitMode == CommitMode.ASYNC;
+        if (async || columnCount < 2) {
+            // asynchronous msync only schedules write-back, there is nothing to wait for
+            for (int i = 0; i < columnCount; i++) {
+                syncColumn(i, async);
+            }
+            return;
+        }
+
+        // synchronous msync blocks until pages reach the device, keep several of them
+        // in flight by handing columns out to workers
+        final Sequence pubSeq = this.messageBus.getO3CallbackPubSeq();
+        final RingQueue<O3CallbackTask> queue = this.messageBus.getO3CallbackQueue();
+        o3PendingCallbackTasks.clear();
+        o3DoneLatch.reset();
+        int queuedCount = 0;
+
         for (int i = 0; i < columnCount; i++) {
-            columns.getQuick(i * 2).sync(async);
-            final AppendOnlyVirtualMemory m2 = columns.getQuick(i * 2 + 1);
-            if (m2 != null) {
-                m2.sync(false);
+            long cursor = pubSeq.next();
+            if (cursor > -1) {
+                try {
+                    final O3CallbackTask task = queue.get(cursor);
+                    task.of(o3DoneLatch, i, metadata.getColumnType(i), 0, 0, syncColumnRef);
+                    o3PendingCallbackTasks.add(task);
+                } finally {
+                    queuedCount++;
+                    pubSeq.done(cursor);
+                }
+            } else {
+                syncColumn(i, false);
             }
         }
+
+        for (int n = o3PendingCallbackTasks.size() - 1; n > -1; n--) {
+            final O3CallbackTask task = o3PendingCallbackTasks.getQuick(n);
+            if (task.tryLock()) {
+                O3CallbackJob.runCallbackWithCol(task, -1, null);
+            }
+        }
+
+        o3DoneLatch.await(queuedCount);
     }
 
     private void throwDistressException(Throwable cause) {
@@ -4677,21 +5268,76 @@ public class TableWriter implements Closeable {
         }
 
         private Row newRowO3(long timestamp) {
-            LOG.info().$("switched to o3 [table=").utf8(tableName).$(']').$();
-            txFile.beginPartitionSizeUpdate();
-            o3OpenColumns();
-            o3InError = false;
-            o3MasterRef = masterRef;
+            switchToO3(masterRef);
             o3TimestampSetter(timestamp);
-            rowFunction = o3RowFunction;
             return row;
         }
     }
 
-    public class Row {
+    /**
+     * Row being appended to a table. Values are set by column index, columns that are not set
+     * are null once the row is appended. Implemented by {@link TableWriter} and by {@link WalWriter}.
+     */
+    public interface Row {
+        void append();
+
+        void cancel();
+
+        void putBin(int index, long address, long len);
+
+        void putBin(int index, BinarySequence sequence);
+
+        void putBool(int index, boolean value);
+
+        void putByte(int index, byte value);
+
+        void putChar(int index, char value);
+
+        void putDate(int index, long value);
+
+        void putDouble(int index, double value);
+
+        void putFloat(int index, float value);
+
+        void putInt(int index, int value);
+
+        void putLong(int index, long value);
+
+        void putLong256(int index, long l0, long l1, long l2, long l3);
+
+        void putLong256(int index, Long256 value);
+
+        void putLong256(int index, CharSequence hexString);
+
+        void putLong256(int index, @NotNull CharSequence hexString, int start, int end);
+
+        void putShort(int index, short value);
+
+        void putStr(int index, CharSequence value);
+
+        void putStr(int index, char value);
+
+        void putStr(int index, CharSequence value, int pos, int len);
+
+        void putSym(int index, CharSequence value);
+
+        void putSym(int index, char value);
+
+        /**
+         * Sets symbol column to the key of a value that is already in the symbol table of the column.
+         */
+        void putSymIndex(int index, int symIndex);
+
+        void putTimestamp(int index, long value);
+
+        void putTimestamp(int index, CharSequence value);
+    }
+
+    private class RowImpl implements Row {
         private ObjList<? extends WriteOnlyVirtualMemory> activeColumns;
         private ObjList<Runnable> activeNullSetters;
 
+        @Override
         public void append() {
             if ((masterRef & 1) != 0) {
                 for (int i = 0; i < columnCount; i++) {
@@ -4703,118 +5349,142 @@ public class TableWriter implements Closeable {
             }
         }
 
+        @Override
         public void cancel() {
             cancelRow();
         }
 
+        @Override
         public void putBin(int index, long address, long len) {
             getSecondaryColumn(index).putLong(getPrimaryColumn(index).putBin(address, len));
             notNull(index);
         }
 
+        @Override
         public void putBin(int index, BinarySequence sequence) {
             getSecondaryColumn(index).putLong(getPrimaryColumn(index).putBin(sequence));
             notNull(index);
         }
 
+        @Override
         public void putBool(int index, boolean value) {
             getPrimaryColumn(index).putBool(value);
             notNull(index);
         }
 
+        @Override
         public void putByte(int index, byte value) {
             getPrimaryColumn(index).putByte(value);
             notNull(index);
         }
 
+        @Override
         public void putChar(int index, char value) {
             getPrimaryColumn(index).putChar(value);
             notNull(index);
         }
 
+        @Override
         public void putDate(int index, long value) {
             putLong(index, value);
         }
 
+        @Override
         public void putDouble(int index, double value) {
             getPrimaryColumn(index).putDouble(value);
             notNull(index);
         }
 
+        @Override
         public void putFloat(int index, float value) {
             getPrimaryColumn(index).putFloat(value);
             notNull(index);
         }
 
+        @Override
         public void putInt(int index, int value) {
             getPrimaryColumn(index).putInt(value);
             notNull(index);
         }
 
+        @Override
         public void putLong(int index, long value) {
             getPrimaryColumn(index).putLong(value);
             notNull(index);
         }
 
+        @Override
         public void putLong256(int index, long l0, long l1, long l2, long l3) {
             getPrimaryColumn(index).putLong256(l0, l1, l2, l3);
             notNull(index);
         }
 
+        @Override
         public void putLong256(int index, Long256 value) {
             getPrimaryColumn(index).putLong256(value.getLong0(), value.getLong1(), value.getLong2(), value.getLong3());
             notNull(index);
         }
 
+        @Override
         public void putLong256(int index, CharSequence hexString) {
             getPrimaryColumn(index).putLong256(hexString);
             notNull(index);
         }
 
+        @Override
         public void putLong256(int index, @NotNull CharSequence hexString, int start, int end) {
             getPrimaryColumn(index).putLong256(hexString, start, end);
             notNull(index);
         }
 
+        @Override
         public void putShort(int index, short value) {
             getPrimaryColumn(index).putShort(value);
             notNull(index);
         }
 
+        @Override
         public void putStr(int index, CharSequence value) {
             getSecondaryColumn(index).putLong(getPrimaryColumn(index).putStr(value));
             notNull(index);
         }
 
+        @Override
         public void putStr(int index, char value) {
             getSecondaryColumn(index).putLong(getPrimaryColumn(index).putStr(value));
             notNull(index);
         }
 
+        @Override
         public void putStr(int index, CharSequence value, int pos, int len) {
             getSecondaryColumn(index).putLong(getPrimaryColumn(index).putStr(value, pos, len));
             notNull(index);
         }
 
+        @Override
         public void putSym(int index, CharSequence value) {
             getPrimaryColumn(index).putInt(symbolMapWriters.getQuick(index).put(value));
             notNull(index);
         }
 
+        @Override
         public void putSym(int index, char value) {
             getPrimaryColumn(index).putInt(symbolMapWriters.getQuick(index).put(value));
             notNull(index);
         }
 
+        @Override
         public void putSymIndex(int index, int symIndex) {
             getPrimaryColumn(index).putInt(symIndex);
             notNull(index);
         }
 
+        @Override
         public void putTimestamp(int index, long value) {
             putLong(index, value);
         }
 
+        @Override
         public void putTimestamp(int index, CharSequence value) {
             // try UTC timestamp first (micro)
             long l;
@@ -4837,6 +5507,11 @@ public class TableWriter implements Closeable {
         private void notNull(int index) {
             refs.setQuick(index, masterRef);
         }
+
+        private void putBlockOfBytes(int index, long address, long len) {
+            getPrimaryColumn(index).putBlockOfBytes(address, len);
+            notNull(index);
+        }
     }
 
     private class WriterTransientSymbolCountChangeHandler implements TransientSymbolCountChangeHandler {
@@ -4859,5 +5534,7 @@ public class TableWriter implements Closeable {
         IGNORED_FILES.add(META_FILE_NAME);
         IGNORED_FILES.add(TXN_FILE_NAME);
         IGNORED_FILES.add(TODO_FILE_NAME);
+        // write-ahead log is not a partition, it outlives rollback and truncate
+        IGNORED_FILES.add(WalWriter.WAL_DIR_NAME);
     }
 }
@@ -0,0 +1,63 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cairo;
+
+import io.questdb.metrics.Counter;
+import io.questdb.metrics.MetricsRegistry;
+
+/**
+ * O3 commit statistics of all table writers. Rewrite amplification is the rate of
+ * rewritten rows over the rate of committed O3 rows.
+ */
+public class TableWriterMetrics {
+    private final Counter o3CommitCounter;
+    private final Counter o3RowCounter;
+    private final Counter o3RewrittenRowCounter;
+    private final Counter o3LagRowCounter;
+    private final Counter o3LagIncreaseCounter;
+    private final Counter o3LagDecreaseCounter;
+
+    public TableWriterMetrics(MetricsRegistry metricsRegistry) {
+        this.o3CommitCounter = metricsRegistry.newCounter("o3_commits");
+        this.o3RowCounter = metricsRegistry.newCounter("o3_rows");
+        this.o3RewrittenRowCounter = metricsRegistry.newCounter("o3_rewritten_rows");
+        this.o3LagRowCounter = metricsRegistry.newCounter("o3_lag_rows");
+        this.o3LagIncreaseCounter = metricsRegistry.newCounter("o3_lag_increases");
+        this.o3LagDecreaseCounter = metricsRegistry.newCounter("o3_lag_decreases");
+    }
+
+    public void onO3Commit(long committedRows, long rewrittenRows, long lagRows, int lagChange) {
+        o3CommitCounter.inc();
+        o3RowCounter.add(committedRows);
+        o3RewrittenRowCounter.add(rewrittenRows);
+        o3LagRowCounter.add(lagRows);
+        if (lagChange > 0) {
+            o3LagIncreaseCounter.inc();
+        } else if (lagChange < 0) {
+            o3LagDecreaseCounter.inc();
+        }
+    }
+}
@@ -41,6 +41,9 @@ public final class TxWriter extends TxReader implements Closeable {
     private long prevMaxTimestamp;
     private long prevMinTimestamp;
     protected long prevTransientRowCount;
+    // count of write-ahead log transactions applied to the table, kept behind partition table
+    private long walTxn;
+    private long pendingWalTxn;
 
     private PagedMappedReadWriteMemory txMem;
 
@@ -48,6 +51,8 @@ public final class TxWriter extends TxReader implements Closeable {
         super(ff, path, partitionBy);
         try {
             readUnchecked();
+            final long walTxnOffset = getWalTxnOffset();
+            walTxn = pendingWalTxn = txMem.getAppendOffset() >= walTxnOffset + Long.BYTES ? txMem.getLong(walTxnOffset) : 0;
         } catch (Throwable e) {
             close();
             throw e;
@@ -58,6 +63,10 @@ public final class TxWriter extends TxReader implements Closeable {
         transientRowCount++;
     }
 
+    public void append(long rowCount) {
+        transientRowCount += rowCount;
+    }
+
     public void appendBlock(long timestampLo, long timestampHi, long nRowsAdded) {
         if (timestampLo < maxTimestamp) {
             throw CairoException.instance(ff.errno()).put("Cannot insert rows out of order. Table=").put(path);
@@ -99,6 +108,7 @@ public final class TxWriter extends TxReader implements Closeable {
             attachedPositionDirtyIndex = 0;
             saveAttachedPartitionsToTx(count);
             symbolsCount = count;
+            storeWalTxn();
         }
 
         Unsafe.getUnsafe().storeFence();
@@ -130,7 +140,7 @@ public final class TxWriter extends TxReader implements Closeable {
     public void close() {
         try {
             if (txMem != null) {
-                txMem.jumpTo(getTxEofOffset());
+                txMem.jumpTo(walTxn > 0 ? Math.max(getTxEofOffset(), getWalTxnOffset() + Long.BYTES) : getTxEofOffset());
             }
         } finally {
             super.close();
@@ -143,6 +153,7 @@ public final class TxWriter extends TxReader implements Closeable {
         this.prevTransientRowCount = this.transientRowCount;
         this.prevMaxTimestamp = maxTimestamp;
         this.prevMinTimestamp = minTimestamp;
+        this.pendingWalTxn = walTxn;
     }
 
     @Override
@@ -176,6 +187,10 @@ public final class TxWriter extends TxReader implements Closeable {
         txPartitionCount = 1;
         saveAttachedPartitionsToTx(symbolsCount);
 
+        // applied write-ahead log transactions become visible atomically with their rows
+        walTxn = pendingWalTxn;
+        storeWalTxn();
+
         Unsafe.getUnsafe().storeFence();
         txMem.putLong(TX_OFFSET_TXN_CHECK, txn);
         if (commitMode != CommitMode.NOSYNC) {
@@ -185,6 +200,10 @@ public final class TxWriter extends TxReader implements Closeable {
         prevTransientRowCount = transientRowCount;
     }
 
+    public void sync(boolean async) {
+        txMem.sync(0, async);
+    }
+
     public void finishPartitionSizeUpdate(long minTimestamp, long maxTimestamp) {
         this.minTimestamp = minTimestamp;
         this.maxTimestamp = maxTimestamp;
@@ -201,6 +220,10 @@ public final class TxWriter extends TxReader implements Closeable {
         return txPartitionCount;
     }
 
+    public long getWalTxn() {
+        return walTxn;
+    }
+
     public long getLastTxSize() {
         return txPartitionCount == 1 ? transientRowCount - prevTransientRowCount : transientRowCount;
     }
@@ -264,6 +287,11 @@ public final class TxWriter extends TxReader implements Closeable {
                 txMem.getLong(TX_OFFSET_TXN) + 1,
                 txMem.getLong(TX_OFFSET_DATA_VERSION) + 1,
                 txMem.getLong(TX_OFFSET_PARTITION_TABLE_VERSION) + 1);
+        storeWalTxn();
+    }
+
+    public void setPendingWalTxn(long walTxn) {
+        this.pendingWalTxn = walTxn;
     }
 
     public void resetTimestamp() {
@@ -308,6 +336,7 @@ public final class TxWriter extends TxReader implements Closeable {
         attachedPositionDirtyIndex = 0;
         attachedPartitions.clear();
         resetTxn(txMem, symbolsCount, txn, ++dataVersion, ++partitionTableVersion);
+        storeWalTxn();
     }
 
     public void updateMaxTimestamp(long timestamp) {
@@ -375,6 +404,19 @@ public final class TxWriter extends TxReader implements Closeable {
         }
     }
 
+    private long getWalTxnOffset() {
+        // behind partition table as it is in the file, in-memory list of non-partitioned table is not stored
+        final long partitionTableOffset = getPartitionTableSizeOffset(symbolsCount);
+        return getPartitionTableIndexOffset(partitionTableOffset, txMem.getInt(partitionTableOffset) / Long.BYTES);
+    }
+
+    private void storeWalTxn() {
+        // tables that never had write-ahead log applied keep _txn layout unchanged
+        if (walTxn > 0) {
+            txMem.putLong(getWalTxnOffset(), walTxn);
+        }
+    }
+
     private void storeSymbolCounts(ObjList<SymbolMapWriter> denseSymbolMapWriters) {
         for (int i = 0, n = denseSymbolMapWriters.size(); i < n; i++) {
             long offset = getSymbolWriterIndexOffset(i);
@@ -0,0 +1,393 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cairo;
+
+import io.questdb.cairo.vm.PagedMappedReadWriteMemory;
+import io.questdb.cairo.vm.SinglePageMappedReadOnlyPageMemory;
+import io.questdb.cairo.vm.VmUtils;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.*;
+import io.questdb.std.str.NativeLPSZ;
+import io.questdb.std.str.Path;
+
+import java.io.Closeable;
+
+import static io.questdb.cairo.WalWriter.*;
+
+/**
+ * Merges committed transactions of a table write-ahead log into its partitions. Pending
+ * transactions are appended to the table writer in batches of up to
+ * {@link CairoConfiguration#getWalApplyMaxTxnPerCommit()} and each batch is committed
+ * together, which lets the writer sort out-of-order rows once per batch. Transactions of
+ * all shards are folded in the order assigned by {@link WalSequencer}.
+ * <p>
+ * Applied transaction count is stored in table _txn by the same commit that stores the
+ * rows, see {@link TableWriter#setPendingWalTxn(long)}, so a crash cannot separate the two.
+ * It is also copied to wal/_applied, which lets the apply job check for pending transactions
+ * without opening table writer.
+ */
+public class WalApplier implements Closeable {
+    private static final Log LOG = LogFactory.getLog(WalApplier.class);
+    private static final long APPLIED_TXN_OFFSET = 0;
+    private final CairoConfiguration configuration;
+    private final FilesFacade ff;
+    private final Path path = new Path();
+    private final SinglePageMappedReadOnlyPageMemory indexMem = new SinglePageMappedReadOnlyPageMemory();
+    private final PagedMappedReadWriteMemory appliedMem = new PagedMappedReadWriteMemory();
+    private final SinglePageMappedReadOnlyPageMemory appliedReadMem = new SinglePageMappedReadOnlyPageMemory();
+    private final ObjList<ShardSegment> shards = new ObjList<>();
+    private final LongList segmentIds = new LongList();
+    private final NativeLPSZ nativeLPSZ = new NativeLPSZ();
+    private int rootLen;
+
+    public WalApplier(CairoConfiguration configuration) {
+        this.configuration = configuration;
+        this.ff = configuration.getFilesFacade();
+    }
+
+    @Override
+    public void close() {
+        clear();
+        Misc.freeObjList(shards);
+        Misc.free(path);
+    }
+
+    /**
+     * Applies committed transactions of the write-ahead log of writer's table that have
+     * not been applied yet. Keeps going until the log has no more transactions.
+     *
+     * @param writer writer of the table, must not have uncommitted rows
+     * @return number of applied transactions
+     */
+    public long apply(TableWriter writer) {
+        path.of(configuration.getRoot()).concat(writer.getTableName()).concat(WAL_DIR_NAME);
+        rootLen = path.length();
+        if (!ff.exists(path.concat(WAL_INDEX_FILE_NAME).$())) {
+            return 0;
+        }
+
+        try {
+            indexMem.of(ff, path, ff.getPageSize());
+            long appliedTxn = openApplied(writer);
+            long total = 0;
+            while (true) {
+                final long committedTxn = indexMem.getLong(0);
+                Unsafe.getUnsafe().loadFence();
+                if (committedTxn <= appliedTxn) {
+                    return total;
+                }
+
+                final long txnHi = Math.min(committedTxn, appliedTxn + configuration.getWalApplyMaxTxnPerCommit());
+                indexMem.grow(recordOffset(txnHi));
+                long rowCount = 0;
+                for (long txn = appliedTxn; txn < txnHi; txn++) {
+                    final long offset = recordOffset(txn);
+                    rowCount += applyTxn(
+                            writer,
+                            (int) indexMem.getLong(offset),
+                            indexMem.getLong(offset + Long.BYTES),
+                            indexMem.getLong(offset + 2 * Long.BYTES),
+                            indexMem.getLong(offset + 3 * Long.BYTES)
+                    );
+                }
+
+                writer.setPendingWalTxn(txnHi);
+                writer.commit();
+                appliedMem.putLong(APPLIED_TXN_OFFSET, txnHi);
+
+                LOG.info().$("applied WAL [table=").utf8(writer.getTableName())
+                        .$(", txnLo=").$(appliedTxn)
+                        .$(", txnHi=").$(txnHi)
+                        .$(", rows=").$(rowCount)
+                        .$(']').$();
+
+                purgeSegments();
+                total += txnHi - appliedTxn;
+                appliedTxn = txnHi;
+            }
+        } catch (Throwable e) {
+            // rollback also discards pending WAL transaction count, failed batch is not applied
+            writer.rollback();
+            throw e;
+        } finally {
+            clear();
+        }
+    }
+
+    /**
+     * Checks without table writer whether write-ahead log of the table has committed
+     * transactions that have not been applied.
+     *
+     * @param tableName name of table directory
+     * @return true when there are transactions to apply
+     */
+    public boolean hasPendingTxn(CharSequence tableName) {
+        path.of(configuration.getRoot()).concat(tableName).concat(WAL_DIR_NAME);
+        rootLen = path.length();
+        if (!ff.exists(path.concat(WAL_INDEX_FILE_NAME).$())) {
+            return false;
+        }
+
+        try {
+            indexMem.of(ff, path, ff.getPageSize());
+            final long committedTxn = indexMem.size() < Long.BYTES ? 0 : indexMem.getLong(0);
+            if (committedTxn == 0) {
+                return false;
+            }
+            if (!ff.exists(path.trimTo(rootLen).concat(WAL_APPLIED_FILE_NAME).$())) {
+                return true;
+            }
+            appliedReadMem.of(ff, path, ff.getPageSize());
+            return appliedReadMem.size() < Long.BYTES || appliedReadMem.getLong(APPLIED_TXN_OFFSET) < committedTxn;
+        } finally {
+            indexMem.close();
+            appliedReadMem.close();
+        }
+    }
+
+    private long applyTxn(TableWriter writer, int shardId, long segmentId, long offsetLo, long offsetHi) {
+        final ShardSegment shard = getShard(shardId);
+        if (shard.segmentId != segmentId) {
+            openSegment(writer, shard, shardId, segmentId);
+        }
+        final SinglePageMappedReadOnlyPageMemory segmentMem = shard.mem;
+        segmentMem.grow(offsetHi);
+
+        final boolean timestamped = writer.getMetadata().getTimestampIndex() != -1;
+        long offset = offsetLo;
+        long rowCount = 0;
+        while (offset < offsetHi) {
+            final long timestamp = segmentMem.getLong(offset);
+            offset += Long.BYTES;
+            final TableWriter.Row row = timestamped ? writer.newRow(timestamp) : writer.newRow();
+            int index;
+            while ((index = segmentMem.getInt(offset)) != WAL_ROW_END) {
+                offset = putValue(row, shard, index, offset + Integer.BYTES);
+            }
+            offset += Integer.BYTES;
+            row.append();
+            rowCount++;
+        }
+        return rowCount;
+    }
+
+    private void clear() {
+        indexMem.close();
+        appliedMem.close();
+        appliedReadMem.close();
+        for (int i = 0, n = shards.size(); i < n; i++) {
+            shards.getQuick(i).clear();
+        }
+    }
+
+    private ShardSegment getShard(int shardId) {
+        ShardSegment shard = shards.getQuiet(shardId);
+        if (shard == null) {
+            shards.extendAndSet(shardId, shard = new ShardSegment());
+        }
+        return shard;
+    }
+
+    private long openApplied(TableWriter writer) {
+        path.trimTo(rootLen).concat(WAL_APPLIED_FILE_NAME).$();
+        appliedMem.of(ff, path, ff.getPageSize());
+        if (appliedMem.getAppendOffset() < Long.BYTES) {
+            appliedMem.jumpTo(0);
+            appliedMem.putLong(0L);
+        }
+
+        // _applied is updated after table commit and lags behind table _txn when crash came in between,
+        // it is ahead only when batch had no rows to commit
+        long appliedTxn = appliedMem.getLong(APPLIED_TXN_OFFSET);
+        if (writer.getWalTxn() > appliedTxn) {
+            appliedMem.putLong(APPLIED_TXN_OFFSET, appliedTxn = writer.getWalTxn());
+        }
+        return appliedTxn;
+    }
+
+    private void openSegment(TableWriter writer, ShardSegment shard, int shardId, long segmentId) {
+        path.trimTo(rootLen).slash().put(shardId).slash().put(segmentId).$();
+        final SinglePageMappedReadOnlyPageMemory segmentMem = shard.mem;
+        segmentMem.of(ff, path, ff.getPageSize());
+        shard.segmentId = segmentId;
+
+        final TableWriterMetadata metadata = writer.getMetadata();
+        final IntList columnIndexes = shard.columnIndexes;
+        final IntList columnTypes = shard.columnTypes;
+        columnIndexes.clear();
+        columnTypes.clear();
+        final int columnCount = segmentMem.getInt(0);
+        long offset = Integer.BYTES;
+        for (int i = 0; i < columnCount; i++) {
+            final int type = segmentMem.getInt(offset);
+            final CharSequence name = segmentMem.getStr(offset + Integer.BYTES);
+            offset += Integer.BYTES + VmUtils.getStorageLength(name);
+
+            final int columnIndex = metadata.getColumnIndexQuiet(name);
+            if (columnIndex > -1 && metadata.getColumnType(columnIndex) == type) {
+                columnIndexes.add(columnIndex);
+            } else {
+                LOG.info().$("WAL column is not in table, skipping [table=").utf8(writer.getTableName())
+                        .$(", column=").utf8(name)
+                        .$(']').$();
+                columnIndexes.add(-1);
+            }
+            columnTypes.add(type);
+        }
+    }
+
+    private void purgeSegments() {
+        // segments of a shard before the one holding its last applied transaction are fully applied
+        for (int shardId = 0, n = shards.size(); shardId < n; shardId++) {
+            final ShardSegment shard = shards.getQuick(shardId);
+            if (shard == null || shard.segmentId == -1) {
+                continue;
+            }
+
+            path.trimTo(rootLen).slash().put(shardId).$();
+            segmentIds.clear();
+            long p = ff.findFirst(path);
+            if (p > 0) {
+                try {
+                    do {
+                        if (ff.findType(p) != Files.DT_DIR) {
+                            try {
+                                final long segmentId = Numbers.parseLong(nativeLPSZ.of(ff.findName(p)));
+                                if (segmentId < shard.segmentId) {
+                                    segmentIds.add(segmentId);
+                                }
+                            } catch (NumericException ignore) {
+                            }
+                        }
+                    } while (ff.findNext(p) > 0);
+                } finally {
+                    ff.findClose(p);
+                }
+            }
+
+            for (int i = 0, m = segmentIds.size(); i < m; i++) {
+                path.trimTo(rootLen).slash().put(shardId).slash().put(segmentIds.getQuick(i)).$();
+                if (!ff.remove(path)) {
+                    LOG.error().$("could not remove WAL segment [path=").$(path).$(", errno=").$(ff.errno()).$(']').$();
+                }
+            }
+        }
+    }
+
+    private long putValue(TableWriter.Row row, ShardSegment shard, int index, long offset) {
+        final SinglePageMappedReadOnlyPageMemory segmentMem = shard.mem;
+        final int columnIndex = shard.columnIndexes.getQuick(index);
+        final int columnType = shard.columnTypes.getQuick(index);
+        final boolean skip = columnIndex == -1;
+        switch (columnType) {
+            case ColumnType.BOOLEAN:
+                if (!skip) {
+                    row.putBool(columnIndex, segmentMem.getBool(offset));
+                }
+                return offset + Byte.BYTES;
+            case ColumnType.BYTE:
+                if (!skip) {
+                    row.putByte(columnIndex, segmentMem.getByte(offset));
+                }
+                return offset + Byte.BYTES;
+            case ColumnType.SHORT:
+                if (!skip) {
+                    row.putShort(columnIndex, segmentMem.getShort(offset));
+                }
+                return offset + Short.BYTES;
+            case ColumnType.CHAR:
+                if (!skip) {
+                    row.putChar(columnIndex, segmentMem.getChar(offset));
+                }
+                return offset + Character.BYTES;
+            case ColumnType.INT:
+                if (!skip) {
+                    row.putInt(columnIndex, segmentMem.getInt(offset));
+                }
+                return offset + Integer.BYTES;
+            case ColumnType.LONG:
+            case ColumnType.DATE:
+            case ColumnType.TIMESTAMP:
+                if (!skip) {
+                    row.putLong(columnIndex, segmentMem.getLong(offset));
+                }
+                return offset + Long.BYTES;
+            case ColumnType.FLOAT:
+                if (!skip) {
+                    row.putFloat(columnIndex, segmentMem.getFloat(offset));
+                }
+                return offset + Float.BYTES;
+            case ColumnType.DOUBLE:
+                if (!skip) {
+                    row.putDouble(columnIndex, segmentMem.getDouble(offset));
+                }
+                return offset + Double.BYTES;
+            case ColumnType.STRING:
+            case ColumnType.SYMBOL:
+                final CharSequence value = segmentMem.getStr(offset);
+                if (!skip) {
+                    if (columnType == ColumnType.SYMBOL) {
+                        row.putSym(columnIndex, value);
+                    } else {
+                        row.putStr(columnIndex, value);
+                    }
+                }
+                return offset + VmUtils.getStorageLength(value);
+            case ColumnType.LONG256:
+                if (!skip) {
+                    row.putLong256(columnIndex, segmentMem.getLong256A(offset));
+                }
+                return offset + Long256.BYTES;
+            case ColumnType.BINARY:
+                final long len = segmentMem.getBinLen(offset);
+                if (!skip) {
+                    row.putBin(columnIndex, segmentMem.getBin(offset));
+                }
+                return offset + Long.BYTES + Math.max(len, 0);
+            default:
+                throw CairoException.instance(0).put("unsupported WAL column type [type=").put(ColumnType.nameOf(columnType)).put(']');
+        }
+    }
+
+    private static class ShardSegment implements Closeable {
+        private final SinglePageMappedReadOnlyPageMemory mem = new SinglePageMappedReadOnlyPageMemory();
+        // segment column index -> table column index, -1 when column no longer exists
+        private final IntList columnIndexes = new IntList();
+        private final IntList columnTypes = new IntList();
+        private long segmentId = -1;
+
+        @Override
+        public void close() {
+            clear();
+        }
+
+        private void clear() {
+            mem.close();
+            segmentId = -1;
+        }
+    }
+}
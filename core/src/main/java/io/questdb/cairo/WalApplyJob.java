@@ -0,0 +1,180 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.cairo;
+
+import io.questdb.cairo.security.AllowAllCairoSecurityContext;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.mp.AbstractQueueConsumerJob;
+import io.questdb.std.*;
+import io.questdb.std.datetime.microtime.MicrosecondClock;
+import io.questdb.std.str.NativeLPSZ;
+import io.questdb.std.str.Path;
+import io.questdb.tasks.WalApplyTask;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Applies write-ahead log of tables that have been committed to by {@link WalWriter}.
+ * When table writer is busy the table is set aside and retried every
+ * {@link CairoConfiguration#getWalApplyRetryInterval()}. Notifications that did not fit
+ * the queue, as well as transactions left over from previous run, are picked up by a
+ * sweep of all tables. The sweep runs on start and then every
+ * {@link CairoConfiguration#getWalApplySweepInterval()}.
+ */
+public class WalApplyJob extends AbstractQueueConsumerJob<WalApplyTask> implements Closeable {
+    private static final Log LOG = LogFactory.getLog(WalApplyJob.class);
+    private static final String LOCK_REASON = "walApply";
+    private final CairoEngine engine;
+    private final WalApplier[] appliers;
+    private final ConcurrentHashMap<Boolean> busyTables = new ConcurrentHashMap<>();
+    // retry state below is guarded by retryLock
+    private final AtomicBoolean retryLock = new AtomicBoolean();
+    private final ObjList<CharSequence> retryTables = new ObjList<>();
+    private final MicrosecondClock clock;
+    private final long retryInterval;
+    private final long sweepInterval;
+    private final Path path = new Path();
+    private final NativeLPSZ nativeLPSZ = new NativeLPSZ();
+    private final FindVisitor sweepVisitor = this::sweepTable;
+    private volatile long nextRetryTime = 0;
+    private long nextSweepTime = 0;
+    private int sweepWorkerId;
+    private boolean sweepApplied;
+
+    public WalApplyJob(CairoEngine engine, int workerCount) {
+        super(engine.getMessageBus().getWalApplyQueue(), engine.getMessageBus().getWalApplySubSeq());
+        this.engine = engine;
+        this.appliers = new WalApplier[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            appliers[i] = new WalApplier(engine.getConfiguration());
+        }
+        final CairoConfiguration configuration = engine.getConfiguration();
+        this.clock = configuration.getMicrosecondClock();
+        this.retryInterval = configuration.getWalApplyRetryInterval() * 1000;
+        this.sweepInterval = configuration.getWalApplySweepInterval() * 1000;
+    }
+
+    public static long applyWal(CairoEngine engine, WalApplier applier, CharSequence tableName) {
+        return applyWal(engine, applier, tableName, null);
+    }
+
+    @Override
+    public void close() {
+        for (int i = 0, n = appliers.length; i < n; i++) {
+            appliers[i] = Misc.free(appliers[i]);
+        }
+        Misc.free(path);
+    }
+
+    @Override
+    public boolean run(int workerId) {
+        return super.run(workerId) || retry(workerId);
+    }
+
+    private static long applyWal(CairoEngine engine, WalApplier applier, CharSequence tableName, @Nullable ConcurrentHashMap<Boolean> busyTables) {
+        try (TableWriter writer = engine.getWriter(AllowAllCairoSecurityContext.INSTANCE, tableName, LOCK_REASON)) {
+            return applier.apply(writer);
+        } catch (EntryUnavailableException e) {
+            if (busyTables != null) {
+                busyTables.put(Chars.toString(tableName), Boolean.TRUE);
+                LOG.info().$("table is busy, WAL apply is deferred [table=").utf8(tableName).$(']').$();
+            } else {
+                LOG.info().$("table is busy, WAL is not applied [table=").utf8(tableName).$(']').$();
+            }
+        } catch (CairoException e) {
+            LOG.error().$("could not apply WAL [table=").utf8(tableName)
+                    .$(", errno=").$(e.getErrno())
+                    .$(", msg=").$(e.getFlyweightMessage())
+                    .$(']').$();
+        }
+        return 0;
+    }
+
+    @Override
+    protected boolean doRun(int workerId, long cursor) {
+        final String tableName = queue.get(cursor).getTableName();
+        subSeq.done(cursor);
+        applyWal(engine, appliers[workerId], tableName, busyTables);
+        return true;
+    }
+
+    private boolean retry(int workerId) {
+        final long now = clock.getTicks();
+        if (now < nextRetryTime || !retryLock.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            boolean useful = false;
+            if (!busyTables.isEmpty()) {
+                retryTables.clear();
+                for (CharSequence tableName : busyTables.keySet()) {
+                    retryTables.add(tableName);
+                }
+                for (int i = 0, n = retryTables.size(); i < n; i++) {
+                    final CharSequence tableName = retryTables.getQuick(i);
+                    busyTables.remove(tableName);
+                    useful |= applyWal(engine, appliers[workerId], tableName, busyTables) > 0;
+                }
+                retryTables.clear();
+            }
+
+            if (now >= nextSweepTime) {
+                sweepWorkerId = workerId;
+                sweepApplied = false;
+                final FilesFacade ff = engine.getConfiguration().getFilesFacade();
+                ff.iterateDir(path.of(engine.getConfiguration().getRoot()).$(), sweepVisitor);
+                useful |= sweepApplied;
+                nextSweepTime = now + sweepInterval;
+            }
+            nextRetryTime = now + retryInterval;
+            return useful;
+        } finally {
+            retryLock.set(false);
+        }
+    }
+
+    private void sweepTable(long name, int type) {
+        if (type == Files.DT_DIR) {
+            nativeLPSZ.of(name);
+            if (Chars.notDots(nativeLPSZ)) {
+                final WalApplier applier = appliers[sweepWorkerId];
+                try {
+                    if (applier.hasPendingTxn(nativeLPSZ)) {
+                        sweepApplied |= applyWal(engine, applier, Chars.toString(nativeLPSZ), busyTables) > 0;
+                    }
+                } catch (CairoException e) {
+                    // table could have been dropped in the meantime
+                    LOG.error().$("could not check WAL [table=").utf8(nativeLPSZ)
+                            .$(", errno=").$(e.getErrno())
+                            .$(", msg=").$(e.getFlyweightMessage())
+                            .$(']').$();
+                }
+            }
+        }
+    }
+}
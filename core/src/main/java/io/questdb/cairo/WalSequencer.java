@@ -0,0 +1,169 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cairo;
+
+import io.questdb.cairo.vm.PagedMappedReadWriteMemory;
+import io.questdb.std.FilesFacade;
+import io.questdb.std.IntList;
+import io.questdb.std.Unsafe;
+import io.questdb.std.str.Path;
+
+import java.io.Closeable;
+
+import static io.questdb.cairo.WalWriter.*;
+
+/**
+ * Orders commits of concurrent {@link WalWriter}s of one table. Each writer appends to
+ * segments of its own shard, wal/&lt;shard&gt;/&lt;segment&gt;, without coordination.
+ * On commit the sequencer assigns the next transaction number and records shard,
+ * segment and row range of the transaction in wal/_wal.
+ * <p>
+ * Index header holds committed transaction count and the next segment id. Segment ids
+ * are unique across shards of the table.
+ * <p>
+ * Sequencer closes itself when the last writer releases its shard.
+ */
+public class WalSequencer implements Closeable {
+    static final long WAL_INDEX_TXN_COUNT_OFFSET = 0;
+    static final long WAL_INDEX_NEXT_SEGMENT_OFFSET = Long.BYTES;
+    private final FilesFacade ff;
+    private final String tableName;
+    private final PagedMappedReadWriteMemory indexMem = new PagedMappedReadWriteMemory();
+    // 1 when shard is taken by an open writer
+    private final IntList shards = new IntList();
+    private int shardsInUse;
+    private long lockFd = -1;
+    private long txnCount;
+    private long nextSegmentId;
+    private boolean closed;
+
+    public WalSequencer(CairoConfiguration configuration, CharSequence tableName) {
+        this.ff = configuration.getFilesFacade();
+        this.tableName = tableName.toString();
+        try (Path path = new Path().of(configuration.getRoot()).concat(tableName).concat(WAL_DIR_NAME)) {
+            final int rootLen = path.length();
+            if (ff.mkdirs(path.slash$(), configuration.getMkDirMode()) != 0) {
+                throw CairoException.instance(ff.errno()).put("Cannot create WAL directory: ").put(path);
+            }
+            path.trimTo(rootLen).concat(WAL_INDEX_FILE_NAME);
+            TableUtils.lockName(path);
+            this.lockFd = TableUtils.lock(ff, path);
+            if (lockFd == -1L) {
+                throw CairoException.instance(ff.errno()).put("Cannot lock WAL of table: ").put(path);
+            }
+
+            path.trimTo(rootLen).concat(WAL_INDEX_FILE_NAME).$();
+            indexMem.of(ff, path, ff.getPageSize());
+            if (indexMem.getAppendOffset() < WAL_INDEX_HEADER_SIZE) {
+                indexMem.jumpTo(0);
+                indexMem.putLong(0L);
+                indexMem.putLong(0L);
+            }
+            txnCount = indexMem.getLong(WAL_INDEX_TXN_COUNT_OFFSET);
+            nextSegmentId = indexMem.getLong(WAL_INDEX_NEXT_SEGMENT_OFFSET);
+            // drop record that may have been written after the last count update
+            indexMem.jumpTo(recordOffset(txnCount));
+        } catch (Throwable e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        indexMem.close();
+        if (lockFd != -1L) {
+            ff.close(lockFd);
+            lockFd = -1L;
+        }
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * @return number of committed transactions
+     */
+    public synchronized long getTxn() {
+        return txnCount;
+    }
+
+    /**
+     * @return shard for a new writer or -1 when sequencer is closed
+     */
+    synchronized int acquireShard() {
+        if (closed) {
+            return -1;
+        }
+        shardsInUse++;
+        int shard = shards.indexOf(0, 0, shards.size());
+        if (shard == -1) {
+            shard = shards.size();
+            shards.add(1);
+        } else {
+            shards.setQuick(shard, 1);
+        }
+        return shard;
+    }
+
+    synchronized long commit(int shardId, long segmentId, long offsetLo, long offsetHi, long rowCount, int commitMode) {
+        checkClosed();
+        indexMem.jumpTo(recordOffset(txnCount));
+        indexMem.putLong(shardId);
+        indexMem.putLong(segmentId);
+        indexMem.putLong(offsetLo);
+        indexMem.putLong(offsetHi);
+        indexMem.putLong(rowCount);
+        // record must be in place before it is counted
+        Unsafe.getUnsafe().storeFence();
+        Unsafe.getUnsafe().putLong(indexMem.addressOf(WAL_INDEX_TXN_COUNT_OFFSET), txnCount + 1);
+        if (commitMode != CommitMode.NOSYNC) {
+            indexMem.sync(commitMode == CommitMode.ASYNC);
+        }
+        return txnCount++;
+    }
+
+    synchronized long nextSegmentId() {
+        checkClosed();
+        Unsafe.getUnsafe().putLong(indexMem.addressOf(WAL_INDEX_NEXT_SEGMENT_OFFSET), nextSegmentId + 1);
+        return nextSegmentId++;
+    }
+
+    synchronized void releaseShard(int shardId) {
+        shards.setQuick(shardId, 0);
+        if (--shardsInUse == 0) {
+            close();
+        }
+    }
+
+    private void checkClosed() {
+        if (closed) {
+            throw CairoException.instance(0).put("WAL is closed [table=").put(tableName).put(']');
+        }
+    }
+}
@@ -0,0 +1,440 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cairo;
+
+import io.questdb.MessageBus;
+import io.questdb.cairo.vm.AppendOnlyVirtualMemory;
+import io.questdb.griffin.model.IntervalUtils;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.mp.RingQueue;
+import io.questdb.mp.Sequence;
+import io.questdb.std.*;
+import io.questdb.std.datetime.microtime.Timestamps;
+import io.questdb.std.str.Path;
+import io.questdb.tasks.WalApplyTask;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+
+/**
+ * Appends rows of a table to its write-ahead log instead of the partitions. Commit
+ * costs one append to the current segment file and one record in the transaction
+ * index, regardless of how far back in time the rows land. Several writers of the same
+ * table can append concurrently, each to its own shard, and {@link WalSequencer} orders
+ * their commits. Committed transactions are merged into partitions by {@link WalApplier},
+ * normally on {@link WalApplyJob}, and become visible to readers once applied.
+ * <p>
+ * Layout under the table directory:
+ * <pre>
+ *     wal/_wal                    transaction index, maintained by {@link WalSequencer}
+ *     wal/_applied                applied transaction count, maintained by {@link WalApplier}
+ *     wal/&lt;shard&gt;/&lt;segment&gt;   column descriptors followed by rows of committed transactions
+ * </pre>
+ * A row is the designated timestamp followed by (column index, value) pairs of the
+ * columns set on the row and terminated by -1. Columns not set are null when applied.
+ * Rows implement {@link TableWriter.Row}, code that fills rows of the table writer, such as
+ * SQL INSERT, can fill rows of the log as well.
+ */
+public class WalWriter implements Closeable {
+    public static final String WAL_DIR_NAME = "wal";
+    public static final String WAL_INDEX_FILE_NAME = "_wal";
+    public static final String WAL_APPLIED_FILE_NAME = "_applied";
+    // index header: committed transaction count and next segment id, padded to a cache line
+    static final long WAL_INDEX_HEADER_SIZE = 64;
+    // index record: shard id, segment id, row offset lo, row offset hi, row count
+    static final long WAL_INDEX_RECORD_SIZE = 5 * Long.BYTES;
+    static final int WAL_ROW_END = -1;
+    private static final Log LOG = LogFactory.getLog(WalWriter.class);
+    private final CairoConfiguration configuration;
+    private final FilesFacade ff;
+    private final String tableName;
+    private final Path path;
+    private final int rootLen;
+    private final TableReaderMetadata metadata;
+    private final WalSequencer sequencer;
+    private final AppendOnlyVirtualMemory segmentMem = new AppendOnlyVirtualMemory();
+    private final Row row = new Row();
+    private final long segmentSize;
+    private final RingQueue<WalApplyTask> applyQueue;
+    private final Sequence applyPubSeq;
+    private long tempMem8b;
+    private final long structureVersion;
+    private int shardId = -1;
+    private long segmentId = -1;
+    private long committedOffset;
+    private long committedRowCount;
+    private long rowCount;
+    private long rowStartOffset = -1;
+
+    public WalWriter(
+            CairoConfiguration configuration,
+            CharSequence tableName,
+            WalSequencer sequencer,
+            int shardId,
+            @Nullable MessageBus messageBus
+    ) {
+        this.configuration = configuration;
+        this.sequencer = sequencer;
+        this.shardId = shardId;
+        this.ff = configuration.getFilesFacade();
+        this.tableName = Chars.toString(tableName);
+        this.segmentSize = configuration.getWalSegmentSize();
+        if (messageBus != null) {
+            this.applyQueue = messageBus.getWalApplyQueue();
+            this.applyPubSeq = messageBus.getWalApplyPubSeq();
+        } else {
+            this.applyQueue = null;
+            this.applyPubSeq = null;
+        }
+        this.tempMem8b = Unsafe.malloc(Long.BYTES);
+        this.path = new Path().of(configuration.getRoot()).concat(tableName);
+        final int tableRootLen = path.length();
+        this.metadata = new TableReaderMetadata(ff);
+        try {
+            // metadata has to match structure version, retry when table is altered meanwhile
+            long structureVersion;
+            do {
+                structureVersion = readStructureVersion(tableRootLen);
+                metadata.of(path.trimTo(tableRootLen).concat(TableUtils.META_FILE_NAME).$());
+            } while (structureVersion != readStructureVersion(tableRootLen));
+            this.structureVersion = structureVersion;
+            path.trimTo(tableRootLen).concat(WAL_DIR_NAME).slash().put(shardId);
+            this.rootLen = path.length();
+            if (ff.mkdirs(path.slash$(), configuration.getMkDirMode()) != 0) {
+                throw CairoException.instance(ff.errno()).put("Cannot create WAL shard directory: ").put(path);
+            }
+            openSegment(sequencer.nextSegmentId());
+        } catch (Throwable e) {
+            close();
+            throw e;
+        }
+    }
+
+    static long recordOffset(long txn) {
+        return WAL_INDEX_HEADER_SIZE + txn * WAL_INDEX_RECORD_SIZE;
+    }
+
+    @Override
+    public void close() {
+        if (!segmentMem.isClosed()) {
+            rollback();
+        }
+        segmentMem.close();
+        Misc.free(metadata);
+        if (shardId != -1) {
+            sequencer.releaseShard(shardId);
+            shardId = -1;
+        }
+        Misc.free(path);
+        if (tempMem8b != 0) {
+            Unsafe.free(tempMem8b, Long.BYTES);
+            tempMem8b = 0;
+        }
+    }
+
+    /**
+     * Appends rows added since previous commit to the log as a single transaction and
+     * notifies {@link WalApplyJob}. Returns without doing anything when there are no
+     * such rows.
+     */
+    public void commit() {
+        commit(configuration.getCommitMode());
+    }
+
+    public void commit(int commitMode) {
+        if (rowStartOffset != -1) {
+            row.cancel();
+        }
+
+        if (rowCount == committedRowCount) {
+            return;
+        }
+
+        final long offsetHi = segmentMem.getAppendOffset();
+        if (commitMode != CommitMode.NOSYNC) {
+            segmentMem.sync(commitMode == CommitMode.ASYNC);
+        }
+
+        sequencer.commit(shardId, segmentId, committedOffset, offsetHi, rowCount - committedRowCount, commitMode);
+        committedOffset = offsetHi;
+        committedRowCount = rowCount;
+        if (offsetHi > segmentSize) {
+            openSegment(sequencer.nextSegmentId());
+        }
+        notifyApplyJob();
+    }
+
+    public TableReaderMetadata getMetadata() {
+        return metadata;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public int getShardId() {
+        return shardId;
+    }
+
+    /**
+     * @return structure version of the table at the time the writer was opened, rows are
+     * described by metadata of this version
+     */
+    public long getStructureVersion() {
+        return structureVersion;
+    }
+
+    /**
+     * @return number of transactions committed to the log by all writers of the table
+     */
+    public long getTxn() {
+        return sequencer.getTxn();
+    }
+
+    public Row newRow() {
+        return newRow(Numbers.LONG_NaN);
+    }
+
+    public Row newRow(long timestamp) {
+        if (rowStartOffset != -1) {
+            row.cancel();
+        }
+        if (metadata.getTimestampIndex() != -1 && timestamp < Timestamps.O3_MIN_TS) {
+            throw CairoException.instance(0).put("timestamp before 1970-01-01 is not allowed");
+        }
+        rowStartOffset = segmentMem.getAppendOffset();
+        segmentMem.putLong(timestamp);
+        return row;
+    }
+
+    /**
+     * Discards rows added since previous commit.
+     */
+    public void rollback() {
+        segmentMem.jumpTo(committedOffset);
+        rowCount = committedRowCount;
+        rowStartOffset = -1;
+    }
+
+    /**
+     * @return number of rows added since previous commit
+     */
+    public long size() {
+        return rowCount - committedRowCount;
+    }
+
+    private void notifyApplyJob() {
+        if (applyPubSeq != null) {
+            long cursor;
+            //noinspection StatementWithEmptyBody
+            while ((cursor = applyPubSeq.next()) == -2) {
+            }
+
+            // queue is full; transaction is applied with the next one or by the apply job sweep
+            if (cursor > -1) {
+                applyQueue.get(cursor).of(tableName);
+                applyPubSeq.done(cursor);
+            }
+        }
+    }
+
+    private long readStructureVersion(int tableRootLen) {
+        path.trimTo(tableRootLen).concat(TableUtils.TXN_FILE_NAME).$();
+        return TableUtils.readLongAtOffset(ff, path, tempMem8b, TableUtils.TX_OFFSET_STRUCT_VERSION);
+    }
+
+    private void openSegment(long segmentId) {
+        path.trimTo(rootLen).slash().put(segmentId).$();
+        segmentMem.of(ff, path, configuration.getAppendPageSize());
+        this.segmentId = segmentId;
+        // segment header describes columns so that rows survive table structure changes
+        final int columnCount = metadata.getColumnCount();
+        segmentMem.putInt(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            segmentMem.putInt(metadata.getColumnType(i));
+            segmentMem.putStr(metadata.getColumnName(i));
+        }
+        committedOffset = segmentMem.getAppendOffset();
+        LOG.info().$("opened WAL segment [table=").utf8(tableName).$(", shard=").$(shardId).$(", segment=").$(segmentId).$(']').$();
+    }
+
+    public class Row implements TableWriter.Row {
+
+        @Override
+        public void append() {
+            segmentMem.putInt(WAL_ROW_END);
+            rowStartOffset = -1;
+            rowCount++;
+        }
+
+        @Override
+        public void cancel() {
+            segmentMem.jumpTo(rowStartOffset);
+            rowStartOffset = -1;
+        }
+
+        @Override
+        public void putBin(int index, long address, long len) {
+            segmentMem.putInt(index);
+            segmentMem.putBin(address, len);
+        }
+
+        @Override
+        public void putBin(int index, BinarySequence sequence) {
+            segmentMem.putInt(index);
+            segmentMem.putBin(sequence);
+        }
+
+        @Override
+        public void putBool(int index, boolean value) {
+            segmentMem.putInt(index);
+            segmentMem.putBool(value);
+        }
+
+        @Override
+        public void putByte(int index, byte value) {
+            segmentMem.putInt(index);
+            segmentMem.putByte(value);
+        }
+
+        @Override
+        public void putChar(int index, char value) {
+            segmentMem.putInt(index);
+            segmentMem.putChar(value);
+        }
+
+        @Override
+        public void putDate(int index, long value) {
+            putLong(index, value);
+        }
+
+        @Override
+        public void putDouble(int index, double value) {
+            segmentMem.putInt(index);
+            segmentMem.putDouble(value);
+        }
+
+        @Override
+        public void putFloat(int index, float value) {
+            segmentMem.putInt(index);
+            segmentMem.putFloat(value);
+        }
+
+        @Override
+        public void putInt(int index, int value) {
+            segmentMem.putInt(index);
+            segmentMem.putInt(value);
+        }
+
+        @Override
+        public void putLong(int index, long value) {
+            segmentMem.putInt(index);
+            segmentMem.putLong(value);
+        }
+
+        @Override
+        public void putLong256(int index, long l0, long l1, long l2, long l3) {
+            segmentMem.putInt(index);
+            segmentMem.putLong256(l0, l1, l2, l3);
+        }
+
+        @Override
+        public void putLong256(int index, Long256 value) {
+            segmentMem.putInt(index);
+            segmentMem.putLong256(value);
+        }
+
+        @Override
+        public void putLong256(int index, CharSequence hexString) {
+            segmentMem.putInt(index);
+            segmentMem.putLong256(hexString);
+        }
+
+        @Override
+        public void putLong256(int index, @NotNull CharSequence hexString, int start, int end) {
+            segmentMem.putInt(index);
+            segmentMem.putLong256(hexString, start, end);
+        }
+
+        @Override
+        public void putShort(int index, short value) {
+            segmentMem.putInt(index);
+            segmentMem.putShort(value);
+        }
+
+        @Override
+        public void putStr(int index, CharSequence value) {
+            segmentMem.putInt(index);
+            segmentMem.putStr(value);
+        }
+
+        @Override
+        public void putStr(int index, char value) {
+            segmentMem.putInt(index);
+            segmentMem.putStr(value);
+        }
+
+        @Override
+        public void putStr(int index, CharSequence value, int pos, int len) {
+            segmentMem.putInt(index);
+            segmentMem.putStr(value, pos, len);
+        }
+
+        @Override
+        public void putSym(int index, CharSequence value) {
+            // symbol keys belong to the table writer, log keeps the value
+            putStr(index, value);
+        }
+
+        @Override
+        public void putSym(int index, char value) {
+            putStr(index, value);
+        }
+
+        @Override
+        public void putSymIndex(int index, int symIndex) {
+            throw new UnsupportedOperationException("symbol keys are not known to WAL");
+        }
+
+        @Override
+        public void putTimestamp(int index, long value) {
+            putLong(index, value);
+        }
+
+        @Override
+        public void putTimestamp(int index, CharSequence value) {
+            long l;
+            try {
+                l = value != null ? IntervalUtils.parseFloorPartialDate(value) : Numbers.LONG_NaN;
+            } catch (NumericException e) {
+                throw CairoException.instance(0).put("Invalid timestamp: ").put(value);
+            }
+            putTimestamp(index, l);
+        }
+    }
+}
@@ -71,6 +71,9 @@ public class WriterPool extends AbstractPool {
     private final CharSequence root;
     @NotNull
     private final MessageBus messageBus;
+    @Nullable
+    private final GroupCommit groupCommit;
+    private final TableWriterMetrics metrics;
 
     /**
      * Pool constructor. WriterPool root directory is passed via configuration.
@@ -79,9 +82,39 @@ public class WriterPool extends AbstractPool {
      * @param messageBus    message bus instance to allow index tasks to be communicated to available threads.
      */
     public WriterPool(CairoConfiguration configuration, @NotNull MessageBus messageBus) {
+        this(configuration, messageBus, null);
+    }
+
+    /**
+     * Pool constructor. WriterPool root directory is passed via configuration.
+     *
+     * @param configuration configuration parameters.
+     * @param messageBus    message bus instance to allow index tasks to be communicated to available threads.
+     * @param groupCommit   coordinator of durable commits shared by writers of this pool, can be null.
+     */
+    public WriterPool(CairoConfiguration configuration, @NotNull MessageBus messageBus, @Nullable GroupCommit groupCommit) {
+        this(configuration, messageBus, groupCommit, null);
+    }
+
+    /**
+     * Pool constructor. WriterPool root directory is passed via configuration.
+     *
+     * @param configuration configuration parameters.
+     * @param messageBus    message bus instance to allow index tasks to be communicated to available threads.
+     * @param groupCommit   coordinator of durable commits shared by writers of this pool, can be null.
+     * @param metrics       O3 commit statistics shared by writers of this pool, can be null.
+     */
+    public WriterPool(
+            CairoConfiguration configuration,
+            @NotNull MessageBus messageBus,
+            @Nullable GroupCommit groupCommit,
+            @Nullable TableWriterMetrics metrics
+    ) {
         super(configuration, configuration.getInactiveWriterTTL());
         this.configuration = configuration;
         this.messageBus = messageBus;
+        this.groupCommit = groupCommit;
+        this.metrics = metrics;
         this.clock = configuration.getMicrosecondClock();
         this.root = configuration.getRoot();
         notifyListener(Thread.currentThread().getId(), null, PoolListener.EV_POOL_OPEN);
@@ -273,6 +306,8 @@ public class WriterPool extends AbstractPool {
                 assert writer == null && e.lockFd != -1;
                 LOG.info().$("created [table=`").utf8(name).$("`, thread=").$(thread).$(']').$();
                 writer = new TableWriter(configuration, name, messageBus, false, e, root);
+                writer.setGroupCommit(groupCommit);
+                writer.setMetrics(metrics);
             }
 
             if (writer == null) {
@@ -394,6 +429,8 @@ public class WriterPool extends AbstractPool {
             checkClosed();
             LOG.info().$("open [table=`").utf8(name).$("`, thread=").$(thread).$(']').$();
             e.writer = new TableWriter(configuration, name, messageBus, true, e, root);
+            e.writer.setGroupCommit(groupCommit);
+            e.writer.setMetrics(metrics);
             e.ownershipReason = lockReason;
             return logAndReturn(e, PoolListener.EV_CREATE);
         } catch (CairoException ex) {
@@ -130,6 +130,17 @@ public interface Function extends Closeable {
         return false;
     }
 
+    /**
+     * Function is read thread-safe when its getXXX() methods can be called concurrently
+     * from several threads, each thread supplying its own Record instance. Such functions
+     * must not mutate their state, e.g. reuse sinks or matchers, while computing values.
+     *
+     * @return true when function can be shared between worker threads
+     */
+    default boolean isReadThreadSafe() {
+        return false;
+    }
+
     // If function is constant for query, e.g. record independent
     // For example now() and bind variables are Runtime Constants
     default boolean isRuntimeConstant() {
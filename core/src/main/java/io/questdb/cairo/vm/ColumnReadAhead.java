@@ -0,0 +1,203 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cairo.vm;
+
+import io.questdb.MessageBus;
+import io.questdb.cairo.NullColumn;
+import io.questdb.cairo.TableReader;
+import io.questdb.cairo.TableReaderMetadata;
+import io.questdb.mp.RingQueue;
+import io.questdb.mp.Sequence;
+import io.questdb.std.IntList;
+import io.questdb.tasks.ColumnReadAheadTask;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+
+/**
+ * Asks background workers to bring column files into page cache ahead of a sequential scan.
+ * When scan enters a data frame, the frame's row range of every selected column is published
+ * to {@link io.questdb.cairo.ColumnReadAheadJob}, which touches only the pages that hold these
+ * rows. Publishing is best-effort, tasks are dropped when the queue is full.
+ * <p>
+ * Frame that reaches the boundary of its partition also publishes the head of the partition
+ * the scan moves to next, as many rows as the frame has, so that the scan does not stall on
+ * page faults when it crosses partitions. Direction of the scan is taken from the order in
+ * which partitions are entered. Rows that were read ahead this way are not published again
+ * when scan enters their frame.
+ * <p>
+ * Compressed columns are decoded by the reader when they are first accessed, their byte
+ * ranges do not follow rows. They are not read ahead for the frame being entered, decoding
+ * reads them anyway, but the whole compressed file of the next partition is.
+ * <p>
+ * Tasks are stamped with an epoch, which is advanced when cursor is re-initialised, rewound or
+ * closed. Workers stop touching pages of the tasks that belong to a past epoch.
+ * <p>
+ * The last partition is never read ahead, it is likely to be hot and the writer may truncate
+ * its files underneath the mapping.
+ */
+public class ColumnReadAhead implements Closeable {
+    private IntList columnIndexes;
+    private RingQueue<ColumnReadAheadTask> queue;
+    private Sequence pubSeq;
+    private TableReader reader;
+    private volatile int epoch;
+    private int lastPartitionIndex;
+    private boolean backward;
+    // rows of the partition published ahead of the scan
+    private int aheadPartitionIndex;
+    private long aheadRowLo;
+    private long aheadRowHi;
+
+    @Override
+    public void close() {
+        epoch++;
+        reader = null;
+        pubSeq = null;
+        queue = null;
+    }
+
+    public boolean isCurrent(int epoch) {
+        return this.epoch == epoch;
+    }
+
+    public void of(@Nullable MessageBus messageBus, TableReader reader, IntList columnIndexes) {
+        if (messageBus != null && messageBus.getConfiguration().isColumnReadAheadEnabled()) {
+            this.queue = messageBus.getColumnReadAheadQueue();
+            this.pubSeq = messageBus.getColumnReadAheadPubSeq();
+        } else {
+            this.queue = null;
+            this.pubSeq = null;
+        }
+        this.reader = reader;
+        this.columnIndexes = columnIndexes;
+        toTop();
+    }
+
+    public void onFrame(int partitionIndex, long rowLo, long rowHi) {
+        if (pubSeq == null || rowLo >= rowHi) {
+            return;
+        }
+
+        final int partitionCount = reader.getPartitionCount();
+        if (partitionIndex != lastPartitionIndex) {
+            // the last partition can only be followed by earlier ones
+            backward = lastPartitionIndex == -1 ? partitionIndex == partitionCount - 1 : partitionIndex < lastPartitionIndex;
+            lastPartitionIndex = partitionIndex;
+        }
+
+        if (partitionIndex < partitionCount - 1) {
+            long lo = rowLo;
+            long hi = rowHi;
+            if (partitionIndex == aheadPartitionIndex) {
+                if (aheadRowLo <= lo && lo < aheadRowHi) {
+                    lo = aheadRowHi;
+                } else if (aheadRowLo < hi && hi <= aheadRowHi) {
+                    hi = aheadRowLo;
+                }
+            }
+            if (lo < hi && !publish(partitionIndex, lo, hi, false)) {
+                return;
+            }
+        }
+
+        final long frameRowCount = rowHi - rowLo;
+        if (backward) {
+            final int nextPartitionIndex = partitionIndex - 1;
+            if (rowLo == 0 && nextPartitionIndex > -1 && nextPartitionIndex != aheadPartitionIndex) {
+                final long size = reader.openPartition(nextPartitionIndex);
+                publishAhead(nextPartitionIndex, Math.max(size - frameRowCount, 0), size);
+            }
+        } else {
+            final int nextPartitionIndex = partitionIndex + 1;
+            if (nextPartitionIndex < partitionCount - 1 && nextPartitionIndex != aheadPartitionIndex && rowHi >= reader.openPartition(partitionIndex)) {
+                final long size = reader.openPartition(nextPartitionIndex);
+                publishAhead(nextPartitionIndex, 0, Math.min(frameRowCount, size));
+            }
+        }
+    }
+
+    public void toTop() {
+        epoch++;
+        lastPartitionIndex = -1;
+        backward = false;
+        aheadPartitionIndex = -1;
+    }
+
+    private boolean publish(int partitionIndex, long rowLo, long rowHi, boolean ahead) {
+        final TableReaderMetadata metadata = reader.getMetadata();
+        final int columnBase = reader.getColumnBase(partitionIndex);
+        for (int i = 0, n = columnIndexes.size(); i < n; i++) {
+            final int columnIndex = columnIndexes.getQuick(i);
+            // column files start at column top, partitions that predate the column have no files
+            final long columnTop = reader.getColumnTop(columnBase, columnIndex);
+            final ReadOnlyVirtualMemory column = reader.getColumn(TableReader.getPrimaryColumnIndex(columnBase, columnIndex));
+            if (rowHi <= columnTop || column == NullColumn.INSTANCE) {
+                continue;
+            }
+            final boolean compressed = column instanceof CompressedColumnReadOnlyMemory;
+            if (compressed && !ahead) {
+                continue;
+            }
+
+            long cursor;
+            //noinspection StatementWithEmptyBody
+            while ((cursor = pubSeq.next()) == -2) {
+            }
+
+            if (cursor < 0) {
+                return false;
+            }
+
+            try {
+                final ColumnReadAheadTask task = queue.get(cursor);
+                task.getPartitionPath().clear();
+                reader.putPartitionPath(partitionIndex, task.getPartitionPath());
+                task.of(
+                        metadata.getColumnName(columnIndex),
+                        metadata.getColumnType(columnIndex),
+                        Math.max(rowLo - columnTop, 0),
+                        rowHi - columnTop,
+                        compressed,
+                        this,
+                        epoch
+                );
+            } finally {
+                pubSeq.done(cursor);
+            }
+        }
+        return true;
+    }
+
+    private void publishAhead(int partitionIndex, long rowLo, long rowHi) {
+        if (rowLo < rowHi) {
+            aheadPartitionIndex = partitionIndex;
+            aheadRowLo = rowLo;
+            aheadRowHi = rowHi;
+            publish(partitionIndex, rowLo, rowHi, true);
+        }
+    }
+}
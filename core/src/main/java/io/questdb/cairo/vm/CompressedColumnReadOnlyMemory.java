@@ -0,0 +1,207 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cairo.vm;
+
+import io.questdb.cairo.CairoException;
+import io.questdb.cairo.ColumnCompression;
+import io.questdb.cairo.TableUtils;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.*;
+import io.questdb.std.str.LPSZ;
+
+/**
+ * Read-only view of compressed (.z) column file. File is mapped on open, but it is decoded
+ * into a native buffer only when column data is first accessed, so that partitions that are
+ * opened and not read do not hold decoded memory. The buffer is freed by {@link #release()},
+ * the next access decodes the column again.
+ * <p>
+ * Page frames hand buffer addresses to other threads and keep them after the cursor moved
+ * on. Holders of such addresses {@link #pin()} the column, {@link #release()} of pinned
+ * column is deferred until the last {@link #unpin()}. Decoding is synchronized, concurrent
+ * first access decodes the column once.
+ */
+public class CompressedColumnReadOnlyMemory extends SinglePageMappedReadOnlyPageMemory {
+    private static final Log LOG = LogFactory.getLog(CompressedColumnReadOnlyMemory.class);
+    private volatile long buffer = 0;
+    private int pinCount = 0;
+    private boolean releasePending = false;
+    private long fileAddr = 0;
+    private long fileSize = 0;
+    private int codec;
+    private long valueCount;
+
+    public CompressedColumnReadOnlyMemory(FilesFacade ff, LPSZ name) {
+        of(ff, name, 0);
+    }
+
+    @Override
+    public long addressOf(long offset) {
+        if (buffer == 0) {
+            decode();
+        }
+        return super.addressOf(offset);
+    }
+
+    @Override
+    public synchronized void close() {
+        pinCount = 0;
+        free();
+        closeFile();
+    }
+
+    @Override
+    public long getPageAddress(int pageIndex) {
+        if (buffer == 0) {
+            decode();
+        }
+        return super.getPageAddress(pageIndex);
+    }
+
+    @Override
+    public void of(FilesFacade ff, LPSZ name, long pageSize, long size) {
+        of(ff, name, pageSize);
+    }
+
+    @Override
+    public void of(FilesFacade ff, LPSZ name, long pageSize) {
+        close();
+        this.ff = ff;
+        this.fd = TableUtils.openRO(ff, name, LOG);
+        map(name);
+    }
+
+    @Override
+    public void of(FilesFacade ff, long fd, LPSZ name, long size) {
+        close();
+        this.ff = ff;
+        this.fd = fd;
+        if (fd != -1) {
+            map(name);
+        }
+    }
+
+    @Override
+    public void grow(long newSize) {
+        // column is fully decoded, there is nothing to map
+    }
+
+    @Override
+    public void growToFileSize() {
+    }
+
+    public boolean isDecoded() {
+        return buffer != 0;
+    }
+
+    /**
+     * Decodes column when it is not decoded yet and keeps decoded data until matching
+     * {@link #unpin()}.
+     */
+    public synchronized void pin() {
+        decode();
+        pinCount++;
+    }
+
+    /**
+     * Frees decoded column data, file stays open and mapped. When column is pinned data is
+     * freed by the last {@link #unpin()}.
+     */
+    public synchronized void release() {
+        if (pinCount > 0) {
+            releasePending = true;
+        } else {
+            free();
+        }
+    }
+
+    public synchronized void unpin() {
+        assert pinCount > 0;
+        if (--pinCount == 0 && releasePending) {
+            free();
+        }
+    }
+
+    private void closeFile() {
+        if (fileAddr != 0) {
+            ff.munmap(fileAddr, fileSize);
+            fileAddr = 0;
+            fileSize = 0;
+        }
+        if (fd != -1) {
+            ff.close(fd);
+            LOG.debug().$("closed [fd=").$(fd).$(']').$();
+            fd = -1;
+        }
+        size = 0;
+    }
+
+    private synchronized void decode() {
+        if (buffer != 0 || size == 0) {
+            return;
+        }
+        final long buffer = Unsafe.malloc(size);
+        ColumnCodecs.decode(codec, fileAddr + ColumnCompression.PAYLOAD_OFFSET, valueCount, buffer);
+        absolutePointer = buffer;
+        // volatile write publishes fully decoded data
+        this.buffer = buffer;
+        LOG.debug().$("decoded [fd=").$(fd).$(", compressedSize=").$(fileSize).$(", size=").$(size).$(']').$();
+    }
+
+    private void free() {
+        releasePending = false;
+        if (buffer != 0) {
+            Unsafe.free(buffer, size);
+            buffer = 0;
+            absolutePointer = 0;
+            LOG.debug().$("released [fd=").$(fd).$(", size=").$(size).$(']').$();
+        }
+    }
+
+    private void map(LPSZ name) {
+        final long fileSize = ff.length(fd);
+        final long addr = ff.mmap(fd, fileSize, 0, Files.MAP_RO);
+        if (addr == FilesFacade.MAP_FAILED) {
+            final long fd = this.fd;
+            close();
+            throw CairoException.instance(ff.errno())
+                    .put("Could not mmap ").put(name)
+                    .put(" [size=").put(fileSize)
+                    .put(", fd=").put(fd)
+                    .put(']');
+        }
+        this.fileAddr = addr;
+        this.fileSize = fileSize;
+        try {
+            this.codec = ColumnCompression.readCodec(addr, fileSize, name);
+        } catch (CairoException e) {
+            close();
+            throw e;
+        }
+        this.valueCount = Unsafe.getUnsafe().getLong(addr + ColumnCompression.HEADER_OFFSET_VALUE_COUNT);
+        this.size = valueCount << ColumnCodecs.getValueSizePow2(codec);
+    }
+}
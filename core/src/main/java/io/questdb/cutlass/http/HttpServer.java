@@ -28,11 +28,15 @@ import io.questdb.MessageBus;
 import io.questdb.WorkerPoolAwareConfiguration;
 import io.questdb.cairo.CairoEngine;
 import io.questdb.cairo.ColumnIndexerJob;
+import io.questdb.cairo.ColumnReadAheadJob;
 import io.questdb.cairo.TableBlockWriter.TableBlockWriterJob;
 import io.questdb.cutlass.http.processors.*;
 import io.questdb.griffin.FunctionFactoryCache;
+import io.questdb.griffin.engine.groupby.PageFrameGroupByJob;
 import io.questdb.griffin.engine.groupby.vect.GroupByJob;
+import io.questdb.griffin.engine.join.PageFrameHashJoinJob;
 import io.questdb.griffin.engine.table.LatestByAllIndexedJob;
+import io.questdb.griffin.engine.table.PageFrameFilterJob;
 import io.questdb.log.Log;
 import io.questdb.log.LogFactory;
 import io.questdb.Metrics;
@@ -189,6 +193,10 @@ public class HttpServer implements Closeable {
         workerPool.assign(new GroupByJob(messageBus));
         workerPool.assign(new TableBlockWriterJob(messageBus));
         workerPool.assign(new LatestByAllIndexedJob(messageBus));
+        workerPool.assign(new PageFrameFilterJob(messageBus));
+        workerPool.assign(new PageFrameGroupByJob(messageBus));
+        workerPool.assign(new PageFrameHashJoinJob(messageBus));
+        workerPool.assign(new ColumnReadAheadJob(messageBus));
     }
 
     @Nullable
@@ -0,0 +1,350 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cutlass.line.tcp;
+
+import io.questdb.cairo.vm.ContiguousVirtualMemory;
+import io.questdb.cutlass.line.tcp.NewLineProtoParser.ParseResult;
+import io.questdb.cutlass.line.tcp.NewLineProtoParser.ProtoEntity;
+import io.questdb.std.IntList;
+import io.questdb.std.LongList;
+import io.questdb.std.Misc;
+import io.questdb.std.Unsafe;
+
+import java.io.Closeable;
+
+/**
+ * Binary variant of line protocol. Connection that starts with {@link #MAGIC} and {@link #VERSION}
+ * sends frames instead of text lines. Numbers are little endian.
+ * <pre>
+ * symbol frame: byte 1, int length, UTF8 bytes
+ *               symbol takes the next id of connection dictionary, ids start with 0
+ * batch frame:  byte 2, int table name length, UTF8 bytes, int column count,
+ *               column count * (byte entity type, int name length, UTF8 bytes),
+ *               int row count, row count * row
+ * row:          long timestamp in micros, Long.MIN_VALUE for server time,
+ *               value of each column of the batch in order
+ * </pre>
+ * Values by entity type:
+ * <pre>
+ * TAG      int symbol id, -1 when absent
+ * FLOAT    double
+ * INTEGER  long, Long.MIN_VALUE when absent
+ * STRING   int length, -1 when absent, UTF8 bytes
+ * BOOLEAN  byte, 0 or 1
+ * LONG256  int length, -1 when absent, hex digits prefixed with 0x
+ * </pre>
+ * Decoded rows are exposed via {@link NewLineProtoParser} so that they are scheduled to writers
+ * in the same way as text measurements. Rows are decoded in place, row that is complete in the buffer
+ * is decoded again until {@link #startNextMeasurement()} is called.
+ */
+public class BinaryLineProtoParser implements Closeable {
+    // "\0ILB", text line cannot start with zero byte
+    public static final int MAGIC = 0x424c4900;
+    public static final byte VERSION = 1;
+    public static final int HEADER_SIZE = Integer.BYTES + Byte.BYTES;
+    public static final byte FRAME_SYMBOL = 1;
+    public static final byte FRAME_BATCH = 2;
+    public static final int ABSENT_LENGTH = -1;
+    public static final int ABSENT_SYMBOL = -1;
+    private static final long PAGE_SIZE = 4096;
+    private final NewLineProtoParser protoParser;
+    private final long maxSymbolDictionarySize;
+    // UTF8 values of connection symbols and lo, hi offsets of each symbol
+    private final ContiguousVirtualMemory symbolMem = new ContiguousVirtualMemory(PAGE_SIZE, Integer.MAX_VALUE);
+    private final LongList symbolOffsets = new LongList();
+    // table name followed by column names of current batch, lo, hi offsets of each column name
+    private final ContiguousVirtualMemory batchMem = new ContiguousVirtualMemory(PAGE_SIZE, Integer.MAX_VALUE);
+    private final LongList columnNameOffsets = new LongList();
+    private final IntList columnTypes = new IntList();
+    private int tableNameLen;
+    private int rowsRemaining;
+    private long bufAt;
+    private long rowHi;
+    private ErrorCode errorCode;
+
+    public BinaryLineProtoParser(NewLineProtoParser protoParser, long maxSymbolDictionarySize) {
+        this.protoParser = protoParser;
+        this.maxSymbolDictionarySize = maxSymbolDictionarySize;
+    }
+
+    public static boolean isHeader(long address) {
+        return Unsafe.getUnsafe().getInt(address) == MAGIC && Unsafe.getUnsafe().getByte(address + Integer.BYTES) == VERSION;
+    }
+
+    public static boolean isHeaderStart(long address) {
+        return Unsafe.getUnsafe().getByte(address) == (byte) MAGIC;
+    }
+
+    public void clear() {
+        symbolMem.jumpTo(0);
+        symbolOffsets.clear();
+        batchMem.jumpTo(0);
+        columnNameOffsets.clear();
+        columnTypes.clear();
+        tableNameLen = 0;
+        rowsRemaining = 0;
+        errorCode = null;
+    }
+
+    @Override
+    public void close() {
+        Misc.free(symbolMem);
+        Misc.free(batchMem);
+    }
+
+    public long getBufferAddress() {
+        return bufAt;
+    }
+
+    public ErrorCode getErrorCode() {
+        return errorCode;
+    }
+
+    public BinaryLineProtoParser of(long bufLo) {
+        bufAt = bufLo;
+        return this;
+    }
+
+    public ParseResult parseMeasurement(long bufHi) {
+        while (rowsRemaining == 0) {
+            if (bufAt >= bufHi) {
+                return ParseResult.BUFFER_UNDERFLOW;
+            }
+            final byte frameType = Unsafe.getUnsafe().getByte(bufAt);
+            final ParseResult rc;
+            switch (frameType) {
+                case FRAME_SYMBOL:
+                    rc = parseSymbol(bufHi);
+                    break;
+                case FRAME_BATCH:
+                    rc = parseBatch(bufHi);
+                    break;
+                default:
+                    errorCode = ErrorCode.INVALID_FRAME_TYPE;
+                    return ParseResult.ERROR;
+            }
+            if (rc != null) {
+                return rc;
+            }
+        }
+        return parseRow(bufHi);
+    }
+
+    public void shl(long shl) {
+        bufAt -= shl;
+    }
+
+    public void startNextMeasurement() {
+        assert rowsRemaining > 0;
+        bufAt = rowHi;
+        rowsRemaining--;
+    }
+
+    // returns null when frame is consumed
+    private ParseResult parseBatch(long bufHi) {
+        long p = bufAt + Byte.BYTES;
+        if (p + Integer.BYTES > bufHi) {
+            return ParseResult.BUFFER_UNDERFLOW;
+        }
+        final int nameLen = Unsafe.getUnsafe().getInt(p);
+        p += Integer.BYTES;
+        if (nameLen <= 0) {
+            errorCode = ErrorCode.INVALID_LENGTH;
+            return ParseResult.ERROR;
+        }
+        if (p + nameLen + Integer.BYTES > bufHi) {
+            return ParseResult.BUFFER_UNDERFLOW;
+        }
+        batchMem.jumpTo(0);
+        batchMem.putBlockOfBytes(p, nameLen);
+        p += nameLen;
+        final int columnCount = Unsafe.getUnsafe().getInt(p);
+        p += Integer.BYTES;
+        if (columnCount < 0) {
+            errorCode = ErrorCode.INVALID_LENGTH;
+            return ParseResult.ERROR;
+        }
+
+        columnNameOffsets.clear();
+        columnTypes.clear();
+        for (int i = 0; i < columnCount; i++) {
+            if (p + Byte.BYTES + Integer.BYTES > bufHi) {
+                return ParseResult.BUFFER_UNDERFLOW;
+            }
+            final byte type = Unsafe.getUnsafe().getByte(p);
+            p += Byte.BYTES;
+            if (type < NewLineProtoParser.ENTITY_TYPE_TAG || type > NewLineProtoParser.ENTITY_TYPE_LONG256) {
+                errorCode = ErrorCode.INVALID_COLUMN_TYPE;
+                return ParseResult.ERROR;
+            }
+            final int len = Unsafe.getUnsafe().getInt(p);
+            p += Integer.BYTES;
+            if (len <= 0) {
+                errorCode = ErrorCode.INVALID_LENGTH;
+                return ParseResult.ERROR;
+            }
+            if (p + len > bufHi) {
+                return ParseResult.BUFFER_UNDERFLOW;
+            }
+            final long offset = batchMem.getAppendOffset();
+            batchMem.putBlockOfBytes(p, len);
+            p += len;
+            columnNameOffsets.add(offset);
+            columnNameOffsets.add(offset + len);
+            columnTypes.add(type);
+        }
+
+        if (p + Integer.BYTES > bufHi) {
+            return ParseResult.BUFFER_UNDERFLOW;
+        }
+        final int rowCount = Unsafe.getUnsafe().getInt(p);
+        p += Integer.BYTES;
+        if (rowCount < 0) {
+            errorCode = ErrorCode.INVALID_LENGTH;
+            return ParseResult.ERROR;
+        }
+        tableNameLen = nameLen;
+        rowsRemaining = rowCount;
+        bufAt = p;
+        return null;
+    }
+
+    private ParseResult parseRow(long bufHi) {
+        long p = bufAt;
+        if (p + Long.BYTES > bufHi) {
+            return ParseResult.BUFFER_UNDERFLOW;
+        }
+        final long tableNameLo = batchMem.addressOf(0);
+        protoParser.startBinaryMeasurement(tableNameLo, tableNameLo + tableNameLen, Unsafe.getUnsafe().getLong(p));
+        p += Long.BYTES;
+
+        for (int i = 0, n = columnTypes.size(); i < n; i++) {
+            final byte type = (byte) columnTypes.getQuick(i);
+            final long nameLo = batchMem.addressOf(columnNameOffsets.getQuick(2 * i));
+            final long nameHi = batchMem.addressOf(columnNameOffsets.getQuick(2 * i + 1));
+            switch (type) {
+                case NewLineProtoParser.ENTITY_TYPE_TAG: {
+                    if (p + Integer.BYTES > bufHi) {
+                        return ParseResult.BUFFER_UNDERFLOW;
+                    }
+                    final int id = Unsafe.getUnsafe().getInt(p);
+                    p += Integer.BYTES;
+                    if (id != ABSENT_SYMBOL) {
+                        if (id < 0 || 2 * id >= symbolOffsets.size()) {
+                            errorCode = ErrorCode.UNKNOWN_SYMBOL;
+                            return ParseResult.ERROR;
+                        }
+                        protoParser.addBinaryEntity(nameLo, nameHi, type).setValue(
+                                symbolMem.addressOf(symbolOffsets.getQuick(2 * id)),
+                                symbolMem.addressOf(symbolOffsets.getQuick(2 * id + 1))
+                        );
+                    }
+                    break;
+                }
+                case NewLineProtoParser.ENTITY_TYPE_FLOAT:
+                    if (p + Double.BYTES > bufHi) {
+                        return ParseResult.BUFFER_UNDERFLOW;
+                    }
+                    protoParser.addBinaryEntity(nameLo, nameHi, type).setFloatValue(Unsafe.getUnsafe().getDouble(p));
+                    p += Double.BYTES;
+                    break;
+                case NewLineProtoParser.ENTITY_TYPE_INTEGER: {
+                    if (p + Long.BYTES > bufHi) {
+                        return ParseResult.BUFFER_UNDERFLOW;
+                    }
+                    final long value = Unsafe.getUnsafe().getLong(p);
+                    p += Long.BYTES;
+                    if (value != Long.MIN_VALUE) {
+                        protoParser.addBinaryEntity(nameLo, nameHi, type).setIntegerValue(value);
+                    }
+                    break;
+                }
+                case NewLineProtoParser.ENTITY_TYPE_BOOLEAN:
+                    if (p + Byte.BYTES > bufHi) {
+                        return ParseResult.BUFFER_UNDERFLOW;
+                    }
+                    protoParser.addBinaryEntity(nameLo, nameHi, type).setBooleanValue(Unsafe.getUnsafe().getByte(p) == 1);
+                    p += Byte.BYTES;
+                    break;
+                default: {
+                    // STRING and LONG256
+                    if (p + Integer.BYTES > bufHi) {
+                        return ParseResult.BUFFER_UNDERFLOW;
+                    }
+                    final int len = Unsafe.getUnsafe().getInt(p);
+                    p += Integer.BYTES;
+                    if (len == ABSENT_LENGTH) {
+                        break;
+                    }
+                    if (len < 0) {
+                        errorCode = ErrorCode.INVALID_LENGTH;
+                        return ParseResult.ERROR;
+                    }
+                    if (p + len > bufHi) {
+                        return ParseResult.BUFFER_UNDERFLOW;
+                    }
+                    protoParser.addBinaryEntity(nameLo, nameHi, type).setValue(p, p + len);
+                    p += len;
+                    break;
+                }
+            }
+        }
+        rowHi = p;
+        return ParseResult.MEASUREMENT_COMPLETE;
+    }
+
+    // returns null when frame is consumed
+    private ParseResult parseSymbol(long bufHi) {
+        long p = bufAt + Byte.BYTES;
+        if (p + Integer.BYTES > bufHi) {
+            return ParseResult.BUFFER_UNDERFLOW;
+        }
+        final int len = Unsafe.getUnsafe().getInt(p);
+        p += Integer.BYTES;
+        if (len < 0) {
+            errorCode = ErrorCode.INVALID_LENGTH;
+            return ParseResult.ERROR;
+        }
+        if (p + len > bufHi) {
+            return ParseResult.BUFFER_UNDERFLOW;
+        }
+        final long offset = symbolMem.getAppendOffset();
+        // offsets of each symbol count towards the limit, empty symbols are not free
+        if (offset + len + (symbolOffsets.size() + 2L) * Long.BYTES > maxSymbolDictionarySize) {
+            errorCode = ErrorCode.SYMBOL_DICTIONARY_FULL;
+            return ParseResult.ERROR;
+        }
+        symbolMem.putBlockOfBytes(p, len);
+        symbolOffsets.add(offset);
+        symbolOffsets.add(offset + len);
+        bufAt = p + len;
+        return null;
+    }
+
+    public enum ErrorCode {
+        INVALID_FRAME_TYPE, INVALID_COLUMN_TYPE, INVALID_LENGTH, UNKNOWN_SYMBOL, SYMBOL_DICTIONARY_FULL
+    }
+}
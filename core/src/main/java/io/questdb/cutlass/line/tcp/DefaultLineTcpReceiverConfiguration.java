@@ -72,11 +72,21 @@ public class DefaultLineTcpReceiverConfiguration implements LineTcpReceiverConfi
         return 2048;
     }
 
+    @Override
+    public int getMaxBinarySymbolDictionarySize() {
+        return 1024 * 1024;
+    }
+
     @Override
     public int getMaxMeasurementSize() {
         return 512;
     }
 
+    @Override
+    public int getMaxSymbolLookupSize() {
+        return 256 * 1024;
+    }
+
     @Override
     public NetworkFacade getNetworkFacade() {
         return NetworkFacadeImpl.INSTANCE;
@@ -87,6 +97,11 @@ public class DefaultLineTcpReceiverConfiguration implements LineTcpReceiverConfi
         return 64;
     }
 
+    @Override
+    public int getWriterQueueEventSize() {
+        return 16 * 1024;
+    }
+
     @Override
     public MicrosecondClock getMicrosecondClock() {
         return MicrosecondClockImpl.INSTANCE;
@@ -117,6 +132,11 @@ public class DefaultLineTcpReceiverConfiguration implements LineTcpReceiverConfi
         return 1.1;
     }
 
+    @Override
+    public int getTableStealThreshold() {
+        return 1000;
+    }
+
     @Override
     public long getMaintenanceInterval() {
         return 100;
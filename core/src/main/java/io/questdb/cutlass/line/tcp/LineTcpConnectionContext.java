@@ -41,11 +41,15 @@ import io.questdb.std.str.FloatingDirectCharSink;
 class LineTcpConnectionContext implements IOContext, Mutable {
     private static final Log LOG = LogFactory.getLog(LineTcpConnectionContext.class);
     private static final long QUEUE_FULL_LOG_HYSTERESIS_IN_MS = 10_000;
+    private static final byte PROTOCOL_UNKNOWN = 0;
+    private static final byte PROTOCOL_TEXT = 1;
+    private static final byte PROTOCOL_BINARY = 2;
     protected final NetworkFacade nf;
     private final LineTcpMeasurementScheduler scheduler;
     private final MillisecondClock milliClock;
     private final DirectByteCharSequence byteCharSequence = new DirectByteCharSequence();
     private final NewLineProtoParser protoParser = new NewLineProtoParser();
+    private final BinaryLineProtoParser binaryParser;
     private final FloatingDirectCharSink charSink = new FloatingDirectCharSink();
     protected long fd;
     protected IODispatcher<LineTcpConnectionContext> dispatcher;
@@ -56,11 +60,14 @@ class LineTcpConnectionContext implements IOContext, Mutable {
     protected long recvBufStartOfMeasurement;
     private long lastQueueFullLogMillis = 0;
     private boolean goodMeasurement;
+    // protocol is chosen by the first bytes client sends
+    private byte protocol;
 
     LineTcpConnectionContext(LineTcpReceiverConfiguration configuration, LineTcpMeasurementScheduler scheduler) {
         nf = configuration.getNetworkFacade();
         this.scheduler = scheduler;
         this.milliClock = configuration.getMillisecondClock();
+        this.binaryParser = new BinaryLineProtoParser(protoParser, configuration.getMaxBinarySymbolDictionarySize());
         recvBufStart = Unsafe.malloc(configuration.getNetMsgBufferSize());
         recvBufEnd = recvBufStart + configuration.getNetMsgBufferSize();
         clear();
@@ -70,6 +77,8 @@ class LineTcpConnectionContext implements IOContext, Mutable {
     public void clear() {
         recvBufPos = recvBufStart;
         peerDisconnected = false;
+        protocol = PROTOCOL_UNKNOWN;
+        binaryParser.clear();
         resetParser();
     }
 
@@ -79,6 +88,7 @@ class LineTcpConnectionContext implements IOContext, Mutable {
         Unsafe.free(recvBufStart, recvBufEnd - recvBufStart);
         recvBufStart = recvBufEnd = recvBufPos = 0;
         protoParser.close();
+        binaryParser.close();
         charSink.close();
     }
 
@@ -123,7 +133,11 @@ class LineTcpConnectionContext implements IOContext, Mutable {
             if (len > 0) {
                 Vect.memcpy(recvBufStartOfMeasurement, recvBufStart, len);
                 final long shl = recvBufStartOfMeasurement - recvBufStart;
-                protoParser.shl(shl);
+                if (protocol == PROTOCOL_BINARY) {
+                    binaryParser.shl(shl);
+                } else {
+                    protoParser.shl(shl);
+                }
                 this.recvBufStartOfMeasurement -= shl;
             } else {
                 assert len == 0;
@@ -164,6 +178,99 @@ class LineTcpConnectionContext implements IOContext, Mutable {
     }
 
     protected final IOContextResult parseMeasurements(NetworkIOJob netIoJob) {
+        try {
+            switch (protocol) {
+                case PROTOCOL_TEXT:
+                    return parseTextMeasurements(netIoJob);
+                case PROTOCOL_BINARY:
+                    return parseBinaryMeasurements(netIoJob);
+                default:
+                    return negotiateProtocol(netIoJob);
+            }
+        } finally {
+            scheduler.commitMeasurementBatch(netIoJob);
+        }
+    }
+
+    private IOContextResult negotiateProtocol(NetworkIOJob netIoJob) {
+        while (true) {
+            final long len = recvBufPos - recvBufStart;
+            if (len > 0 && !BinaryLineProtoParser.isHeaderStart(recvBufStart)) {
+                protocol = PROTOCOL_TEXT;
+                return parseTextMeasurements(netIoJob);
+            }
+
+            if (len >= BinaryLineProtoParser.HEADER_SIZE) {
+                if (!BinaryLineProtoParser.isHeader(recvBufStart)) {
+                    LOG.error().$('[').$(fd).$("] invalid binary line protocol header").$();
+                    return IOContextResult.NEEDS_DISCONNECT;
+                }
+                LOG.info().$('[').$(fd).$("] binary line protocol").$();
+                protocol = PROTOCOL_BINARY;
+                recvBufStartOfMeasurement = recvBufStart + BinaryLineProtoParser.HEADER_SIZE;
+                binaryParser.of(recvBufStartOfMeasurement);
+                return parseBinaryMeasurements(netIoJob);
+            }
+
+            if (!read()) {
+                if (peerDisconnected) {
+                    return IOContextResult.NEEDS_DISCONNECT;
+                }
+                return IOContextResult.NEEDS_READ;
+            }
+        }
+    }
+
+    private IOContextResult parseBinaryMeasurements(NetworkIOJob netIoJob) {
+        while (true) {
+            try {
+                switch (binaryParser.parseMeasurement(recvBufPos)) {
+                    case MEASUREMENT_COMPLETE:
+                        if (scheduler.tryButCouldNotCommit(netIoJob, protoParser, charSink)) {
+                            if (checkQueueFullLogHysteresis()) {
+                                LOG.debug().$('[').$(fd).$("] queue full").$();
+                            }
+                            return IOContextResult.QUEUE_FULL;
+                        }
+                        binaryParser.startNextMeasurement();
+                        recvBufStartOfMeasurement = binaryParser.getBufferAddress();
+                        if (recvBufStartOfMeasurement == recvBufPos) {
+                            recvBufPos = recvBufStart;
+                            resetParser();
+                        }
+                        continue;
+
+                    case ERROR:
+                        // frames cannot be skipped without knowing their layout
+                        LOG.error().$('[').$(fd).$("] could not parse binary line protocol, code ").$(binaryParser.getErrorCode())
+                                .$(" at ").$(binaryParser.getBufferAddress() - recvBufStart).$();
+                        return IOContextResult.NEEDS_DISCONNECT;
+
+                    case BUFFER_UNDERFLOW: {
+                        // symbol and batch frames that have been consumed need not be kept in the buffer
+                        recvBufStartOfMeasurement = binaryParser.getBufferAddress();
+                        if (recvBufPos == recvBufEnd && !compactBuffer(recvBufStartOfMeasurement)) {
+                            LOG.error().$('[').$(fd).$("] buffer overflow [msgBufferSize=").$(recvBufEnd - recvBufStart).$(']').$();
+                            return IOContextResult.NEEDS_DISCONNECT;
+                        }
+
+                        if (!read()) {
+                            if (peerDisconnected) {
+                                return IOContextResult.NEEDS_DISCONNECT;
+                            }
+                            return IOContextResult.NEEDS_READ;
+                        }
+                        break;
+                    }
+                }
+            } catch (RuntimeException ex) {
+                LOG.error().$('[').$(fd).$("] could not process line data").$(ex).$();
+                return IOContextResult.NEEDS_DISCONNECT;
+            }
+        }
+    }
+
+    private IOContextResult parseTextMeasurements(NetworkIOJob netIoJob) {
         while (true) {
             try {
                 ParseResult rc = goodMeasurement ? protoParser.parseMeasurement(recvBufPos) : protoParser.skipMeasurement(recvBufPos);
@@ -237,6 +344,9 @@ class LineTcpConnectionContext implements IOContext, Mutable {
     }
 
     protected void resetParser() {
+        if (protocol == PROTOCOL_BINARY) {
+            binaryParser.of(recvBufStart);
+        }
         protoParser.of(recvBufStart);
         goodMeasurement = true;
         recvBufStartOfMeasurement = recvBufStart;
@@ -41,6 +41,7 @@ import io.questdb.network.IORequestProcessor;
 import io.questdb.std.*;
 import io.questdb.std.datetime.microtime.MicrosecondClock;
 import io.questdb.std.datetime.millitime.MillisecondClock;
+import io.questdb.std.str.CharSink;
 import io.questdb.std.str.DirectCharSink;
 import io.questdb.std.str.FloatingDirectCharSink;
 import io.questdb.std.str.Path;
@@ -49,6 +50,7 @@ import org.jetbrains.annotations.NotNull;
 
 import java.io.Closeable;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
 
 import static io.questdb.network.IODispatcher.DISCONNECT_REASON_UNKNOWN_OPERATION;
@@ -61,6 +63,7 @@ class LineTcpMeasurementScheduler implements Closeable {
     // queue incomplete
     private static final int RELEASE_WRITER_EVENT_ID = -3;
     private static final int[] DEFAULT_COLUMN_TYPES = new int[NewLineProtoParser.N_ENTITY_TYPES];
+    private static final SymbolLookup[] EMPTY_SYMBOL_LOOKUPS = new SymbolLookup[0];
     private final CairoEngine engine;
     private final CairoSecurityContext securityContext;
     private final CairoConfiguration cairoConfiguration;
@@ -75,13 +78,19 @@ class LineTcpMeasurementScheduler implements Closeable {
     private final long maintenanceInterval;
     private final long writerIdleTimeout;
     private final int defaultPartitionBy;
+    private final int maxSymbolLookupSize;
+    private final int tableStealThreshold;
+    private final LineTcpMetrics metrics;
     private final NetworkIOJob[] netIoJobs;
+    // queue sequence of the event each network IO thread packs measurements into, -1 when there is none
+    private final long[] batchSeqByWorker;
     private final TableStructureAdapter tableStructureAdapter = new TableStructureAdapter();
     private final Path path = new Path();
     private final AppendOnlyVirtualMemory mem = new AppendOnlyVirtualMemory();
     private Sequence pubSeq;
     private int nLoadCheckCycles = 0;
     private int nRebalances = 0;
+    private int nSteals = 0;
 
     LineTcpMeasurementScheduler(
             LineTcpReceiverConfiguration lineConfiguration,
@@ -94,8 +103,11 @@ class LineTcpMeasurementScheduler implements Closeable {
         this.securityContext = lineConfiguration.getCairoSecurityContext();
         this.cairoConfiguration = engine.getConfiguration();
         this.milliClock = cairoConfiguration.getMillisecondClock();
+        this.metrics = engine.getMetrics().lineTcp();
 
         this.netIoJobs = new NetworkIOJob[ioWorkerPool.getWorkerCount()];
+        this.batchSeqByWorker = new long[ioWorkerPool.getWorkerCount()];
+        Arrays.fill(batchSeqByWorker, -1);
         for (int i = 0; i < ioWorkerPool.getWorkerCount(); i++) {
             NetworkIOJob netIoJob = createNetworkIOJob(dispatcher, i);
             netIoJobs[i] = netIoJob;
@@ -108,11 +120,14 @@ class LineTcpMeasurementScheduler implements Closeable {
         tableUpdateDetailsByTableName = new CharSequenceObjHashMap<>();
         idleTableUpdateDetailsByTableName = new CharSequenceObjHashMap<>();
         loadByThread = new int[writerWorkerPool.getWorkerCount()];
-        int maxMeasurementSize = lineConfiguration.getMaxMeasurementSize();
+        int eventSize = Math.max(
+                lineConfiguration.getWriterQueueEventSize(),
+                (lineConfiguration.getMaxMeasurementSize() / 4) * (Integer.BYTES + Double.BYTES + 1)
+        );
         int queueSize = lineConfiguration.getWriterQueueCapacity();
         queue = new RingQueue<>(
                 () -> new LineTcpMeasurementEvent(
-                        maxMeasurementSize,
+                        eventSize,
                         lineConfiguration.getMicrosecondClock(),
                         lineConfiguration.getTimestampAdapter()),
                 queueSize);
@@ -124,7 +139,7 @@ class LineTcpMeasurementScheduler implements Closeable {
             for (int n = 0; n < nWriterThreads; n++) {
                 SCSequence subSeq = new SCSequence();
                 fanOut.and(subSeq);
-                WriterJob writerJob = new WriterJob(n, subSeq);
+                WriterJob writerJob = new WriterJob(n, subSeq, nWriterThreads);
                 writerWorkerPool.assign(n, writerJob);
                 writerWorkerPool.assign(n, writerJob::close);
             }
@@ -132,7 +147,7 @@ class LineTcpMeasurementScheduler implements Closeable {
         } else {
             SCSequence subSeq = new SCSequence();
             pubSeq.then(subSeq).then(pubSeq);
-            WriterJob writerJob = new WriterJob(0, subSeq);
+            WriterJob writerJob = new WriterJob(0, subSeq, nWriterThreads);
             writerWorkerPool.assign(0, writerJob);
             writerWorkerPool.assign(0, writerJob::close);
         }
@@ -142,12 +157,16 @@ class LineTcpMeasurementScheduler implements Closeable {
         maintenanceInterval = lineConfiguration.getMaintenanceInterval();
         defaultPartitionBy = lineConfiguration.getDefaultPartitionBy();
         writerIdleTimeout = lineConfiguration.getWriterIdleTimeout();
+        maxSymbolLookupSize = lineConfiguration.getMaxSymbolLookupSize();
+        tableStealThreshold = lineConfiguration.getTableStealThreshold();
+        metrics.attach(this);
     }
 
     @Override
     public void close() {
         // Both the writer and the net worker pools must have been closed so that their respective cleaners have run
         if (null != pubSeq) {
+            metrics.detach(this);
             pubSeq = null;
             tableUpdateDetailsLock.writeLock().lock();
             try {
@@ -225,6 +244,10 @@ class LineTcpMeasurementScheduler implements Closeable {
         return nRebalances;
     }
 
+    int getNSteals() {
+        return nSteals;
+    }
+
     long getNextPublisherEventSequence() {
         assert isOpen();
         long seq;
@@ -316,6 +339,7 @@ class LineTcpMeasurementScheduler implements Closeable {
                     event.threadId = INCOMPLETE_EVENT_ID;
                     event.createRebalanceEvent(fromThreadId, toThreadId, tableToMove);
                     tableToMove.writerThreadId = toThreadId;
+                    metrics.onTableRebalance();
                     LOG.info()
                             .$("rebalance cycle, requesting table move [cycle=").$(nLoadCheckCycles)
                             .$(", nRebalances=").$(++nRebalances)
@@ -386,31 +410,95 @@ class LineTcpMeasurementScheduler implements Closeable {
             return false;
         }
         if (null != tableUpdateDetails) {
-            long seq = getNextPublisherEventSequence();
-            if (seq >= 0) {
+            final int workerId = netIoJob.getWorkerId();
+            long seq = batchSeqByWorker[workerId];
+            if (seq > -1 && !queue.get(seq).canAppend(tableUpdateDetails, protoParser)) {
+                commitMeasurementBatch(netIoJob);
+                seq = -1;
+            }
+            if (seq < 0) {
+                // table can be moved to another writer thread, event sequence and writer thread
+                // of the event must be consistent with sequence of the move event
+                tableUpdateDetailsLock.readLock().lock();
                 try {
-                    LineTcpMeasurementEvent event = queue.get(seq);
-                    event.threadId = INCOMPLETE_EVENT_ID;
-                    TableUpdateDetails.ThreadLocalDetails localDetails = tableUpdateDetails.startNewMeasurementEvent(netIoJob.getWorkerId());
-                    event.createMeasurementEvent(tableUpdateDetails, localDetails, protoParser, charSink);
-                    return false;
-                } finally {
-                    pubSeq.done(seq);
-                    if (++tableUpdateDetails.nUpdates > nUpdatesPerLoadRebalance) {
-                        if (tableUpdateDetailsLock.writeLock().tryLock()) {
-                            try {
-                                loadRebalance();
-                            } finally {
-                                tableUpdateDetailsLock.writeLock().unlock();
-                            }
-                        }
+                    seq = getNextPublisherEventSequence();
+                    if (seq < 0) {
+                        return true;
                     }
+                    queue.get(seq).createBatchEvent(tableUpdateDetails, protoParser);
+                } finally {
+                    tableUpdateDetailsLock.readLock().unlock();
                 }
+                batchSeqByWorker[workerId] = seq;
             }
+            TableUpdateDetails.ThreadLocalDetails localDetails = tableUpdateDetails.startNewMeasurementEvent(workerId);
+            queue.get(seq).appendMeasurement(localDetails, protoParser, charSink);
+            return false;
         }
         return true;
     }
 
+    /**
+     * Publishes measurements packed by the network IO thread so far. Must be called before the
+     * thread stops parsing input of a connection, writer threads cannot move past an unpublished event.
+     */
+    void commitMeasurementBatch(NetworkIOJob netIoJob) {
+        final int workerId = netIoJob.getWorkerId();
+        final long seq = batchSeqByWorker[workerId];
+        if (seq < 0) {
+            return;
+        }
+        batchSeqByWorker[workerId] = -1;
+        final LineTcpMeasurementEvent event = queue.get(seq);
+        final TableUpdateDetails tableUpdateDetails = event.tableUpdateDetails;
+        final int rowCount = event.rowCount;
+        event.commitBatch();
+        tableUpdateDetails.queuedRows.addAndGet(rowCount);
+        pubSeq.done(seq);
+        if ((tableUpdateDetails.nUpdates += rowCount) > nUpdatesPerLoadRebalance) {
+            if (tableUpdateDetailsLock.writeLock().tryLock()) {
+                try {
+                    loadRebalance();
+                } finally {
+                    tableUpdateDetailsLock.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    void scrapeQueuedRows(CharSink sink) {
+        tableUpdateDetailsLock.readLock().lock();
+        try {
+            ObjList<CharSequence> tableNames = tableUpdateDetailsByTableName.keys();
+            for (int n = 0, sz = tableNames.size(); n < sz; n++) {
+                TableUpdateDetails tableUpdateDetails = tableUpdateDetailsByTableName.get(tableNames.getQuick(n));
+                LineTcpMetrics.appendTableQueuedRows(sink, tableUpdateDetails.tableName, tableUpdateDetails.queuedRows.get());
+            }
+        } finally {
+            tableUpdateDetailsLock.readLock().unlock();
+        }
+    }
+
+    // upper bound of the size measurement takes in event buffer
+    private static long measurementSize(NewLineProtoParser protoParser) {
+        long size = Integer.BYTES + Long.BYTES + Integer.BYTES;
+        for (int nEntity = 0, n = protoParser.getnEntities(); nEntity < n; nEntity++) {
+            final ProtoEntity entity = protoParser.getEntity(nEntity);
+            size += Integer.BYTES + entity.getName().length() + Byte.BYTES;
+            switch (entity.getType()) {
+                case NewLineProtoParser.ENTITY_TYPE_TAG:
+                case NewLineProtoParser.ENTITY_TYPE_STRING:
+                case NewLineProtoParser.ENTITY_TYPE_LONG256:
+                    size += Integer.BYTES + 2L * entity.getValue().length();
+                    break;
+                default:
+                    size += Long.BYTES;
+                    break;
+            }
+        }
+        return size;
+    }
+
     interface NetworkIOJob extends Job {
         void addTableUpdateDetails(TableUpdateDetails tableUpdateDetails);
 
@@ -426,17 +514,22 @@ class LineTcpMeasurementScheduler implements Closeable {
     private class LineTcpMeasurementEvent implements Closeable {
         private final MicrosecondClock clock;
         private final LineProtoTimestampAdapter timestampAdapter;
-        private final long bufSize;
+        private long bufSize;
         private int threadId;
         private TableUpdateDetails tableUpdateDetails;
         private long bufLo;
+        // append position and row count of the batch of measurements
+        private long bufPos;
+        private int rowCount;
+        // writer thread of the table at the time batch was started
+        private int batchThreadId;
         private int rebalanceFromThreadId;
         private int rebalanceToThreadId;
         private volatile boolean rebalanceReleasedByFromThread;
         private boolean commitOnWriterClose;
 
-        private LineTcpMeasurementEvent(int maxMeasurementSize, MicrosecondClock clock, LineProtoTimestampAdapter timestampAdapter) {
-            bufSize = (long) (maxMeasurementSize / 4) * (Integer.BYTES + Double.BYTES + 1);
+        private LineTcpMeasurementEvent(int bufSize, MicrosecondClock clock, LineProtoTimestampAdapter timestampAdapter) {
+            this.bufSize = bufSize;
             bufLo = Unsafe.malloc(bufSize);
             this.clock = clock;
             this.timestampAdapter = timestampAdapter;
@@ -449,104 +542,132 @@ class LineTcpMeasurementScheduler implements Closeable {
             bufLo = 0;
         }
 
-        void createMeasurementEvent(
-                TableUpdateDetails tableUpdateDetails,
+        void appendMeasurement(
                 TableUpdateDetails.ThreadLocalDetails localDetails,
                 NewLineProtoParser protoParser,
                 FloatingDirectCharSink floatingCharSink
         ) {
-            threadId = INCOMPLETE_EVENT_ID;
-            this.tableUpdateDetails = tableUpdateDetails;
-            long timestamp = protoParser.getTimestamp();
-            if (timestamp != NewLineProtoParser.NULL_TIMESTAMP) {
-                timestamp = timestampAdapter.getMicros(timestamp);
-            }
-            long bufPos = bufLo;
-            Unsafe.getUnsafe().putLong(bufPos, timestamp);
-            bufPos += Long.BYTES;
-            int nEntities = protoParser.getnEntities();
-            Unsafe.getUnsafe().putInt(bufPos, nEntities);
-            bufPos += Integer.BYTES;
-            for (int nEntity = 0; nEntity < nEntities; nEntity++) {
-                assert bufPos < (bufLo + bufSize + 6);
-                ProtoEntity entity = protoParser.getEntity(nEntity);
-                int colIndex = localDetails.getColumnIndex(entity.getName());
-                if (colIndex < 0) {
-                    int colNameLen = entity.getName().length();
-                    Unsafe.getUnsafe().putInt(bufPos, -1 * colNameLen);
-                    bufPos += Integer.BYTES;
-                    Vect.memcpy(entity.getName().getLo(), bufPos, colNameLen);
-                    bufPos += colNameLen;
-                } else {
-                    Unsafe.getUnsafe().putInt(bufPos, colIndex);
-                    bufPos += Integer.BYTES;
+            final long rowLo = bufPos;
+            try {
+                long timestamp = protoParser.getTimestamp();
+                if (timestamp != NewLineProtoParser.NULL_TIMESTAMP && !protoParser.isTimestampInMicros()) {
+                    timestamp = timestampAdapter.getMicros(timestamp);
                 }
-                byte entityType = entity.getType();
-                switch (entityType) {
-                    case NewLineProtoParser.ENTITY_TYPE_TAG: {
-                        long tmpBufPos = bufPos;
-                        int l = entity.getValue().length();
-                        bufPos += Integer.BYTES + Byte.BYTES;
-                        long hi = bufPos + 2L * l;
-                        floatingCharSink.of(bufPos, hi);
-                        if (!Chars.utf8Decode(entity.getValue().getLo(), entity.getValue().getHi(), floatingCharSink)) {
-                            throw CairoException.instance(0).put("invalid UTF8 in value for ").put(entity.getName());
-                        }
+                // row size is written once the row is complete
+                long bufPos = rowLo + Integer.BYTES;
+                Unsafe.getUnsafe().putLong(bufPos, timestamp);
+                bufPos += Long.BYTES;
+                int nEntities = protoParser.getnEntities();
+                Unsafe.getUnsafe().putInt(bufPos, nEntities);
+                bufPos += Integer.BYTES;
+                for (int nEntity = 0; nEntity < nEntities; nEntity++) {
+                    assert bufPos < (bufLo + bufSize);
+                    ProtoEntity entity = protoParser.getEntity(nEntity);
+                    int colIndex = localDetails.getColumnIndex(entity.getName());
+                    if (colIndex < 0) {
+                        int colNameLen = entity.getName().length();
+                        Unsafe.getUnsafe().putInt(bufPos, -1 * colNameLen);
+                        bufPos += Integer.BYTES;
+                        Vect.memcpy(entity.getName().getLo(), bufPos, colNameLen);
+                        bufPos += colNameLen;
+                    } else {
+                        Unsafe.getUnsafe().putInt(bufPos, colIndex);
+                        bufPos += Integer.BYTES;
+                    }
+                    byte entityType = entity.getType();
+                    switch (entityType) {
+                        case NewLineProtoParser.ENTITY_TYPE_TAG: {
+                            long tmpBufPos = bufPos;
+                            int l = entity.getValue().length();
+                            bufPos += Integer.BYTES + Byte.BYTES;
+                            long hi = bufPos + 2L * l;
+                            floatingCharSink.of(bufPos, hi);
+                            if (!Chars.utf8Decode(entity.getValue().getLo(), entity.getValue().getHi(), floatingCharSink)) {
+                                throw CairoException.instance(0).put("invalid UTF8 in value for ").put(entity.getName());
+                            }
 
-                        int symIndex = tableUpdateDetails.getSymbolIndex(localDetails, colIndex, floatingCharSink);
-                        if (symIndex != SymbolTable.VALUE_NOT_FOUND) {
-                            bufPos = tmpBufPos;
-                            Unsafe.getUnsafe().putByte(bufPos, NewLineProtoParser.ENTITY_TYPE_CACHED_TAG);
+                            int symIndex = tableUpdateDetails.getSymbolIndex(localDetails, colIndex, floatingCharSink);
+                            if (symIndex != SymbolTable.VALUE_NOT_FOUND) {
+                                bufPos = tmpBufPos;
+                                Unsafe.getUnsafe().putByte(bufPos, NewLineProtoParser.ENTITY_TYPE_CACHED_TAG);
+                                bufPos += Byte.BYTES;
+                                Unsafe.getUnsafe().putInt(bufPos, symIndex);
+                                bufPos += Integer.BYTES;
+                            } else {
+                                // value may take fewer chars than its UTF8 bytes
+                                Unsafe.getUnsafe().putByte(tmpBufPos, entity.getType());
+                                tmpBufPos += Byte.BYTES;
+                                Unsafe.getUnsafe().putInt(tmpBufPos, floatingCharSink.length());
+                                bufPos += 2L * floatingCharSink.length();
+                            }
+                            break;
+                        }
+                        case NewLineProtoParser.ENTITY_TYPE_INTEGER: {
+                            Unsafe.getUnsafe().putByte(bufPos, entity.getType());
+                            bufPos += Byte.BYTES;
+                            Unsafe.getUnsafe().putLong(bufPos, entity.getIntegerValue());
+                            bufPos += Long.BYTES;
+                            break;
+                        }
+                        case NewLineProtoParser.ENTITY_TYPE_FLOAT: {
+                            Unsafe.getUnsafe().putByte(bufPos, entity.getType());
                             bufPos += Byte.BYTES;
-                            Unsafe.getUnsafe().putInt(bufPos, symIndex);
+                            Unsafe.getUnsafe().putDouble(bufPos, entity.getFloatValue());
+                            bufPos += Double.BYTES;
+                            break;
+                        }
+                        case NewLineProtoParser.ENTITY_TYPE_STRING:
+                        case NewLineProtoParser.ENTITY_TYPE_LONG256: {
+                            Unsafe.getUnsafe().putByte(bufPos, entity.getType());
+                            bufPos += Byte.BYTES;
+                            final long lenPos = bufPos;
                             bufPos += Integer.BYTES;
-                        } else {
-                            Unsafe.getUnsafe().putByte(tmpBufPos, entity.getType());
-                            tmpBufPos += Byte.BYTES;
-                            Unsafe.getUnsafe().putInt(tmpBufPos, l);
-                            bufPos = hi;
+                            floatingCharSink.of(bufPos, bufPos + 2L * entity.getValue().length());
+                            if (!Chars.utf8Decode(entity.getValue().getLo(), entity.getValue().getHi(), floatingCharSink)) {
+                                throw CairoException.instance(0).put("invalid UTF8 in value for ").put(entity.getName());
+                            }
+                            Unsafe.getUnsafe().putInt(lenPos, floatingCharSink.length());
+                            bufPos += 2L * floatingCharSink.length();
+                            break;
                         }
-                        break;
-                    }
-                    case NewLineProtoParser.ENTITY_TYPE_INTEGER: {
-                        Unsafe.getUnsafe().putByte(bufPos, entity.getType());
-                        bufPos += Byte.BYTES;
-                        Unsafe.getUnsafe().putLong(bufPos, entity.getIntegerValue());
-                        bufPos += Long.BYTES;
-                        break;
-                    }
-                    case NewLineProtoParser.ENTITY_TYPE_FLOAT: {
-                        Unsafe.getUnsafe().putByte(bufPos, entity.getType());
-                        bufPos += Byte.BYTES;
-                        Unsafe.getUnsafe().putDouble(bufPos, entity.getFloatValue());
-                        bufPos += Double.BYTES;
-                        break;
-                    }
-                    case NewLineProtoParser.ENTITY_TYPE_STRING:
-                    case NewLineProtoParser.ENTITY_TYPE_LONG256: {
-                        Unsafe.getUnsafe().putByte(bufPos, entity.getType());
-                        bufPos += Byte.BYTES;
-                        int l = entity.getValue().length();
-                        Unsafe.getUnsafe().putInt(bufPos, l);
-                        bufPos += Integer.BYTES;
-                        long hi = bufPos + 2L * l;
-                        floatingCharSink.of(bufPos, hi);
-                        if (!Chars.utf8Decode(entity.getValue().getLo(), entity.getValue().getHi(), floatingCharSink)) {
-                            throw CairoException.instance(0).put("invalid UTF8 in value for ").put(entity.getName());
+                        case NewLineProtoParser.ENTITY_TYPE_BOOLEAN: {
+                            Unsafe.getUnsafe().putByte(bufPos, entity.getType());
+                            bufPos += Byte.BYTES;
+                            Unsafe.getUnsafe().putByte(bufPos, (byte) (entity.getBooleanValue() ? 1 : 0));
+                            bufPos += Byte.BYTES;
+                            break;
                         }
-                        bufPos = hi;
-                        break;
-                    }
-                    case NewLineProtoParser.ENTITY_TYPE_BOOLEAN: {
-                        Unsafe.getUnsafe().putByte(bufPos, entity.getType());
-                        bufPos += Byte.BYTES;
-                        Unsafe.getUnsafe().putByte(bufPos, (byte) (entity.getBooleanValue() ? 1 : 0));
-                        bufPos += Byte.BYTES;
-                        break;
                     }
                 }
+                Unsafe.getUnsafe().putInt(rowLo, (int) (bufPos - rowLo - Integer.BYTES));
+                this.bufPos = bufPos;
+                rowCount++;
+            } catch (Throwable e) {
+                // rows appended earlier are still good, the batch is published with them
+                this.bufPos = rowLo;
+                throw e;
+            }
+        }
+
+        boolean canAppend(TableUpdateDetails tableUpdateDetails, NewLineProtoParser protoParser) {
+            return this.tableUpdateDetails == tableUpdateDetails && bufPos + measurementSize(protoParser) <= bufLo + bufSize;
+        }
+
+        void commitBatch() {
+            threadId = rowCount > 0 ? batchThreadId : INCOMPLETE_EVENT_ID;
+        }
+
+        void createBatchEvent(TableUpdateDetails tableUpdateDetails, NewLineProtoParser protoParser) {
+            threadId = INCOMPLETE_EVENT_ID;
+            this.tableUpdateDetails = tableUpdateDetails;
+            batchThreadId = tableUpdateDetails.writerThreadId;
+            rowCount = 0;
+            final long size = measurementSize(protoParser);
+            if (size > bufSize) {
+                bufLo = Unsafe.realloc(bufLo, bufSize, size);
+                bufSize = size;
             }
-            threadId = tableUpdateDetails.writerThreadId;
+            bufPos = bufLo;
         }
 
         void createRebalanceEvent(int fromThreadId, int toThreadId, TableUpdateDetails tableUpdateDetails) {
@@ -564,10 +685,30 @@ class LineTcpMeasurementScheduler implements Closeable {
         }
 
         void processMeasurementEvent(WriterJob job) {
+            final TableWriter writer;
+            try {
+                writer = tableUpdateDetails.getWriter();
+            } catch (CairoException ex) {
+                LOG.error()
+                        .$("could not write line protocol measurements [tableName=").$(tableUpdateDetails.tableName)
+                        .$(", rowCount=").$(rowCount)
+                        .$(", ex=").$(ex.getFlyweightMessage())
+                        .$(", errno=").$(ex.getErrno())
+                        .I$();
+                return;
+            }
+            long bufPos = bufLo;
+            for (int i = 0; i < rowCount; i++) {
+                final int rowSize = Unsafe.getUnsafe().getInt(bufPos);
+                bufPos += Integer.BYTES;
+                processMeasurement(job, writer, bufPos);
+                bufPos += rowSize;
+            }
+        }
+
+        private void processMeasurement(WriterJob job, TableWriter writer, long bufPos) {
             Row row = null;
             try {
-                TableWriter writer = tableUpdateDetails.getWriter();
-                long bufPos = bufLo;
                 long timestamp = Unsafe.getUnsafe().getLong(bufPos);
                 bufPos += Long.BYTES;
                 if (timestamp == NewLineProtoParser.NULL_TIMESTAMP) {
@@ -626,6 +767,7 @@ class LineTcpMeasurementScheduler implements Closeable {
                             long hi = bufPos + 2L * len;
                             job.floatingCharSink.asCharSequence(bufPos, hi);
                             int symIndex = writer.getSymbolIndex(colIndex, job.floatingCharSink);
+                            tableUpdateDetails.addPendingSymbol(colIndex, job.floatingCharSink, symIndex);
                             row.putSymIndex(colIndex, symIndex);
                             bufPos = hi;
                             break;
@@ -773,6 +915,8 @@ class LineTcpMeasurementScheduler implements Closeable {
     class TableUpdateDetails implements Closeable {
         final String tableName;
         private final ThreadLocalDetails[] localDetailsArray;
+        // rows published to the writer queue, but not yet processed by the writer thread
+        private final AtomicLong queuedRows = new AtomicLong();
         private int writerThreadId;
         // Number of updates since the last load rebalance, this is an estimate because its incremented by
         // multiple threads without synchronisation
@@ -782,6 +926,12 @@ class LineTcpMeasurementScheduler implements Closeable {
         private long lastMeasurementMillis = Long.MAX_VALUE;
         private long lastCommitMillis;
         private int nNetworkIoWorkers = 0;
+        // symbol keys by column index, writer thread adds symbols it resolves, network IO threads
+        // look them up before their own caches; lookups are valid while the writer is held
+        private volatile SymbolLookup[] symbolLookups = EMPTY_SYMBOL_LOOKUPS;
+        // symbols resolved by writer thread since the last commit, keys of uncommitted symbols
+        // are discarded when writer is released without commit and cannot be shared until committed
+        private final ObjList<CharSequenceIntHashMap> pendingSymbolsByColumn = new ObjList<>();
 
         private TableUpdateDetails(String tableName, int writerThreadId, NetworkIOJob[] netIoJobs) {
             this.tableName = tableName;
@@ -805,6 +955,8 @@ class LineTcpMeasurementScheduler implements Closeable {
         }
 
         private void closeNoLock() {
+            symbolLookups = EMPTY_SYMBOL_LOOKUPS;
+            clearPendingSymbols();
             if (writerThreadId != Integer.MIN_VALUE) {
                 LOG.info().$("closing table writer [tableName=").$(tableName).$(']').$();
                 if (null != writer) {
@@ -828,8 +980,49 @@ class LineTcpMeasurementScheduler implements Closeable {
             }
         }
 
+        void addPendingSymbol(int colIndex, CharSequence symValue, int symIndex) {
+            final SymbolLookup[] lookups = symbolLookups;
+            final SymbolLookup lookup = colIndex < lookups.length ? lookups[colIndex] : null;
+            if (lookup != null && (lookup.size() >= maxSymbolLookupSize || lookup.keyOf(symValue) != SymbolTable.VALUE_NOT_FOUND)) {
+                return;
+            }
+            CharSequenceIntHashMap pendingSymbols = pendingSymbolsByColumn.getQuiet(colIndex);
+            if (pendingSymbols == null) {
+                pendingSymbols = new CharSequenceIntHashMap();
+                pendingSymbolsByColumn.extendAndSet(colIndex, pendingSymbols);
+            }
+            final int keyIndex = pendingSymbols.keyIndex(symValue);
+            if (keyIndex > -1) {
+                pendingSymbols.putAt(keyIndex, symValue, symIndex);
+            }
+        }
+
+        private void clearPendingSymbols() {
+            for (int i = 0, n = pendingSymbolsByColumn.size(); i < n; i++) {
+                final CharSequenceIntHashMap pendingSymbols = pendingSymbolsByColumn.getQuick(i);
+                if (pendingSymbols != null) {
+                    pendingSymbols.clear();
+                }
+            }
+        }
+
+        int getPublishedSymbolKey(int colIndex, CharSequence symValue) {
+            final SymbolLookup[] lookups = symbolLookups;
+            if (colIndex < lookups.length && lookups[colIndex] != null) {
+                return lookups[colIndex].keyOf(symValue);
+            }
+            return SymbolTable.VALUE_NOT_FOUND;
+        }
+
         int getSymbolIndex(ThreadLocalDetails localDetails, int colIndex, CharSequence symValue) {
             if (colIndex >= 0) {
+                final SymbolLookup[] lookups = symbolLookups;
+                if (colIndex < lookups.length && lookups[colIndex] != null) {
+                    final int symIndex = lookups[colIndex].keyOf(symValue);
+                    if (symIndex != SymbolTable.VALUE_NOT_FOUND) {
+                        return symIndex;
+                    }
+                }
                 return localDetails.getSymbolIndex(colIndex, symValue);
             }
             return SymbolTable.VALUE_NOT_FOUND;
@@ -845,11 +1038,15 @@ class LineTcpMeasurementScheduler implements Closeable {
         void handleRowAppended() {
             if (writer.checkMaxAndCommitLag()) {
                 lastCommitMillis = milliClock.getTicks();
+                publishPendingSymbols();
             }
         }
 
         void handleWriterRelease(boolean commit) {
+            clearPendingSymbols();
             if (null != writer) {
+                // table can be truncated while writer is not held
+                symbolLookups = EMPTY_SYMBOL_LOOKUPS;
                 LOG.debug().$("release commit [table=").$(writer.getTableName()).I$();
                 try {
                     if (commit) {
@@ -874,7 +1071,39 @@ class LineTcpMeasurementScheduler implements Closeable {
                 LOG.debug().$("maintenance commit [table=").$(writer.getTableName()).I$();
                 writer.commit();
                 lastCommitMillis = milliClock.getTicks();
+                publishPendingSymbols();
+            }
+        }
+
+        // must be called after successful commit of the writer
+        private void publishPendingSymbols() {
+            for (int colIndex = 0, n = pendingSymbolsByColumn.size(); colIndex < n; colIndex++) {
+                final CharSequenceIntHashMap pendingSymbols = pendingSymbolsByColumn.getQuick(colIndex);
+                if (pendingSymbols != null && pendingSymbols.size() > 0) {
+                    final int committedSymbolCount = writer.getCommittedSymbolCount(colIndex);
+                    final ObjList<CharSequence> symValues = pendingSymbols.keys();
+                    for (int i = 0, sz = symValues.size(); i < sz; i++) {
+                        final CharSequence symValue = symValues.getQuick(i);
+                        final int symIndex = pendingSymbols.get(symValue);
+                        if (symIndex < committedSymbolCount) {
+                            publishSymbol(colIndex, symValue, symIndex);
+                        }
+                    }
+                    pendingSymbols.clear();
+                }
+            }
+        }
+
+        private void publishSymbol(int colIndex, CharSequence symValue, int symIndex) {
+            SymbolLookup[] lookups = symbolLookups;
+            SymbolLookup lookup = colIndex < lookups.length ? lookups[colIndex] : null;
+            if (lookup == null) {
+                // copy on write, readers do not see array elements change
+                lookups = Arrays.copyOf(lookups, Math.max(lookups.length, colIndex + 1));
+                lookup = lookups[colIndex] = new SymbolLookup(maxSymbolLookupSize);
+                symbolLookups = lookups;
             }
+            lookup.put(symValue, symIndex);
         }
 
         ThreadLocalDetails startNewMeasurementEvent(int workerId) {
@@ -986,18 +1215,26 @@ class LineTcpMeasurementScheduler implements Closeable {
         private final DirectCharSink charSink = new DirectCharSink(64);
         private final FloatingDirectCharSink floatingCharSink = new FloatingDirectCharSink();
         private final ObjList<TableUpdateDetails> assignedTables = new ObjList<>();
+        private final long[] queuedRowsByThread;
+        private final int[] queuedTablesByThread;
         private long lastMaintenanceMillis = 0;
+        private long lastStealCheckMillis = 0;
 
-        private WriterJob(int id, Sequence sequence) {
+        private WriterJob(int id, Sequence sequence, int nWriterThreads) {
             super();
             this.workerId = id;
             this.sequence = sequence;
+            this.queuedRowsByThread = new long[nWriterThreads];
+            this.queuedTablesByThread = new int[nWriterThreads];
         }
 
         @Override
         public boolean run(int workerId) {
             assert this.workerId == workerId;
             boolean busy = drainQueue();
+            if (!busy && tableStealThreshold > 0 && queuedRowsByThread.length > 1) {
+                busy = stealTable();
+            }
             doMaintenance();
             return busy;
         }
@@ -1046,6 +1283,7 @@ class LineTcpMeasurementScheduler implements Closeable {
 
                 try {
                     if (event.threadId == workerId) {
+                        final int rowCount = event.rowCount;
                         try {
                             if (!event.tableUpdateDetails.assignedToJob) {
                                 assignedTables.add(event.tableUpdateDetails);
@@ -1058,6 +1296,8 @@ class LineTcpMeasurementScheduler implements Closeable {
                             LOG.error().$("closing writer for because of error [table=").$(event.tableUpdateDetails.tableName).$(",ex=").$(ex).I$();
                             event.createReleaseWriterEvent(event.tableUpdateDetails, false);
                             eventProcessed = false;
+                        } finally {
+                            event.tableUpdateDetails.queuedRows.addAndGet(-rowCount);
                         }
                     } else {
                         switch (event.threadId) {
@@ -1089,6 +1329,54 @@ class LineTcpMeasurementScheduler implements Closeable {
             }
         }
 
+        // Picks table to take over from the writer thread with the most queued rows. Thread must have
+        // queued rows of at least two tables, moving its only table would move the backlog along with it.
+        private TableUpdateDetails findTableToSteal() {
+            Arrays.fill(queuedRowsByThread, 0);
+            Arrays.fill(queuedTablesByThread, 0);
+            ObjList<CharSequence> tableNames = tableUpdateDetailsByTableName.keys();
+            for (int n = 0, sz = tableNames.size(); n < sz; n++) {
+                TableUpdateDetails tableUpdateDetails = tableUpdateDetailsByTableName.get(tableNames.getQuick(n));
+                long queuedRows = tableUpdateDetails.queuedRows.get();
+                if (queuedRows > 0 && tableUpdateDetails.writerThreadId > -1) {
+                    queuedRowsByThread[tableUpdateDetails.writerThreadId] += queuedRows;
+                    queuedTablesByThread[tableUpdateDetails.writerThreadId]++;
+                }
+            }
+
+            if (queuedRowsByThread[workerId] > 0) {
+                // this thread has rows to write, possibly of a table it is taking over
+                return null;
+            }
+
+            int fromThreadId = -1;
+            long maxQueuedRows = tableStealThreshold - 1;
+            for (int n = 0; n < queuedRowsByThread.length; n++) {
+                if (queuedRowsByThread[n] > maxQueuedRows && queuedTablesByThread[n] > 1) {
+                    maxQueuedRows = queuedRowsByThread[n];
+                    fromThreadId = n;
+                }
+            }
+
+            if (fromThreadId == -1) {
+                return null;
+            }
+
+            TableUpdateDetails tableToSteal = null;
+            maxQueuedRows = 0;
+            for (int n = 0, sz = tableNames.size(); n < sz; n++) {
+                TableUpdateDetails tableUpdateDetails = tableUpdateDetailsByTableName.get(tableNames.getQuick(n));
+                if (tableUpdateDetails.writerThreadId == fromThreadId) {
+                    long queuedRows = tableUpdateDetails.queuedRows.get();
+                    if (queuedRows > maxQueuedRows) {
+                        maxQueuedRows = queuedRows;
+                        tableToSteal = tableUpdateDetails;
+                    }
+                }
+            }
+            return tableToSteal;
+        }
+
         private boolean processRebalance(LineTcpMeasurementEvent event) {
             if (event.rebalanceToThreadId == workerId) {
                 // This thread is now a declared owner of the table, but it can only become actual
@@ -1122,6 +1410,60 @@ class LineTcpMeasurementScheduler implements Closeable {
             return true;
         }
 
+        // Idle writer thread takes over a table with queued rows from a busy thread. Ownership is handed
+        // over by the same event as load rebalance, rows queued before the event are written by the busy thread.
+        private boolean stealTable() {
+            final long millis = milliClock.getTicks();
+            if (millis == lastStealCheckMillis) {
+                return false;
+            }
+
+            tableUpdateDetailsLock.readLock().lock();
+            try {
+                if (findTableToSteal() == null) {
+                    lastStealCheckMillis = millis;
+                    return false;
+                }
+            } finally {
+                tableUpdateDetailsLock.readLock().unlock();
+            }
+
+            if (!tableUpdateDetailsLock.writeLock().tryLock()) {
+                return true;
+            }
+            try {
+                final TableUpdateDetails tableToSteal = findTableToSteal();
+                if (tableToSteal == null) {
+                    return false;
+                }
+                final long seq = getNextPublisherEventSequence();
+                if (seq < 0) {
+                    // queue is full of events the busy thread is yet to process, keep trying
+                    return true;
+                }
+                final int fromThreadId = tableToSteal.writerThreadId;
+                try {
+                    LineTcpMeasurementEvent event = queue.get(seq);
+                    event.threadId = INCOMPLETE_EVENT_ID;
+                    event.createRebalanceEvent(fromThreadId, workerId, tableToSteal);
+                    tableToSteal.writerThreadId = workerId;
+                    metrics.onTableSteal();
+                    LOG.info()
+                            .$("idle thread taking over table [nSteals=").$(++nSteals)
+                            .$(", table=").$(tableToSteal.tableName)
+                            .$(", queuedRows=").$(tableToSteal.queuedRows.get())
+                            .$(", fromThreadId=").$(fromThreadId)
+                            .$(", toThreadId=").$(workerId)
+                            .I$();
+                } finally {
+                    pubSeq.done(seq);
+                }
+                return true;
+            } finally {
+                tableUpdateDetailsLock.writeLock().unlock();
+            }
+        }
+
         private boolean processReleaseWriter(LineTcpMeasurementEvent event) {
             tableUpdateDetailsLock.readLock().lock();
             try {
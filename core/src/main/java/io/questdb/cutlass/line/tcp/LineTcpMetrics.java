@@ -0,0 +1,87 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cutlass.line.tcp;
+
+import io.questdb.metrics.Counter;
+import io.questdb.metrics.MetricsRegistry;
+import io.questdb.metrics.PrometheusFormatUtils;
+import io.questdb.metrics.Scrapable;
+import io.questdb.std.str.CharSink;
+
+/**
+ * Writer thread scheduling statistics of line protocol TCP receiver. Queued rows of a table
+ * are rows network threads have published to the writer queue, but writer thread is yet to write.
+ */
+public class LineTcpMetrics implements Scrapable {
+    private static final CharSequence TABLE_QUEUED_ROWS = "line_tcp_table_queued_rows";
+    private final Counter tableStealCounter;
+    private final Counter tableRebalanceCounter;
+    private volatile LineTcpMeasurementScheduler scheduler;
+
+    public LineTcpMetrics(MetricsRegistry metricsRegistry) {
+        this.tableStealCounter = metricsRegistry.newCounter("line_tcp_table_steals");
+        this.tableRebalanceCounter = metricsRegistry.newCounter("line_tcp_table_rebalances");
+    }
+
+    @Override
+    public void scrapeIntoPrometheus(CharSink sink) {
+        final LineTcpMeasurementScheduler scheduler = this.scheduler;
+        if (scheduler != null) {
+            sink.put(PrometheusFormatUtils.TYPE_PREFIX);
+            sink.put(TABLE_QUEUED_ROWS);
+            sink.put(" gauge\n");
+            scheduler.scrapeQueuedRows(sink);
+            PrometheusFormatUtils.appendNewLine(sink);
+        }
+    }
+
+    static void appendTableQueuedRows(CharSink sink, CharSequence tableName, long queuedRows) {
+        sink.put(PrometheusFormatUtils.METRIC_NAME_PREFIX);
+        sink.put(TABLE_QUEUED_ROWS);
+        sink.put('{');
+        PrometheusFormatUtils.appendLabel(sink, "table", tableName);
+        sink.put('}');
+        PrometheusFormatUtils.appendSampleLineSuffix(sink, queuedRows);
+    }
+
+    void attach(LineTcpMeasurementScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    void detach(LineTcpMeasurementScheduler scheduler) {
+        if (this.scheduler == scheduler) {
+            this.scheduler = null;
+        }
+    }
+
+    void onTableRebalance() {
+        tableRebalanceCounter.inc();
+    }
+
+    void onTableSteal() {
+        tableStealCounter.inc();
+    }
+}
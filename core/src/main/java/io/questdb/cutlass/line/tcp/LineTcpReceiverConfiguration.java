@@ -51,10 +51,27 @@ public interface LineTcpReceiverConfiguration {
      */
     long getMaintenanceInterval();
 
+    /**
+     * Limit of the symbol dictionary a binary line protocol connection can define,
+     * connection that exceeds it is disconnected. Each symbol takes its UTF8 value
+     * bytes and 16 bytes of offsets.
+     *
+     * @return size of symbol dictionary in bytes
+     */
+    int getMaxBinarySymbolDictionarySize();
+
     double getMaxLoadRatio();
 
     int getMaxMeasurementSize();
 
+    /**
+     * Writer threads share symbol keys they resolve with network IO threads, so that
+     * tag values are sent to writers as keys. This is the limit of shared keys per column.
+     *
+     * @return maximum number of symbol values per column
+     */
+    int getMaxSymbolLookupSize();
+
     MicrosecondClock getMicrosecondClock();
 
     MillisecondClock getMillisecondClock();
@@ -69,10 +86,27 @@ public interface LineTcpReceiverConfiguration {
 
     NetworkFacade getNetworkFacade();
 
+    /**
+     * Number of rows queued to a writer thread, but not yet written, at which idle writer
+     * threads start claiming tables from it. Value of 0 disables table stealing.
+     *
+     * @return number of queued rows
+     */
+    int getTableStealThreshold();
+
     LineProtoTimestampAdapter getTimestampAdapter();
 
     int getWriterQueueCapacity();
 
+    /**
+     * Size of the buffer of a writer queue event in bytes. Network threads pack consecutive
+     * measurements of the same table into one event until its buffer is full. Buffer is
+     * always large enough to hold at least one measurement.
+     *
+     * @return event buffer size in bytes
+     */
+    int getWriterQueueEventSize();
+
     WorkerPoolAwareConfiguration getWriterWorkerPoolConfiguration();
 
     boolean isEnabled();
@@ -59,6 +59,8 @@ public class NewLineProtoParser implements Closeable {
     private EntityHandler entityHandler;
     private final EntityHandler entityTableHandler = this::expectTableName;
     private long timestamp;
+    // measurement was decoded from binary line protocol, its timestamp is in micros
+    private boolean binary;
     private final EntityHandler entityTimestampHandler = this::expectTimestamp;
     private final EntityHandler entityValueHandler = this::expectEntityValue;
     private final EntityHandler entityNameHandler = this::expectEntityName;
@@ -96,6 +98,10 @@ public class NewLineProtoParser implements Closeable {
         return timestamp != NULL_TIMESTAMP;
     }
 
+    public boolean isTimestampInMicros() {
+        return binary;
+    }
+
     public NewLineProtoParser of(long bufLo) {
         this.bufAt = bufLo - 1;
         startNextMeasurement();
@@ -200,6 +206,30 @@ public class NewLineProtoParser implements Closeable {
         currentEntity = null;
         entityHandler = entityTableHandler;
         timestamp = NULL_TIMESTAMP;
+        binary = false;
+    }
+
+    ProtoEntity addBinaryEntity(long nameLo, long nameHi, byte type) {
+        final ProtoEntity entity;
+        if (entityCache.size() <= nEntities) {
+            entity = new ProtoEntity();
+            entityCache.add(entity);
+        } else {
+            entity = entityCache.get(nEntities);
+        }
+        nEntities++;
+        entity.name.of(nameLo, nameHi);
+        entity.type = type;
+        return entity;
+    }
+
+    void startBinaryMeasurement(long nameLo, long nameHi, long timestamp) {
+        measurementName.of(nameLo, nameHi);
+        this.timestamp = timestamp;
+        errorCode = null;
+        nEntities = 0;
+        currentEntity = null;
+        binary = true;
     }
 
     private boolean expectEndOfLine(byte endOfEntityByte, long bufHi) {
@@ -359,6 +389,22 @@ public class NewLineProtoParser implements Closeable {
             value.shl(shl);
         }
 
+        void setBooleanValue(boolean booleanValue) {
+            this.booleanValue = booleanValue;
+        }
+
+        void setFloatValue(double floatValue) {
+            this.floatValue = floatValue;
+        }
+
+        void setIntegerValue(long integerValue) {
+            this.integerValue = integerValue;
+        }
+
+        void setValue(long lo, long hi) {
+            value.of(lo, hi);
+        }
+
         private void clear() {
             type = ENTITY_TYPE_NONE;
         }
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cutlass.line.tcp;
+
+import io.questdb.cairo.sql.SymbolTable;
+import io.questdb.std.Chars;
+import io.questdb.std.Hash;
+import io.questdb.std.Numbers;
+import io.questdb.std.Unsafe;
+
+/**
+ * Append-only map of symbol values to keys of a table column, shared by network IO threads.
+ * Writer thread of the table is the only thread to add values. Readers do not wait on the writer,
+ * they may miss values that are being added and resolve them by other means.
+ */
+class SymbolLookup {
+    private static final int MIN_CAPACITY = 64;
+    private static final long ARRAY_BASE;
+    private static final int ARRAY_SHIFT;
+    private final int maxSize;
+    private volatile Table table = new Table(MIN_CAPACITY);
+
+    SymbolLookup(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    int keyOf(CharSequence value) {
+        return table.keyOf(value);
+    }
+
+    /**
+     * Adds value to the map, must only be called by writer thread of the table.
+     * Values are not added once the map reaches its maximum size.
+     *
+     * @param value symbol value
+     * @param key   symbol key
+     */
+    void put(CharSequence value, int key) {
+        Table t = table;
+        if (t.size >= maxSize) {
+            return;
+        }
+        int index = t.indexOf(value);
+        if (index < 0) {
+            return;
+        }
+        if (t.size + 1 > t.capacity() / 2) {
+            // readers may keep using the old table, it is not changed after new table is published
+            final Table next = new Table(t.capacity() * 2);
+            for (int i = 0, n = t.capacity(); i < n; i++) {
+                final String k = t.keys[i];
+                if (k != null) {
+                    final int nextIndex = next.indexOf(k);
+                    next.keys[nextIndex] = k;
+                    next.values[nextIndex] = t.values[i];
+                }
+            }
+            next.size = t.size;
+            table = t = next;
+            index = t.indexOf(value);
+        }
+        // value is written before key, readers that see the key see the value too
+        t.values[index] = key;
+        Unsafe.getUnsafe().putOrderedObject(t.keys, ARRAY_BASE + ((long) index << ARRAY_SHIFT), Chars.toString(value));
+        t.size++;
+    }
+
+    int size() {
+        return table.size;
+    }
+
+    private static class Table {
+        private final String[] keys;
+        private final int[] values;
+        private final int mask;
+        // accessed by writer thread only
+        private int size;
+
+        private Table(int capacity) {
+            keys = new String[capacity];
+            values = new int[capacity];
+            mask = capacity - 1;
+        }
+
+        private int capacity() {
+            return keys.length;
+        }
+
+        // index of free slot for the value or -1 when value is in the table, writer thread only
+        private int indexOf(CharSequence value) {
+            int index = Hash.spread(Chars.hashCode(value)) & mask;
+            String k;
+            while ((k = keys[index]) != null) {
+                if (Chars.equals(k, value)) {
+                    return -1;
+                }
+                index = (index + 1) & mask;
+            }
+            return index;
+        }
+
+        private int keyOf(CharSequence value) {
+            int index = Hash.spread(Chars.hashCode(value)) & mask;
+            String k;
+            while ((k = (String) Unsafe.getUnsafe().getObjectVolatile(keys, ARRAY_BASE + ((long) index << ARRAY_SHIFT))) != null) {
+                if (Chars.equals(k, value)) {
+                    return values[index];
+                }
+                index = (index + 1) & mask;
+            }
+            return SymbolTable.VALUE_NOT_FOUND;
+        }
+    }
+
+    static {
+        ARRAY_BASE = Unsafe.getUnsafe().arrayBaseOffset(String[].class);
+        ARRAY_SHIFT = Numbers.msb(Unsafe.getUnsafe().arrayIndexScale(String[].class));
+    }
+}
@@ -28,6 +28,7 @@ import io.questdb.cairo.CairoEngine;
 import io.questdb.cairo.CairoException;
 import io.questdb.cairo.ColumnType;
 import io.questdb.cairo.TableWriter;
+import io.questdb.cairo.WalWriter;
 import io.questdb.cairo.pool.WriterSource;
 import io.questdb.cairo.sql.*;
 import io.questdb.griffin.model.IntervalUtils;
@@ -43,6 +44,7 @@ public class InsertStatementImpl implements InsertStatement {
     private final long structureVersion;
     private final String tableName;
     private final InsertMethodImpl insertMethod = new InsertMethodImpl();
+    private final WalInsertMethod walInsertMethod = new WalInsertMethod();
     private final CairoEngine engine;
 
     public InsertStatementImpl(
@@ -76,6 +78,18 @@ public class InsertStatementImpl implements InsertStatement {
 
     @Override
     public InsertMethod createMethod(SqlExecutionContext executionContext) {
+        if (engine.getConfiguration().isWalInsertEnabled()) {
+            initContext(executionContext);
+            if (walInsertMethod.writer == null) {
+                final WalWriter writer = engine.getWalWriter(executionContext.getCairoSecurityContext(), tableName);
+                if (writer.getStructureVersion() != getStructureVersion()) {
+                    writer.close();
+                    throw WriterOutOfDateException.INSTANCE;
+                }
+                walInsertMethod.writer = writer;
+            }
+            return walInsertMethod;
+        }
         return createMethod(executionContext, engine);
     }
 
@@ -106,6 +120,7 @@ public class InsertStatementImpl implements InsertStatement {
     @Override
     public void detachWriter() {
         insertMethod.close();
+        walInsertMethod.close();
     }
 
     private TableWriter.Row getRowWithTimestamp(TableWriter tableWriter) {
@@ -114,15 +129,28 @@ public class InsertStatementImpl implements InsertStatement {
     }
 
     private TableWriter.Row getRowWithStringTimestamp(TableWriter tableWriter) {
+        return tableWriter.newRow(getStringTimestamp());
+    }
+
+    private long getStringTimestamp() {
         CharSequence tsStr = timestampFunction.getStr(null);
         try {
-            long timestamp = IntervalUtils.parseFloorPartialDate(tsStr);
-            return tableWriter.newRow(timestamp);
+            return IntervalUtils.parseFloorPartialDate(tsStr);
         } catch (NumericException e) {
             throw CairoException.instance(0).put("Invalid timestamp: ").put(tsStr);
         }
     }
 
+    private TableWriter.Row getWalRow(WalWriter walWriter) {
+        if (timestampFunction == null) {
+            return walWriter.newRow();
+        }
+        if (timestampFunction.getType() != ColumnType.STRING) {
+            return walWriter.newRow(timestampFunction.getTimestamp(null));
+        }
+        return walWriter.newRow(getStringTimestamp());
+    }
+
     private TableWriter.Row getRowWithoutTimestamp(TableWriter tableWriter) {
         return tableWriter.newRow();
     }
@@ -168,4 +196,32 @@ public class InsertStatementImpl implements InsertStatement {
             writer = Misc.free(writer);
         }
     }
+
+    private class WalInsertMethod implements InsertMethod {
+        private WalWriter writer = null;
+
+        @Override
+        public long execute() {
+            final TableWriter.Row row = getWalRow(writer);
+            copier.copy(virtualRecord, row);
+            row.append();
+            return 1;
+        }
+
+        @Override
+        public void commit() {
+            writer.commit();
+        }
+
+        @Override
+        public TableWriter popWriter() {
+            // rows of the log are committed by the log writer, there is no table writer to hand over
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            writer = Misc.free(writer);
+        }
+    }
 }
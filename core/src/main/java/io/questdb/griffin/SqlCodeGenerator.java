@@ -40,9 +40,11 @@ import io.questdb.griffin.engine.groupby.*;
 import io.questdb.griffin.engine.groupby.vect.GroupByRecordCursorFactory;
 import io.questdb.griffin.engine.groupby.vect.*;
 import io.questdb.griffin.engine.join.*;
+import io.questdb.griffin.engine.orderby.RadixSortLightRecordCursorFactory;
 import io.questdb.griffin.engine.orderby.RecordComparatorCompiler;
 import io.questdb.griffin.engine.orderby.SortedLightRecordCursorFactory;
 import io.questdb.griffin.engine.orderby.SortedRecordCursorFactory;
+import io.questdb.griffin.engine.orderby.TopKRecordCursorFactory;
 import io.questdb.griffin.engine.table.*;
 import io.questdb.griffin.engine.union.*;
 import io.questdb.griffin.model.*;
@@ -86,11 +88,13 @@ public class SqlCodeGenerator implements Mutable {
     private final EntityColumnFilter entityColumnFilter = new EntityColumnFilter();
     private final ObjList<Function> symbolValueList = new ObjList<>();
     private final ObjList<VectorAggregateFunction> tempVaf = new ObjList<>();
+    private final CompiledFilterGenerator compiledFilterGenerator = new CompiledFilterGenerator();
     private final GenericRecordMetadata tempMetadata = new GenericRecordMetadata();
     private final ArrayColumnTypes arrayColumnTypes = new ArrayColumnTypes();
     private final IntList tempKeyIndexesInBase = new IntList();
     private final IntList tempSymbolSkewIndexes = new IntList();
     private final IntList tempKeyIndex = new IntList();
+    private final IntList tempKeyTypes = new IntList();
     private final IntList tempAggIndex = new IntList();
     private final ObjList<VectorAggregateFunctionConstructor> tempVecConstructors = new ObjList<>();
     private final IntList tempVecConstructorArgIndexes = new IntList();
@@ -165,6 +169,15 @@ public class SqlCodeGenerator implements Mutable {
         return model.getOrderByDirectionAdvice().getQuick(index);
     }
 
+    private static boolean isReadThreadSafe(ObjList<? extends Function> functions) {
+        for (int i = 0, n = functions.size(); i < n; i++) {
+            if (!functions.getQuick(i).isReadThreadSafe()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private VectorAggregateFunctionConstructor assembleFunctionReference(RecordMetadata metadata, ExpressionNode ast) {
         int columnIndex;
         if (ast.type == FUNCTION && ast.paramCount == 1 && SqlKeywords.isSumKeyword(ast.token) && ast.rhs.type == LITERAL) {
@@ -229,6 +242,12 @@ public class SqlCodeGenerator implements Mutable {
                         tempSymbolSkewIndexes.extendAndSet(i, columnIndex);
                         arrayColumnTypes.add(ColumnType.SYMBOL);
                         tempKeyKinds.add(GKK_VANILLA_INT);
+                    } else if (RostiKeyPacker.isPackable(type)) {
+                        // these keys are packed into INT key
+                        tempKeyIndexesInBase.add(columnIndex);
+                        tempKeyIndex.add(i);
+                        arrayColumnTypes.add(type);
+                        tempKeyKinds.add(GKK_VANILLA_INT);
                     } else {
                         return false;
                     }
@@ -246,6 +265,18 @@ public class SqlCodeGenerator implements Mutable {
         return true;
     }
 
+    private boolean isPackableKeySet(RecordMetadata metadata) {
+        for (int i = 0, n = tempKeyIndexesInBase.size(); i < n; i++) {
+            final int type = arrayColumnTypes.getColumnType(i);
+            // symbols are sized using symbol table of the base
+            if (!RostiKeyPacker.isPackable(type)
+                    || (type == ColumnType.SYMBOL && !metadata.isSymbolTableStatic(tempKeyIndexesInBase.getQuick(i)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private RecordMetadata calculateSetMetadata(RecordMetadata masterMetadata) {
         return GenericRecordMetadata.removeTimestamp(masterMetadata);
     }
@@ -448,10 +479,13 @@ public class SqlCodeGenerator implements Mutable {
     }
 
     private RecordCursorFactory createHashJoin(
-            RecordMetadata metadata,
+            CharSequence masterAlias,
             RecordCursorFactory master,
+            CharSequence slaveAlias,
             RecordCursorFactory slave,
-            int joinType
+            int joinType,
+            boolean lastJoin,
+            SqlExecutionContext executionContext
     ) {
         /*
          * JoinContext provides the following information:
@@ -484,6 +518,32 @@ public class SqlCodeGenerator implements Mutable {
         valueTypes.add(ColumnType.LONG);
         valueTypes.add(ColumnType.LONG);
 
+        if (joinType == QueryModel.JOIN_INNER
+                && !fullFatJoins
+                && master.supportPageFrameCursor()
+                && slave.supportPageFrameCursor()
+                && configuration.isSqlParallelHashJoinEnabled()
+                && executionContext.getWorkerCount() > 1
+                && JoinKeyHash.isSupported(keyTypes)) {
+            // unordered join loses master timestamp, joins that follow may require it
+            final boolean ordered = configuration.isSqlParallelHashJoinOrdered() || !lastJoin;
+            return new ParallelHashJoinLightRecordCursorFactory(
+                    configuration,
+                    createJoinMetadata(masterAlias, masterMetadata, slaveAlias, slaveMetadata, ordered ? masterMetadata.getTimestampIndex() : -1),
+                    master,
+                    slave,
+                    keyTypes,
+                    valueTypes,
+                    masterKeySink,
+                    slaveKeySink,
+                    listColumnFilterB,
+                    listColumnFilterA,
+                    masterMetadata.getColumnCount(),
+                    ordered
+            );
+        }
+
+        final RecordMetadata metadata = createJoinMetadata(masterAlias, masterMetadata, slaveAlias, slaveMetadata);
         if (slave.recordCursorSupportsRandomAccess() && !fullFatJoins) {
             if (joinType == QueryModel.JOIN_INNER) {
                 return new HashJoinLightRecordCursorFactory(
@@ -495,6 +555,7 @@ public class SqlCodeGenerator implements Mutable {
                         valueTypes,
                         masterKeySink,
                         slaveKeySink,
+                        listColumnFilterB,
                         masterMetadata.getColumnCount()
                 );
             }
@@ -613,6 +674,30 @@ public class SqlCodeGenerator implements Mutable {
         );
     }
 
+    private RecordCursorFactory createPageFrameAsOfJoin(
+            RecordMetadata metadata,
+            RecordCursorFactory master,
+            RecordMetadata masterMetadata,
+            RecordCursorFactory slave,
+            RecordMetadata slaveMetadata,
+            boolean strict
+    ) {
+        final boolean keyed = listColumnFilterB.size() > 0;
+        return new AsOfJoinPageFrameRecordCursorFactory(
+                configuration,
+                metadata,
+                master,
+                slave,
+                keyTypes,
+                listColumnFilterB,
+                listColumnFilterA,
+                keyed ? RecordSinkFactory.getInstance(asm, masterMetadata, listColumnFilterB, true) : null,
+                keyed ? RecordSinkFactory.getInstance(asm, slaveMetadata, listColumnFilterA, true) : null,
+                masterMetadata.getColumnCount(),
+                strict
+        );
+    }
+
     private RecordCursorFactory createSpliceJoin(
             RecordMetadata metadata,
             RecordCursorFactory master,
@@ -665,6 +750,15 @@ public class SqlCodeGenerator implements Mutable {
                 f.close();
             }
         }
+        if (factory.supportPageFrameCursor()) {
+            final CompiledFilter compiledFilter = configuration.isSqlCompiledFilterEnabled()
+                    ? compiledFilterGenerator.generate(filter, factory.getMetadata())
+                    : null;
+            final boolean parallel = configuration.isSqlParallelFilterEnabled() && executionContext.getWorkerCount() > 1;
+            if (compiledFilter != null || (parallel && f.isReadThreadSafe())) {
+                return new ParallelFilteredRecordCursorFactory(configuration, factory, f, compiledFilter, parallel);
+            }
+        }
         return new FilteredRecordCursorFactory(factory, f);
     }
 
@@ -728,7 +822,16 @@ public class SqlCodeGenerator implements Mutable {
                             case QueryModel.JOIN_ASOF:
                                 validateBothTimestamps(slaveModel, masterMetadata, slaveMetadata);
                                 processJoinContext(index == 1, slaveModel.getContext(), masterMetadata, slaveMetadata);
-                                if (slave.recordCursorSupportsRandomAccess() && !fullFatJoins) {
+                                if (isPageFrameAsOfJoinSupported(master, masterMetadata, slave, slaveMetadata)) {
+                                    master = createPageFrameAsOfJoin(
+                                            createJoinMetadata(masterAlias, masterMetadata, slaveModel.getName(), slaveMetadata),
+                                            master,
+                                            masterMetadata,
+                                            slave,
+                                            slaveMetadata,
+                                            false
+                                    );
+                                } else if (slave.recordCursorSupportsRandomAccess() && !fullFatJoins) {
                                     if (listColumnFilterA.size() > 0 && listColumnFilterB.size() > 0) {
                                         master = createAsOfJoin(
                                                 createJoinMetadata(masterAlias, masterMetadata, slaveModel.getName(), slaveMetadata),
@@ -773,7 +876,16 @@ public class SqlCodeGenerator implements Mutable {
                             case QueryModel.JOIN_LT:
                                 validateBothTimestamps(slaveModel, masterMetadata, slaveMetadata);
                                 processJoinContext(index == 1, slaveModel.getContext(), masterMetadata, slaveMetadata);
-                                if (slave.recordCursorSupportsRandomAccess() && !fullFatJoins) {
+                                if (isPageFrameAsOfJoinSupported(master, masterMetadata, slave, slaveMetadata)) {
+                                    master = createPageFrameAsOfJoin(
+                                            createJoinMetadata(masterAlias, masterMetadata, slaveModel.getName(), slaveMetadata),
+                                            master,
+                                            masterMetadata,
+                                            slave,
+                                            slaveMetadata,
+                                            true
+                                    );
+                                } else if (slave.recordCursorSupportsRandomAccess() && !fullFatJoins) {
                                     if (listColumnFilterA.size() > 0 && listColumnFilterB.size() > 0) {
                                         master = createLtJoin(
                                                 createJoinMetadata(masterAlias, masterMetadata, slaveModel.getName(), slaveMetadata),
@@ -845,10 +957,13 @@ public class SqlCodeGenerator implements Mutable {
                             default:
                                 processJoinContext(index == 1, slaveModel.getContext(), masterMetadata, slaveMetadata);
                                 master = createHashJoin(
-                                        createJoinMetadata(masterAlias, masterMetadata, slaveModel.getName(), slaveMetadata),
+                                        masterAlias,
                                         master,
+                                        slaveModel.getName(),
                                         slave,
-                                        joinType
+                                        joinType,
+                                        i == n - 1,
+                                        executionContext
                                 );
                                 masterAlias = null;
                                 break;
@@ -1119,6 +1234,27 @@ public class SqlCodeGenerator implements Mutable {
         return generateSubQuery(model, executionContext);
     }
 
+    // number of rows LIMIT takes from the head of the cursor, -1 when LIMIT is not constant or takes rows from the tail
+    private static long getConstantLimit(QueryModel model) {
+        final long lo = getConstantLimitValue(model.getLimitLo());
+        final ExpressionNode limitHi = model.getLimitHi();
+        if (limitHi == null) {
+            return lo;
+        }
+        final long hi = getConstantLimitValue(limitHi);
+        return lo > -1 && hi > lo ? hi : -1;
+    }
+
+    private static long getConstantLimitValue(ExpressionNode node) {
+        if (node != null && node.type == ExpressionNode.CONSTANT) {
+            try {
+                return Numbers.parseLong(node.token);
+            } catch (NumericException ignore) {
+            }
+        }
+        return -1;
+    }
+
     private RecordCursorFactory generateOrderBy(RecordCursorFactory recordCursorFactory, QueryModel model) throws SqlException {
         if (recordCursorFactory.followedOrderByAdvice()) {
             return recordCursorFactory;
@@ -1184,6 +1320,25 @@ public class SqlCodeGenerator implements Mutable {
                 orderedMetadata = GenericRecordMetadata.copyOfSansTimestamp(metadata);
 
                 if (recordCursorFactory.recordCursorSupportsRandomAccess()) {
+                    final long limit = getConstantLimit(model);
+                    if (limit > 0 && limit <= configuration.getSqlSortTopKMaxRows() && TopKRecordCursorFactory.isSupported(metadata, listColumnFilterA)) {
+                        return new TopKRecordCursorFactory(
+                                orderedMetadata,
+                                recordCursorFactory,
+                                metadata,
+                                listColumnFilterA,
+                                (int) limit
+                        );
+                    }
+                    if (configuration.isSqlSortRadixEnabled() && RadixSortLightRecordCursorFactory.isSupported(metadata, listColumnFilterA)) {
+                        return new RadixSortLightRecordCursorFactory(
+                                configuration,
+                                orderedMetadata,
+                                recordCursorFactory,
+                                metadata,
+                                listColumnFilterA
+                        );
+                    }
                     return new SortedLightRecordCursorFactory(
                             configuration,
                             orderedMetadata,
@@ -1369,6 +1524,25 @@ public class SqlCodeGenerator implements Mutable {
 
                 if (isFillNone) {
 
+                    if (factory.supportPageFrameCursor()
+                            && configuration.isSqlParallelSampleByEnabled()
+                            && executionContext.getWorkerCount() > 1
+                            && isReadThreadSafe(groupByFunctions)) {
+                        return new ParallelSampleByRecordCursorFactory(
+                                configuration,
+                                factory,
+                                groupByMetadata,
+                                groupByFunctions,
+                                recordFunctions,
+                                timestampSampler,
+                                listColumnFilterA,
+                                asm,
+                                keyTypes,
+                                valueTypes,
+                                timestampIndex
+                        );
+                    }
+
                     if (keyTypes.getColumnCount() == 0) {
                         // this sample by is not keyed
                         return new SampleByFillNoneNotKeyedRecordCursorFactory(
@@ -2003,7 +2177,9 @@ public class SqlCodeGenerator implements Mutable {
                     );
                 }
 
-                if (tempKeyIndexesInBase.size() == 1) {
+                final int keyCount = tempKeyIndexesInBase.size();
+                final int keyType = arrayColumnTypes.getColumnType(0);
+                if (keyCount == 1 && (keyType == ColumnType.INT || keyType == ColumnType.SYMBOL)) {
                     for (int i = 0, n = tempVaf.size(); i < n; i++) {
                         tempVaf.getQuick(i).pushValueTypes(arrayColumnTypes);
                     }
@@ -2017,11 +2193,56 @@ public class SqlCodeGenerator implements Mutable {
                             arrayColumnTypes,
                             executionContext.getWorkerCount(),
                             tempVaf,
-                            tempKeyIndexesInBase.getQuick(0),
-                            tempKeyIndex.getQuick(0),
-                            tempSymbolSkewIndexes
+                            tempKeyIndexesInBase,
+                            tempKeyIndex,
+                            tempSymbolSkewIndexes,
+                            null,
+                            null
                     );
                 }
+
+                if (isPackableKeySet(metadata)) {
+                    GroupByUtils.validateGroupByColumns(model, keyCount);
+
+                    // packed keys may not fit INT when cursor is opened, in which case
+                    // map based factory takes over, it shares base factory with Rosti one
+                    final RecordCursorFactory fallbackFactory = generateGroupByOverFunctions(model, executionContext, factory, metadata);
+                    RostiKeyPacker keyPacker = null;
+                    try {
+                        tempKeyTypes.clear();
+                        for (int i = 0; i < keyCount; i++) {
+                            tempKeyTypes.add(arrayColumnTypes.getColumnType(i));
+                        }
+                        keyPacker = new RostiKeyPacker(tempKeyIndexesInBase, tempKeyTypes, executionContext.getWorkerCount());
+
+                        arrayColumnTypes.clear();
+                        arrayColumnTypes.add(ColumnType.INT);
+                        for (int i = 0, n = tempVaf.size(); i < n; i++) {
+                            tempVaf.getQuick(i).pushValueTypes(arrayColumnTypes);
+                        }
+
+                        return new GroupByRecordCursorFactory(
+                                configuration,
+                                factory,
+                                meta,
+                                arrayColumnTypes,
+                                executionContext.getWorkerCount(),
+                                tempVaf,
+                                tempKeyIndexesInBase,
+                                tempKeyIndex,
+                                tempSymbolSkewIndexes,
+                                keyPacker,
+                                fallbackFactory
+                        );
+                    } catch (Throwable e) {
+                        Misc.free(keyPacker);
+                        // fallback factory owns base factory now
+                        factory = null;
+                        Misc.free(fallbackFactory);
+                        throw e;
+                    }
+                }
+                Misc.freeObjList(tempVaf);
             }
 
             if (specialCaseKeys) {
@@ -2035,52 +2256,69 @@ public class SqlCodeGenerator implements Mutable {
 
             }
 
-            final int timestampIndex = getTimestampIndex(model, factory);
+            return generateGroupByOverFunctions(model, executionContext, factory, metadata);
+        } catch (Throwable e) {
+            Misc.free(factory);
+            throw e;
+        }
+    }
 
-            keyTypes.clear();
-            valueTypes.clear();
-            listColumnFilterA.clear();
+    private RecordCursorFactory generateGroupByOverFunctions(
+            QueryModel model,
+            SqlExecutionContext executionContext,
+            RecordCursorFactory factory,
+            RecordMetadata metadata
+    ) throws SqlException {
+        final int timestampIndex = getTimestampIndex(model, factory);
 
-            final int columnCount = model.getColumns().size();
-            ObjList<GroupByFunction> groupByFunctions = new ObjList<>(columnCount);
-            GroupByUtils.prepareGroupByFunctions(
-                    model,
-                    metadata,
-                    functionParser,
-                    executionContext,
-                    groupByFunctions,
-                    groupByFunctionPositions,
-                    valueTypes
-            );
+        keyTypes.clear();
+        valueTypes.clear();
+        listColumnFilterA.clear();
 
-            final ObjList<Function> recordFunctions = new ObjList<>(columnCount);
-            final GenericRecordMetadata groupByMetadata = new GenericRecordMetadata();
-            GroupByUtils.prepareGroupByRecordFunctions(
-                    model,
-                    metadata,
-                    listColumnFilterA,
+        final int columnCount = model.getColumns().size();
+        ObjList<GroupByFunction> groupByFunctions = new ObjList<>(columnCount);
+        GroupByUtils.prepareGroupByFunctions(
+                model,
+                metadata,
+                functionParser,
+                executionContext,
+                groupByFunctions,
+                groupByFunctionPositions,
+                valueTypes
+        );
+
+        final ObjList<Function> recordFunctions = new ObjList<>(columnCount);
+        final GenericRecordMetadata groupByMetadata = new GenericRecordMetadata();
+        GroupByUtils.prepareGroupByRecordFunctions(
+                model,
+                metadata,
+                listColumnFilterA,
+                groupByFunctions,
+                groupByFunctionPositions,
+                recordFunctions,
+                recordFunctionPositions,
+                groupByMetadata,
+                keyTypes,
+                valueTypes.getColumnCount(),
+                true,
+                timestampIndex
+        );
+
+        if (keyTypes.getColumnCount() == 0) {
+            return new GroupByNotKeyedRecordCursorFactory(
+                    factory,
+                    groupByMetadata,
                     groupByFunctions,
-                    groupByFunctionPositions,
                     recordFunctions,
-                    recordFunctionPositions,
-                    groupByMetadata,
-                    keyTypes,
-                    valueTypes.getColumnCount(),
-                    true,
-                    timestampIndex
+                    valueTypes.getColumnCount()
             );
+        }
 
-            if (keyTypes.getColumnCount() == 0) {
-                return new GroupByNotKeyedRecordCursorFactory(
-                        factory,
-                        groupByMetadata,
-                        groupByFunctions,
-                        recordFunctions,
-                        valueTypes.getColumnCount()
-                );
-            }
-
-            return new io.questdb.griffin.engine.groupby.GroupByRecordCursorFactory(
+        if (factory.supportPageFrameCursor()
+                && configuration.isSqlParallelGroupByEnabled()
+                && executionContext.getWorkerCount() > 1
+                && isReadThreadSafe(groupByFunctions)) {
+            return new ParallelGroupByRecordCursorFactory(
                     configuration,
                     factory,
                     listColumnFilterA,
@@ -2091,11 +2329,19 @@ public class SqlCodeGenerator implements Mutable {
                     groupByFunctions,
                     recordFunctions
             );
-
-        } catch (Throwable e) {
-            Misc.free(factory);
-            throw e;
         }
+
+        return new io.questdb.griffin.engine.groupby.GroupByRecordCursorFactory(
+                configuration,
+                factory,
+                listColumnFilterA,
+                asm,
+                keyTypes,
+                valueTypes,
+                groupByMetadata,
+                groupByFunctions,
+                recordFunctions
+        );
     }
 
     private RecordCursorFactory generateSelectVirtual(QueryModel model, SqlExecutionContext executionContext) throws SqlException {
@@ -2633,6 +2879,15 @@ public class SqlCodeGenerator implements Mutable {
                     }
                 }
 
+                if (intrinsicModel.filter != null
+                        && configuration.isPartitionStatsEnabled()
+                        && reader.getPartitionedBy() != PartitionBy.NONE) {
+                    final PartitionStatsFilter statsFilter = PartitionStatsFilter.of(intrinsicModel.filter, model, readerMeta);
+                    if (statsFilter != null) {
+                        dfcFactory = new PartitionStatsDataFrameCursorFactory(dfcFactory, statsFilter);
+                    }
+                }
+
                 model.setWhereClause(intrinsicModel.filter);
                 return new DataFrameRecordCursorFactory(myMeta, dfcFactory, new DataFrameRowCursorFactory(), false, null, framingSupported, columnIndexes, columnSizes);
             }
@@ -2756,6 +3011,19 @@ public class SqlCodeGenerator implements Mutable {
         return metadata.getTimestampIndex();
     }
 
+    private boolean isPageFrameAsOfJoinSupported(
+            RecordCursorFactory master,
+            RecordMetadata masterMetadata,
+            RecordCursorFactory slave,
+            RecordMetadata slaveMetadata
+    ) {
+        return !fullFatJoins
+                && configuration.isSqlAsOfJoinPageFrameEnabled()
+                && master.supportPageFrameCursor()
+                && slave.supportPageFrameCursor()
+                && AsOfJoinPageFrameRecordCursorFactory.isSupported(masterMetadata, slaveMetadata, listColumnFilterB, listColumnFilterA, keyTypes);
+    }
+
     private boolean isSingleColumnFunction(ExpressionNode ast, CharSequence name) {
         return ast.type == FUNCTION && ast.paramCount == 1 && Chars.equals(ast.token, name) && ast.rhs.type == LITERAL;
     }
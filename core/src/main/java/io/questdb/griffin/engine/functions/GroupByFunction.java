@@ -53,6 +53,19 @@ public interface GroupByFunction extends Function {
         return true;
     }
 
+    /**
+     * Merges partial aggregate of srcValue into destValue. Both values are computed by this
+     * function over disjoint row ranges of the same key, rows of destValue precede rows of srcValue.
+     * Functions that support merging must also report {@link #isReadThreadSafe()}, i.e. be able to
+     * compute values of distinct maps concurrently, to be used by parallel GROUP BY.
+     *
+     * @param destValue map value to merge into
+     * @param srcValue  map value to merge from
+     */
+    default void merge(MapValue destValue, MapValue srcValue) {
+        throw new UnsupportedOperationException();
+    }
+
     void pushValueTypes(ArrayColumnTypes columnTypes);
 
     default void setByte(MapValue mapValue, byte value) {
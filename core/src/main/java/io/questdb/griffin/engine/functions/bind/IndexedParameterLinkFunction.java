@@ -25,6 +25,7 @@
 package io.questdb.griffin.engine.functions.bind;
 
 import io.questdb.cairo.CairoException;
+import io.questdb.cairo.ColumnType;
 import io.questdb.cairo.sql.*;
 import io.questdb.griffin.SqlException;
 import io.questdb.griffin.SqlExecutionContext;
@@ -179,6 +180,12 @@ public class IndexedParameterLinkFunction implements ScalarFunction {
         return getBase().getLong256B(rec);
     }
 
+    @Override
+    public boolean isReadThreadSafe() {
+        // bound values of fixed-size types are read without touching shared buffers
+        return type >= ColumnType.BOOLEAN && type <= ColumnType.DOUBLE;
+    }
+
     private Function getBase() {
         assert base != null;
         return base;
@@ -25,6 +25,7 @@
 package io.questdb.griffin.engine.functions.bind;
 
 import io.questdb.cairo.CairoException;
+import io.questdb.cairo.ColumnType;
 import io.questdb.cairo.sql.*;
 import io.questdb.griffin.SqlExecutionContext;
 import io.questdb.std.BinarySequence;
@@ -172,6 +173,12 @@ public class NamedParameterLinkFunction implements ScalarFunction {
         base.init(symbolTableSource, executionContext);
     }
 
+    @Override
+    public boolean isReadThreadSafe() {
+        // bound values of fixed-size types are read without touching shared buffers
+        return type >= ColumnType.BOOLEAN && type <= ColumnType.DOUBLE;
+    }
+
     private Function getBase() {
         assert base != null;
         return base;
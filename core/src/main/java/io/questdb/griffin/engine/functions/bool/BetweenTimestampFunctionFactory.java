@@ -90,6 +90,11 @@ public class BetweenTimestampFunctionFactory implements FunctionFactory {
         public Function getArg() {
             return left;
         }
+
+        @Override
+        public boolean isReadThreadSafe() {
+            return left.isReadThreadSafe();
+        }
     }
 
     private static class VarBetweenFunction extends NegatableBooleanFunction implements TernaryFunction {
@@ -137,5 +142,10 @@ public class BetweenTimestampFunctionFactory implements FunctionFactory {
         public Function getRight() {
             return to;
         }
+
+        @Override
+        public boolean isReadThreadSafe() {
+            return arg.isReadThreadSafe() && from.isReadThreadSafe() && to.isReadThreadSafe();
+        }
     }
 }
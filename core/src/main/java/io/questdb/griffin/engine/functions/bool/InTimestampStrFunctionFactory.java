@@ -88,6 +88,11 @@ public class InTimestampStrFunctionFactory implements FunctionFactory {
         public Function getArg() {
             return left;
         }
+
+        @Override
+        public boolean isReadThreadSafe() {
+            return left.isReadThreadSafe();
+        }
     }
 
     public static class EqTimestampStrFunction extends NegatableBooleanFunction implements BinaryFunction {
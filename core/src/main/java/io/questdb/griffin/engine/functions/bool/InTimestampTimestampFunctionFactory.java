@@ -167,6 +167,11 @@ public class InTimestampTimestampFunctionFactory implements FunctionFactory {
             return tsFunc;
         }
 
+        @Override
+        public boolean isReadThreadSafe() {
+            return tsFunc.isReadThreadSafe();
+        }
+
         @Override
         public boolean getBool(Record rec) {
             long ts = tsFunc.getTimestamp(rec);
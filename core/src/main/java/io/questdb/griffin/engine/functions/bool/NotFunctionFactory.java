@@ -57,6 +57,11 @@ public class NotFunctionFactory implements FunctionFactory {
             return arg;
         }
 
+        @Override
+        public boolean isReadThreadSafe() {
+            return arg.isReadThreadSafe();
+        }
+
         @Override
         public boolean getBool(Record rec) {
             return !arg.getBool(rec);
@@ -58,4 +58,9 @@ public class BooleanColumn extends BooleanFunction implements ScalarFunction {
     public boolean getBool(Record rec) {
         return rec.getBool(columnIndex);
     }
+
+    @Override
+    public boolean isReadThreadSafe() {
+        return true;
+    }
 }
@@ -44,6 +44,11 @@ public class TimestampColumn extends TimestampFunction implements ScalarFunction
         return rec.getTimestamp(columnIndex);
     }
 
+    @Override
+    public boolean isReadThreadSafe() {
+        return true;
+    }
+
     public static TimestampColumn newInstance(int columnIndex) {
         if (columnIndex < STATIC_COLUMN_COUNT) {
             return COLUMNS.getQuick(columnIndex);
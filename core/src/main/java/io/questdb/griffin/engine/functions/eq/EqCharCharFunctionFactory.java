@@ -77,6 +77,11 @@ public class EqCharCharFunctionFactory implements FunctionFactory {
             return chrFunc2;
         }
 
+        @Override
+        public boolean isReadThreadSafe() {
+            return chrFunc1.isReadThreadSafe() && chrFunc2.isReadThreadSafe();
+        }
+
         @Override
         public boolean getBool(Record rec) {
             return negated != (chrFunc1.getChar(rec) == chrFunc2.getChar(rec));
@@ -120,6 +120,11 @@ public class EqDoubleFunctionFactory implements FunctionFactory {
         public Function getRight() {
             return right;
         }
+
+        @Override
+        public boolean isReadThreadSafe() {
+            return left.isReadThreadSafe() && right.isReadThreadSafe();
+        }
     }
 
     protected static class FuncIntIsNaN extends NegatableBooleanFunction implements UnaryFunction {
@@ -138,6 +143,11 @@ public class EqDoubleFunctionFactory implements FunctionFactory {
         public Function getArg() {
             return arg;
         }
+
+        @Override
+        public boolean isReadThreadSafe() {
+            return arg.isReadThreadSafe();
+        }
     }
 
     protected static class FuncLongIsNaN extends NegatableBooleanFunction implements UnaryFunction {
@@ -156,6 +166,11 @@ public class EqDoubleFunctionFactory implements FunctionFactory {
         public Function getArg() {
             return arg;
         }
+
+        @Override
+        public boolean isReadThreadSafe() {
+            return arg.isReadThreadSafe();
+        }
     }
 
     protected static class FuncDateIsNaN extends NegatableBooleanFunction implements UnaryFunction {
@@ -174,6 +189,11 @@ public class EqDoubleFunctionFactory implements FunctionFactory {
         public Function getArg() {
             return arg;
         }
+
+        @Override
+        public boolean isReadThreadSafe() {
+            return arg.isReadThreadSafe();
+        }
     }
 
     protected static class FuncTimestampIsNaN extends NegatableBooleanFunction implements UnaryFunction {
@@ -192,6 +212,11 @@ public class EqDoubleFunctionFactory implements FunctionFactory {
         public Function getArg() {
             return arg;
         }
+
+        @Override
+        public boolean isReadThreadSafe() {
+            return arg.isReadThreadSafe();
+        }
     }
 
     protected static class FuncFloatIsNaN extends NegatableBooleanFunction implements UnaryFunction {
@@ -210,6 +235,11 @@ public class EqDoubleFunctionFactory implements FunctionFactory {
         public Function getArg() {
             return arg;
         }
+
+        @Override
+        public boolean isReadThreadSafe() {
+            return arg.isReadThreadSafe();
+        }
     }
 
     protected static class FuncDoubleIsNaN extends NegatableBooleanFunction implements UnaryFunction {
@@ -228,5 +258,10 @@ public class EqDoubleFunctionFactory implements FunctionFactory {
         public Function getArg() {
             return arg;
         }
+
+        @Override
+        public boolean isReadThreadSafe() {
+            return arg.isReadThreadSafe();
+        }
     }
 }
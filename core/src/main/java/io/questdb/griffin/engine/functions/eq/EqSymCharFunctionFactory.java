@@ -35,6 +35,7 @@ import io.questdb.griffin.engine.functions.BinaryFunction;
 import io.questdb.griffin.engine.functions.NegatableBooleanFunction;
 import io.questdb.griffin.engine.functions.SymbolFunction;
 import io.questdb.griffin.engine.functions.UnaryFunction;
+import io.questdb.griffin.engine.functions.columns.SymbolColumn;
 import io.questdb.std.Chars;
 import io.questdb.std.IntList;
 import io.questdb.std.ObjList;
@@ -66,7 +67,7 @@ public class EqSymCharFunctionFactory implements FunctionFactory {
 
         if (chrFunc.isConstant()) {
             final char constValue = chrFunc.getChar(null);
-            if (symFunc.getStaticSymbolTable() != null) {
+            if (symFunc.getStaticSymbolTable() != null || symFunc.isSymbolTableStatic()) {
                 return new ConstCheckColumnFunc(symFunc, constValue);
             } else {
                 return new ConstCheckFunc(symFunc, constValue);
@@ -111,6 +112,12 @@ public class EqSymCharFunctionFactory implements FunctionFactory {
             return arg;
         }
 
+        @Override
+        public boolean isReadThreadSafe() {
+            // symbol keys of table columns are read without symbol table lookups
+            return arg instanceof SymbolColumn;
+        }
+
         @Override
         public boolean getBool(Record rec) {
             return negated != (arg.getInt(rec) == valueIndex);
@@ -32,6 +32,7 @@ import io.questdb.griffin.engine.functions.BinaryFunction;
 import io.questdb.griffin.engine.functions.NegatableBooleanFunction;
 import io.questdb.griffin.engine.functions.SymbolFunction;
 import io.questdb.griffin.engine.functions.UnaryFunction;
+import io.questdb.griffin.engine.functions.columns.SymbolColumn;
 import io.questdb.std.Chars;
 import io.questdb.std.IntList;
 import io.questdb.std.ObjList;
@@ -134,6 +135,12 @@ public class EqSymStrFunctionFactory implements FunctionFactory {
             return arg;
         }
 
+        @Override
+        public boolean isReadThreadSafe() {
+            // symbol keys of table columns are read without symbol table lookups
+            return arg instanceof SymbolColumn;
+        }
+
         @Override
         public boolean getBool(Record rec) {
             return negated != (exists && arg.getInt(rec) == valueIndex);
@@ -164,6 +171,12 @@ public class EqSymStrFunctionFactory implements FunctionFactory {
             return arg;
         }
 
+        @Override
+        public boolean isReadThreadSafe() {
+            // symbol keys of table columns are read without symbol table lookups
+            return arg instanceof SymbolColumn;
+        }
+
         @Override
         public boolean getBool(Record rec) {
             return negated != (arg.getInt(rec) == valueIndex);
@@ -37,7 +37,7 @@ import org.jetbrains.annotations.NotNull;
 
 public class FirstDateGroupByFunction extends DateFunction implements GroupByFunction, UnaryFunction {
     private final Function arg;
-    private int valueIndex;
+    protected int valueIndex;
 
     public FirstDateGroupByFunction(@NotNull Function arg) {
         this.arg = arg;
@@ -53,6 +53,16 @@ public class FirstDateGroupByFunction extends DateFunction implements GroupByFun
         // empty
     }
 
+    @Override
+    public boolean isReadThreadSafe() {
+        return arg.isReadThreadSafe();
+    }
+
+    @Override
+    public void merge(MapValue destValue, MapValue srcValue) {
+        // rows of destValue precede rows of srcValue, the first value is already in place
+    }
+
     @Override
     public Function getArg() {
         return this.arg;
@@ -0,0 +1,316 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.groupby;
+
+import io.questdb.MessageBus;
+import io.questdb.cairo.ArrayColumnTypes;
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.CairoException;
+import io.questdb.cairo.RecordSink;
+import io.questdb.cairo.map.Map;
+import io.questdb.cairo.map.MapFactory;
+import io.questdb.cairo.sql.PageFrame;
+import io.questdb.cairo.sql.PageFrameCursor;
+import io.questdb.griffin.engine.functions.GroupByFunction;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.mp.RingQueue;
+import io.questdb.mp.SOUnboundedCountDownLatch;
+import io.questdb.mp.Sequence;
+import io.questdb.std.*;
+import io.questdb.tasks.PageFrameGroupByTask;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+
+/**
+ * Aggregates rows of page frames into per-slice maps on the worker pool. Slices are contiguous
+ * row ranges of the page frame cursor, map of each slice holds keys in the order of their first
+ * occurrence. Aggregator is shared by parallel GROUP BY, which merges slice maps, and parallel
+ * SAMPLE BY, which aligns slices to sample buckets and streams slice maps one after another.
+ */
+class PageFrameAggregator implements Closeable {
+    private static final Log LOG = LogFactory.getLog(PageFrameAggregator.class);
+    private final CairoConfiguration configuration;
+    private final ArrayColumnTypes keyTypes = new ArrayColumnTypes();
+    private final ArrayColumnTypes valueTypes = new ArrayColumnTypes();
+    private final RecordSink mapSink;
+    private final ObjList<GroupByFunction> groupByFunctions;
+    private final ObjList<Map> maps = new ObjList<>();
+    private final ObjList<PageFrameGroupByEntry> entries = new ObjList<>();
+    private final LongList frameAddresses = new LongList();
+    private final LongList frameRowCounts = new LongList();
+    // global row index of the first row of every frame
+    private final LongList frameRowLos = new LongList();
+    private final LongList sliceRowLos = new LongList();
+    private final SOUnboundedCountDownLatch doneLatch = new SOUnboundedCountDownLatch();
+    private final int columnCount;
+    private final long sliceRowCount;
+    private long rowCount;
+    private int sliceCount;
+
+    PageFrameAggregator(
+            CairoConfiguration configuration,
+            @Transient ArrayColumnTypes keyTypes,
+            @Transient ArrayColumnTypes valueTypes,
+            RecordSink mapSink,
+            ObjList<GroupByFunction> groupByFunctions,
+            int columnCount
+    ) {
+        this.configuration = configuration;
+        for (int i = 0, n = keyTypes.getColumnCount(); i < n; i++) {
+            this.keyTypes.add(keyTypes.getColumnType(i));
+        }
+        for (int i = 0, n = valueTypes.getColumnCount(); i < n; i++) {
+            this.valueTypes.add(valueTypes.getColumnType(i));
+        }
+        this.mapSink = mapSink;
+        this.groupByFunctions = groupByFunctions;
+        this.columnCount = columnCount;
+        this.sliceRowCount = Math.max(1, configuration.getSqlParallelGroupBySliceRowCount());
+    }
+
+    @Override
+    public void close() {
+        Misc.freeObjList(maps);
+        maps.clear();
+    }
+
+    Map getMap(int index) {
+        return maps.getQuick(index);
+    }
+
+    long getRowCount() {
+        return rowCount;
+    }
+
+    int getSliceCount() {
+        return sliceCount;
+    }
+
+    long getTimestamp(int timestampIndex, long row) {
+        int frameIndex = frameRowLos.binarySearch(row);
+        if (frameIndex < 0) {
+            frameIndex = -frameIndex - 2;
+        }
+        // skip empty frames that share the same first row
+        while (frameIndex + 1 < frameRowLos.size() && frameRowLos.getQuick(frameIndex + 1) == row) {
+            frameIndex++;
+        }
+        final long address = frameAddresses.getQuick(frameIndex * columnCount + timestampIndex);
+        return Unsafe.getUnsafe().getLong(address + ((row - frameRowLos.getQuick(frameIndex)) << 3));
+    }
+
+    /**
+     * Aggregates rows of all page frames of the cursor.
+     *
+     * @param bus              message bus to publish slices to, null to aggregate on this thread
+     * @param workerCount      maximum number of slices
+     * @param timestampSampler sampler of the SAMPLE BY, slices are aligned to its buckets and
+     *                         bucket timestamp becomes the last key of the map; null for GROUP BY
+     * @param timestampIndex   index of the designated timestamp column, used by SAMPLE BY only
+     */
+    void aggregate(
+            PageFrameCursor pageFrameCursor,
+            @Nullable MessageBus bus,
+            int workerCount,
+            @Nullable TimestampSampler timestampSampler,
+            int timestampIndex
+    ) {
+        collectFrames(pageFrameCursor);
+        sliceCount = bus == null ? 1 : (int) Math.max(1, Math.min(workerCount, rowCount / sliceRowCount));
+
+        sliceRowLos.clear();
+        for (int i = 0; i < sliceCount; i++) {
+            sliceRowLos.add(rowCount * i / sliceCount);
+        }
+        sliceRowLos.add(rowCount);
+
+        long baselineOffset = 0;
+        if (timestampSampler != null && rowCount > 0) {
+            final long timestamp = getTimestamp(timestampIndex, 0);
+            baselineOffset = timestamp - timestampSampler.round(timestamp);
+            alignSlices(timestampSampler, timestampIndex, baselineOffset);
+        }
+
+        doneLatch.reset();
+
+        int ownCount = 0;
+        int reclaimed = 0;
+        for (int i = 0; i < sliceCount; i++) {
+            final PageFrameGroupByEntry entry = getEntry(i);
+            entry.of(
+                    i,
+                    frameAddresses,
+                    frameRowCounts,
+                    columnCount,
+                    sliceRowLos.getQuick(i),
+                    sliceRowLos.getQuick(i + 1),
+                    nextMap(i),
+                    mapSink,
+                    groupByFunctions,
+                    timestampSampler,
+                    timestampIndex,
+                    baselineOffset,
+                    doneLatch
+            );
+
+            // first slice is always aggregated by this thread
+            if (i > 0) {
+                final RingQueue<PageFrameGroupByTask> queue = bus.getPageFrameGroupByQueue();
+                final Sequence pubSeq = bus.getPageFrameGroupByPubSeq();
+                final long seq = pubSeq.next();
+                if (seq < 0) {
+                    entry.run();
+                    ownCount++;
+                } else {
+                    queue.get(seq).entry = entry;
+                    pubSeq.done(seq);
+                }
+            }
+        }
+
+        // this thread aggregates the first slice and then the slices that workers have not
+        // picked up yet, start at the back to reduce chance of clashing with workers
+        entries.getQuick(0).run();
+        for (int i = sliceCount - 1; i > 0 && doneLatch.getCount() > -sliceCount; i--) {
+            if (entries.getQuick(i).run()) {
+                reclaimed++;
+            }
+        }
+        doneLatch.await(sliceCount);
+
+        // all entries are cleared before the first error is rethrown
+        PageFrameGroupByEntry failedEntry = null;
+        Throwable error = null;
+        int failedIndex = -1;
+        for (int i = 0; i < sliceCount; i++) {
+            final PageFrameGroupByEntry entry = entries.getQuick(i);
+            if (error == null && entry.getError() != null) {
+                failedEntry = entry;
+                error = entry.getError();
+                failedIndex = i;
+            }
+            entry.clear();
+        }
+        if (error != null) {
+            throwError(failedEntry, error, failedIndex, timestampSampler == null ? "group by" : "sample by");
+        }
+
+        LOG.debug().$("done [slices=").$(sliceCount).$(", rows=").$(rowCount).$(", ownCount=").$(ownCount).$(", reclaimed=").$(reclaimed).$(']').$();
+    }
+
+    // error message and errno outlive clear() of the entry
+    private static void throwError(PageFrameGroupByEntry entry, Throwable error, int index, CharSequence operation) {
+        if (error instanceof CairoException) {
+            LOG.error().$(operation).$(" failed [slice=").$(index).$(", errno=").$(entry.getErrno()).$(", error=").$(entry.getErrorMessage()).$(']').$();
+            throw CairoException.instance(entry.getErrno())
+                    .put(entry.getErrorMessage())
+                    .setInterruption(entry.isInterruption());
+        }
+        LOG.error().$(operation).$(" failed [slice=").$(index).$(", error=").$(error).$(']').$();
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        }
+        if (error instanceof Error) {
+            throw (Error) error;
+        }
+        throw CairoException.instance(0).put("parallel ").put(operation).put(" failed [error=").put(error.toString()).put(']');
+    }
+
+    // moves start of every slice to the first row of a sample bucket, so that
+    // buckets do not span slices
+    private void alignSlices(TimestampSampler timestampSampler, int timestampIndex, long baselineOffset) {
+        for (int i = 1; i < sliceCount; i++) {
+            final long rowLo = Math.max(sliceRowLos.getQuick(i), sliceRowLos.getQuick(i - 1));
+            if (rowLo >= rowCount || rowLo == 0) {
+                sliceRowLos.setQuick(i, rowLo);
+                continue;
+            }
+            final long bucket = timestampSampler.round(getTimestamp(timestampIndex, rowLo - 1) - baselineOffset);
+            final long nextBucketTimestamp = timestampSampler.nextTimestamp(bucket) + baselineOffset;
+            sliceRowLos.setQuick(i, lowerBound(timestampIndex, nextBucketTimestamp, rowLo - 1));
+        }
+    }
+
+    private void collectFrames(PageFrameCursor pageFrameCursor) {
+        frameAddresses.clear();
+        frameRowCounts.clear();
+        frameRowLos.clear();
+        rowCount = 0;
+        PageFrame frame;
+        while ((frame = pageFrameCursor.next()) != null) {
+            final long frameRows = getFrameRowCount(frame);
+            for (int i = 0; i < columnCount; i++) {
+                frameAddresses.add(frame.getPageAddress(i));
+            }
+            frameRowCounts.add(frameRows);
+            frameRowLos.add(rowCount);
+            rowCount += frameRows;
+        }
+    }
+
+    private PageFrameGroupByEntry getEntry(int index) {
+        PageFrameGroupByEntry entry = entries.getQuiet(index);
+        if (entry == null) {
+            entries.extendAndSet(index, entry = new PageFrameGroupByEntry());
+        }
+        return entry;
+    }
+
+    private long getFrameRowCount(PageFrame frame) {
+        if (columnCount == 0) {
+            return 0;
+        }
+        final long pageSize = frame.getPageSize(0);
+        return frame.getPageAddress(0) == 0 ? pageSize : pageSize >> frame.getColumnSize(0);
+    }
+
+    // finds first row, at or after rowLo, with timestamp not less than the given one
+    private long lowerBound(int timestampIndex, long timestamp, long rowLo) {
+        long lo = rowLo;
+        long hi = rowCount;
+        while (lo < hi) {
+            final long mid = (lo + hi) >>> 1;
+            if (getTimestamp(timestampIndex, mid) < timestamp) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private Map nextMap(int index) {
+        Map map = maps.getQuiet(index);
+        if (map == null) {
+            maps.extendAndSet(index, map = MapFactory.createMap(configuration, keyTypes, valueTypes));
+        } else {
+            map.clear();
+        }
+        return map;
+    }
+}
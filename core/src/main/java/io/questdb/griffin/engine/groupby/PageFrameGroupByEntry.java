@@ -0,0 +1,185 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.groupby;
+
+import io.questdb.cairo.CairoException;
+import io.questdb.cairo.RecordSink;
+import io.questdb.cairo.map.Map;
+import io.questdb.cairo.map.MapKey;
+import io.questdb.cairo.map.MapValue;
+import io.questdb.griffin.engine.functions.GroupByFunction;
+import io.questdb.griffin.engine.table.PageFrameRecord;
+import io.questdb.mp.CountDownLatchSPI;
+import io.questdb.std.AbstractLockable;
+import io.questdb.std.LongList;
+import io.questdb.std.Mutable;
+import io.questdb.std.ObjList;
+import io.questdb.std.str.StringSink;
+
+/**
+ * Unit of work of the parallel GROUP BY and SAMPLE BY. Entry aggregates a contiguous range
+ * of rows of the table into its own map. SAMPLE BY entries append sample bucket to the map key
+ * and store bucket timestamp as the first map value. Ranges are expressed in rows across all page frames, so
+ * that a single large frame can be split between several entries. Entry is executed either
+ * by a worker or by the thread that owns the cursor, whichever manages to lock it first.
+ * Message and errno of Cairo exceptions are copied, the worker reuses its thread-local instance.
+ */
+public class PageFrameGroupByEntry extends AbstractLockable implements Mutable {
+    private final LongList pageAddresses = new LongList();
+    private final PageFrameRecord record = new PageFrameRecord(null);
+    private final StringSink errorMessage = new StringSink();
+    private LongList frameAddresses;
+    private LongList frameRowCounts;
+    private int columnCount;
+    private long rowLo;
+    private long rowHi;
+    private Map map;
+    private RecordSink mapSink;
+    private ObjList<GroupByFunction> groupByFunctions;
+    private TimestampSampler timestampSampler;
+    private int timestampIndex;
+    private long baselineOffset;
+    private CountDownLatchSPI doneLatch;
+    private Throwable error;
+    private int errno;
+    private boolean interruption;
+
+    @Override
+    public void clear() {
+        pageAddresses.clear();
+        frameAddresses = null;
+        frameRowCounts = null;
+        map = null;
+        mapSink = null;
+        groupByFunctions = null;
+        timestampSampler = null;
+        doneLatch = null;
+        error = null;
+    }
+
+    public boolean run() {
+        if (tryLock()) {
+            try {
+                aggregate();
+            } catch (Throwable e) {
+                if (e instanceof CairoException) {
+                    final CairoException ce = (CairoException) e;
+                    errno = ce.getErrno();
+                    interruption = ce.isInterruption();
+                    errorMessage.clear();
+                    errorMessage.put(ce.getFlyweightMessage());
+                }
+                error = e;
+            } finally {
+                doneLatch.countDown();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private void aggregate() {
+        final int n = groupByFunctions.size();
+        long frameRowLo = 0;
+        for (int frameIndex = 0, frameCount = frameRowCounts.size(); frameIndex < frameCount && frameRowLo < rowHi; frameIndex++) {
+            final long frameRowHi = frameRowLo + frameRowCounts.getQuick(frameIndex);
+            if (frameRowHi > rowLo) {
+                pageAddresses.clear();
+                for (int i = 0, offset = frameIndex * columnCount; i < columnCount; i++) {
+                    pageAddresses.add(frameAddresses.getQuick(offset + i));
+                }
+                record.of(pageAddresses, frameIndex);
+
+                final long hi = Math.min(rowHi, frameRowHi) - frameRowLo;
+                for (long r = Math.max(rowLo, frameRowLo) - frameRowLo; r < hi; r++) {
+                    record.setRow(r);
+                    final MapKey key = map.withKey();
+                    mapSink.copy(record, key);
+                    if (timestampSampler == null) {
+                        GroupByUtils.updateFunctions(groupByFunctions, n, key.createValue(), record);
+                    } else {
+                        final long bucket = timestampSampler.round(record.getTimestamp(timestampIndex) - baselineOffset);
+                        key.putTimestamp(bucket);
+                        final MapValue value = key.createValue();
+                        if (value.isNew()) {
+                            value.putTimestamp(0, bucket + baselineOffset);
+                        }
+                        GroupByUtils.updateFunctions(groupByFunctions, n, value, record);
+                    }
+                }
+            }
+            frameRowLo = frameRowHi;
+        }
+    }
+
+    Throwable getError() {
+        return error;
+    }
+
+    int getErrno() {
+        return errno;
+    }
+
+    CharSequence getErrorMessage() {
+        return errorMessage;
+    }
+
+    boolean isInterruption() {
+        return interruption;
+    }
+
+    void of(
+            int sequence,
+            LongList frameAddresses,
+            LongList frameRowCounts,
+            int columnCount,
+            long rowLo,
+            long rowHi,
+            Map map,
+            RecordSink mapSink,
+            ObjList<GroupByFunction> groupByFunctions,
+            TimestampSampler timestampSampler,
+            int timestampIndex,
+            long baselineOffset,
+            CountDownLatchSPI doneLatch
+    ) {
+        this.frameAddresses = frameAddresses;
+        this.frameRowCounts = frameRowCounts;
+        this.columnCount = columnCount;
+        this.rowLo = rowLo;
+        this.rowHi = rowHi;
+        this.map = map;
+        this.mapSink = mapSink;
+        this.groupByFunctions = groupByFunctions;
+        this.timestampSampler = timestampSampler;
+        this.timestampIndex = timestampIndex;
+        this.baselineOffset = baselineOffset;
+        this.doneLatch = doneLatch;
+        this.error = null;
+        // entry can be locked only after it is fully populated
+        of(sequence);
+    }
+}
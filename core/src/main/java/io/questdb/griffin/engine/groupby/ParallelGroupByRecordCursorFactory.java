@@ -0,0 +1,198 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.groupby;
+
+import io.questdb.cairo.*;
+import io.questdb.cairo.map.*;
+import io.questdb.cairo.sql.*;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.griffin.engine.functions.GroupByFunction;
+import io.questdb.std.*;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Keyed GROUP BY over page frames computed by the worker pool. Table rows are split into
+ * contiguous slices, one per worker. Each slice is aggregated into its own map and partial
+ * maps are merged in slice order via {@link GroupByFunction#merge(MapValue, MapValue)}, which
+ * keeps order-dependent functions, such as first() and last(), consistent with the
+ * single-threaded {@link GroupByRecordCursorFactory}.
+ */
+public class ParallelGroupByRecordCursorFactory implements RecordCursorFactory {
+    private final RecordCursorFactory base;
+    private final RecordMetadata metadata;
+    private final ObjList<GroupByFunction> groupByFunctions;
+    private final ObjList<Function> recordFunctions;
+    // this sink is used to copy keys of partial maps to the map of the first slice
+    private final RecordSink mergeSink;
+    private final ArrayColumnTypes valueTypes = new ArrayColumnTypes();
+    private final PageFrameAggregator aggregator;
+    private final ParallelGroupByRecordCursor cursor;
+
+    public ParallelGroupByRecordCursorFactory(
+            CairoConfiguration configuration,
+            RecordCursorFactory base,
+            @Transient @NotNull ListColumnFilter listColumnFilter,
+            @Transient @NotNull BytecodeAssembler asm,
+            @Transient @NotNull ArrayColumnTypes keyTypes,
+            @Transient @NotNull ArrayColumnTypes valueTypes,
+            RecordMetadata groupByMetadata,
+            ObjList<GroupByFunction> groupByFunctions,
+            ObjList<Function> recordFunctions
+    ) {
+        assert base.supportPageFrameCursor();
+        try {
+            final RecordSink mapSink = RecordSinkFactory.getInstance(asm, base.getMetadata(), listColumnFilter, false);
+
+            // map record exposes values first, followed by keys
+            final ArrayColumnTypes mapTypes = new ArrayColumnTypes();
+            final ListColumnFilter mergeColumnFilter = new ListColumnFilter();
+            final int valueCount = valueTypes.getColumnCount();
+            for (int i = 0; i < valueCount; i++) {
+                final int type = valueTypes.getColumnType(i);
+                this.valueTypes.add(type);
+                mapTypes.add(type);
+            }
+            for (int i = 0, n = keyTypes.getColumnCount(); i < n; i++) {
+                mapTypes.add(keyTypes.getColumnType(i));
+                mergeColumnFilter.add(valueCount + i + 1);
+            }
+            this.mergeSink = RecordSinkFactory.getInstance(asm, mapTypes, mergeColumnFilter, false);
+
+            this.base = base;
+            this.metadata = groupByMetadata;
+            this.groupByFunctions = groupByFunctions;
+            this.recordFunctions = recordFunctions;
+            this.aggregator = new PageFrameAggregator(
+                    configuration,
+                    keyTypes,
+                    valueTypes,
+                    mapSink,
+                    groupByFunctions,
+                    base.getMetadata().getColumnCount()
+            );
+            this.cursor = new ParallelGroupByRecordCursor(recordFunctions);
+        } catch (Throwable e) {
+            Misc.freeObjList(recordFunctions);
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        Misc.freeObjList(recordFunctions);
+        Misc.free(aggregator);
+        Misc.free(base);
+    }
+
+    @Override
+    public RecordCursor getCursor(SqlExecutionContext executionContext) {
+        final PageFrameCursor pageFrameCursor = base.getPageFrameCursor(executionContext);
+        try {
+            final SymbolTableSource symbolTableSource = pageFrameCursor::getSymbolMapReader;
+            // group-by functions are computed before record functions get initialised
+            Function.init(groupByFunctions, symbolTableSource, executionContext);
+
+            aggregator.aggregate(pageFrameCursor, executionContext.getMessageBus(), executionContext.getWorkerCount(), null, -1);
+
+            final Map dataMap = aggregator.getMap(0);
+            for (int i = 1, n = aggregator.getSliceCount(); i < n; i++) {
+                executionContext.getSqlExecutionInterruptor().checkInterrupted();
+                merge(dataMap, aggregator.getMap(i));
+            }
+
+            cursor.of(pageFrameCursor, dataMap.getCursor());
+            // init all record function for this cursor, in case functions require metadata and/or symbol tables
+            Function.init(recordFunctions, symbolTableSource, executionContext);
+            return cursor;
+        } catch (Throwable e) {
+            Misc.free(pageFrameCursor);
+            throw e;
+        }
+    }
+
+    @Override
+    public RecordMetadata getMetadata() {
+        return metadata;
+    }
+
+    @Override
+    public boolean recordCursorSupportsRandomAccess() {
+        return true;
+    }
+
+    private void copyValue(MapValue destValue, MapValue srcValue) {
+        for (int i = 0, n = valueTypes.getColumnCount(); i < n; i++) {
+            switch (valueTypes.getColumnType(i)) {
+                case ColumnType.BOOLEAN:
+                case ColumnType.BYTE:
+                    destValue.putByte(i, srcValue.getByte(i));
+                    break;
+                case ColumnType.SHORT:
+                    destValue.putShort(i, srcValue.getShort(i));
+                    break;
+                case ColumnType.CHAR:
+                    destValue.putChar(i, srcValue.getChar(i));
+                    break;
+                case ColumnType.INT:
+                case ColumnType.SYMBOL:
+                    destValue.putInt(i, srcValue.getInt(i));
+                    break;
+                case ColumnType.FLOAT:
+                    destValue.putFloat(i, srcValue.getFloat(i));
+                    break;
+                case ColumnType.DOUBLE:
+                    destValue.putDouble(i, srcValue.getDouble(i));
+                    break;
+                case ColumnType.LONG:
+                case ColumnType.DATE:
+                case ColumnType.TIMESTAMP:
+                    destValue.putLong(i, srcValue.getLong(i));
+                    break;
+                default:
+                    throw CairoException.instance(0).put("unsupported group by value type [type=").put(ColumnType.nameOf(valueTypes.getColumnType(i))).put(']');
+            }
+        }
+    }
+
+    private void merge(Map destMap, Map srcMap) {
+        final int n = groupByFunctions.size();
+        final RecordCursor srcCursor = srcMap.getCursor();
+        final MapRecord srcRecord = (MapRecord) srcCursor.getRecord();
+        while (srcCursor.hasNext()) {
+            final MapKey key = destMap.withKey();
+            mergeSink.copy(srcRecord, key);
+            final MapValue destValue = key.createValue();
+            final MapValue srcValue = srcRecord.getValue();
+            if (destValue.isNew()) {
+                copyValue(destValue, srcValue);
+            } else {
+                for (int i = 0; i < n; i++) {
+                    groupByFunctions.getQuick(i).merge(destValue, srcValue);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.groupby;
+
+import io.questdb.cairo.sql.*;
+import io.questdb.std.Misc;
+import io.questdb.std.ObjList;
+
+/**
+ * Streams maps of SAMPLE BY slices one after another. Slices do not share sample buckets
+ * and each map lists its buckets in timestamp order, so no merge is required.
+ */
+class ParallelSampleByRecordCursor implements NoRandomAccessRecordCursor {
+    private final ObjList<Function> recordFunctions;
+    private final VirtualRecord record;
+    private PageFrameAggregator aggregator;
+    private PageFrameCursor pageFrameCursor;
+    private RecordCursor mapCursor;
+    private int sliceIndex;
+
+    ParallelSampleByRecordCursor(ObjList<Function> recordFunctions) {
+        this.recordFunctions = recordFunctions;
+        this.record = new VirtualRecordNoRowid(recordFunctions);
+    }
+
+    @Override
+    public void close() {
+        // maps are owned by the factory, page frame cursor keeps symbol tables of the keys open
+        pageFrameCursor = Misc.free(pageFrameCursor);
+        aggregator = null;
+        mapCursor = null;
+    }
+
+    @Override
+    public Record getRecord() {
+        return record;
+    }
+
+    @Override
+    public SymbolTable getSymbolTable(int columnIndex) {
+        return (SymbolTable) recordFunctions.getQuick(columnIndex);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!mapCursor.hasNext()) {
+            if (++sliceIndex >= aggregator.getSliceCount()) {
+                // stay on the last slice, so that subsequent calls keep returning false
+                sliceIndex = aggregator.getSliceCount() - 1;
+                return false;
+            }
+            switchSlice();
+        }
+        return true;
+    }
+
+    @Override
+    public long size() {
+        return -1;
+    }
+
+    @Override
+    public void toTop() {
+        sliceIndex = 0;
+        switchSlice();
+        GroupByUtils.toTop(recordFunctions);
+    }
+
+    void of(PageFrameCursor pageFrameCursor, PageFrameAggregator aggregator) {
+        this.pageFrameCursor = pageFrameCursor;
+        this.aggregator = aggregator;
+        this.sliceIndex = 0;
+        switchSlice();
+    }
+
+    private void switchSlice() {
+        mapCursor = aggregator.getMap(sliceIndex).getCursor();
+        record.of(mapCursor.getRecord());
+    }
+}
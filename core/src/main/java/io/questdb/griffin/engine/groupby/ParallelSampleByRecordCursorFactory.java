@@ -0,0 +1,147 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.groupby;
+
+import io.questdb.cairo.*;
+import io.questdb.cairo.sql.*;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.griffin.engine.functions.GroupByFunction;
+import io.questdb.griffin.engine.functions.columns.TimestampColumn;
+import io.questdb.std.BytecodeAssembler;
+import io.questdb.std.Misc;
+import io.questdb.std.ObjList;
+import io.questdb.std.Transient;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * SAMPLE BY with FILL(NONE), keyed or not, over page frames computed by the worker pool.
+ * Table rows are split into slices whose boundaries are moved to the start of a sample
+ * bucket. Each slice is aggregated into its own map keyed by the SAMPLE BY keys and the
+ * bucket. Maps are then streamed in slice order, which yields the same rows in the same
+ * order as {@link SampleByFillNoneRecordCursorFactory}.
+ */
+public class ParallelSampleByRecordCursorFactory implements RecordCursorFactory {
+    private final RecordCursorFactory base;
+    private final RecordMetadata metadata;
+    private final ObjList<GroupByFunction> groupByFunctions;
+    private final ObjList<Function> recordFunctions;
+    private final TimestampSampler timestampSampler;
+    private final PageFrameAggregator aggregator;
+    private final ParallelSampleByRecordCursor cursor;
+    private final int timestampIndex;
+
+    public ParallelSampleByRecordCursorFactory(
+            CairoConfiguration configuration,
+            RecordCursorFactory base,
+            RecordMetadata groupByMetadata,
+            @NotNull ObjList<GroupByFunction> groupByFunctions,
+            @NotNull ObjList<Function> recordFunctions,
+            @NotNull TimestampSampler timestampSampler,
+            @Transient @NotNull ListColumnFilter listColumnFilter,
+            @Transient @NotNull BytecodeAssembler asm,
+            @Transient @NotNull ArrayColumnTypes keyTypes,
+            @Transient @NotNull ArrayColumnTypes valueTypes,
+            int timestampIndex
+    ) {
+        assert base.supportPageFrameCursor();
+        try {
+            final RecordSink mapSink = RecordSinkFactory.getInstance(asm, base.getMetadata(), listColumnFilter, false);
+
+            // sample bucket is the last key, bucket timestamp is the first value
+            final ArrayColumnTypes mapKeyTypes = new ArrayColumnTypes();
+            for (int i = 0, n = keyTypes.getColumnCount(); i < n; i++) {
+                mapKeyTypes.add(keyTypes.getColumnType(i));
+            }
+            mapKeyTypes.add(ColumnType.TIMESTAMP);
+            for (int i = 0, n = recordFunctions.size(); i < n; i++) {
+                if (recordFunctions.getQuick(i) == null) {
+                    recordFunctions.setQuick(i, TimestampColumn.newInstance(0));
+                }
+            }
+
+            this.base = base;
+            this.metadata = groupByMetadata;
+            this.groupByFunctions = groupByFunctions;
+            this.recordFunctions = recordFunctions;
+            this.timestampSampler = timestampSampler;
+            this.timestampIndex = timestampIndex;
+            this.aggregator = new PageFrameAggregator(
+                    configuration,
+                    mapKeyTypes,
+                    valueTypes,
+                    mapSink,
+                    groupByFunctions,
+                    base.getMetadata().getColumnCount()
+            );
+            this.cursor = new ParallelSampleByRecordCursor(recordFunctions);
+        } catch (Throwable e) {
+            Misc.freeObjList(recordFunctions);
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        Misc.freeObjList(recordFunctions);
+        Misc.free(aggregator);
+        Misc.free(base);
+    }
+
+    @Override
+    public RecordCursor getCursor(SqlExecutionContext executionContext) {
+        final PageFrameCursor pageFrameCursor = base.getPageFrameCursor(executionContext);
+        try {
+            final SymbolTableSource symbolTableSource = pageFrameCursor::getSymbolMapReader;
+            Function.init(groupByFunctions, symbolTableSource, executionContext);
+
+            aggregator.aggregate(
+                    pageFrameCursor,
+                    executionContext.getMessageBus(),
+                    executionContext.getWorkerCount(),
+                    timestampSampler,
+                    timestampIndex
+            );
+
+            cursor.of(pageFrameCursor, aggregator);
+            // init all record function for this cursor, in case functions require metadata and/or symbol tables
+            Function.init(recordFunctions, symbolTableSource, executionContext);
+            return cursor;
+        } catch (Throwable e) {
+            Misc.free(pageFrameCursor);
+            throw e;
+        }
+    }
+
+    @Override
+    public RecordMetadata getMetadata() {
+        return metadata;
+    }
+
+    @Override
+    public boolean recordCursorSupportsRandomAccess() {
+        return false;
+    }
+}
@@ -39,6 +39,7 @@ import io.questdb.mp.Worker;
 import io.questdb.std.*;
 import io.questdb.std.str.CharSink;
 import io.questdb.tasks.VectorAggregateTask;
+import org.jetbrains.annotations.Nullable;
 
 public class GroupByRecordCursorFactory implements RecordCursorFactory {
 
@@ -54,6 +55,9 @@ public class GroupByRecordCursorFactory implements RecordCursorFactory {
     private final long[] pRosti;
     private final int keyColumnIndex;
     private final RostiRecordCursor cursor;
+    private final RostiKeyPacker keyPacker;
+    private final RecordCursorFactory fallbackFactory;
+    private final LongList keyAddresses = new LongList();
 
     public GroupByRecordCursorFactory(
             CairoConfiguration configuration,
@@ -62,15 +66,17 @@ public class GroupByRecordCursorFactory implements RecordCursorFactory {
             @Transient ColumnTypes columnTypes,
             int workerCount,
             @Transient ObjList<VectorAggregateFunction> vafList,
-            int keyColumnIndexInBase,
-            int keyColumnIndexInThisCursor,
-            @Transient IntList symbolTableSkewIndex
+            @Transient IntList keyColumnIndexesInBase,
+            @Transient IntList keyColumnIndexesInThisCursor,
+            @Transient IntList symbolTableSkewIndex,
+            @Nullable RostiKeyPacker keyPacker,
+            @Nullable RecordCursorFactory fallbackFactory
     ) {
 
         this.entryPool = new ObjectPool<>(VectorAggregateEntry::new, configuration.getGroupByPoolCapacity());
         this.activeEntries = new ObjList<>(configuration.getGroupByPoolCapacity());
         // columnTypes and functions must align in the following way:
-        // columnTypes[0] is the type of key, for now single key is supported
+        // columnTypes[0] is the type of key, several keys are packed into single INT key
         // functions.size = columnTypes.size - 1, functions do not have instance for key, only for values
         // functions[0].type == columnTypes[1]
         // ...
@@ -79,6 +85,8 @@ public class GroupByRecordCursorFactory implements RecordCursorFactory {
         this.base = base;
         this.metadata = metadata;
         // first column is INT or SYMBOL
+        this.keyPacker = keyPacker;
+        this.fallbackFactory = fallbackFactory;
         this.pRosti = new long[workerCount];
         final int vafCount = vafList.size();
         this.vafList = new ObjList<>(vafCount);
@@ -113,39 +121,31 @@ public class GroupByRecordCursorFactory implements RecordCursorFactory {
         final long pRosti = this.pRosti[0];
         final long columnOffsets = Rosti.getValueOffsets(pRosti);
 
-        // skew logic assumes single key, for multiple keys skew would be different
-
+        // keys are all at the start of the slot, aggregates follow in order of appearance
+        final int keyCount = keyColumnIndexesInThisCursor.size();
         final IntList columnSkewIndex = new IntList();
-        // key is in the middle, shift aggregates before the key one position left
-        addOffsets(columnSkewIndex, vafList, 0, keyColumnIndexInThisCursor, columnOffsets);
-
-        // this is offset of the key column
-        columnSkewIndex.add(0);
-
-        // add remaining aggregate columns as is
-        addOffsets(columnSkewIndex, vafList, keyColumnIndexInThisCursor, vafCount, columnOffsets);
+        final IntList keyIndexes = new IntList();
+        for (int i = 0, vafIndex = 0, n = keyCount + vafCount; i < n; i++) {
+            final int keyIndex = keyColumnIndexesInThisCursor.indexOf(i, 0, keyCount);
+            if (keyIndex > -1) {
+                // this is offset of the key column
+                columnSkewIndex.add(0);
+            } else {
+                columnSkewIndex.add(Unsafe.getUnsafe().getInt(columnOffsets + vafList.getQuick(vafIndex++).getValueOffset() * 4L));
+            }
+            keyIndexes.add(keyIndex);
+        }
 
         this.vafList.addAll(vafList);
-        this.keyColumnIndex = keyColumnIndexInBase;
+        this.keyColumnIndex = keyColumnIndexesInBase.getQuick(0);
+        final IntList symbolSkew;
         if (symbolTableSkewIndex.size() > 0) {
-            final IntList symbolSkew = new IntList(symbolTableSkewIndex.size());
+            symbolSkew = new IntList(symbolTableSkewIndex.size());
             symbolSkew.addAll(symbolTableSkewIndex);
-            this.cursor = new RostiRecordCursor(pRosti, columnSkewIndex, symbolSkew);
         } else {
-            this.cursor = new RostiRecordCursor(pRosti, columnSkewIndex, null);
-        }
-    }
-
-    private static void addOffsets(
-            IntList columnSkewIndex,
-            @Transient ObjList<VectorAggregateFunction> vafList,
-            int start,
-            int end,
-            long columnOffsets
-    ) {
-        for (int i = start; i < end; i++) {
-            columnSkewIndex.add(Unsafe.getUnsafe().getInt(columnOffsets + vafList.getQuick(i).getValueOffset() * 4L));
+            symbolSkew = null;
         }
+        this.cursor = new RostiRecordCursor(pRosti, columnSkewIndex, symbolSkew, keyPacker, keyPacker != null ? keyIndexes : null);
     }
 
     @Override
@@ -154,10 +154,19 @@ public class GroupByRecordCursorFactory implements RecordCursorFactory {
         for (int i = 0, n = pRosti.length; i < n; i++) {
             Rosti.free(pRosti[i]);
         }
+        Misc.free(keyPacker);
+        // fallback factory shares base factory with this one
+        Misc.free(fallbackFactory);
     }
 
     @Override
     public RecordCursor getCursor(SqlExecutionContext executionContext) {
+        final PageFrameCursor cursor = base.getPageFrameCursor(executionContext);
+        if (keyPacker != null && !keyPacker.of(cursor)) {
+            LOG.info().$("key cardinality exceeds packed key range, falling back to map").$();
+            Misc.free(cursor);
+            return fallbackFactory.getCursor(executionContext);
+        }
 
         // clear maps
         for (int i = 0, n = pRosti.length; i < n; i++) {
@@ -167,7 +176,6 @@ public class GroupByRecordCursorFactory implements RecordCursorFactory {
         final MessageBus bus = executionContext.getMessageBus();
         assert bus != null;
 
-        final PageFrameCursor cursor = base.getPageFrameCursor(executionContext);
         final int vafCount = vafList.size();
 
         // clear state of aggregate functions
@@ -198,6 +206,31 @@ public class GroupByRecordCursorFactory implements RecordCursorFactory {
 
         PageFrame frame;
         while ((frame = cursor.next()) != null) {
+            if (keyPacker != null) {
+                keyPacker.collectKeyAddresses(frame, keyAddresses);
+                final long rowCount = keyPacker.getRowCount(frame);
+                for (int i = 0; i < vafCount; i++) {
+                    final VectorAggregateFunction vaf = vafList.getQuick(i);
+                    final int columnIndex = vaf.getColumnIndex();
+                    final long valueAddress = columnIndex > -1 ? frame.getPageAddress(columnIndex) : 0;
+                    final int columnSizeShr = columnIndex > -1 ? frame.getColumnSize(columnIndex) : 0;
+
+                    long seq = pubSeq.next();
+                    if (seq < 0) {
+                        keyPacker.aggregate(vaf, pRosti[workerId], keyAddresses, valueAddress, rowCount, columnSizeShr, workerId);
+                        ownCount++;
+                    } else {
+                        final VectorAggregateEntry entry = entryPool.next();
+                        entry.of(queuedCount++, vaf, pRosti, keyPacker, keyAddresses, valueAddress, rowCount, columnSizeShr, doneLatch);
+                        activeEntries.add(entry);
+                        queue.get(seq).entry = entry;
+                        pubSeq.done(seq);
+                    }
+                    total++;
+                }
+                continue;
+            }
+
             final long keyAddress = frame.getPageAddress(keyColumnIndex);
             for (int i = 0; i < vafCount; i++) {
                 final VectorAggregateFunction vaf = vafList.getQuick(i);
@@ -279,6 +312,9 @@ public class GroupByRecordCursorFactory implements RecordCursorFactory {
         private final long pRosti;
         private final IntList symbolTableSkewIndex;
         private final IntList columnSkewIndex;
+        private final RostiKeyPacker keyPacker;
+        // index of the packed key for every column, -1 for aggregates
+        private final IntList keyIndexes;
         private RostiRecord recordB;
         private long ctrlStart;
         private long ctrl;
@@ -288,11 +324,19 @@ public class GroupByRecordCursorFactory implements RecordCursorFactory {
         private long count;
         private PageFrameCursor parent;
 
-        public RostiRecordCursor(long pRosti, IntList columnSkewIndex, IntList symbolTableSkewIndex) {
+        public RostiRecordCursor(
+                long pRosti,
+                IntList columnSkewIndex,
+                IntList symbolTableSkewIndex,
+                RostiKeyPacker keyPacker,
+                IntList keyIndexes
+        ) {
             this.pRosti = pRosti;
             this.record = new RostiRecord();
             this.symbolTableSkewIndex = symbolTableSkewIndex;
             this.columnSkewIndex = columnSkewIndex;
+            this.keyPacker = keyPacker;
+            this.keyIndexes = keyIndexes;
         }
 
         public RostiRecordCursor of(PageFrameCursor parent) {
@@ -379,16 +423,25 @@ public class GroupByRecordCursorFactory implements RecordCursorFactory {
 
             @Override
             public boolean getBool(int col) {
+                if (keyPacker != null) {
+                    return keyPacker.getBool(getPackedKey(), keyIndexes.getQuick(col));
+                }
                 throw new UnsupportedOperationException();
             }
 
             @Override
             public byte getByte(int col) {
+                if (keyPacker != null) {
+                    return keyPacker.getByte(getPackedKey(), keyIndexes.getQuick(col));
+                }
                 throw new UnsupportedOperationException();
             }
 
             @Override
             public char getChar(int col) {
+                if (keyPacker != null) {
+                    return keyPacker.getChar(getPackedKey(), keyIndexes.getQuick(col));
+                }
                 throw new UnsupportedOperationException();
             }
 
@@ -397,6 +450,11 @@ public class GroupByRecordCursorFactory implements RecordCursorFactory {
                 return getLong(col);
             }
 
+            private int getPackedKey() {
+                // packed key is at the start of the slot
+                return Unsafe.getUnsafe().getInt(pRow);
+            }
+
             private long getValueOffset(int column) {
                 return pRow + columnSkewIndex.getQuick(column);
             }
@@ -413,6 +471,12 @@ public class GroupByRecordCursorFactory implements RecordCursorFactory {
 
             @Override
             public int getInt(int col) {
+                if (keyPacker != null) {
+                    final int keyIndex = keyIndexes.getQuick(col);
+                    if (keyIndex > -1) {
+                        return keyPacker.getInt(getPackedKey(), keyIndex);
+                    }
+                }
                 return Unsafe.getUnsafe().getInt(getValueOffset(col));
             }
 
@@ -443,6 +507,9 @@ public class GroupByRecordCursorFactory implements RecordCursorFactory {
 
             @Override
             public short getShort(int col) {
+                if (keyPacker != null) {
+                    return keyPacker.getShort(getPackedKey(), keyIndexes.getQuick(col));
+                }
                 return 0;
             }
 
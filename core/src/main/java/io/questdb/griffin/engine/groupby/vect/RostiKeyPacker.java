@@ -0,0 +1,252 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.groupby.vect;
+
+import io.questdb.cairo.ColumnType;
+import io.questdb.cairo.sql.PageFrame;
+import io.questdb.cairo.sql.PageFrameCursor;
+import io.questdb.cairo.sql.SymbolTable;
+import io.questdb.std.*;
+
+import java.io.Closeable;
+
+/**
+ * Packs values of several key columns into single INT key understood by Rosti. Every key
+ * column must have bounded domain: symbols, booleans, bytes, shorts and chars. Column value
+ * is first mapped to its index in the domain and packed key is the mixed-radix number
+ * of these indexes. Symbol null takes the index after the last symbol key, which keeps
+ * packed keys away from INT null.
+ * <p>
+ * Symbol cardinality is only known when cursor is opened, {@link #of(PageFrameCursor)} reports
+ * when combined cardinality of the keys does not fit INT and packing is not possible.
+ */
+public class RostiKeyPacker implements Closeable {
+    // number of rows packed at a time, key buffers are sized for this many INT keys
+    static final int CHUNK_SIZE = 16 * 1024;
+    private final IntList columnIndexes = new IntList();
+    private final IntList columnTypes = new IntList();
+    private final int[] cardinalities;
+    private final int[] strides;
+    private final long[] pKeys;
+
+    public RostiKeyPacker(@Transient IntList columnIndexes, @Transient IntList columnTypes, int workerCount) {
+        this.columnIndexes.addAll(columnIndexes);
+        this.columnTypes.addAll(columnTypes);
+        final int keyCount = columnIndexes.size();
+        this.cardinalities = new int[keyCount];
+        this.strides = new int[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            switch (columnTypes.getQuick(i)) {
+                case ColumnType.BOOLEAN:
+                    cardinalities[i] = 2;
+                    break;
+                case ColumnType.BYTE:
+                    cardinalities[i] = 256;
+                    break;
+                case ColumnType.SHORT:
+                case ColumnType.CHAR:
+                    cardinalities[i] = 65536;
+                    break;
+                default:
+                    // symbols are sized when cursor is opened
+                    break;
+            }
+        }
+        this.pKeys = new long[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            pKeys[i] = Unsafe.malloc(CHUNK_SIZE * Integer.BYTES);
+        }
+    }
+
+    public static boolean isPackable(int columnType) {
+        switch (columnType) {
+            case ColumnType.BOOLEAN:
+            case ColumnType.BYTE:
+            case ColumnType.SHORT:
+            case ColumnType.CHAR:
+            case ColumnType.SYMBOL:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public void close() {
+        for (int i = 0, n = pKeys.length; i < n; i++) {
+            if (pKeys[i] != 0) {
+                Unsafe.free(pKeys[i], CHUNK_SIZE * Integer.BYTES);
+                pKeys[i] = 0;
+            }
+        }
+    }
+
+    public boolean getBool(int packedKey, int keyIndex) {
+        return index(packedKey, keyIndex) == 1;
+    }
+
+    public byte getByte(int packedKey, int keyIndex) {
+        return (byte) index(packedKey, keyIndex);
+    }
+
+    public char getChar(int packedKey, int keyIndex) {
+        return (char) index(packedKey, keyIndex);
+    }
+
+    public int getInt(int packedKey, int keyIndex) {
+        // only symbols are unpacked as INT
+        final int index = index(packedKey, keyIndex);
+        return index == cardinalities[keyIndex] - 1 ? SymbolTable.VALUE_IS_NULL : index;
+    }
+
+    public short getShort(int packedKey, int keyIndex) {
+        return (short) index(packedKey, keyIndex);
+    }
+
+    /**
+     * Sizes symbol keys and calculates strides of every key column.
+     *
+     * @return false when packed key would not fit INT
+     */
+    public boolean of(PageFrameCursor cursor) {
+        long stride = 1;
+        for (int i = 0, n = columnIndexes.size(); i < n; i++) {
+            if (columnTypes.getQuick(i) == ColumnType.SYMBOL) {
+                // extra index is for null
+                cardinalities[i] = cursor.getSymbolMapReader(columnIndexes.getQuick(i)).size() + 1;
+            }
+            strides[i] = (int) stride;
+            stride *= cardinalities[i];
+            if (stride > Integer.MAX_VALUE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Aggregates rows of page frame keyed by packed key. Rows are packed and aggregated
+     * in chunks using key buffer of the worker.
+     *
+     * @param keyAddresses addresses of key columns in the frame, as collected by {@link #collectKeyAddresses(PageFrame, LongList)}
+     * @param valueAddress address of value column, 0 for column top or when function has no value column
+     * @param rowCount     number of rows in the frame
+     * @param valueSizeShr size of value column type as shift
+     */
+    void aggregate(
+            VectorAggregateFunction vaf,
+            long pRosti,
+            LongList keyAddresses,
+            long valueAddress,
+            long rowCount,
+            int valueSizeShr,
+            int workerId
+    ) {
+        final long pKeys = this.pKeys[workerId];
+        for (long lo = 0; lo < rowCount; lo += CHUNK_SIZE) {
+            final int n = (int) Math.min(CHUNK_SIZE, rowCount - lo);
+            pack(keyAddresses, lo, n, pKeys);
+            vaf.aggregate(
+                    pRosti,
+                    pKeys,
+                    valueAddress == 0 ? 0 : valueAddress + (lo << valueSizeShr),
+                    (long) n << valueSizeShr,
+                    valueSizeShr,
+                    workerId
+            );
+        }
+    }
+
+    void collectKeyAddresses(PageFrame frame, LongList keyAddresses) {
+        keyAddresses.clear();
+        for (int i = 0, n = columnIndexes.size(); i < n; i++) {
+            keyAddresses.add(frame.getPageAddress(columnIndexes.getQuick(i)));
+        }
+    }
+
+    long getRowCount(PageFrame frame) {
+        final int columnIndex = columnIndexes.getQuick(0);
+        final long pageSize = frame.getPageSize(columnIndex);
+        // page size of column top is row count
+        return frame.getPageAddress(columnIndex) == 0 ? pageSize : pageSize >> frame.getColumnSize(columnIndex);
+    }
+
+    private int index(int packedKey, int keyIndex) {
+        return (packedKey / strides[keyIndex]) % cardinalities[keyIndex];
+    }
+
+    private void pack(LongList keyAddresses, long lo, int n, long pKeys) {
+        for (int k = 0, keyCount = columnIndexes.size(); k < keyCount; k++) {
+            final long address = keyAddresses.getQuick(k);
+            final int stride = strides[k];
+            // first key initialises the buffer, others add to it
+            final boolean add = k > 0;
+            if (address == 0) {
+                // column top
+                final int index = columnTypes.getQuick(k) == ColumnType.SYMBOL ? cardinalities[k] - 1 : 0;
+                for (int i = 0; i < n; i++) {
+                    final long p = pKeys + ((long) i << 2);
+                    Unsafe.getUnsafe().putInt(p, (add ? Unsafe.getUnsafe().getInt(p) : 0) + index * stride);
+                }
+                continue;
+            }
+
+            switch (columnTypes.getQuick(k)) {
+                case ColumnType.BOOLEAN:
+                    for (int i = 0; i < n; i++) {
+                        final long p = pKeys + ((long) i << 2);
+                        final int index = Unsafe.getUnsafe().getByte(address + lo + i) == 1 ? 1 : 0;
+                        Unsafe.getUnsafe().putInt(p, (add ? Unsafe.getUnsafe().getInt(p) : 0) + index * stride);
+                    }
+                    break;
+                case ColumnType.BYTE:
+                    for (int i = 0; i < n; i++) {
+                        final long p = pKeys + ((long) i << 2);
+                        final int index = Unsafe.getUnsafe().getByte(address + lo + i) & 0xff;
+                        Unsafe.getUnsafe().putInt(p, (add ? Unsafe.getUnsafe().getInt(p) : 0) + index * stride);
+                    }
+                    break;
+                case ColumnType.SHORT:
+                case ColumnType.CHAR:
+                    for (int i = 0; i < n; i++) {
+                        final long p = pKeys + ((long) i << 2);
+                        final int index = Unsafe.getUnsafe().getShort(address + ((lo + i) << 1)) & 0xffff;
+                        Unsafe.getUnsafe().putInt(p, (add ? Unsafe.getUnsafe().getInt(p) : 0) + index * stride);
+                    }
+                    break;
+                default:
+                    final int nullIndex = cardinalities[k] - 1;
+                    for (int i = 0; i < n; i++) {
+                        final long p = pKeys + ((long) i << 2);
+                        final int key = Unsafe.getUnsafe().getInt(address + ((lo + i) << 2));
+                        final int index = key == SymbolTable.VALUE_IS_NULL ? nullIndex : key;
+                        Unsafe.getUnsafe().putInt(p, (add ? Unsafe.getUnsafe().getInt(p) : 0) + index * stride);
+                    }
+                    break;
+            }
+        }
+    }
+}
@@ -26,9 +26,11 @@ package io.questdb.griffin.engine.groupby.vect;
 
 import io.questdb.mp.CountDownLatchSPI;
 import io.questdb.std.AbstractLockable;
+import io.questdb.std.LongList;
 import io.questdb.std.Mutable;
 
 public class VectorAggregateEntry extends AbstractLockable implements Mutable {
+    private final LongList keyAddresses = new LongList();
     private long[] pRosti;
     private long keyAddress;
     private long valueAddress;
@@ -36,17 +38,21 @@ public class VectorAggregateEntry extends AbstractLockable implements Mutable {
     private int columnSizeShr;
     private VectorAggregateFunction func;
     private CountDownLatchSPI doneLatch;
+    private RostiKeyPacker keyPacker;
 
     @Override
     public void clear() {
         this.valueAddress = 0;
         this.valueCount = 0;
         func = null;
+        keyPacker = null;
     }
 
     public boolean run(int workerId) {
         if (tryLock()) {
-            if (pRosti != null) {
+            if (keyPacker != null) {
+                keyPacker.aggregate(func, pRosti[workerId], keyAddresses, valueAddress, valueCount, columnSizeShr, workerId);
+            } else if (pRosti != null) {
                 func.aggregate(pRosti[workerId], keyAddress, valueAddress, valueCount, columnSizeShr, workerId);
             } else {
                 func.aggregate(valueAddress, valueCount, columnSizeShr, workerId);
@@ -76,4 +82,21 @@ public class VectorAggregateEntry extends AbstractLockable implements Mutable {
         this.columnSizeShr = columnSizeShr;
         this.doneLatch = doneLatch;
     }
+
+    void of(
+            int sequence,
+            VectorAggregateFunction vaf,
+            long[] pRosti,
+            RostiKeyPacker keyPacker,
+            LongList keyAddresses,
+            long valuePageAddress,
+            long rowCount,
+            int columnSizeShr,
+            CountDownLatchSPI doneLatch
+    ) {
+        of(sequence, vaf, pRosti, 0, valuePageAddress, rowCount, columnSizeShr, doneLatch);
+        this.keyPacker = keyPacker;
+        this.keyAddresses.clear();
+        this.keyAddresses.add(keyAddresses);
+    }
 }
@@ -0,0 +1,443 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.join;
+
+import io.questdb.cairo.*;
+import io.questdb.cairo.map.Map;
+import io.questdb.cairo.map.MapFactory;
+import io.questdb.cairo.map.MapKey;
+import io.questdb.cairo.map.MapValue;
+import io.questdb.cairo.sql.*;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.griffin.engine.table.PageFrameRecord;
+import io.questdb.std.*;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * ASOF and LT join of two page frame sources. Both tables are read through page frames
+ * and merged by their designated timestamps. Slave timestamp column is advanced by binary
+ * search within a frame, so that runs of slave rows that fall between two master rows are
+ * skipped in one step when the join has no keys. Keyed join remembers only the row id of the
+ * latest slave row of every key, slave rows are never copied.
+ * <p>
+ * Single symbol key is resolved without a map: latest row ids are stored by slave symbol key
+ * and master symbol keys are translated into slave symbol keys once per distinct master key.
+ * Other keys have to be of fixed-size types and are stored in a map.
+ */
+public class AsOfJoinPageFrameRecordCursorFactory extends AbstractRecordCursorFactory {
+    private static final int KEY_NONE = 0;
+    private static final int KEY_SYMBOL = 1;
+    private static final int KEY_MAP = 2;
+    private static final long NO_ROW = -1;
+    private static final int UNKNOWN_KEY = -1;
+    private static final int ABSENT_KEY = -2;
+    private final RecordCursorFactory masterFactory;
+    private final RecordCursorFactory slaveFactory;
+    private final RecordSink masterKeySink;
+    private final RecordSink slaveKeySink;
+    private final Map joinKeyMap;
+    private final AsOfJoinPageFrameRecordCursor cursor;
+    private final int keyMode;
+    private final int masterKeyIndex;
+    private final int slaveKeyIndex;
+
+    /**
+     * @param masterKeySink   sink of master key columns, null when join has no keys or the key is a symbol
+     * @param slaveKeySink    sink of slave key columns, null when join has no keys or the key is a symbol
+     * @param masterKeyColumns key column indexes of the master, must be supported by {@link #isSupported}
+     * @param slaveKeyColumns key column indexes of the slave, must be supported by {@link #isSupported}
+     * @param strict          true for LT join, which matches slave rows with timestamp strictly less than master timestamp
+     */
+    public AsOfJoinPageFrameRecordCursorFactory(
+            CairoConfiguration configuration,
+            RecordMetadata metadata,
+            RecordCursorFactory masterFactory,
+            RecordCursorFactory slaveFactory,
+            @Transient ColumnTypes joinColumnTypes,
+            @Transient ColumnFilter masterKeyColumns,
+            @Transient ColumnFilter slaveKeyColumns,
+            @Nullable RecordSink masterKeySink,
+            @Nullable RecordSink slaveKeySink,
+            int columnSplit,
+            boolean strict
+    ) {
+        super(metadata);
+        assert masterFactory.supportPageFrameCursor() && slaveFactory.supportPageFrameCursor();
+        this.masterFactory = masterFactory;
+        this.slaveFactory = slaveFactory;
+        this.masterKeySink = masterKeySink;
+        this.slaveKeySink = slaveKeySink;
+        final int keyCount = masterKeyColumns.getColumnCount();
+        if (keyCount == 0) {
+            keyMode = KEY_NONE;
+            masterKeyIndex = -1;
+            slaveKeyIndex = -1;
+            joinKeyMap = null;
+        } else if (isSymbolKey(masterFactory.getMetadata(), slaveFactory.getMetadata(), masterKeyColumns, slaveKeyColumns)) {
+            keyMode = KEY_SYMBOL;
+            masterKeyIndex = masterKeyColumns.getColumnIndexFactored(0);
+            slaveKeyIndex = slaveKeyColumns.getColumnIndexFactored(0);
+            joinKeyMap = null;
+        } else {
+            keyMode = KEY_MAP;
+            masterKeyIndex = -1;
+            slaveKeyIndex = -1;
+            final ArrayColumnTypes valueTypes = new ArrayColumnTypes();
+            valueTypes.add(ColumnType.LONG);
+            joinKeyMap = MapFactory.createMap(configuration, joinColumnTypes, valueTypes);
+        }
+        this.cursor = new AsOfJoinPageFrameRecordCursor(
+                columnSplit,
+                NullRecordFactory.getInstance(slaveFactory.getMetadata()),
+                masterFactory.getMetadata().getColumnCount(),
+                slaveFactory.getMetadata().getColumnCount(),
+                masterFactory.getMetadata().getTimestampIndex(),
+                slaveFactory.getMetadata().getTimestampIndex(),
+                strict
+        );
+    }
+
+    /**
+     * Join can read keys from page frames when there are either no keys, or a single
+     * symbol key on both sides, or all keys are of fixed-size types.
+     */
+    public static boolean isSupported(
+            RecordMetadata masterMetadata,
+            RecordMetadata slaveMetadata,
+            ColumnFilter masterKeyColumns,
+            ColumnFilter slaveKeyColumns,
+            ColumnTypes joinColumnTypes
+    ) {
+        return masterKeyColumns.getColumnCount() == 0
+                || isSymbolKey(masterMetadata, slaveMetadata, masterKeyColumns, slaveKeyColumns)
+                || JoinKeyHash.isSupported(joinColumnTypes);
+    }
+
+    private static boolean isSymbolKey(
+            RecordMetadata masterMetadata,
+            RecordMetadata slaveMetadata,
+            ColumnFilter masterKeyColumns,
+            ColumnFilter slaveKeyColumns
+    ) {
+        return masterKeyColumns.getColumnCount() == 1
+                && masterMetadata.getColumnType(masterKeyColumns.getColumnIndexFactored(0)) == ColumnType.SYMBOL
+                && slaveMetadata.getColumnType(slaveKeyColumns.getColumnIndexFactored(0)) == ColumnType.SYMBOL;
+    }
+
+    @Override
+    public void close() {
+        Misc.free(joinKeyMap);
+        ((JoinRecordMetadata) getMetadata()).close();
+        masterFactory.close();
+        slaveFactory.close();
+    }
+
+    @Override
+    public RecordCursor getCursor(SqlExecutionContext executionContext) {
+        final PageFrameCursor masterFrameCursor = masterFactory.getPageFrameCursor(executionContext);
+        try {
+            cursor.of(masterFrameCursor, slaveFactory.getPageFrameCursor(executionContext));
+        } catch (Throwable e) {
+            Misc.free(masterFrameCursor);
+            throw e;
+        }
+        return cursor;
+    }
+
+    @Override
+    public boolean recordCursorSupportsRandomAccess() {
+        return false;
+    }
+
+    private static long getFrameRowCount(PageFrame frame, int columnCount) {
+        if (columnCount == 0) {
+            return 0;
+        }
+        final long pageSize = frame.getPageSize(0);
+        return frame.getPageAddress(0) == 0 ? pageSize : pageSize >> frame.getColumnSize(0);
+    }
+
+    private class AsOfJoinPageFrameRecordCursor implements NoRandomAccessRecordCursor {
+        private final OuterJoinRecord record;
+        private final PageFrameRecord masterRecord;
+        private final PageFrameRecord slaveRecord;
+        // reads keys of slave rows as the slave is advanced
+        private final PageFrameRecord slaveScanRecord;
+        private final int columnSplit;
+        private final int masterColumnCount;
+        private final int slaveColumnCount;
+        private final int masterTimestampIndex;
+        private final int slaveTimestampIndex;
+        private final boolean strict;
+        private final LongList masterFrameAddresses = new LongList();
+        // slave rows are referenced by row id, which is composed of frame index and row in the frame,
+        // addresses of all slave frames are kept until the cursor is closed
+        private final ObjList<LongList> slaveFrameAddresses = new ObjList<>();
+        private final LongList slaveFrameRowCounts = new LongList();
+        // latest slave row id by slave symbol key, index 0 is reserved for null symbol
+        private final LongList latestBySlaveKey = new LongList();
+        // slave symbol index, as in latestBySlaveKey, by master symbol index
+        private final IntList masterToSlaveKey = new IntList();
+        private PageFrameCursor masterFrameCursor;
+        private PageFrameCursor slaveFrameCursor;
+        private StaticSymbolTable masterSymbolTable;
+        private StaticSymbolTable slaveSymbolTable;
+        private long masterFrameRowCount;
+        private long masterRow;
+        private int masterFrameIndex;
+        private int slaveFrameCount;
+        private int slaveFrameIndex;
+        private long slaveRow;
+        private boolean slaveDone;
+        private long latestSlaveRowId;
+
+        public AsOfJoinPageFrameRecordCursor(
+                int columnSplit,
+                Record nullRecord,
+                int masterColumnCount,
+                int slaveColumnCount,
+                int masterTimestampIndex,
+                int slaveTimestampIndex,
+                boolean strict
+        ) {
+            this.record = new OuterJoinRecord(columnSplit, nullRecord);
+            this.masterRecord = new PageFrameRecord(columnIndex -> masterFrameCursor.getSymbolMapReader(columnIndex));
+            this.slaveRecord = new PageFrameRecord(columnIndex -> slaveFrameCursor.getSymbolMapReader(columnIndex));
+            this.slaveScanRecord = new PageFrameRecord(columnIndex -> slaveFrameCursor.getSymbolMapReader(columnIndex));
+            this.columnSplit = columnSplit;
+            this.masterColumnCount = masterColumnCount;
+            this.slaveColumnCount = slaveColumnCount;
+            this.masterTimestampIndex = masterTimestampIndex;
+            this.slaveTimestampIndex = slaveTimestampIndex;
+            this.strict = strict;
+            this.record.of(masterRecord, slaveRecord);
+        }
+
+        @Override
+        public void close() {
+            masterFrameCursor = Misc.free(masterFrameCursor);
+            slaveFrameCursor = Misc.free(slaveFrameCursor);
+        }
+
+        @Override
+        public Record getRecord() {
+            return record;
+        }
+
+        @Override
+        public SymbolTable getSymbolTable(int columnIndex) {
+            if (columnIndex < columnSplit) {
+                return masterFrameCursor.getSymbolMapReader(columnIndex);
+            }
+            return slaveFrameCursor.getSymbolMapReader(columnIndex - columnSplit);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (masterRow >= masterFrameRowCount) {
+                final PageFrame frame = masterFrameCursor.next();
+                if (frame == null) {
+                    return false;
+                }
+                masterFrameAddresses.clear();
+                for (int i = 0; i < masterColumnCount; i++) {
+                    masterFrameAddresses.add(frame.getPageAddress(i));
+                }
+                masterFrameRowCount = getFrameRowCount(frame, masterColumnCount);
+                masterRecord.of(masterFrameAddresses, ++masterFrameIndex);
+                masterRow = 0;
+            }
+
+            masterRecord.setRow(masterRow++);
+            final long masterTimestamp = masterRecord.getTimestamp(masterTimestampIndex);
+            // timestamps are integers, strictly less is the same as less or equal to the previous value
+            advanceSlave(strict ? masterTimestamp - 1 : masterTimestamp);
+
+            final long slaveRowId;
+            switch (keyMode) {
+                case KEY_NONE:
+                    slaveRowId = latestSlaveRowId;
+                    break;
+                case KEY_SYMBOL:
+                    slaveRowId = findBySymbol(masterRecord.getInt(masterKeyIndex));
+                    break;
+                default:
+                    final MapKey key = joinKeyMap.withKey();
+                    key.put(masterRecord, masterKeySink);
+                    final MapValue value = key.findValue();
+                    slaveRowId = value != null ? value.getLong(0) : NO_ROW;
+                    break;
+            }
+
+            if (slaveRowId != NO_ROW) {
+                final int frameIndex = Rows.toPartitionIndex(slaveRowId);
+                slaveRecord.of(slaveFrameAddresses.getQuick(frameIndex), frameIndex);
+                slaveRecord.setRow(Rows.toLocalRowID(slaveRowId));
+                record.hasSlave(true);
+            } else {
+                record.hasSlave(false);
+            }
+            return true;
+        }
+
+        @Override
+        public long size() {
+            return masterFrameCursor.size();
+        }
+
+        @Override
+        public void toTop() {
+            masterFrameCursor.toTop();
+            slaveFrameCursor.toTop();
+            reset();
+        }
+
+        private void advanceSlave(long timestampHi) {
+            while (!slaveDone) {
+                if (slaveFrameIndex < 0 || slaveRow >= slaveFrameRowCounts.getQuick(slaveFrameIndex)) {
+                    if (!nextSlaveFrame()) {
+                        return;
+                    }
+                    continue;
+                }
+
+                final long frameRowCount = slaveFrameRowCounts.getQuick(slaveFrameIndex);
+                final long timestampAddress = slaveFrameAddresses.getQuick(slaveFrameIndex).getQuick(slaveTimestampIndex);
+                if (Unsafe.getUnsafe().getLong(timestampAddress + (slaveRow << 3)) > timestampHi) {
+                    return;
+                }
+
+                // last slave row of the frame that is not after master
+                final long rowHi;
+                if (Unsafe.getUnsafe().getLong(timestampAddress + ((frameRowCount - 1) << 3)) <= timestampHi) {
+                    rowHi = frameRowCount - 1;
+                } else {
+                    rowHi = Vect.boundedBinarySearch64Bit(timestampAddress, timestampHi, slaveRow, frameRowCount - 1, BinarySearch.SCAN_DOWN);
+                }
+
+                switch (keyMode) {
+                    case KEY_NONE:
+                        latestSlaveRowId = Rows.toRowID(slaveFrameIndex, rowHi);
+                        break;
+                    case KEY_SYMBOL:
+                        final long keyAddress = slaveFrameAddresses.getQuick(slaveFrameIndex).getQuick(slaveKeyIndex);
+                        for (long r = slaveRow; r <= rowHi; r++) {
+                            // column top is all nulls
+                            final int key = keyAddress == 0 ? SymbolTable.VALUE_IS_NULL : Unsafe.getUnsafe().getInt(keyAddress + (r << 2));
+                            latestBySlaveKey.setQuick(key == SymbolTable.VALUE_IS_NULL ? 0 : key + 1, Rows.toRowID(slaveFrameIndex, r));
+                        }
+                        break;
+                    default:
+                        for (long r = slaveRow; r <= rowHi; r++) {
+                            slaveScanRecord.setRow(r);
+                            final MapKey key = joinKeyMap.withKey();
+                            key.put(slaveScanRecord, slaveKeySink);
+                            key.createValue().putLong(0, Rows.toRowID(slaveFrameIndex, r));
+                        }
+                        break;
+                }
+
+                slaveRow = rowHi + 1;
+                if (slaveRow < frameRowCount) {
+                    // next slave row is after master
+                    return;
+                }
+            }
+        }
+
+        private long findBySymbol(int masterKey) {
+            final int masterIndex = masterKey == SymbolTable.VALUE_IS_NULL ? 0 : masterKey + 1;
+            int slaveIndex = masterToSlaveKey.getQuick(masterIndex);
+            if (slaveIndex == UNKNOWN_KEY) {
+                if (masterIndex == 0) {
+                    slaveIndex = 0;
+                } else {
+                    final int slaveKey = slaveSymbolTable.keyOf(masterSymbolTable.valueOf(masterKey));
+                    slaveIndex = slaveKey == SymbolTable.VALUE_NOT_FOUND ? ABSENT_KEY : (slaveKey == SymbolTable.VALUE_IS_NULL ? 0 : slaveKey + 1);
+                }
+                masterToSlaveKey.setQuick(masterIndex, slaveIndex);
+            }
+            return slaveIndex == ABSENT_KEY ? NO_ROW : latestBySlaveKey.getQuick(slaveIndex);
+        }
+
+        private boolean nextSlaveFrame() {
+            if (slaveFrameIndex < slaveFrameCount - 1) {
+                slaveFrameIndex++;
+            } else {
+                final PageFrame frame = slaveFrameCursor.next();
+                if (frame == null) {
+                    slaveDone = true;
+                    return false;
+                }
+                LongList addresses = slaveFrameAddresses.getQuiet(slaveFrameCount);
+                if (addresses == null) {
+                    slaveFrameAddresses.extendAndSet(slaveFrameCount, addresses = new LongList());
+                }
+                addresses.clear();
+                for (int i = 0; i < slaveColumnCount; i++) {
+                    addresses.add(frame.getPageAddress(i));
+                }
+                slaveFrameRowCounts.extendAndSet(slaveFrameCount, getFrameRowCount(frame, slaveColumnCount));
+                slaveFrameIndex = slaveFrameCount++;
+            }
+            slaveRow = 0;
+            slaveScanRecord.of(slaveFrameAddresses.getQuick(slaveFrameIndex), slaveFrameIndex);
+            return true;
+        }
+
+        void of(PageFrameCursor masterFrameCursor, PageFrameCursor slaveFrameCursor) {
+            this.masterFrameCursor = masterFrameCursor;
+            this.slaveFrameCursor = slaveFrameCursor;
+            if (keyMode == KEY_SYMBOL) {
+                masterSymbolTable = masterFrameCursor.getSymbolMapReader(masterKeyIndex);
+                slaveSymbolTable = slaveFrameCursor.getSymbolMapReader(slaveKeyIndex);
+            }
+            reset();
+        }
+
+        private void reset() {
+            masterFrameRowCount = 0;
+            masterRow = 0;
+            masterFrameIndex = -1;
+            slaveFrameCount = 0;
+            slaveFrameRowCounts.clear();
+            slaveFrameIndex = -1;
+            slaveRow = 0;
+            slaveDone = false;
+            latestSlaveRowId = NO_ROW;
+            switch (keyMode) {
+                case KEY_SYMBOL:
+                    latestBySlaveKey.setAll(slaveSymbolTable.size() + 1, NO_ROW);
+                    masterToSlaveKey.setAll(masterSymbolTable.size() + 1, UNKNOWN_KEY);
+                    break;
+                case KEY_MAP:
+                    joinKeyMap.clear();
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+}
@@ -32,6 +32,7 @@ import io.questdb.cairo.map.MapValue;
 import io.questdb.cairo.sql.*;
 import io.questdb.griffin.SqlExecutionContext;
 import io.questdb.griffin.SqlExecutionInterruptor;
+import io.questdb.std.IntList;
 import io.questdb.std.Misc;
 import io.questdb.std.Transient;
 
@@ -43,6 +44,12 @@ public class HashJoinLightRecordCursorFactory extends AbstractRecordCursorFactor
     private final RecordSink masterKeySink;
     private final RecordSink slaveKeySink;
     private final HashJoinRecordCursor cursor;
+    private final JoinKeyBloomFilter bloomFilter;
+    private final int bloomFilterBitsPerKey;
+    private final ArrayColumnTypes joinKeyTypes = new ArrayColumnTypes();
+    private final IntList masterKeyColumns = new IntList();
+    // map record exposes values first, followed by keys
+    private final IntList mapKeyColumns = new IntList();
 
     public HashJoinLightRecordCursorFactory(
             CairoConfiguration configuration,
@@ -53,8 +60,8 @@ public class HashJoinLightRecordCursorFactory extends AbstractRecordCursorFactor
             @Transient ColumnTypes valueTypes, // this expected to be just LONG, we store chain references in map
             RecordSink masterKeySink,
             RecordSink slaveKeySink,
+            @Transient ColumnFilter masterKeyColumns,
             int columnSplit
-
     ) {
         super(metadata);
         this.masterFactory = masterFactory;
@@ -64,12 +71,26 @@ public class HashJoinLightRecordCursorFactory extends AbstractRecordCursorFactor
         this.masterKeySink = masterKeySink;
         this.slaveKeySink = slaveKeySink;
         this.cursor = new HashJoinRecordCursor(columnSplit, joinKeyMap, slaveChain);
+        if (configuration.getSqlJoinBloomFilterBitsPerKey() > 0 && JoinKeyHash.isSupported(joinColumnTypes)) {
+            final int valueCount = valueTypes.getColumnCount();
+            for (int i = 0, n = joinColumnTypes.getColumnCount(); i < n; i++) {
+                this.joinKeyTypes.add(joinColumnTypes.getColumnType(i));
+                this.masterKeyColumns.add(masterKeyColumns.getColumnIndexFactored(i));
+                this.mapKeyColumns.add(valueCount + i);
+            }
+            this.bloomFilter = new JoinKeyBloomFilter();
+            this.bloomFilterBitsPerKey = configuration.getSqlJoinBloomFilterBitsPerKey();
+        } else {
+            this.bloomFilter = null;
+            this.bloomFilterBitsPerKey = 0;
+        }
     }
 
     @Override
     public void close() {
         joinKeyMap.close();
         slaveChain.close();
+        Misc.free(bloomFilter);
         ((JoinRecordMetadata) getMetadata()).close();
         masterFactory.close();
         slaveFactory.close();
@@ -110,6 +131,15 @@ public class HashJoinLightRecordCursorFactory extends AbstractRecordCursorFactor
                 value.putLong(1, slaveChain.put(record.getRowId(), value.getLong(1)));
             }
         }
+
+        if (bloomFilter != null) {
+            bloomFilter.of(joinKeyMap.size(), bloomFilterBitsPerKey);
+            final RecordCursor mapCursor = joinKeyMap.getCursor();
+            final Record mapRecord = mapCursor.getRecord();
+            while (mapCursor.hasNext()) {
+                bloomFilter.add(JoinKeyHash.hash(mapRecord, mapKeyColumns, joinKeyTypes));
+            }
+        }
     }
 
     private class HashJoinRecordCursor implements NoRandomAccessRecordCursor {
@@ -172,6 +202,10 @@ public class HashJoinLightRecordCursorFactory extends AbstractRecordCursorFactor
             }
 
             while (masterCursor.hasNext()) {
+                // skip master rows which keys are certainly absent from the map
+                if (bloomFilter != null && !bloomFilter.mightContain(JoinKeyHash.hash(masterRecord, masterKeyColumns, joinKeyTypes))) {
+                    continue;
+                }
                 MapKey key = joinKeyMap.withKey();
                 key.put(masterRecord, masterKeySink);
                 MapValue value = key.findValue();
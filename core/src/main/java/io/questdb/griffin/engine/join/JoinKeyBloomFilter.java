@@ -0,0 +1,103 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.join;
+
+import io.questdb.std.Numbers;
+import io.questdb.std.Unsafe;
+
+import java.io.Closeable;
+
+/**
+ * Blocked bloom filter of join key hashes. Filter is populated from the build (slave) side of
+ * the hash join and lets the probe (master) side skip rows, which keys are certainly absent
+ * from the build side, before the key is copied into the map. Every key sets three bits within
+ * a single 64-byte block, so that a lookup touches one cache line.
+ */
+public class JoinKeyBloomFilter implements Closeable {
+    private static final int BLOCK_SHIFT = 6;
+    private static final long MIN_SIZE = 1 << BLOCK_SHIFT;
+    private static final long MAX_SIZE = 128 * 1024 * 1024;
+    private long address;
+    private long size;
+    private long blockMask;
+
+    /**
+     * Adds hash to the filter, can be called by several threads at the same time.
+     */
+    public void add(long hash) {
+        final long block = blockOf(hash);
+        for (int i = 0; i < 3; i++) {
+            final int bit = (int) (hash >>> (i * 9)) & 511;
+            final long wordAddress = block + ((bit >>> 6) << 3);
+            final long mask = 1L << (bit & 63);
+            long word;
+            do {
+                word = Unsafe.getUnsafe().getLongVolatile(null, wordAddress);
+            } while ((word & mask) == 0 && !Unsafe.getUnsafe().compareAndSwapLong(null, wordAddress, word, word | mask));
+        }
+    }
+
+    @Override
+    public void close() {
+        if (address != 0) {
+            Unsafe.free(address, size);
+            address = 0;
+            size = 0;
+        }
+    }
+
+    public boolean mightContain(long hash) {
+        final long block = blockOf(hash);
+        for (int i = 0; i < 3; i++) {
+            final int bit = (int) (hash >>> (i * 9)) & 511;
+            if ((Unsafe.getUnsafe().getLong(block + ((bit >>> 6) << 3)) & (1L << (bit & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Empties the filter and sizes it for the given number of keys.
+     *
+     * @param keyCount   expected number of distinct keys
+     * @param bitsPerKey number of filter bits per key, more bits reduce false positive rate
+     */
+    public void of(long keyCount, int bitsPerKey) {
+        final long required = Math.min(MAX_SIZE, Numbers.ceilPow2(Math.max(MIN_SIZE, keyCount * bitsPerKey / Byte.SIZE)));
+        if (required != size) {
+            close();
+            address = Unsafe.malloc(required);
+            size = required;
+        }
+        Unsafe.getUnsafe().setMemory(address, size, (byte) 0);
+        blockMask = (size >>> BLOCK_SHIFT) - 1;
+    }
+
+    private long blockOf(long hash) {
+        // high half of the hash selects block, low bits select bits within the block
+        return address + (((hash >>> 32) & blockMask) << BLOCK_SHIFT);
+    }
+}
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.join;
+
+import io.questdb.cairo.ColumnType;
+import io.questdb.cairo.ColumnTypes;
+import io.questdb.cairo.sql.Record;
+import io.questdb.std.IntList;
+
+/**
+ * Hashes join keys of fixed-size types directly from records. Equal keys produce equal hashes
+ * on both sides of the join because key columns of both sides are of the same type. Values are
+ * hashed by their bits, same as map keys are compared, so that NaN keys match each other.
+ */
+public final class JoinKeyHash {
+
+    private JoinKeyHash() {
+    }
+
+    public static long hash(Record record, IntList keyColumns, ColumnTypes keyTypes) {
+        long h = 0;
+        for (int i = 0, n = keyColumns.size(); i < n; i++) {
+            final int columnIndex = keyColumns.getQuick(i);
+            final long value;
+            switch (keyTypes.getColumnType(i)) {
+                case ColumnType.BOOLEAN:
+                    value = record.getBool(columnIndex) ? 1 : 0;
+                    break;
+                case ColumnType.BYTE:
+                    value = record.getByte(columnIndex);
+                    break;
+                case ColumnType.SHORT:
+                    value = record.getShort(columnIndex);
+                    break;
+                case ColumnType.CHAR:
+                    value = record.getChar(columnIndex);
+                    break;
+                case ColumnType.INT:
+                    value = record.getInt(columnIndex);
+                    break;
+                case ColumnType.FLOAT:
+                    value = Float.floatToRawIntBits(record.getFloat(columnIndex));
+                    break;
+                case ColumnType.DOUBLE:
+                    value = Double.doubleToRawLongBits(record.getDouble(columnIndex));
+                    break;
+                default:
+                    // LONG, DATE and TIMESTAMP
+                    value = record.getLong(columnIndex);
+                    break;
+            }
+            h = h * 31 + value;
+        }
+        // finalizer of MurmurHash3, spreads keys that differ in few bits only
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * @return true when all key types can be hashed from page frames, symbol keys are compared as
+     * strings and are not supported
+     */
+    public static boolean isSupported(ColumnTypes keyTypes) {
+        if (keyTypes.getColumnCount() == 0) {
+            return false;
+        }
+        for (int i = 0, n = keyTypes.getColumnCount(); i < n; i++) {
+            switch (keyTypes.getColumnType(i)) {
+                case ColumnType.BOOLEAN:
+                case ColumnType.BYTE:
+                case ColumnType.SHORT:
+                case ColumnType.CHAR:
+                case ColumnType.INT:
+                case ColumnType.LONG:
+                case ColumnType.DATE:
+                case ColumnType.TIMESTAMP:
+                case ColumnType.FLOAT:
+                case ColumnType.DOUBLE:
+                    break;
+                default:
+                    return false;
+            }
+        }
+        return true;
+    }
+}
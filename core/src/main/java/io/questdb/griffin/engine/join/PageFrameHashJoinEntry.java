@@ -0,0 +1,297 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.join;
+
+import io.questdb.cairo.ColumnTypes;
+import io.questdb.cairo.RecordSink;
+import io.questdb.cairo.map.Map;
+import io.questdb.cairo.map.MapKey;
+import io.questdb.cairo.map.MapValue;
+import io.questdb.cairo.vm.ContiguousVirtualMemory;
+import io.questdb.griffin.engine.LimitOverflowException;
+import io.questdb.griffin.engine.table.PageFrameRecord;
+import io.questdb.mp.CountDownLatchSPI;
+import io.questdb.std.*;
+
+/**
+ * Unit of work of the parallel hash join. Entry runs in one of two modes. Scatter entry
+ * reads join keys of a contiguous range of rows of one side of the join and distributes
+ * row ids of these rows between partitions by hash of the key. When bloom filter is used,
+ * slave side is scattered first and populates the filter, master rows rejected by the filter
+ * are not scattered at all. Join entry owns a single
+ * partition: it builds map of slave rows of the partition and then probes it with master rows
+ * of the same partition. Join does not expand matches, for every matched master row it stores
+ * the row id and offset of the head of the slave chain, in the master order. Output size is
+ * therefore bound by the number of master rows rather than by the number of joined rows and
+ * the cursor expands chains as it goes. Row ids are composed of page frame index and row index
+ * within the frame. Partition lists and matches are kept in native memory, which is limited
+ * the same way as memory of slave chains. Entry is executed
+ * either by a worker or by the thread that owns the cursor, whichever manages to lock it first.
+ */
+public class PageFrameHashJoinEntry extends AbstractLockable implements Mutable {
+    private static final int MODE_SCATTER = 0;
+    private static final int MODE_JOIN = 1;
+    private final PageFrameRecord record = new PageFrameRecord(null);
+    private int mode;
+    private CountDownLatchSPI doneLatch;
+    private Throwable error;
+    private ColumnTypes keyTypes;
+    // scatter
+    private ObjList<LongList> frameAddresses;
+    private LongList frameRowCounts;
+    private long rowLo;
+    private long rowHi;
+    private IntList keyColumns;
+    private ObjList<DirectLongList> partitionRows;
+    private long maxPartitionRows;
+    private int partitionRowsOffset;
+    private int partitionCount;
+    private JoinKeyBloomFilter bloomFilter;
+    private boolean buildSide;
+    // join
+    private int partitionIndex;
+    private ObjList<LongList> masterFrameAddresses;
+    private ObjList<DirectLongList> masterPartitionRows;
+    private int masterSliceCount;
+    private RecordSink masterKeySink;
+    private ObjList<LongList> slaveFrameAddresses;
+    private ObjList<DirectLongList> slavePartitionRows;
+    private int slaveSliceCount;
+    private RecordSink slaveKeySink;
+    private Map map;
+    private LongChain slaveChain;
+    private ContiguousVirtualMemory matches;
+
+    @Override
+    public void clear() {
+        doneLatch = null;
+        error = null;
+        keyTypes = null;
+        frameAddresses = null;
+        frameRowCounts = null;
+        keyColumns = null;
+        partitionRows = null;
+        bloomFilter = null;
+        masterFrameAddresses = null;
+        masterPartitionRows = null;
+        masterKeySink = null;
+        slaveFrameAddresses = null;
+        slavePartitionRows = null;
+        slaveKeySink = null;
+        map = null;
+        slaveChain = null;
+        matches = null;
+    }
+
+    public boolean run() {
+        if (tryLock()) {
+            try {
+                if (mode == MODE_SCATTER) {
+                    scatter();
+                } else {
+                    join();
+                }
+            } catch (Throwable e) {
+                error = e;
+            } finally {
+                doneLatch.countDown();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    static int partitionOf(long hash, int partitionCount) {
+        return (int) ((hash & Long.MAX_VALUE) % partitionCount);
+    }
+
+    Throwable getError() {
+        return error;
+    }
+
+    void ofJoin(
+            int sequence,
+            int partitionIndex,
+            int partitionCount,
+            ObjList<LongList> masterFrameAddresses,
+            ObjList<DirectLongList> masterPartitionRows,
+            int masterSliceCount,
+            RecordSink masterKeySink,
+            ObjList<LongList> slaveFrameAddresses,
+            ObjList<DirectLongList> slavePartitionRows,
+            int slaveSliceCount,
+            RecordSink slaveKeySink,
+            Map map,
+            LongChain slaveChain,
+            ContiguousVirtualMemory matches,
+            CountDownLatchSPI doneLatch
+    ) {
+        this.mode = MODE_JOIN;
+        this.partitionIndex = partitionIndex;
+        this.partitionCount = partitionCount;
+        this.masterFrameAddresses = masterFrameAddresses;
+        this.masterPartitionRows = masterPartitionRows;
+        this.masterSliceCount = masterSliceCount;
+        this.masterKeySink = masterKeySink;
+        this.slaveFrameAddresses = slaveFrameAddresses;
+        this.slavePartitionRows = slavePartitionRows;
+        this.slaveSliceCount = slaveSliceCount;
+        this.slaveKeySink = slaveKeySink;
+        this.map = map;
+        this.slaveChain = slaveChain;
+        this.matches = matches;
+        this.doneLatch = doneLatch;
+        this.error = null;
+        // entry can be locked only after it is fully populated
+        of(sequence);
+    }
+
+    void ofScatter(
+            int sequence,
+            ObjList<LongList> frameAddresses,
+            LongList frameRowCounts,
+            long rowLo,
+            long rowHi,
+            IntList keyColumns,
+            ColumnTypes keyTypes,
+            ObjList<DirectLongList> partitionRows,
+            int partitionRowsOffset,
+            int partitionCount,
+            long maxPartitionRows,
+            JoinKeyBloomFilter bloomFilter,
+            boolean buildSide,
+            CountDownLatchSPI doneLatch
+    ) {
+        this.mode = MODE_SCATTER;
+        this.frameAddresses = frameAddresses;
+        this.frameRowCounts = frameRowCounts;
+        this.rowLo = rowLo;
+        this.rowHi = rowHi;
+        this.keyColumns = keyColumns;
+        this.keyTypes = keyTypes;
+        this.partitionRows = partitionRows;
+        this.partitionRowsOffset = partitionRowsOffset;
+        this.partitionCount = partitionCount;
+        this.maxPartitionRows = maxPartitionRows;
+        this.bloomFilter = bloomFilter;
+        this.buildSide = buildSide;
+        this.doneLatch = doneLatch;
+        this.error = null;
+        // entry can be locked only after it is fully populated
+        of(sequence);
+    }
+
+    private void join() {
+        final Map map = this.map;
+        final LongChain slaveChain = this.slaveChain;
+        final PageFrameRecord record = this.record;
+        map.clear();
+        slaveChain.clear();
+        matches.jumpTo(0);
+
+        // build
+        int frameIndex = -1;
+        for (int s = 0; s < slaveSliceCount; s++) {
+            final DirectLongList rows = slavePartitionRows.getQuick(s * partitionCount + partitionIndex);
+            for (long i = 0, n = rows.size(); i < n; i++) {
+                final long rowId = rows.get(i);
+                final int rowFrameIndex = Rows.toPartitionIndex(rowId);
+                if (rowFrameIndex != frameIndex) {
+                    frameIndex = rowFrameIndex;
+                    record.of(slaveFrameAddresses.getQuick(frameIndex), frameIndex);
+                }
+                record.setRow(Rows.toLocalRowID(rowId));
+                final MapKey key = map.withKey();
+                key.put(record, slaveKeySink);
+                final MapValue value = key.createValue();
+                if (value.isNew()) {
+                    final long offset = slaveChain.put(rowId, -1);
+                    value.putLong(0, offset);
+                    value.putLong(1, offset);
+                } else {
+                    value.putLong(1, slaveChain.put(rowId, value.getLong(1)));
+                }
+            }
+        }
+
+        if (map.size() == 0) {
+            return;
+        }
+
+        // probe
+        frameIndex = -1;
+        for (int s = 0; s < masterSliceCount; s++) {
+            final DirectLongList rows = masterPartitionRows.getQuick(s * partitionCount + partitionIndex);
+            for (long i = 0, n = rows.size(); i < n; i++) {
+                final long rowId = rows.get(i);
+                final int rowFrameIndex = Rows.toPartitionIndex(rowId);
+                if (rowFrameIndex != frameIndex) {
+                    frameIndex = rowFrameIndex;
+                    record.of(masterFrameAddresses.getQuick(frameIndex), frameIndex);
+                }
+                record.setRow(Rows.toLocalRowID(rowId));
+                final MapKey key = map.withKey();
+                key.put(record, masterKeySink);
+                final MapValue value = key.findValue();
+                if (value != null) {
+                    matches.putLong128(rowId, value.getLong(0));
+                }
+            }
+        }
+    }
+
+    private void scatter() {
+        final PageFrameRecord record = this.record;
+        for (int i = 0; i < partitionCount; i++) {
+            partitionRows.getQuick(partitionRowsOffset + i).clear();
+        }
+
+        long frameRowLo = 0;
+        for (int frameIndex = 0, frameCount = frameRowCounts.size(); frameIndex < frameCount && frameRowLo < rowHi; frameIndex++) {
+            final long frameRowHi = frameRowLo + frameRowCounts.getQuick(frameIndex);
+            if (frameRowHi > rowLo) {
+                record.of(frameAddresses.getQuick(frameIndex), frameIndex);
+                final long hi = Math.min(rowHi, frameRowHi) - frameRowLo;
+                for (long r = Math.max(rowLo, frameRowLo) - frameRowLo; r < hi; r++) {
+                    record.setRow(r);
+                    final long hash = JoinKeyHash.hash(record, keyColumns, keyTypes);
+                    if (bloomFilter != null) {
+                        if (buildSide) {
+                            bloomFilter.add(hash);
+                        } else if (!bloomFilter.mightContain(hash)) {
+                            continue;
+                        }
+                    }
+                    final DirectLongList rows = partitionRows.getQuick(partitionRowsOffset + partitionOf(hash, partitionCount));
+                    if (rows.size() == maxPartitionRows) {
+                        throw LimitOverflowException.instance().put("Maximum number of rows (").put(maxPartitionRows).put(") breached in hash join partition");
+                    }
+                    rows.add(Rows.toRowID(frameIndex, r));
+                }
+            }
+            frameRowLo = frameRowHi;
+        }
+    }
+}
@@ -0,0 +1,507 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.join;
+
+import io.questdb.MessageBus;
+import io.questdb.cairo.*;
+import io.questdb.cairo.map.Map;
+import io.questdb.cairo.map.MapFactory;
+import io.questdb.cairo.sql.*;
+import io.questdb.cairo.vm.ContiguousVirtualMemory;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.griffin.SqlExecutionInterruptor;
+import io.questdb.griffin.engine.table.PageFrameRecord;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.mp.RingQueue;
+import io.questdb.mp.SOUnboundedCountDownLatch;
+import io.questdb.mp.Sequence;
+import io.questdb.std.*;
+import io.questdb.tasks.PageFrameHashJoinTask;
+
+/**
+ * Inner hash join of two page frame sources computed by the worker pool. Rows of both sides
+ * are first scattered into partitions by hash of the join key, slices of the tables are
+ * scattered concurrently. Then every partition is joined by a single worker: slave rows of the
+ * partition are put into the partition's own map and chain, and master rows of the same
+ * partition probe them. Partitions never share keys, therefore workers do not share maps.
+ * Unless disabled, slave keys are also put into a bloom filter, master rows that miss the
+ * filter are dropped by the scatter and never reach partition maps.
+ * <p>
+ * Partitions keep matched master rows together with heads of their slave chains and the cursor
+ * expands chains lazily, memory of the join is proportional to sizes of the inputs rather than
+ * to the size of the output. Row lists and matches are held in native memory limited by
+ * the same page size and page count as slave chains of {@link HashJoinLightRecordCursorFactory}.
+ * <p>
+ * Ordered join merges results of partitions by master row id and returns rows in the same
+ * order as {@link HashJoinLightRecordCursorFactory}. Unordered join returns partitions one
+ * after another.
+ */
+public class ParallelHashJoinLightRecordCursorFactory extends AbstractRecordCursorFactory {
+    private static final Log LOG = LogFactory.getLog(ParallelHashJoinLightRecordCursorFactory.class);
+    private static final int PARTITION_ROWS_INITIAL_CAPACITY = 1024;
+    private final CairoConfiguration configuration;
+    private final RecordCursorFactory masterFactory;
+    private final RecordCursorFactory slaveFactory;
+    private final ArrayColumnTypes joinColumnTypes = new ArrayColumnTypes();
+    private final ArrayColumnTypes valueTypes = new ArrayColumnTypes();
+    private final IntList masterKeyColumns = new IntList();
+    private final IntList slaveKeyColumns = new IntList();
+    private final RecordSink masterKeySink;
+    private final RecordSink slaveKeySink;
+    private final ObjList<Map> maps = new ObjList<>();
+    private final ObjList<LongChain> slaveChains = new ObjList<>();
+    private final ObjList<DirectLongList> masterPartitionRows = new ObjList<>();
+    private final ObjList<DirectLongList> slavePartitionRows = new ObjList<>();
+    private final ObjList<ContiguousVirtualMemory> matches = new ObjList<>();
+    private final ParallelHashJoinRecordCursor cursor;
+    private final long sliceRowCount;
+    private final long maxPartitionRows;
+    private final int bloomFilterBitsPerKey;
+    private final JoinKeyBloomFilter bloomFilter;
+
+    public ParallelHashJoinLightRecordCursorFactory(
+            CairoConfiguration configuration,
+            RecordMetadata metadata,
+            RecordCursorFactory masterFactory,
+            RecordCursorFactory slaveFactory,
+            @Transient ColumnTypes joinColumnTypes,
+            @Transient ColumnTypes valueTypes, // this expected to be just LONG, we store chain references in map
+            RecordSink masterKeySink,
+            RecordSink slaveKeySink,
+            @Transient ColumnFilter masterKeyColumns,
+            @Transient ColumnFilter slaveKeyColumns,
+            int columnSplit,
+            boolean ordered
+    ) {
+        super(metadata);
+        assert masterFactory.supportPageFrameCursor() && slaveFactory.supportPageFrameCursor();
+        this.configuration = configuration;
+        this.masterFactory = masterFactory;
+        this.slaveFactory = slaveFactory;
+        for (int i = 0, n = joinColumnTypes.getColumnCount(); i < n; i++) {
+            this.joinColumnTypes.add(joinColumnTypes.getColumnType(i));
+            this.masterKeyColumns.add(masterKeyColumns.getColumnIndexFactored(i));
+            this.slaveKeyColumns.add(slaveKeyColumns.getColumnIndexFactored(i));
+        }
+        for (int i = 0, n = valueTypes.getColumnCount(); i < n; i++) {
+            this.valueTypes.add(valueTypes.getColumnType(i));
+        }
+        this.masterKeySink = masterKeySink;
+        this.slaveKeySink = slaveKeySink;
+        this.sliceRowCount = Math.max(1, configuration.getSqlParallelHashJoinSliceRowCount());
+        this.maxPartitionRows = (long) configuration.getSqlHashJoinLightValuePageSize() * configuration.getSqlHashJoinLightValueMaxPages() / Long.BYTES;
+        this.bloomFilterBitsPerKey = configuration.getSqlJoinBloomFilterBitsPerKey();
+        this.bloomFilter = bloomFilterBitsPerKey > 0 ? new JoinKeyBloomFilter() : null;
+        this.cursor = new ParallelHashJoinRecordCursor(
+                columnSplit,
+                masterFactory.getMetadata().getColumnCount(),
+                slaveFactory.getMetadata().getColumnCount(),
+                ordered
+        );
+    }
+
+    @Override
+    public void close() {
+        Misc.freeObjList(maps);
+        Misc.freeObjList(slaveChains);
+        Misc.freeObjList(masterPartitionRows);
+        Misc.freeObjList(slavePartitionRows);
+        Misc.freeObjList(matches);
+        Misc.free(bloomFilter);
+        ((JoinRecordMetadata) getMetadata()).close();
+        masterFactory.close();
+        slaveFactory.close();
+    }
+
+    @Override
+    public RecordCursor getCursor(SqlExecutionContext executionContext) {
+        final PageFrameCursor slaveFrameCursor = slaveFactory.getPageFrameCursor(executionContext);
+        PageFrameCursor masterFrameCursor = null;
+        try {
+            masterFrameCursor = masterFactory.getPageFrameCursor(executionContext);
+            cursor.of(masterFrameCursor, slaveFrameCursor, executionContext);
+            return cursor;
+        } catch (Throwable e) {
+            Misc.free(masterFrameCursor);
+            Misc.free(slaveFrameCursor);
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean recordCursorSupportsRandomAccess() {
+        return false;
+    }
+
+    private static void checkError(PageFrameHashJoinEntry entry, int index) {
+        final Throwable error = entry.getError();
+        if (error != null) {
+            LOG.error().$("hash join failed [entry=").$(index).$(", error=").$(error).$(']').$();
+            if (error instanceof CairoException) {
+                throw (CairoException) error;
+            }
+            throw CairoException.instance(0).put("parallel hash join failed [error=").put(error.getClass().getSimpleName()).put(']');
+        }
+    }
+
+    private static long getFrameRowCount(PageFrame frame, int columnCount) {
+        if (columnCount == 0) {
+            return 0;
+        }
+        final long pageSize = frame.getPageSize(0);
+        return frame.getPageAddress(0) == 0 ? pageSize : pageSize >> frame.getColumnSize(0);
+    }
+
+    private static LongList getList(ObjList<LongList> lists, int index) {
+        LongList list = lists.getQuiet(index);
+        if (list == null) {
+            lists.extendAndSet(index, list = new LongList());
+        }
+        return list;
+    }
+
+    private ContiguousVirtualMemory getMatches(int index) {
+        ContiguousVirtualMemory mem = matches.getQuiet(index);
+        if (mem == null) {
+            matches.extendAndSet(
+                    index,
+                    mem = new ContiguousVirtualMemory(configuration.getSqlHashJoinLightValuePageSize(), configuration.getSqlHashJoinLightValueMaxPages())
+            );
+        }
+        return mem;
+    }
+
+    private LongChain getSlaveChain(int index) {
+        LongChain chain = slaveChains.getQuiet(index);
+        if (chain == null) {
+            slaveChains.extendAndSet(
+                    index,
+                    chain = new LongChain(configuration.getSqlHashJoinLightValuePageSize(), configuration.getSqlHashJoinLightValueMaxPages())
+            );
+        }
+        return chain;
+    }
+
+    private Map getMap(int index) {
+        Map map = maps.getQuiet(index);
+        if (map == null) {
+            maps.extendAndSet(index, map = MapFactory.createMap(configuration, joinColumnTypes, valueTypes));
+        }
+        return map;
+    }
+
+    private class ParallelHashJoinRecordCursor implements NoRandomAccessRecordCursor {
+        private final JoinRecord record;
+        private final PageFrameRecord masterRecord;
+        private final PageFrameRecord slaveRecord;
+        private final int columnSplit;
+        private final int masterColumnCount;
+        private final int slaveColumnCount;
+        private final boolean ordered;
+        private final ObjList<LongList> masterFrameAddresses = new ObjList<>();
+        private final LongList masterFrameRowCounts = new LongList();
+        private final ObjList<LongList> slaveFrameAddresses = new ObjList<>();
+        private final LongList slaveFrameRowCounts = new LongList();
+        private final LongList matchPositions = new LongList();
+        private final ObjList<PageFrameHashJoinEntry> entries = new ObjList<>();
+        private final SOUnboundedCountDownLatch doneLatch = new SOUnboundedCountDownLatch();
+        private PageFrameCursor masterFrameCursor;
+        private PageFrameCursor slaveFrameCursor;
+        private int partitionCount;
+        private int partitionIndex;
+        private LongChain.TreeCursor chainCursor;
+
+        public ParallelHashJoinRecordCursor(int columnSplit, int masterColumnCount, int slaveColumnCount, boolean ordered) {
+            this.columnSplit = columnSplit;
+            this.masterColumnCount = masterColumnCount;
+            this.slaveColumnCount = slaveColumnCount;
+            this.ordered = ordered;
+            this.masterRecord = new PageFrameRecord(columnIndex -> masterFrameCursor.getSymbolMapReader(columnIndex));
+            this.slaveRecord = new PageFrameRecord(columnIndex -> slaveFrameCursor.getSymbolMapReader(columnIndex));
+            this.record = new JoinRecord(columnSplit);
+            this.record.of(masterRecord, slaveRecord);
+        }
+
+        @Override
+        public void close() {
+            masterFrameCursor = Misc.free(masterFrameCursor);
+            slaveFrameCursor = Misc.free(slaveFrameCursor);
+        }
+
+        @Override
+        public Record getRecord() {
+            return record;
+        }
+
+        @Override
+        public SymbolTable getSymbolTable(int columnIndex) {
+            if (columnIndex < columnSplit) {
+                return masterFrameCursor.getSymbolMapReader(columnIndex);
+            }
+            return slaveFrameCursor.getSymbolMapReader(columnIndex - columnSplit);
+        }
+
+        @Override
+        public boolean hasNext() {
+            // slave rows of the current master row
+            if (chainCursor != null && chainCursor.hasNext()) {
+                setSlaveRow(chainCursor.next());
+                return true;
+            }
+
+            if (ordered) {
+                // pick partition with the lowest master row id, matches of the same
+                // master row belong to single partition
+                partitionIndex = -1;
+                long masterRowId = Long.MAX_VALUE;
+                for (int i = 0; i < partitionCount; i++) {
+                    final ContiguousVirtualMemory mem = matches.getQuick(i);
+                    final long position = matchPositions.getQuick(i);
+                    if (position < mem.getAppendOffset() && mem.getLong(position) < masterRowId) {
+                        masterRowId = mem.getLong(position);
+                        partitionIndex = i;
+                    }
+                }
+                return partitionIndex > -1 && nextMatch();
+            }
+
+            for (; partitionIndex < partitionCount; partitionIndex++) {
+                if (matchPositions.getQuick(partitionIndex) < matches.getQuick(partitionIndex).getAppendOffset()) {
+                    return nextMatch();
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public long size() {
+            return -1;
+        }
+
+        @Override
+        public void toTop() {
+            matchPositions.setAll(partitionCount, 0);
+            partitionIndex = ordered ? -1 : 0;
+            chainCursor = null;
+        }
+
+        private int collectFrames(PageFrameCursor frameCursor, int columnCount, ObjList<LongList> frameAddresses, LongList frameRowCounts) {
+            frameRowCounts.clear();
+            int frameIndex = 0;
+            PageFrame frame;
+            while ((frame = frameCursor.next()) != null) {
+                final LongList addresses = getList(frameAddresses, frameIndex++);
+                addresses.clear();
+                for (int i = 0; i < columnCount; i++) {
+                    addresses.add(frame.getPageAddress(i));
+                }
+                frameRowCounts.add(getFrameRowCount(frame, columnCount));
+            }
+            return frameIndex;
+        }
+
+        private void dispatch(MessageBus bus, int entryCount) {
+            final RingQueue<PageFrameHashJoinTask> queue = bus.getPageFrameHashJoinQueue();
+            final Sequence pubSeq = bus.getPageFrameHashJoinPubSeq();
+            int ownCount = 0;
+            int reclaimed = 0;
+
+            // first entry is always executed by this thread
+            for (int i = 1; i < entryCount; i++) {
+                final long seq = pubSeq.next();
+                if (seq < 0) {
+                    entries.getQuick(i).run();
+                    ownCount++;
+                } else {
+                    queue.get(seq).entry = entries.getQuick(i);
+                    pubSeq.done(seq);
+                }
+            }
+
+            // entries that workers have not picked up yet are executed by this thread,
+            // start at the back to reduce chance of clashing with workers
+            entries.getQuick(0).run();
+            for (int i = entryCount - 1; i > 0 && doneLatch.getCount() > -entryCount; i--) {
+                if (entries.getQuick(i).run()) {
+                    reclaimed++;
+                }
+            }
+            doneLatch.await(entryCount);
+
+            for (int i = 0; i < entryCount; i++) {
+                final PageFrameHashJoinEntry entry = entries.getQuick(i);
+                try {
+                    checkError(entry, i);
+                } finally {
+                    entry.clear();
+                }
+            }
+            LOG.debug().$("done [entries=").$(entryCount).$(", ownCount=").$(ownCount).$(", reclaimed=").$(reclaimed).$(']').$();
+        }
+
+        private PageFrameHashJoinEntry getEntry(int index) {
+            PageFrameHashJoinEntry entry = entries.getQuiet(index);
+            if (entry == null) {
+                entries.extendAndSet(index, entry = new PageFrameHashJoinEntry());
+            }
+            return entry;
+        }
+
+        private boolean nextMatch() {
+            final ContiguousVirtualMemory mem = matches.getQuick(partitionIndex);
+            final long position = matchPositions.getQuick(partitionIndex);
+            final long masterRowId = mem.getLong(position);
+            matchPositions.setQuick(partitionIndex, position + 2 * Long.BYTES);
+            final int masterFrameIndex = Rows.toPartitionIndex(masterRowId);
+            masterRecord.of(masterFrameAddresses.getQuick(masterFrameIndex), masterFrameIndex);
+            masterRecord.setRow(Rows.toLocalRowID(masterRowId));
+            // chain of a match is never empty
+            chainCursor = slaveChains.getQuick(partitionIndex).getCursor(mem.getLong(position + Long.BYTES));
+            setSlaveRow(chainCursor.next());
+            return true;
+        }
+
+        private void setSlaveRow(long slaveRowId) {
+            final int slaveFrameIndex = Rows.toPartitionIndex(slaveRowId);
+            slaveRecord.of(slaveFrameAddresses.getQuick(slaveFrameIndex), slaveFrameIndex);
+            slaveRecord.setRow(Rows.toLocalRowID(slaveRowId));
+        }
+
+        void of(PageFrameCursor masterFrameCursor, PageFrameCursor slaveFrameCursor, SqlExecutionContext executionContext) {
+            this.masterFrameCursor = masterFrameCursor;
+            this.slaveFrameCursor = slaveFrameCursor;
+            final SqlExecutionInterruptor interruptor = executionContext.getSqlExecutionInterruptor();
+            final MessageBus bus = executionContext.getMessageBus();
+            final int workerCount = executionContext.getWorkerCount();
+
+            collectFrames(masterFrameCursor, masterColumnCount, masterFrameAddresses, masterFrameRowCounts);
+            collectFrames(slaveFrameCursor, slaveColumnCount, slaveFrameAddresses, slaveFrameRowCounts);
+            final long masterRowCount = sum(masterFrameRowCounts);
+            final long slaveRowCount = sum(slaveFrameRowCounts);
+            final int masterSliceCount = getSliceCount(masterRowCount, workerCount);
+            final int slaveSliceCount = getSliceCount(slaveRowCount, workerCount);
+            partitionCount = getSliceCount(masterRowCount + slaveRowCount, workerCount);
+
+            // scatter rows of both sides between partitions, slave rows populate bloom filter
+            // and have to be scattered before master rows are checked against it
+            doneLatch.reset();
+            int entryCount = 0;
+            if (bloomFilter != null) {
+                bloomFilter.of(slaveRowCount, bloomFilterBitsPerKey);
+            }
+            for (int i = 0; i < slaveSliceCount; i++) {
+                getEntry(entryCount).ofScatter(
+                        entryCount++,
+                        slaveFrameAddresses,
+                        slaveFrameRowCounts,
+                        slaveRowCount * i / slaveSliceCount,
+                        slaveRowCount * (i + 1) / slaveSliceCount,
+                        slaveKeyColumns,
+                        joinColumnTypes,
+                        partitionRows(slavePartitionRows, slaveSliceCount),
+                        i * partitionCount,
+                        partitionCount,
+                        maxPartitionRows,
+                        bloomFilter,
+                        true,
+                        doneLatch
+                );
+            }
+            if (bloomFilter != null) {
+                dispatch(bus, entryCount);
+                interruptor.checkInterrupted();
+                doneLatch.reset();
+                entryCount = 0;
+            }
+            for (int i = 0; i < masterSliceCount; i++) {
+                getEntry(entryCount).ofScatter(
+                        entryCount++,
+                        masterFrameAddresses,
+                        masterFrameRowCounts,
+                        masterRowCount * i / masterSliceCount,
+                        masterRowCount * (i + 1) / masterSliceCount,
+                        masterKeyColumns,
+                        joinColumnTypes,
+                        partitionRows(masterPartitionRows, masterSliceCount),
+                        i * partitionCount,
+                        partitionCount,
+                        maxPartitionRows,
+                        bloomFilter,
+                        false,
+                        doneLatch
+                );
+            }
+            dispatch(bus, entryCount);
+            interruptor.checkInterrupted();
+
+            // build and probe every partition
+            doneLatch.reset();
+            for (int i = 0; i < partitionCount; i++) {
+                getEntry(i).ofJoin(
+                        i,
+                        i,
+                        partitionCount,
+                        masterFrameAddresses,
+                        masterPartitionRows,
+                        masterSliceCount,
+                        masterKeySink,
+                        slaveFrameAddresses,
+                        slavePartitionRows,
+                        slaveSliceCount,
+                        slaveKeySink,
+                        getMap(i),
+                        getSlaveChain(i),
+                        getMatches(i),
+                        doneLatch
+                );
+            }
+            dispatch(bus, partitionCount);
+            interruptor.checkInterrupted();
+            toTop();
+        }
+
+        private int getSliceCount(long rowCount, int workerCount) {
+            return (int) Math.max(1, Math.min(workerCount, rowCount / sliceRowCount));
+        }
+
+        private ObjList<DirectLongList> partitionRows(ObjList<DirectLongList> lists, int sliceCount) {
+            for (int i = 0, n = sliceCount * partitionCount; i < n; i++) {
+                if (lists.getQuiet(i) == null) {
+                    lists.extendAndSet(i, new DirectLongList(PARTITION_ROWS_INITIAL_CAPACITY));
+                }
+            }
+            return lists;
+        }
+
+        private long sum(LongList values) {
+            long sum = 0;
+            for (int i = 0, n = values.size(); i < n; i++) {
+                sum += values.getQuick(i);
+            }
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.orderby;
+
+import io.questdb.cairo.ColumnTypes;
+import io.questdb.cairo.vm.ContiguousVirtualMemory;
+import io.questdb.cairo.sql.DelegatingRecordCursor;
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.SymbolTable;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.griffin.SqlExecutionInterruptor;
+import io.questdb.std.*;
+
+/**
+ * Sorts rows of random access cursor by fixed-size key columns. Cursor collects pairs of
+ * (key, row id) into native memory and sorts them with native radix sort, one stable pass per
+ * key column, starting with the least significant one. Keys are encoded by {@link SortKeyEncoder}.
+ * Rows with equal keys are returned in reverse order of the base cursor, same as
+ * {@link SortedLightRecordCursor} does.
+ */
+class RadixSortLightRecordCursor implements DelegatingRecordCursor {
+    // pairs of (key, row id), or (key, row position) when there is more than one key column
+    private final ContiguousVirtualMemory index;
+    // scratch space of the radix sort
+    private final ContiguousVirtualMemory indexCopy;
+    // row ids by row position, used by multi-column sort only
+    private final ContiguousVirtualMemory rowIds;
+    // keys of all but the last key column by row position
+    private final ObjList<ContiguousVirtualMemory> keys = new ObjList<>();
+    private final SortKeyEncoder encoder;
+    private RecordCursor base;
+    private Record baseRecord;
+    private long rowCount;
+    private long current;
+
+    public RadixSortLightRecordCursor(ColumnTypes columnTypes, @Transient IntList keyColumns, long pageSize, int maxPages) {
+        this.encoder = new SortKeyEncoder(columnTypes, keyColumns);
+        final int keyCount = encoder.getKeyCount();
+        this.index = new ContiguousVirtualMemory(pageSize, maxPages);
+        this.indexCopy = new ContiguousVirtualMemory(pageSize, maxPages);
+        this.rowIds = new ContiguousVirtualMemory(pageSize, maxPages);
+        for (int i = 0; i < keyCount - 1; i++) {
+            keys.add(new ContiguousVirtualMemory(pageSize, maxPages));
+        }
+    }
+
+    @Override
+    public void close() {
+        release();
+        base.close();
+    }
+
+    @Override
+    public Record getRecord() {
+        return baseRecord;
+    }
+
+    @Override
+    public Record getRecordB() {
+        return base.getRecordB();
+    }
+
+    @Override
+    public SymbolTable getSymbolTable(int columnIndex) {
+        return base.getSymbolTable(columnIndex);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (current < rowCount) {
+            base.recordAt(baseRecord, index.getLong((current++ << 4) + Long.BYTES));
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void recordAt(Record record, long atRowId) {
+        base.recordAt(record, atRowId);
+    }
+
+    @Override
+    public long size() {
+        return base.size();
+    }
+
+    @Override
+    public void toTop() {
+        current = 0;
+    }
+
+    @Override
+    public void of(RecordCursor base, SqlExecutionContext executionContext) {
+        this.base = base;
+        this.baseRecord = base.getRecord();
+        final SqlExecutionInterruptor interruptor = executionContext.getSqlExecutionInterruptor();
+        final int keyCount = encoder.getKeyCount();
+        final int lastKey = keyCount - 1;
+
+        index.jumpTo(0);
+        rowIds.jumpTo(0);
+        for (int i = 0; i < lastKey; i++) {
+            keys.getQuick(i).jumpTo(0);
+        }
+
+        long rowCount = 0;
+        while (base.hasNext()) {
+            interruptor.checkInterrupted();
+            if (keyCount == 1) {
+                index.putLong128(encoder.encode(baseRecord, lastKey), baseRecord.getRowId());
+            } else {
+                index.putLong128(encoder.encode(baseRecord, lastKey), rowCount);
+                rowIds.putLong(baseRecord.getRowId());
+                for (int i = 0; i < lastKey; i++) {
+                    keys.getQuick(i).putLong(encoder.encode(baseRecord, i));
+                }
+            }
+            rowCount++;
+        }
+        this.rowCount = rowCount;
+
+        if (rowCount > 1) {
+            // radix sort is stable, reverse rows to keep order of equal keys consistent with tree chain
+            reverse(rowCount);
+            indexCopy.jumpTo(0);
+            indexCopy.skip(rowCount << 4);
+            Vect.radixSortLongIndexAscInPlace(index.addressOf(0), rowCount, indexCopy.addressOf(0));
+            for (int k = lastKey - 1; k > -1; k--) {
+                interruptor.checkInterrupted();
+                final ContiguousVirtualMemory keyMem = keys.getQuick(k);
+                for (long i = 0; i < rowCount; i++) {
+                    index.putLong(i << 4, keyMem.getLong(index.getLong((i << 4) + Long.BYTES) << 3));
+                }
+                Vect.radixSortLongIndexAscInPlace(index.addressOf(0), rowCount, indexCopy.addressOf(0));
+            }
+        }
+
+        if (keyCount > 1) {
+            // replace row positions with row ids
+            for (long i = 0; i < rowCount; i++) {
+                final long offset = (i << 4) + Long.BYTES;
+                index.putLong(offset, rowIds.getLong(index.getLong(offset) << 3));
+            }
+        }
+        current = 0;
+    }
+
+    void free() {
+        Misc.free(index);
+        Misc.free(indexCopy);
+        Misc.free(rowIds);
+        Misc.freeObjList(keys);
+    }
+
+    private void release() {
+        index.clear();
+        indexCopy.clear();
+        rowIds.clear();
+        for (int i = 0, n = keys.size(); i < n; i++) {
+            keys.getQuick(i).clear();
+        }
+    }
+
+    private void reverse(long rowCount) {
+        for (long lo = 0, hi = (rowCount - 1) << 4; lo < hi; lo += 16, hi -= 16) {
+            final long key = index.getLong(lo);
+            final long value = index.getLong(lo + Long.BYTES);
+            index.putLong(lo, index.getLong(hi));
+            index.putLong(lo + Long.BYTES, index.getLong(hi + Long.BYTES));
+            index.putLong(hi, key);
+            index.putLong(hi + Long.BYTES, value);
+        }
+    }
+}
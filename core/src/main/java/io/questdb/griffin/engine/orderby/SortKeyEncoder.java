@@ -0,0 +1,132 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.orderby;
+
+import io.questdb.cairo.ColumnType;
+import io.questdb.cairo.ColumnTypes;
+import io.questdb.cairo.sql.Record;
+import io.questdb.std.IntList;
+import io.questdb.std.LongList;
+import io.questdb.std.Transient;
+
+/**
+ * Converts values of fixed-size ORDER BY columns to longs, which compare as unsigned
+ * in the order of the ORDER BY clause. Keys of descending columns are inverted. Keys of
+ * floating point values keep the order of {@link io.questdb.std.Numbers#compare(double, double)},
+ * used by the tree sort: NaN is null, it goes first the same way as null of integer types
+ * does, and -0.0 goes right after 0.0.
+ */
+class SortKeyEncoder {
+    private final IntList columnIndexes = new IntList();
+    private final IntList columnTypes = new IntList();
+    private final LongList masks = new LongList();
+
+    SortKeyEncoder(ColumnTypes columnTypes, @Transient IntList keyColumns) {
+        for (int i = 0, n = keyColumns.size(); i < n; i++) {
+            // column index sign indicates direction, index is 1-based
+            final int index = keyColumns.getQuick(i);
+            final int columnIndex = Math.abs(index) - 1;
+            this.columnIndexes.add(columnIndex);
+            this.columnTypes.add(columnTypes.getColumnType(columnIndex));
+            this.masks.add(index < 0 ? -1L : 0L);
+        }
+    }
+
+    static boolean isSupported(ColumnTypes columnTypes, IntList keyColumns) {
+        for (int i = 0, n = keyColumns.size(); i < n; i++) {
+            switch (columnTypes.getColumnType(Math.abs(keyColumns.getQuick(i)) - 1)) {
+                case ColumnType.BOOLEAN:
+                case ColumnType.BYTE:
+                case ColumnType.SHORT:
+                case ColumnType.CHAR:
+                case ColumnType.INT:
+                case ColumnType.LONG:
+                case ColumnType.DATE:
+                case ColumnType.TIMESTAMP:
+                case ColumnType.FLOAT:
+                case ColumnType.DOUBLE:
+                    break;
+                default:
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    long encode(Record record, int keyIndex) {
+        final int columnIndex = columnIndexes.getQuick(keyIndex);
+        final long key;
+        switch (columnTypes.getQuick(keyIndex)) {
+            case ColumnType.BOOLEAN:
+                key = record.getBool(columnIndex) ? 1 : 0;
+                break;
+            case ColumnType.BYTE:
+                key = record.getByte(columnIndex) ^ Long.MIN_VALUE;
+                break;
+            case ColumnType.SHORT:
+                key = record.getShort(columnIndex) ^ Long.MIN_VALUE;
+                break;
+            case ColumnType.CHAR:
+                key = record.getChar(columnIndex);
+                break;
+            case ColumnType.INT:
+                key = record.getInt(columnIndex) ^ Long.MIN_VALUE;
+                break;
+            case ColumnType.LONG:
+                key = record.getLong(columnIndex) ^ Long.MIN_VALUE;
+                break;
+            case ColumnType.DATE:
+                key = record.getDate(columnIndex) ^ Long.MIN_VALUE;
+                break;
+            case ColumnType.TIMESTAMP:
+                key = record.getTimestamp(columnIndex) ^ Long.MIN_VALUE;
+                break;
+            case ColumnType.FLOAT:
+                key = encodeDouble(record.getFloat(columnIndex));
+                break;
+            default:
+                key = encodeDouble(record.getDouble(columnIndex));
+                break;
+        }
+        return key ^ masks.getQuick(keyIndex);
+    }
+
+    int getKeyCount() {
+        return columnIndexes.size();
+    }
+
+    private static long encodeDouble(double value) {
+        if (value != value) {
+            return 0;
+        }
+        final long bits = Double.doubleToRawLongBits(value);
+        if (bits < 0) {
+            return bits == Long.MIN_VALUE ? Long.MIN_VALUE + 1 : ~bits;
+        }
+        // positive values make room for -0.0
+        return bits == 0 ? Long.MIN_VALUE : (bits ^ Long.MIN_VALUE) + 1;
+    }
+}
@@ -0,0 +1,215 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.orderby;
+
+import io.questdb.cairo.ColumnTypes;
+import io.questdb.cairo.sql.DelegatingRecordCursor;
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.SymbolTable;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.griffin.SqlExecutionInterruptor;
+import io.questdb.std.IntList;
+import io.questdb.std.LongList;
+import io.questdb.std.Transient;
+
+/**
+ * Returns first N rows of random access cursor in the order of fixed-size key columns without
+ * sorting the entire cursor. Candidates are kept in a binary heap with the worst candidate
+ * at the root, each heap entry consists of encoded keys, row sequence and row id. Of the rows
+ * with equal keys the later row is better, which is the order of the full sort.
+ */
+class TopKRecordCursor implements DelegatingRecordCursor {
+    private final SortKeyEncoder encoder;
+    private final int keyCount;
+    // keys, sequence and row id
+    private final int entrySize;
+    private final int limit;
+    private final LongList heap = new LongList();
+    private final LongList rowIds = new LongList();
+    private RecordCursor base;
+    private Record baseRecord;
+    private int current;
+
+    public TopKRecordCursor(ColumnTypes columnTypes, @Transient IntList keyColumns, int limit) {
+        this.encoder = new SortKeyEncoder(columnTypes, keyColumns);
+        this.keyCount = encoder.getKeyCount();
+        this.entrySize = keyCount + 2;
+        this.limit = limit;
+    }
+
+    @Override
+    public void close() {
+        base.close();
+    }
+
+    @Override
+    public Record getRecord() {
+        return baseRecord;
+    }
+
+    @Override
+    public Record getRecordB() {
+        return base.getRecordB();
+    }
+
+    @Override
+    public SymbolTable getSymbolTable(int columnIndex) {
+        return base.getSymbolTable(columnIndex);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (current < rowIds.size()) {
+            base.recordAt(baseRecord, rowIds.getQuick(current++));
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void recordAt(Record record, long atRowId) {
+        base.recordAt(record, atRowId);
+    }
+
+    @Override
+    public long size() {
+        return rowIds.size();
+    }
+
+    @Override
+    public void toTop() {
+        current = 0;
+    }
+
+    @Override
+    public void of(RecordCursor base, SqlExecutionContext executionContext) {
+        this.base = base;
+        this.baseRecord = base.getRecord();
+        final SqlExecutionInterruptor interruptor = executionContext.getSqlExecutionInterruptor();
+
+        heap.clear();
+        rowIds.clear();
+        int count = 0;
+        long sequence = 0;
+        while (base.hasNext()) {
+            interruptor.checkInterrupted();
+            if (count < limit) {
+                heap.setPos((count + 1) * entrySize);
+                putEntry(count, sequence);
+                siftUp(count++);
+            } else if (isBetterThanRoot()) {
+                putEntry(0, sequence);
+                siftDown(0, count);
+            }
+            sequence++;
+        }
+
+        // drain the heap, worst candidate first
+        rowIds.setPos(count);
+        while (count > 0) {
+            rowIds.setQuick(--count, heap.getQuick(entrySize - 1));
+            copyEntry(count, 0);
+            siftDown(0, count);
+        }
+        current = 0;
+    }
+
+    private int compare(int entryA, int entryB) {
+        final int offsetA = entryA * entrySize;
+        final int offsetB = entryB * entrySize;
+        for (int i = 0; i < keyCount; i++) {
+            final int cmp = Long.compareUnsigned(heap.getQuick(offsetA + i), heap.getQuick(offsetB + i));
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        // lower sequence is worse
+        return -Long.compare(heap.getQuick(offsetA + keyCount), heap.getQuick(offsetB + keyCount));
+    }
+
+    private void copyEntry(int from, int to) {
+        heap.arrayCopy(from * entrySize, to * entrySize, entrySize);
+    }
+
+    private boolean isBetterThanRoot() {
+        for (int i = 0; i < keyCount; i++) {
+            final long key = encoder.encode(baseRecord, i);
+            final long rootKey = heap.getQuick(i);
+            if (key != rootKey) {
+                return Long.compareUnsigned(key, rootKey) < 0;
+            }
+        }
+        // equal keys, current row comes after the root
+        return true;
+    }
+
+    private void putEntry(int entry, long sequence) {
+        final int offset = entry * entrySize;
+        for (int i = 0; i < keyCount; i++) {
+            heap.setQuick(offset + i, encoder.encode(baseRecord, i));
+        }
+        heap.setQuick(offset + keyCount, sequence);
+        heap.setQuick(offset + keyCount + 1, baseRecord.getRowId());
+    }
+
+    private void siftDown(int entry, int count) {
+        while (true) {
+            final int left = 2 * entry + 1;
+            if (left >= count) {
+                return;
+            }
+            final int right = left + 1;
+            final int worse = right < count && compare(right, left) > 0 ? right : left;
+            if (compare(worse, entry) <= 0) {
+                return;
+            }
+            swap(entry, worse);
+            entry = worse;
+        }
+    }
+
+    private void siftUp(int entry) {
+        while (entry > 0) {
+            final int parent = (entry - 1) / 2;
+            if (compare(entry, parent) <= 0) {
+                return;
+            }
+            swap(entry, parent);
+            entry = parent;
+        }
+    }
+
+    private void swap(int entryA, int entryB) {
+        final int offsetA = entryA * entrySize;
+        final int offsetB = entryB * entrySize;
+        for (int i = 0; i < entrySize; i++) {
+            final long value = heap.getQuick(offsetA + i);
+            heap.setQuick(offsetA + i, heap.getQuick(offsetB + i));
+            heap.setQuick(offsetB + i, value);
+        }
+    }
+}
@@ -0,0 +1,449 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.table;
+
+import io.questdb.cairo.sql.StaticSymbolTable;
+import io.questdb.cairo.sql.SymbolTableSource;
+import io.questdb.std.*;
+import io.questdb.std.ThreadLocal;
+
+import java.util.Arrays;
+
+/**
+ * Filter predicate lowered to a compact postfix program over fixed-size columns.
+ * Program is evaluated over page frame memory in batches of rows, each instruction
+ * processes whole batch at a time, which keeps interpretation overhead away from
+ * the inner loops. Null handling mirrors that of the comparison functions the
+ * program replaces: ordering comparisons are false when either side is null and
+ * equality compares values as they are stored.
+ * <p>
+ * Program is immutable once built and is safe to evaluate from multiple threads
+ * concurrently, provided {@link #init(SymbolTableSource)} is not running at the same time.
+ */
+public class CompiledFilter {
+    // instructions, operands follow opcode in the program
+    static final int OP_LOAD_BOOL = 1;   // column -> mask
+    static final int OP_LOAD_LONG = 2;   // column, type -> long vector
+    static final int OP_LOAD_DOUBLE = 3; // column, type -> double vector
+    static final int OP_IMM_LONG = 4;    // constant index -> long vector
+    static final int OP_IMM_DOUBLE = 5;  // constant index -> double vector
+    static final int OP_IMM_SYMBOL = 6;  // symbol constant index -> long vector
+    static final int OP_CMP_LONG = 7;    // comparison -> mask
+    static final int OP_CMP_DOUBLE = 8;  // comparison -> mask
+    static final int OP_AND = 9;
+    static final int OP_OR = 10;
+    static final int OP_NOT = 11;
+
+    // storage types of loaded columns
+    static final int TYPE_I8 = 0;
+    static final int TYPE_I16 = 1;
+    static final int TYPE_I32 = 2;
+    static final int TYPE_I64 = 3;
+    static final int TYPE_F32 = 4;
+    static final int TYPE_F64 = 5;
+
+    static final int CMP_EQ = 0;
+    static final int CMP_NE = 1;
+    static final int CMP_LT = 2;
+    static final int CMP_LE = 3;
+    static final int CMP_GT = 4;
+    static final int CMP_GE = 5;
+
+    static final int BATCH_SIZE = 256;
+    private static final ThreadLocal<Scratch> tlScratch = new ThreadLocal<>(Scratch::new);
+    private final int[] program;
+    private final long[] constants;
+    private final IntList symbolColumns;
+    private final ObjList<String> symbolValues;
+    private final long[] symbolKeys;
+    private final int stackDepth;
+
+    CompiledFilter(
+            IntList program,
+            LongList constants,
+            IntList symbolColumns,
+            ObjList<String> symbolValues,
+            int stackDepth
+    ) {
+        this.program = toArray(program);
+        this.constants = new long[constants.size()];
+        for (int i = 0, n = constants.size(); i < n; i++) {
+            this.constants[i] = constants.getQuick(i);
+        }
+        this.symbolColumns = new IntList(symbolColumns.size());
+        this.symbolColumns.addAll(symbolColumns);
+        this.symbolValues = new ObjList<>(symbolValues);
+        this.symbolKeys = new long[symbolValues.size()];
+        this.stackDepth = stackDepth;
+    }
+
+    /**
+     * Evaluates filter against page frame rows and adds frame-local indexes
+     * of matching rows to the supplied list.
+     *
+     * @param pageAddresses column addresses of the first row, 0 for column tops
+     * @param rowCount      number of rows to evaluate
+     * @param rows          receives indexes of matching rows
+     */
+    public void filter(LongList pageAddresses, long rowCount, LongList rows) {
+        final Scratch scratch = tlScratch.get();
+        scratch.ensureDepth(stackDepth);
+        final boolean[] result = scratch.masks[0];
+        for (long lo = 0; lo < rowCount; lo += BATCH_SIZE) {
+            final int n = (int) Math.min(BATCH_SIZE, rowCount - lo);
+            run(pageAddresses, lo, n, scratch);
+            for (int i = 0; i < n; i++) {
+                if (result[i]) {
+                    rows.add(lo + i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Resolves symbol constants to keys of the current symbol tables. Must be
+     * called every time cursor is opened before filter is evaluated.
+     */
+    public void init(SymbolTableSource symbolTableSource) {
+        for (int i = 0, n = symbolValues.size(); i < n; i++) {
+            final StaticSymbolTable symbolTable = (StaticSymbolTable) symbolTableSource.getSymbolTable(symbolColumns.getQuick(i));
+            // unknown value resolves to VALUE_NOT_FOUND, which does not match any row
+            symbolKeys[i] = Numbers.intToLong(symbolTable.keyOf(symbolValues.getQuick(i)));
+        }
+    }
+
+    private static void and(boolean[] l, boolean[] r, int n) {
+        for (int i = 0; i < n; i++) {
+            l[i] = l[i] & r[i];
+        }
+    }
+
+    private static void compareDouble(int cmp, double[] l, double[] r, boolean[] dst, int n) {
+        switch (cmp) {
+            case CMP_EQ:
+                for (int i = 0; i < n; i++) {
+                    dst[i] = eq(l[i], r[i]);
+                }
+                break;
+            case CMP_NE:
+                for (int i = 0; i < n; i++) {
+                    dst[i] = !eq(l[i], r[i]);
+                }
+                break;
+            case CMP_LT:
+                for (int i = 0; i < n; i++) {
+                    dst[i] = l[i] < r[i];
+                }
+                break;
+            case CMP_LE:
+                for (int i = 0; i < n; i++) {
+                    dst[i] = l[i] <= r[i];
+                }
+                break;
+            case CMP_GT:
+                for (int i = 0; i < n; i++) {
+                    dst[i] = l[i] > r[i];
+                }
+                break;
+            default:
+                for (int i = 0; i < n; i++) {
+                    dst[i] = l[i] >= r[i];
+                }
+                break;
+        }
+    }
+
+    private static void compareLong(int cmp, long[] l, long[] r, boolean[] dst, int n) {
+        switch (cmp) {
+            case CMP_EQ:
+                for (int i = 0; i < n; i++) {
+                    dst[i] = l[i] == r[i];
+                }
+                break;
+            case CMP_NE:
+                for (int i = 0; i < n; i++) {
+                    dst[i] = l[i] != r[i];
+                }
+                break;
+            case CMP_LT:
+                for (int i = 0; i < n; i++) {
+                    dst[i] = l[i] != Numbers.LONG_NaN && r[i] != Numbers.LONG_NaN && l[i] < r[i];
+                }
+                break;
+            case CMP_LE:
+                for (int i = 0; i < n; i++) {
+                    dst[i] = l[i] != Numbers.LONG_NaN && r[i] != Numbers.LONG_NaN && l[i] <= r[i];
+                }
+                break;
+            case CMP_GT:
+                for (int i = 0; i < n; i++) {
+                    dst[i] = l[i] != Numbers.LONG_NaN && r[i] != Numbers.LONG_NaN && l[i] > r[i];
+                }
+                break;
+            default:
+                for (int i = 0; i < n; i++) {
+                    dst[i] = l[i] != Numbers.LONG_NaN && r[i] != Numbers.LONG_NaN && l[i] >= r[i];
+                }
+                break;
+        }
+    }
+
+    // same tolerance as the equality function
+    private static boolean eq(double l, double r) {
+        return l != l && r != r || Math.abs(l - r) < 0.0000000001;
+    }
+
+    private static void loadBool(long address, long lo, int n, boolean[] dst) {
+        if (address == 0) {
+            for (int i = 0; i < n; i++) {
+                dst[i] = false;
+            }
+        } else {
+            final long p = address + lo;
+            for (int i = 0; i < n; i++) {
+                dst[i] = Unsafe.getUnsafe().getByte(p + i) == 1;
+            }
+        }
+    }
+
+    private static void loadDouble(long address, int type, long lo, int n, double[] dst) {
+        switch (type) {
+            case TYPE_I8:
+                if (address == 0) {
+                    fill(dst, 0, n);
+                } else {
+                    final long p = address + lo;
+                    for (int i = 0; i < n; i++) {
+                        dst[i] = Unsafe.getUnsafe().getByte(p + i);
+                    }
+                }
+                break;
+            case TYPE_I16:
+                if (address == 0) {
+                    fill(dst, 0, n);
+                } else {
+                    final long p = address + (lo << 1);
+                    for (int i = 0; i < n; i++) {
+                        dst[i] = Unsafe.getUnsafe().getShort(p + ((long) i << 1));
+                    }
+                }
+                break;
+            case TYPE_I32:
+                if (address == 0) {
+                    fill(dst, Double.NaN, n);
+                } else {
+                    final long p = address + (lo << 2);
+                    for (int i = 0; i < n; i++) {
+                        dst[i] = Numbers.intToDouble(Unsafe.getUnsafe().getInt(p + ((long) i << 2)));
+                    }
+                }
+                break;
+            case TYPE_I64:
+                if (address == 0) {
+                    fill(dst, Double.NaN, n);
+                } else {
+                    final long p = address + (lo << 3);
+                    for (int i = 0; i < n; i++) {
+                        dst[i] = Numbers.longToDouble(Unsafe.getUnsafe().getLong(p + ((long) i << 3)));
+                    }
+                }
+                break;
+            case TYPE_F32:
+                if (address == 0) {
+                    fill(dst, Double.NaN, n);
+                } else {
+                    final long p = address + (lo << 2);
+                    for (int i = 0; i < n; i++) {
+                        dst[i] = Unsafe.getUnsafe().getFloat(p + ((long) i << 2));
+                    }
+                }
+                break;
+            default:
+                if (address == 0) {
+                    fill(dst, Double.NaN, n);
+                } else {
+                    final long p = address + (lo << 3);
+                    for (int i = 0; i < n; i++) {
+                        dst[i] = Unsafe.getUnsafe().getDouble(p + ((long) i << 3));
+                    }
+                }
+                break;
+        }
+    }
+
+    private static void loadLong(long address, int type, long lo, int n, long[] dst) {
+        switch (type) {
+            case TYPE_I8:
+                if (address == 0) {
+                    fill(dst, 0, n);
+                } else {
+                    final long p = address + lo;
+                    for (int i = 0; i < n; i++) {
+                        dst[i] = Unsafe.getUnsafe().getByte(p + i);
+                    }
+                }
+                break;
+            case TYPE_I16:
+                if (address == 0) {
+                    fill(dst, 0, n);
+                } else {
+                    final long p = address + (lo << 1);
+                    for (int i = 0; i < n; i++) {
+                        dst[i] = Unsafe.getUnsafe().getShort(p + ((long) i << 1));
+                    }
+                }
+                break;
+            case TYPE_I32:
+                if (address == 0) {
+                    fill(dst, Numbers.LONG_NaN, n);
+                } else {
+                    final long p = address + (lo << 2);
+                    for (int i = 0; i < n; i++) {
+                        dst[i] = Numbers.intToLong(Unsafe.getUnsafe().getInt(p + ((long) i << 2)));
+                    }
+                }
+                break;
+            default:
+                if (address == 0) {
+                    fill(dst, Numbers.LONG_NaN, n);
+                } else {
+                    final long p = address + (lo << 3);
+                    for (int i = 0; i < n; i++) {
+                        dst[i] = Unsafe.getUnsafe().getLong(p + ((long) i << 3));
+                    }
+                }
+                break;
+        }
+    }
+
+    private static void fill(long[] dst, long value, int n) {
+        for (int i = 0; i < n; i++) {
+            dst[i] = value;
+        }
+    }
+
+    private static void fill(double[] dst, double value, int n) {
+        for (int i = 0; i < n; i++) {
+            dst[i] = value;
+        }
+    }
+
+    private static void not(boolean[] v, int n) {
+        for (int i = 0; i < n; i++) {
+            v[i] = !v[i];
+        }
+    }
+
+    private static void or(boolean[] l, boolean[] r, int n) {
+        for (int i = 0; i < n; i++) {
+            l[i] = l[i] | r[i];
+        }
+    }
+
+    private static int[] toArray(IntList list) {
+        final int[] array = new int[list.size()];
+        for (int i = 0, n = list.size(); i < n; i++) {
+            array[i] = list.getQuick(i);
+        }
+        return array;
+    }
+
+    private void run(LongList pageAddresses, long lo, int n, Scratch scratch) {
+        final int[] program = this.program;
+        int sp = -1;
+        int pc = 0;
+        while (pc < program.length) {
+            switch (program[pc++]) {
+                case OP_LOAD_BOOL:
+                    loadBool(pageAddresses.getQuick(program[pc++]), lo, n, scratch.masks[++sp]);
+                    break;
+                case OP_LOAD_LONG:
+                    loadLong(pageAddresses.getQuick(program[pc]), program[pc + 1], lo, n, scratch.longs[++sp]);
+                    pc += 2;
+                    break;
+                case OP_LOAD_DOUBLE:
+                    loadDouble(pageAddresses.getQuick(program[pc]), program[pc + 1], lo, n, scratch.doubles[++sp]);
+                    pc += 2;
+                    break;
+                case OP_IMM_LONG:
+                    fill(scratch.longs[++sp], constants[program[pc++]], n);
+                    break;
+                case OP_IMM_DOUBLE:
+                    fill(scratch.doubles[++sp], Double.longBitsToDouble(constants[program[pc++]]), n);
+                    break;
+                case OP_IMM_SYMBOL:
+                    fill(scratch.longs[++sp], symbolKeys[program[pc++]], n);
+                    break;
+                case OP_CMP_LONG:
+                    sp--;
+                    compareLong(program[pc++], scratch.longs[sp], scratch.longs[sp + 1], scratch.masks[sp], n);
+                    break;
+                case OP_CMP_DOUBLE:
+                    sp--;
+                    compareDouble(program[pc++], scratch.doubles[sp], scratch.doubles[sp + 1], scratch.masks[sp], n);
+                    break;
+                case OP_AND:
+                    sp--;
+                    and(scratch.masks[sp], scratch.masks[sp + 1], n);
+                    break;
+                case OP_OR:
+                    sp--;
+                    or(scratch.masks[sp], scratch.masks[sp + 1], n);
+                    break;
+                case OP_NOT:
+                    not(scratch.masks[sp], n);
+                    break;
+                default:
+                    assert false;
+            }
+        }
+        assert sp == 0;
+    }
+
+    /**
+     * Per-thread evaluation stack. Every stack slot can hold a batch of
+     * values of any of the supported kinds.
+     */
+    private static class Scratch {
+        private long[][] longs = new long[0][];
+        private double[][] doubles = new double[0][];
+        private boolean[][] masks = new boolean[0][];
+
+        private void ensureDepth(int depth) {
+            final int current = masks.length;
+            if (current < depth) {
+                longs = Arrays.copyOf(longs, depth);
+                doubles = Arrays.copyOf(doubles, depth);
+                masks = Arrays.copyOf(masks, depth);
+                for (int i = current; i < depth; i++) {
+                    longs[i] = new long[BATCH_SIZE];
+                    doubles[i] = new double[BATCH_SIZE];
+                    masks[i] = new boolean[BATCH_SIZE];
+                }
+            }
+        }
+    }
+}
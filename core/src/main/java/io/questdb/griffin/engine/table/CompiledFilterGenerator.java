@@ -0,0 +1,434 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.table;
+
+import io.questdb.cairo.ColumnType;
+import io.questdb.cairo.sql.RecordMetadata;
+import io.questdb.griffin.SqlKeywords;
+import io.questdb.griffin.model.ExpressionNode;
+import io.questdb.std.*;
+
+import static io.questdb.griffin.engine.table.CompiledFilter.*;
+
+/**
+ * Lowers filter expression to {@link CompiledFilter} program. Supported are comparisons
+ * of fixed-size numeric, date, timestamp and boolean columns with each other or with
+ * constants, comparison of symbol column with string constant for equality, and
+ * logical operators over these. Anything else makes generator give up and the
+ * caller falls back to the filter function.
+ */
+public class CompiledFilterGenerator {
+    private static final int OPERAND_COLUMN = 1;
+    private static final int OPERAND_LONG = 2;
+    private static final int OPERAND_DOUBLE = 3;
+    private static final int OPERAND_NULL = 4;
+    private static final int OPERAND_STRING = 5;
+    private static final int OPERAND_BOOLEAN = 6;
+    private final IntList program = new IntList();
+    private final LongList constants = new LongList();
+    private final IntList symbolColumns = new IntList();
+    private final ObjList<String> symbolValues = new ObjList<>();
+    private final Operand left = new Operand();
+    private final Operand right = new Operand();
+    private RecordMetadata metadata;
+    private int depth;
+    private int maxDepth;
+
+    /**
+     * @return compiled filter or null when expression cannot be compiled
+     */
+    public CompiledFilter generate(ExpressionNode filter, RecordMetadata metadata) {
+        this.metadata = metadata;
+        program.clear();
+        constants.clear();
+        symbolColumns.clear();
+        symbolValues.clear();
+        depth = 0;
+        maxDepth = 0;
+        try {
+            if (predicate(filter)) {
+                return new CompiledFilter(program, constants, symbolColumns, symbolValues, maxDepth);
+            }
+            return null;
+        } finally {
+            this.metadata = null;
+        }
+    }
+
+    private static int comparisonOf(CharSequence tok) {
+        if (Chars.equals(tok, '=')) {
+            return CMP_EQ;
+        }
+        if (Chars.equals(tok, "!=") || Chars.equals(tok, "<>")) {
+            return CMP_NE;
+        }
+        if (Chars.equals(tok, '<')) {
+            return CMP_LT;
+        }
+        if (Chars.equals(tok, "<=")) {
+            return CMP_LE;
+        }
+        if (Chars.equals(tok, '>')) {
+            return CMP_GT;
+        }
+        if (Chars.equals(tok, ">=")) {
+            return CMP_GE;
+        }
+        return -1;
+    }
+
+    private static boolean isDoubleColumn(int columnType) {
+        return columnType == ColumnType.FLOAT || columnType == ColumnType.DOUBLE;
+    }
+
+    private static boolean isNumericColumn(int columnType) {
+        switch (columnType) {
+            case ColumnType.BYTE:
+            case ColumnType.SHORT:
+            case ColumnType.INT:
+            case ColumnType.LONG:
+            case ColumnType.FLOAT:
+            case ColumnType.DOUBLE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static int storageTypeOf(int columnType) {
+        switch (columnType) {
+            case ColumnType.BOOLEAN:
+            case ColumnType.BYTE:
+                return TYPE_I8;
+            case ColumnType.SHORT:
+                return TYPE_I16;
+            case ColumnType.INT:
+            case ColumnType.SYMBOL:
+                return TYPE_I32;
+            case ColumnType.FLOAT:
+                return TYPE_F32;
+            case ColumnType.DOUBLE:
+                return TYPE_F64;
+            default:
+                return TYPE_I64;
+        }
+    }
+
+    private boolean comparison(int cmp, ExpressionNode lhs, ExpressionNode rhs) {
+        if (!left.of(lhs) || !right.of(rhs)) {
+            return false;
+        }
+        if (left.kind != OPERAND_COLUMN && right.kind != OPERAND_COLUMN) {
+            return false;
+        }
+
+        final int leftType = left.columnType;
+        final int rightType = right.columnType;
+
+        if (leftType == ColumnType.SYMBOL || rightType == ColumnType.SYMBOL) {
+            return symbolComparison(cmp);
+        }
+
+        if (leftType == ColumnType.BOOLEAN || rightType == ColumnType.BOOLEAN) {
+            if (cmp != CMP_EQ && cmp != CMP_NE || !isBooleanCompatible(left) || !isBooleanCompatible(right)) {
+                return false;
+            }
+            emitLong(left);
+            emitLong(right);
+            emitCompare(OP_CMP_LONG, cmp);
+            return true;
+        }
+
+        if (leftType == ColumnType.DATE || leftType == ColumnType.TIMESTAMP || rightType == ColumnType.DATE || rightType == ColumnType.TIMESTAMP) {
+            // dates are compared as timestamps, in microseconds, so only compare them with own kind;
+            // timestamps can also be compared with integer constants
+            if (!isTemporalCompatible(left, right) || !isTemporalCompatible(right, left)) {
+                return false;
+            }
+            emitLong(left);
+            emitLong(right);
+            emitCompare(OP_CMP_LONG, cmp);
+            return true;
+        }
+
+        if (!isNumericCompatible(left) || !isNumericCompatible(right)) {
+            return false;
+        }
+
+        if (isDoubleColumn(leftType) || isDoubleColumn(rightType) || left.kind == OPERAND_DOUBLE || right.kind == OPERAND_DOUBLE) {
+            emitDouble(left);
+            emitDouble(right);
+            emitCompare(OP_CMP_DOUBLE, cmp);
+        } else {
+            emitLong(left);
+            emitLong(right);
+            emitCompare(OP_CMP_LONG, cmp);
+        }
+        return true;
+    }
+
+    private void emitCompare(int op, int cmp) {
+        program.add(op);
+        program.add(cmp);
+        depth--;
+    }
+
+    private void emitDouble(Operand operand) {
+        switch (operand.kind) {
+            case OPERAND_COLUMN:
+                program.add(OP_LOAD_DOUBLE);
+                program.add(operand.columnIndex);
+                program.add(storageTypeOf(operand.columnType));
+                break;
+            case OPERAND_LONG:
+                emitImmediate(OP_IMM_DOUBLE, Double.doubleToLongBits(operand.longValue));
+                return;
+            case OPERAND_DOUBLE:
+                emitImmediate(OP_IMM_DOUBLE, Double.doubleToLongBits(operand.doubleValue));
+                return;
+            default:
+                emitImmediate(OP_IMM_DOUBLE, Double.doubleToLongBits(Double.NaN));
+                return;
+        }
+        push();
+    }
+
+    private void emitImmediate(int op, long value) {
+        program.add(op);
+        program.add(constants.size());
+        constants.add(value);
+        push();
+    }
+
+    private void emitLong(Operand operand) {
+        switch (operand.kind) {
+            case OPERAND_COLUMN:
+                program.add(OP_LOAD_LONG);
+                program.add(operand.columnIndex);
+                program.add(storageTypeOf(operand.columnType));
+                push();
+                break;
+            case OPERAND_LONG:
+                emitImmediate(OP_IMM_LONG, operand.longValue);
+                break;
+            case OPERAND_BOOLEAN:
+                emitImmediate(OP_IMM_LONG, operand.booleanValue ? 1 : 0);
+                break;
+            default:
+                emitImmediate(OP_IMM_LONG, Numbers.LONG_NaN);
+                break;
+        }
+    }
+
+    private boolean isBooleanCompatible(Operand operand) {
+        return operand.kind == OPERAND_BOOLEAN || operand.columnType == ColumnType.BOOLEAN;
+    }
+
+    private boolean isNumericCompatible(Operand operand) {
+        switch (operand.kind) {
+            case OPERAND_COLUMN:
+                return isNumericColumn(operand.columnType);
+            case OPERAND_LONG:
+            case OPERAND_DOUBLE:
+                return true;
+            case OPERAND_NULL:
+                // byte and short columns have no null value
+                final int otherType = (operand == left ? right : left).columnType;
+                return otherType != ColumnType.BYTE && otherType != ColumnType.SHORT;
+            default:
+                return false;
+        }
+    }
+
+    private boolean isTemporalCompatible(Operand operand, Operand other) {
+        switch (operand.kind) {
+            case OPERAND_COLUMN:
+                return operand.columnType == other.columnType || other.kind != OPERAND_COLUMN;
+            case OPERAND_LONG:
+                return other.columnType == ColumnType.TIMESTAMP;
+            case OPERAND_NULL:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean predicate(ExpressionNode node) {
+        switch (node.type) {
+            case ExpressionNode.LITERAL:
+                final int columnIndex = metadata.getColumnIndexQuiet(node.token);
+                if (columnIndex > -1 && metadata.getColumnType(columnIndex) == ColumnType.BOOLEAN) {
+                    program.add(OP_LOAD_BOOL);
+                    program.add(columnIndex);
+                    push();
+                    return true;
+                }
+                return false;
+            case ExpressionNode.OPERATION:
+                if (node.paramCount == 1) {
+                    if (SqlKeywords.isNotKeyword(node.token) && predicate(node.rhs)) {
+                        program.add(OP_NOT);
+                        return true;
+                    }
+                    return false;
+                }
+                if (node.paramCount != 2) {
+                    return false;
+                }
+                if (SqlKeywords.isAndKeyword(node.token)) {
+                    return logical(OP_AND, node);
+                }
+                if (SqlKeywords.isOrKeyword(node.token)) {
+                    return logical(OP_OR, node);
+                }
+                final int cmp = comparisonOf(node.token);
+                return cmp > -1 && comparison(cmp, node.lhs, node.rhs);
+            default:
+                return false;
+        }
+    }
+
+    private boolean logical(int op, ExpressionNode node) {
+        if (predicate(node.lhs) && predicate(node.rhs)) {
+            program.add(op);
+            depth--;
+            return true;
+        }
+        return false;
+    }
+
+    private void push() {
+        if (++depth > maxDepth) {
+            maxDepth = depth;
+        }
+    }
+
+    private boolean symbolComparison(int cmp) {
+        if (cmp != CMP_EQ && cmp != CMP_NE) {
+            return false;
+        }
+        final Operand column = left.kind == OPERAND_COLUMN ? left : right;
+        final Operand value = column == left ? right : left;
+        if (column.columnType != ColumnType.SYMBOL
+                || !metadata.isSymbolTableStatic(column.columnIndex)
+                || (value.kind != OPERAND_STRING && value.kind != OPERAND_NULL)) {
+            return false;
+        }
+        program.add(OP_LOAD_LONG);
+        program.add(column.columnIndex);
+        program.add(TYPE_I32);
+        push();
+        program.add(OP_IMM_SYMBOL);
+        program.add(symbolValues.size());
+        push();
+        symbolColumns.add(column.columnIndex);
+        symbolValues.add(value.kind == OPERAND_NULL ? null : value.stringValue);
+        emitCompare(OP_CMP_LONG, cmp);
+        return true;
+    }
+
+    private class Operand {
+        private int kind;
+        private int columnIndex;
+        private int columnType;
+        private long longValue;
+        private double doubleValue;
+        private boolean booleanValue;
+        private String stringValue;
+
+        private boolean of(ExpressionNode node) {
+            columnIndex = -1;
+            columnType = -1;
+            stringValue = null;
+            switch (node.type) {
+                case ExpressionNode.LITERAL:
+                    columnIndex = metadata.getColumnIndexQuiet(node.token);
+                    if (columnIndex < 0) {
+                        return false;
+                    }
+                    kind = OPERAND_COLUMN;
+                    columnType = metadata.getColumnType(columnIndex);
+                    return true;
+                case ExpressionNode.CONSTANT:
+                    return constant(node.token, false);
+                case ExpressionNode.OPERATION:
+                    // negative numeric constant
+                    return node.paramCount == 1
+                            && Chars.equals(node.token, '-')
+                            && node.rhs != null
+                            && node.rhs.type == ExpressionNode.CONSTANT
+                            && constant(node.rhs.token, true)
+                            && (kind == OPERAND_LONG || kind == OPERAND_DOUBLE);
+                default:
+                    return false;
+            }
+        }
+
+        private boolean constant(CharSequence tok, boolean negate) {
+            if (SqlKeywords.isNullKeyword(tok)) {
+                kind = OPERAND_NULL;
+                return true;
+            }
+            if (Chars.isQuoted(tok)) {
+                if (tok.length() == 2) {
+                    // empty literal is a char constant
+                    return false;
+                }
+                kind = OPERAND_STRING;
+                stringValue = Chars.toString(tok, 1, tok.length() - 1);
+                return true;
+            }
+            if (SqlKeywords.isTrueKeyword(tok) || SqlKeywords.isFalseKeyword(tok)) {
+                kind = OPERAND_BOOLEAN;
+                booleanValue = SqlKeywords.isTrueKeyword(tok);
+                return true;
+            }
+            try {
+                longValue = Numbers.parseLong(tok);
+                // these values are nulls of int and long constants
+                if (longValue == Numbers.LONG_NaN || longValue == Numbers.INT_NaN) {
+                    return false;
+                }
+                if (negate) {
+                    longValue = -longValue;
+                }
+                kind = OPERAND_LONG;
+                return true;
+            } catch (NumericException ignore) {
+            }
+            try {
+                doubleValue = Numbers.parseDouble(tok);
+                if (negate) {
+                    doubleValue = -doubleValue;
+                }
+                kind = OPERAND_DOUBLE;
+                return true;
+            } catch (NumericException ignore) {
+            }
+            return false;
+        }
+    }
+}
@@ -25,6 +25,7 @@
 package io.questdb.griffin.engine.table;
 
 import io.questdb.cairo.sql.*;
+import io.questdb.cairo.vm.ColumnReadAhead;
 import io.questdb.griffin.SqlExecutionContext;
 import io.questdb.std.IntList;
 import org.jetbrains.annotations.NotNull;
@@ -40,6 +41,8 @@ class DataFrameRecordCursor extends AbstractDataFrameRecordCursor {
     private final BooleanSupplier nextRow = this::nextRow;
     private final BooleanSupplier nextFrame = this::nextFrame;
     private final Function filter;
+    private final ColumnReadAhead readAhead = new ColumnReadAhead();
+    private int partitionIndex = -1;
 
     public DataFrameRecordCursor(
             RowCursorFactory rowCursorFactory,
@@ -54,6 +57,12 @@ class DataFrameRecordCursor extends AbstractDataFrameRecordCursor {
         this.filter = filter;
     }
 
+    @Override
+    public void close() {
+        readAhead.close();
+        super.close();
+    }
+
     @Override
     public boolean hasNext() {
         try {
@@ -69,6 +78,8 @@ class DataFrameRecordCursor extends AbstractDataFrameRecordCursor {
             filter.toTop();
         }
         dataFrameCursor.toTop();
+        readAhead.toTop();
+        partitionIndex = -1;
         next = nextFrame;
     }
 
@@ -89,6 +100,9 @@ class DataFrameRecordCursor extends AbstractDataFrameRecordCursor {
         this.recordA.of(dataFrameCursor.getTableReader());
         this.recordB.of(dataFrameCursor.getTableReader());
         this.rowCursorFactory.prepareCursor(dataFrameCursor.getTableReader(), sqlExecutionContext);
+        // only full scans of data frames read sequentially, index-driven cursors jump around
+        this.readAhead.of(entityCursor ? sqlExecutionContext.getMessageBus() : null, dataFrameCursor.getTableReader(), columnIndexes);
+        this.partitionIndex = -1;
         this.next = nextFrame;
     }
 
@@ -100,6 +114,14 @@ class DataFrameRecordCursor extends AbstractDataFrameRecordCursor {
     private boolean nextFrame() {
         DataFrame dataFrame;
         while ((dataFrame = dataFrameCursor.next()) != null) {
+            if (dataFrame.getPartitionIndex() != partitionIndex) {
+                if (partitionIndex != -1) {
+                    // scan has moved past the partition, records it returned decode it again on access
+                    dataFrameCursor.getTableReader().releaseDecodedColumns(partitionIndex);
+                }
+                partitionIndex = dataFrame.getPartitionIndex();
+            }
+            readAhead.onFrame(dataFrame.getPartitionIndex(), dataFrame.getRowLo(), dataFrame.getRowHi());
             rowCursor = rowCursorFactory.getCursor(dataFrame);
             if (rowCursor.hasNext()) {
                 recordA.jumpTo(dataFrame.getPartitionIndex(), rowCursor.next());
@@ -24,8 +24,10 @@
 
 package io.questdb.griffin.engine.table;
 
+import io.questdb.MessageBus;
 import io.questdb.cairo.*;
 import io.questdb.cairo.sql.*;
+import io.questdb.cairo.vm.ColumnReadAhead;
 import io.questdb.cairo.vm.ReadOnlyVirtualMemory;
 import io.questdb.griffin.SqlExecutionContext;
 import io.questdb.std.IntList;
@@ -81,10 +83,10 @@ public class DataFrameRecordCursorFactory extends AbstractDataFrameRecordCursorF
     public PageFrameCursor getPageFrameCursor(SqlExecutionContext executionContext) {
         DataFrameCursor dataFrameCursor = dataFrameCursorFactory.getCursor(executionContext);
         if (pageFrameCursor != null) {
-            return pageFrameCursor.of(dataFrameCursor);
+            return pageFrameCursor.of(dataFrameCursor, executionContext.getMessageBus());
         } else if (framingSupported) {
             pageFrameCursor = new TableReaderPageFrameCursor(columnIndexes, columnSizes, getMetadata().getTimestampIndex());
-            return pageFrameCursor.of(dataFrameCursor);
+            return pageFrameCursor.of(dataFrameCursor, executionContext.getMessageBus());
         } else {
             return null;
         }
@@ -130,6 +132,9 @@ public class DataFrameRecordCursorFactory extends AbstractDataFrameRecordCursorF
         private final IntList columnSizes;
         private final LongList pageNRowsRemaining = new LongList();
         private final LongList pageSizes = new LongList();
+        private final ColumnReadAhead readAhead = new ColumnReadAhead();
+        // partitions whose decoded columns are referenced by returned frames
+        private final IntList pinnedPartitions = new IntList();
         private TableReader reader;
         private int partitionIndex;
         private long partitionRemaining = 0L;
@@ -146,6 +151,8 @@ public class DataFrameRecordCursorFactory extends AbstractDataFrameRecordCursorF
 
         @Override
         public void close() {
+            readAhead.close();
+            unpinPartitions();
             dataFrameCursor = Misc.free(dataFrameCursor);
         }
 
@@ -166,10 +173,13 @@ public class DataFrameRecordCursorFactory extends AbstractDataFrameRecordCursorF
                 this.partitionIndex = dataFrame.getPartitionIndex();
                 final long partitionLo = dataFrame.getRowLo();
                 final long partitionHi = dataFrame.getRowHi();
+                readAhead.onFrame(partitionIndex, partitionLo, partitionHi);
 
                 this.partitionRemaining = partitionHi - partitionLo;
 
                 if (partitionRemaining > 0) {
+                    reader.pinDecodedColumns(partitionIndex);
+                    pinnedPartitions.add(partitionIndex);
                     final int base = reader.getColumnBase(dataFrame.getPartitionIndex());
                     // copy table tops
                     for (int i = 0; i < columnCount; i++) {
@@ -206,8 +216,9 @@ public class DataFrameRecordCursorFactory extends AbstractDataFrameRecordCursorF
                                 long addr = col.getPageAddress(page);
                                 addr += loRemaining << columnSizes.getQuick(i);
                                 columnPageNextAddress.setQuick(i, addr);
-                                long pageHi = Math.min(partitionHi, pageSize);
-                                pageNRowsRemaining.setQuick(i, pageHi - partitionLo);
+                                // column file starts at column top, which is partitionLo - loRemaining
+                                long pageHi = Math.min(partitionHi - partitionLo + loRemaining, pageSize);
+                                pageNRowsRemaining.setQuick(i, pageHi - loRemaining);
                                 pages.setQuick(i, page);
                             }
                         }
@@ -225,6 +236,8 @@ public class DataFrameRecordCursorFactory extends AbstractDataFrameRecordCursorF
         public void toTop() {
             this.partitionIndex = -1;
             this.dataFrameCursor.toTop();
+            this.readAhead.toTop();
+            unpinPartitions();
             pages.setAll(columnCount, 0);
             topsRemaining.setAll(columnCount, 0);
             columnPageAddress.setAll(columnCount, 0);
@@ -235,7 +248,7 @@ public class DataFrameRecordCursorFactory extends AbstractDataFrameRecordCursorF
 
         @Override
         public long size() {
-            return reader.size();
+            return dataFrameCursor.size();
         }
 
         @Override
@@ -243,9 +256,11 @@ public class DataFrameRecordCursorFactory extends AbstractDataFrameRecordCursorF
             return reader.getSymbolMapReader(columnIndexes.getQuick(columnIndex));
         }
 
-        public TableReaderPageFrameCursor of(DataFrameCursor dataFrameCursor) {
+        public TableReaderPageFrameCursor of(DataFrameCursor dataFrameCursor, @Nullable MessageBus messageBus) {
+            unpinPartitions();
             this.reader = dataFrameCursor.getTableReader();
             this.dataFrameCursor = dataFrameCursor;
+            this.readAhead.of(messageBus, reader, columnIndexes);
             toTop();
             return this;
         }
@@ -313,6 +328,13 @@ public class DataFrameRecordCursorFactory extends AbstractDataFrameRecordCursorF
             return min;
         }
 
+        private void unpinPartitions() {
+            for (int i = 0, n = pinnedPartitions.size(); i < n; i++) {
+                reader.unpinDecodedColumns(pinnedPartitions.getQuick(i));
+            }
+            pinnedPartitions.clear();
+        }
+
         private class TableReaderPageFrame implements PageFrame {
             @Override
             public BitmapIndexReader getBitmapIndexReader(int columnIndex, int direction) {
@@ -109,7 +109,7 @@ public class DeferredSingleSymbolFilterDataFrameRecordCursorFactory extends Data
             pageFrameCursor = new TableReaderPageFrameCursor(columnIndexes, columnSizes, getMetadata().getTimestampIndex());
         }
 
-        pageFrameCursor.of(dataFrameCursor);
+        pageFrameCursor.of(dataFrameCursor, executionContext.getMessageBus());
         if (symbolKey == SymbolTable.VALUE_NOT_FOUND) {
             SymbolMapReader symbolMapReader = pageFrameCursor.getSymbolMapReader(symbolColumnIndex);
             this.symbolKey = symbolMapReader.keyOf(symbolValue);
@@ -0,0 +1,152 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.table;
+
+import io.questdb.cairo.CairoException;
+import io.questdb.cairo.sql.Function;
+import io.questdb.cairo.sql.PageFrame;
+import io.questdb.mp.CountDownLatchSPI;
+import io.questdb.std.AbstractLockable;
+import io.questdb.std.LongList;
+import io.questdb.std.Mutable;
+import io.questdb.std.str.StringSink;
+
+/**
+ * Unit of work of the parallel filter. Entry covers a range of rows of a single
+ * page frame and collects frame-local indexes of rows that satisfy the filter into the
+ * list it has been prepared with. Entry is executed either by a worker or by the thread
+ * that owns the cursor, whichever manages to lock it first.
+ * <p>
+ * Cairo exceptions are thread-local, worker may reuse the instance as soon as entry is
+ * done. Their message and errno are copied for the owner thread to rethrow.
+ */
+public class PageFrameFilterEntry extends AbstractLockable implements Mutable {
+    private final LongList pageAddresses = new LongList();
+    private final StringSink errorMessage = new StringSink();
+    private final PageFrameRecord record = new PageFrameRecord(null);
+    private long rowCount;
+    private Function filter;
+    private CompiledFilter compiledFilter;
+    private CountDownLatchSPI doneLatch;
+    private LongList rows;
+    private Throwable error;
+    private int errno;
+    private boolean interruption;
+
+    @Override
+    public void clear() {
+        pageAddresses.clear();
+        rows = null;
+        rowCount = 0;
+        filter = null;
+        compiledFilter = null;
+        doneLatch = null;
+        error = null;
+    }
+
+    public boolean run() {
+        if (tryLock()) {
+            try {
+                if (compiledFilter != null) {
+                    compiledFilter.filter(pageAddresses, rowCount, rows);
+                } else {
+                    final Function filter = this.filter;
+                    final PageFrameRecord record = this.record;
+                    for (long r = 0; r < rowCount; r++) {
+                        record.setRow(r);
+                        if (filter.getBool(record)) {
+                            rows.add(r);
+                        }
+                    }
+                }
+            } catch (Throwable e) {
+                if (e instanceof CairoException) {
+                    final CairoException ce = (CairoException) e;
+                    errno = ce.getErrno();
+                    interruption = ce.isInterruption();
+                    errorMessage.clear();
+                    errorMessage.put(ce.getFlyweightMessage());
+                }
+                error = e;
+            } finally {
+                doneLatch.countDown();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    Throwable getError() {
+        return error;
+    }
+
+    int getErrno() {
+        return errno;
+    }
+
+    CharSequence getErrorMessage() {
+        return errorMessage;
+    }
+
+    boolean isInterruption() {
+        return interruption;
+    }
+
+    LongList getPageAddresses() {
+        return pageAddresses;
+    }
+
+    LongList getRows() {
+        return rows;
+    }
+
+    void of(
+            PageFrame frame,
+            int columnCount,
+            long rowLo,
+            long rowCount,
+            Function filter,
+            CompiledFilter compiledFilter
+    ) {
+        for (int i = 0; i < columnCount; i++) {
+            final long address = frame.getPageAddress(i);
+            pageAddresses.add(address == 0 ? 0 : address + (rowLo << frame.getColumnSize(i)));
+        }
+        this.record.of(pageAddresses, 0);
+        this.rowCount = rowCount;
+        this.filter = filter;
+        this.compiledFilter = compiledFilter;
+    }
+
+    void prepare(int sequence, LongList rows, CountDownLatchSPI doneLatch) {
+        rows.clear();
+        this.rows = rows;
+        this.doneLatch = doneLatch;
+        this.error = null;
+        // entry can be locked only after it is fully populated
+        of(sequence);
+    }
+}
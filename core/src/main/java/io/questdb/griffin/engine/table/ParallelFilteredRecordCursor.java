@@ -0,0 +1,273 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.table;
+
+import io.questdb.MessageBus;
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.CairoException;
+import io.questdb.cairo.sql.*;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.mp.RingQueue;
+import io.questdb.mp.SOUnboundedCountDownLatch;
+import io.questdb.mp.Sequence;
+import io.questdb.std.*;
+import io.questdb.tasks.PageFrameFilterTask;
+
+/**
+ * Filters page frames in batches of at most {@code sqlParallelFilterBatchSize} entries. Next batch
+ * is dispatched once cursor has returned rows of the current one, row lists are reused between
+ * batches, so that memory held by matching rows does not grow with the size of the table.
+ */
+class ParallelFilteredRecordCursor implements RecordCursor {
+    private static final Log LOG = LogFactory.getLog(ParallelFilteredRecordCursor.class);
+    private final Function filter;
+    private final CompiledFilter compiledFilter;
+    private final boolean parallel;
+    private final int columnCount;
+    private final long frameRowCount;
+    private final ObjectPool<PageFrameFilterEntry> entryPool;
+    private final ObjList<PageFrameFilterEntry> activeEntries;
+    private final ObjList<LongList> batchRows;
+    private final SOUnboundedCountDownLatch doneLatch = new SOUnboundedCountDownLatch();
+    private final PageFrameRecord record;
+    private PageFrameRecord recordB;
+    private PageFrameCursor pageFrameCursor;
+    private RingQueue<PageFrameFilterTask> queue;
+    private Sequence pubSeq;
+    private PageFrame frame;
+    private long frameRows;
+    private long frameRowLo;
+    private int entryIndex;
+    private int batchHi;
+    private int sequence;
+    private LongList rows;
+    private int rowIndex;
+
+    ParallelFilteredRecordCursor(
+            CairoConfiguration configuration,
+            Function filter,
+            CompiledFilter compiledFilter,
+            int columnCount,
+            boolean parallel
+    ) {
+        this.filter = filter;
+        this.compiledFilter = compiledFilter;
+        this.parallel = parallel;
+        this.columnCount = columnCount;
+        this.frameRowCount = configuration.getSqlParallelFilterFrameRowCount();
+        this.entryPool = new ObjectPool<>(PageFrameFilterEntry::new, configuration.getGroupByPoolCapacity());
+        this.activeEntries = new ObjList<>(configuration.getGroupByPoolCapacity());
+        final int batchSize = Math.max(1, configuration.getSqlParallelFilterBatchSize());
+        this.batchRows = new ObjList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            batchRows.add(new LongList());
+        }
+        this.record = new PageFrameRecord(this);
+    }
+
+    @Override
+    public void close() {
+        pageFrameCursor = Misc.free(pageFrameCursor);
+        frame = null;
+    }
+
+    @Override
+    public Record getRecord() {
+        return record;
+    }
+
+    @Override
+    public SymbolTable getSymbolTable(int columnIndex) {
+        return pageFrameCursor.getSymbolMapReader(columnIndex);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (true) {
+            if (rows != null && rowIndex < rows.size()) {
+                record.setRow(rows.getQuick(rowIndex++));
+                return true;
+            }
+            if (entryIndex + 1 == batchHi && !dispatch(batchHi)) {
+                rows = null;
+                return false;
+            }
+            switchToEntry(++entryIndex);
+        }
+    }
+
+    @Override
+    public Record getRecordB() {
+        if (recordB != null) {
+            return recordB;
+        }
+        return (recordB = new PageFrameRecord(this));
+    }
+
+    @Override
+    public void recordAt(Record record, long atRowId) {
+        final int frameIndex = Rows.toPartitionIndex(atRowId);
+        final PageFrameRecord pageFrameRecord = (PageFrameRecord) record;
+        pageFrameRecord.of(activeEntries.getQuick(frameIndex).getPageAddresses(), frameIndex);
+        pageFrameRecord.setRow(Rows.toLocalRowID(atRowId));
+    }
+
+    @Override
+    public void toTop() {
+        // entries of the frames scanned so far are filtered again
+        entryIndex = -1;
+        batchHi = 0;
+        rows = null;
+        rowIndex = 0;
+    }
+
+    @Override
+    public long size() {
+        return -1;
+    }
+
+    ParallelFilteredRecordCursor of(PageFrameCursor pageFrameCursor, SqlExecutionContext executionContext) {
+        this.pageFrameCursor = pageFrameCursor;
+        filter.init(this, executionContext);
+        if (compiledFilter != null) {
+            compiledFilter.init(this);
+        }
+        if (parallel) {
+            final MessageBus bus = executionContext.getMessageBus();
+            this.queue = bus.getPageFrameFilterQueue();
+            this.pubSeq = bus.getPageFrameFilterPubSeq();
+        }
+        entryPool.clear();
+        activeEntries.clear();
+        frame = null;
+        frameRows = 0;
+        frameRowLo = 0;
+        toTop();
+        return this;
+    }
+
+    private static void checkError(PageFrameFilterEntry entry, int index) {
+        final Throwable error = entry.getError();
+        if (error != null) {
+            if (error instanceof CairoException) {
+                LOG.error().$("filter failed [frame=").$(index).$(", errno=").$(entry.getErrno()).$(", error=").$(entry.getErrorMessage()).$(']').$();
+                throw CairoException.instance(entry.getErrno())
+                        .put(entry.getErrorMessage())
+                        .setInterruption(entry.isInterruption());
+            }
+            LOG.error().$("filter failed [frame=").$(index).$(", error=").$(error).$(']').$();
+            if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            }
+            if (error instanceof Error) {
+                throw (Error) error;
+            }
+            throw CairoException.instance(0).put("page frame filter failed [error=").put(error.toString()).put(']');
+        }
+    }
+
+    // splits page frames of the cursor into entries on demand
+    private boolean addEntry() {
+        while (frameRowLo >= frameRows) {
+            if ((frame = pageFrameCursor.next()) == null) {
+                return false;
+            }
+            frameRows = getFrameRowCount(frame);
+            frameRowLo = 0;
+        }
+        final PageFrameFilterEntry entry = entryPool.next();
+        entry.of(frame, columnCount, frameRowLo, Math.min(frameRowCount, frameRows - frameRowLo), filter, compiledFilter);
+        activeEntries.add(entry);
+        frameRowLo += frameRowCount;
+        return true;
+    }
+
+    private boolean dispatch(int lo) {
+        int hi = lo;
+        while (hi - lo < batchRows.size() && (hi < activeEntries.size() || addEntry())) {
+            hi++;
+        }
+        if (hi == lo) {
+            return false;
+        }
+
+        final int count = hi - lo;
+        doneLatch.reset();
+        for (int i = lo; i < hi; i++) {
+            activeEntries.getQuick(i).prepare(sequence++, batchRows.getQuick(i - lo), doneLatch);
+        }
+
+        int ownCount = 0;
+        int reclaimed = 0;
+        if (parallel) {
+            for (int i = lo; i < hi; i++) {
+                final PageFrameFilterEntry entry = activeEntries.getQuick(i);
+                final long seq = pubSeq.next();
+                if (seq < 0) {
+                    entry.run();
+                    ownCount++;
+                } else {
+                    queue.get(seq).entry = entry;
+                    pubSeq.done(seq);
+                }
+            }
+        }
+
+        // entries that workers have not picked up yet are executed by this thread,
+        // start at the back to reduce chance of clashing with workers
+        for (int i = hi - 1; i >= lo && doneLatch.getCount() > -count; i--) {
+            if (activeEntries.getQuick(i).run()) {
+                reclaimed++;
+            }
+        }
+        doneLatch.await(count);
+
+        for (int i = lo; i < hi; i++) {
+            checkError(activeEntries.getQuick(i), i);
+        }
+        batchHi = hi;
+
+        LOG.debug().$("done [lo=").$(lo).$(", hi=").$(hi).$(", ownCount=").$(ownCount).$(", reclaimed=").$(reclaimed).$(']').$();
+        return true;
+    }
+
+    private long getFrameRowCount(PageFrame frame) {
+        if (columnCount == 0) {
+            return 0;
+        }
+        final long pageSize = frame.getPageSize(0);
+        return frame.getPageAddress(0) == 0 ? pageSize : pageSize >> frame.getColumnSize(0);
+    }
+
+    private void switchToEntry(int index) {
+        final PageFrameFilterEntry entry = activeEntries.getQuick(index);
+        rows = entry.getRows();
+        rowIndex = 0;
+        record.of(entry.getPageAddresses(), index);
+    }
+}
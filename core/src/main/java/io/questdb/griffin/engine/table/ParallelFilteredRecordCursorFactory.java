@@ -0,0 +1,96 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.table;
+
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.sql.*;
+import io.questdb.griffin.SqlExecutionContext;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Filters table page frames on the worker pool. Base factory must support page frames
+ * and filter must be read thread-safe, e.g. all workers evaluate the same function
+ * instance concurrently. When filter has been compiled, page frames are evaluated by
+ * the compiled program instead of the function. Compiled filter can also run without
+ * the worker pool, in which case frames are filtered lazily by the cursor owner.
+ */
+public class ParallelFilteredRecordCursorFactory implements RecordCursorFactory {
+    private final RecordCursorFactory base;
+    private final ParallelFilteredRecordCursor cursor;
+    private final Function filter;
+
+    public ParallelFilteredRecordCursorFactory(
+            CairoConfiguration configuration,
+            RecordCursorFactory base,
+            Function filter,
+            @Nullable CompiledFilter compiledFilter,
+            boolean parallel
+    ) {
+        assert base.supportPageFrameCursor();
+        assert compiledFilter != null || (parallel && filter.isReadThreadSafe());
+        this.base = base;
+        this.cursor = new ParallelFilteredRecordCursor(
+                configuration,
+                filter,
+                compiledFilter,
+                base.getMetadata().getColumnCount(),
+                parallel
+        );
+        this.filter = filter;
+    }
+
+    @Override
+    public void close() {
+        base.close();
+        filter.close();
+    }
+
+    @Override
+    public boolean followedOrderByAdvice() {
+        return base.followedOrderByAdvice();
+    }
+
+    @Override
+    public RecordCursor getCursor(SqlExecutionContext executionContext) {
+        final PageFrameCursor pageFrameCursor = base.getPageFrameCursor(executionContext);
+        try {
+            return cursor.of(pageFrameCursor, executionContext);
+        } catch (Throwable e) {
+            cursor.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public RecordMetadata getMetadata() {
+        return base.getMetadata();
+    }
+
+    @Override
+    public boolean recordCursorSupportsRandomAccess() {
+        return true;
+    }
+}
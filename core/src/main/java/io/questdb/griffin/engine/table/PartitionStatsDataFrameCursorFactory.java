@@ -0,0 +1,195 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.table;
+
+import io.questdb.cairo.BitmapIndexReader;
+import io.questdb.cairo.PartitionStats;
+import io.questdb.cairo.TableReader;
+import io.questdb.cairo.sql.DataFrame;
+import io.questdb.cairo.sql.DataFrameCursor;
+import io.questdb.cairo.sql.DataFrameCursorFactory;
+import io.questdb.cairo.sql.StaticSymbolTable;
+import io.questdb.griffin.SqlExecutionContext;
+import io.questdb.std.Misc;
+import io.questdb.std.Unsafe;
+import io.questdb.std.str.CharSink;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Skips data frames of partitions, which column statistics prove to have no rows
+ * matching the filter. Data frames of remaining partitions are narrowed down to
+ * runs of zone map blocks that may have matching rows. Base data frames are
+ * expected in forward order.
+ */
+public class PartitionStatsDataFrameCursorFactory implements DataFrameCursorFactory {
+    private final DataFrameCursorFactory base;
+    private final PartitionStatsDataFrameCursor cursor = new PartitionStatsDataFrameCursor();
+    private final PartitionStatsFilter filter;
+    private long statsBuf;
+
+    public PartitionStatsDataFrameCursorFactory(DataFrameCursorFactory base, PartitionStatsFilter filter) {
+        this.base = base;
+        this.filter = filter;
+        this.statsBuf = Unsafe.malloc(PartitionStats.SIZE);
+    }
+
+    @Override
+    public void close() {
+        Misc.free(base);
+        Misc.free(filter);
+        if (statsBuf != 0) {
+            Unsafe.free(statsBuf, PartitionStats.SIZE);
+            statsBuf = 0;
+        }
+    }
+
+    @Override
+    public DataFrameCursor getCursor(SqlExecutionContext executionContext) {
+        return cursor.of(base.getCursor(executionContext));
+    }
+
+    @Override
+    public void toSink(CharSink sink) {
+        base.toSink(sink);
+    }
+
+    private class PartitionStatsDataFrameCursor implements DataFrameCursor {
+        private final BlockDataFrame blockFrame = new BlockDataFrame();
+        private DataFrameCursor base;
+        private DataFrame baseFrame;
+        // next row of base frame to be checked against zone maps
+        private long baseFrameRow;
+
+        @Override
+        public TableReader getTableReader() {
+            return base.getTableReader();
+        }
+
+        @Override
+        public boolean reload() {
+            final boolean moreData = base.reload();
+            baseFrame = null;
+            filter.of(base.getTableReader());
+            return moreData;
+        }
+
+        @Override
+        public @Nullable DataFrame next() {
+            final TableReader reader = base.getTableReader();
+            while (true) {
+                if (baseFrame != null) {
+                    final long hi = baseFrame.getRowHi();
+                    long lo = baseFrameRow;
+                    while (lo < hi && !filter.mayMatchBlock(lo)) {
+                        lo = filter.nextBlockLo(lo);
+                    }
+                    if (lo < hi) {
+                        long runHi = filter.nextBlockLo(lo);
+                        while (runHi < hi && filter.mayMatchBlock(runHi)) {
+                            runHi = filter.nextBlockLo(runHi);
+                        }
+                        baseFrameRow = Math.min(runHi, hi);
+                        return blockFrame.of(baseFrame, lo, baseFrameRow);
+                    }
+                    baseFrame = null;
+                }
+
+                DataFrame frame;
+                do {
+                    frame = base.next();
+                    if (frame == null) {
+                        return null;
+                    }
+                } while (!filter.mayMatch(reader, frame.getPartitionIndex(), statsBuf));
+
+                filter.loadZoneMaps(frame.getPartitionIndex());
+                baseFrame = frame;
+                baseFrameRow = frame.getRowLo();
+            }
+        }
+
+        @Override
+        public void close() {
+            base = Misc.free(base);
+        }
+
+        @Override
+        public void toTop() {
+            base.toTop();
+            baseFrame = null;
+        }
+
+        @Override
+        public long size() {
+            return base.size();
+        }
+
+        @Override
+        public StaticSymbolTable getSymbolTable(int columnIndex) {
+            return base.getSymbolTable(columnIndex);
+        }
+
+        private PartitionStatsDataFrameCursor of(DataFrameCursor base) {
+            this.base = base;
+            this.baseFrame = null;
+            filter.of(base.getTableReader());
+            return this;
+        }
+    }
+
+    private static class BlockDataFrame implements DataFrame {
+        private DataFrame base;
+        private long rowLo;
+        private long rowHi;
+
+        @Override
+        public BitmapIndexReader getBitmapIndexReader(int columnIndex, int direction) {
+            return base.getBitmapIndexReader(columnIndex, direction);
+        }
+
+        @Override
+        public int getPartitionIndex() {
+            return base.getPartitionIndex();
+        }
+
+        @Override
+        public long getRowHi() {
+            return rowHi;
+        }
+
+        @Override
+        public long getRowLo() {
+            return rowLo;
+        }
+
+        private BlockDataFrame of(DataFrame base, long rowLo, long rowHi) {
+            this.base = base;
+            this.rowLo = rowLo;
+            this.rowHi = rowHi;
+            return this;
+        }
+    }
+}
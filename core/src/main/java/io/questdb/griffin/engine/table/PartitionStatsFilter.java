@@ -0,0 +1,338 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin.engine.table;
+
+import io.questdb.cairo.ColumnType;
+import io.questdb.cairo.PartitionStats;
+import io.questdb.cairo.TableReader;
+import io.questdb.cairo.sql.RecordMetadata;
+import io.questdb.cairo.sql.SymbolTable;
+import io.questdb.griffin.SqlKeywords;
+import io.questdb.griffin.model.AliasTranslator;
+import io.questdb.griffin.model.ExpressionNode;
+import io.questdb.std.*;
+
+import java.io.Closeable;
+
+/**
+ * Conjunction of "column op constant" predicates extracted from SQL filter, which
+ * is evaluated against per-partition column statistics. Partition is skipped when
+ * any of the predicates cannot be satisfied by the column value range. The filter
+ * itself is still applied to the rows of partitions that are not skipped. Within
+ * partition the predicates are evaluated against zone map blocks in the same way.
+ */
+public class PartitionStatsFilter implements Closeable {
+    private static final int OP_EQ = 0;
+    private static final int OP_LT = 1;
+    private static final int OP_LE = 2;
+    private static final int OP_GT = 3;
+    private static final int OP_GE = 4;
+    private static final int KIND_LONG = 0;
+    private static final int KIND_DOUBLE = 1;
+    private static final int KIND_SYMBOL = 2;
+    // double equality functions compare with 1e-10 tolerance, we are more lenient
+    private static final double DOUBLE_EQ_TOLERANCE = 1e-9;
+    private final IntList columnIndexes = new IntList();
+    private final IntList ops = new IntList();
+    private final IntList kinds = new IntList();
+    private final LongList values = new LongList();
+    private final ObjList<String> symbolValues = new ObjList<>();
+    // zone maps of current partition by predicate, empty when column has no zone map
+    private final ObjList<DirectLongList> zoneMaps = new ObjList<>();
+    private TableReader reader;
+
+    /**
+     * @return filter or null when none of the predicates can be evaluated against statistics
+     */
+    public static PartitionStatsFilter of(ExpressionNode filter, AliasTranslator translator, RecordMetadata metadata) {
+        final PartitionStatsFilter statsFilter = new PartitionStatsFilter();
+        statsFilter.collect(filter, translator, metadata);
+        return statsFilter.columnIndexes.size() > 0 ? statsFilter : null;
+    }
+
+    /**
+     * Checks if rows of partition might satisfy all the predicates.
+     *
+     * @param buf memory of at least {@link PartitionStats#SIZE} bytes
+     * @return false when partition can be skipped
+     */
+    public boolean mayMatch(TableReader reader, int partitionIndex, long buf) {
+        int statsColumnIndex = -1;
+        for (int i = 0, n = columnIndexes.size(); i < n; i++) {
+            final int columnIndex = columnIndexes.getQuick(i);
+            if (columnIndex != statsColumnIndex) {
+                if (!reader.readColumnStats(partitionIndex, columnIndex, buf)) {
+                    statsColumnIndex = -1;
+                    continue;
+                }
+                statsColumnIndex = columnIndex;
+            }
+            if (!mayMatch(reader.getMetadata().getColumnType(columnIndex), i, buf)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        Misc.freeObjList(zoneMaps);
+        zoneMaps.clear();
+    }
+
+    /**
+     * Reads zone maps of partition for all predicates.
+     */
+    public void loadZoneMaps(int partitionIndex) {
+        for (int i = 0, n = columnIndexes.size(); i < n; i++) {
+            DirectLongList zoneMap = zoneMaps.getQuiet(i);
+            if (zoneMap == null) {
+                zoneMap = new DirectLongList(64);
+                zoneMaps.extendAndSet(i, zoneMap);
+            }
+            reader.readColumnZoneMap(partitionIndex, columnIndexes.getQuick(i), zoneMap);
+        }
+    }
+
+    /**
+     * Checks if rows of zone map blocks containing the row might satisfy all the predicates.
+     * Zone maps have to be loaded via {@link #loadZoneMaps(int)}.
+     *
+     * @return false when blocks can be skipped
+     */
+    public boolean mayMatchBlock(long row) {
+        final RecordMetadata metadata = reader.getMetadata();
+        for (int i = 0, n = columnIndexes.size(); i < n; i++) {
+            final DirectLongList zoneMap = zoneMaps.getQuick(i);
+            if (zoneMap.size() > 0) {
+                final long block = PartitionStats.getBlockAddress(zoneMap, row);
+                if (block != 0 && !mayMatch(metadata.getColumnType(columnIndexes.getQuick(i)), i, block)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return first row after the smallest zone map block containing the row, Long.MAX_VALUE
+     * when there are no zone maps
+     */
+    public long nextBlockLo(long row) {
+        long lo = Long.MAX_VALUE;
+        for (int i = 0, n = columnIndexes.size(); i < n; i++) {
+            final DirectLongList zoneMap = zoneMaps.getQuick(i);
+            if (zoneMap.size() > 0) {
+                final long blockSize = PartitionStats.getBlockSize(zoneMap);
+                lo = Math.min(lo, (row / blockSize + 1) * blockSize);
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Resolves symbol values to keys of the reader's symbol tables. Symbols
+     * unknown to reader are not used to skip partitions.
+     */
+    public void of(TableReader reader) {
+        this.reader = reader;
+        for (int i = 0, n = columnIndexes.size(); i < n; i++) {
+            if (kinds.getQuick(i) == KIND_SYMBOL) {
+                final int key = reader.getSymbolMapReader(columnIndexes.getQuick(i)).keyOf(symbolValues.getQuick(i));
+                values.setQuick(i, key == SymbolTable.VALUE_NOT_FOUND ? -1 : key);
+            }
+        }
+    }
+
+    private static int flip(int op) {
+        switch (op) {
+            case OP_LT:
+                return OP_GT;
+            case OP_LE:
+                return OP_GE;
+            case OP_GT:
+                return OP_LT;
+            case OP_GE:
+                return OP_LE;
+            default:
+                return op;
+        }
+    }
+
+    private static boolean mayMatch(int op, long lo, long hi, long value) {
+        switch (op) {
+            case OP_EQ:
+                return lo <= value && value <= hi;
+            case OP_LT:
+                return lo < value;
+            case OP_LE:
+                return lo <= value;
+            case OP_GT:
+                return hi > value;
+            default:
+                return hi >= value;
+        }
+    }
+
+    private static boolean mayMatch(int op, double lo, double hi, double value) {
+        switch (op) {
+            case OP_EQ:
+                return lo - DOUBLE_EQ_TOLERANCE <= value && value <= hi + DOUBLE_EQ_TOLERANCE;
+            case OP_LT:
+                return lo < value;
+            case OP_LE:
+                return lo <= value;
+            case OP_GT:
+                return hi > value;
+            default:
+                return hi >= value;
+        }
+    }
+
+    private static int toOp(CharSequence token) {
+        if (Chars.equals(token, '=')) {
+            return OP_EQ;
+        }
+        if (Chars.equals(token, '<')) {
+            return OP_LT;
+        }
+        if (Chars.equals(token, "<=")) {
+            return OP_LE;
+        }
+        if (Chars.equals(token, '>')) {
+            return OP_GT;
+        }
+        if (Chars.equals(token, ">=")) {
+            return OP_GE;
+        }
+        return -1;
+    }
+
+    private void add(int columnIndex, int op, int kind, long value, String symbol) {
+        columnIndexes.add(columnIndex);
+        ops.add(op);
+        kinds.add(kind);
+        values.add(value);
+        symbolValues.add(symbol);
+    }
+
+    private void collect(ExpressionNode node, AliasTranslator translator, RecordMetadata metadata) {
+        if (node == null || node.type != ExpressionNode.OPERATION || node.paramCount != 2) {
+            return;
+        }
+
+        if (SqlKeywords.isAndKeyword(node.token)) {
+            collect(node.lhs, translator, metadata);
+            collect(node.rhs, translator, metadata);
+            return;
+        }
+
+        int op = toOp(node.token);
+        if (op == -1) {
+            return;
+        }
+
+        final ExpressionNode column;
+        final ExpressionNode constant;
+        if (node.lhs.type == ExpressionNode.LITERAL && node.rhs.type == ExpressionNode.CONSTANT) {
+            column = node.lhs;
+            constant = node.rhs;
+        } else if (node.rhs.type == ExpressionNode.LITERAL && node.lhs.type == ExpressionNode.CONSTANT) {
+            column = node.rhs;
+            constant = node.lhs;
+            op = flip(op);
+        } else {
+            return;
+        }
+
+        final int columnIndex = metadata.getColumnIndexQuiet(translator.translateAlias(column.token));
+        if (columnIndex < 0) {
+            return;
+        }
+
+        final int columnType = metadata.getColumnType(columnIndex);
+        if (!PartitionStats.isSupported(columnType)) {
+            return;
+        }
+
+        final CharSequence token = constant.token;
+        if (columnType == ColumnType.SYMBOL) {
+            if (op == OP_EQ && token.length() > 1 && token.charAt(0) == '\'') {
+                add(columnIndex, op, KIND_SYMBOL, -1, Chars.toString(GenericLexer.unquote(token)));
+            }
+            return;
+        }
+
+        try {
+            add(columnIndex, op, KIND_LONG, Numbers.parseLong(token), null);
+        } catch (NumericException e) {
+            try {
+                final double value = Numbers.parseDouble(token);
+                if (!Double.isNaN(value)) {
+                    add(columnIndex, op, KIND_DOUBLE, Double.doubleToRawLongBits(value), null);
+                }
+            } catch (NumericException ignore) {
+                // not a numeric constant
+            }
+        }
+    }
+
+    private boolean mayMatch(int columnType, int index, long buf) {
+        final int op = ops.getQuick(index);
+        final int kind = kinds.getQuick(index);
+        final long value = values.getQuick(index);
+        final long nullCount = Unsafe.getUnsafe().getLong(buf + PartitionStats.OFFSET_NULL_COUNT);
+
+        switch (columnType) {
+            case ColumnType.FLOAT:
+            case ColumnType.DOUBLE: {
+                // NaN does not compare to numeric constants, min > max when all values are NaN
+                final double lo = Unsafe.getUnsafe().getDouble(buf + PartitionStats.OFFSET_MIN);
+                final double hi = Unsafe.getUnsafe().getDouble(buf + PartitionStats.OFFSET_MAX);
+                return lo <= hi && mayMatch(op, lo, hi, kind == KIND_LONG ? (double) value : Double.longBitsToDouble(value));
+            }
+            case ColumnType.SYMBOL: {
+                final long lo = Unsafe.getUnsafe().getLong(buf + PartitionStats.OFFSET_MIN);
+                final long hi = Unsafe.getUnsafe().getLong(buf + PartitionStats.OFFSET_MAX);
+                // unknown symbol, the filter will decide
+                return value < 0 || mayMatch(op, lo, hi, value);
+            }
+            default: {
+                long lo = Unsafe.getUnsafe().getLong(buf + PartitionStats.OFFSET_MIN);
+                long hi = Unsafe.getUnsafe().getLong(buf + PartitionStats.OFFSET_MAX);
+                if (nullCount > 0) {
+                    // depending on the function null may compare as the smallest value of the type
+                    lo = Long.MIN_VALUE;
+                    hi = Math.max(hi, columnType == ColumnType.INT ? Numbers.INT_NaN : Numbers.LONG_NaN);
+                }
+                if (kind == KIND_LONG) {
+                    return mayMatch(op, lo, hi, value);
+                }
+                return mayMatch(op, (double) lo, (double) hi, Double.longBitsToDouble(value));
+            }
+        }
+    }
+}
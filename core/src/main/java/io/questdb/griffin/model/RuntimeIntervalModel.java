@@ -76,6 +76,8 @@ public class RuntimeIntervalModel implements RuntimeIntrinsicIntervalModel {
     @Override
     public boolean allIntervalsHitOnePartition(int partitionBy) {
         switch (partitionBy) {
+            case PartitionBy.HOUR:
+                return allIntervalsHitOnePartition(Timestamps.FLOOR_HH);
             case PartitionBy.DAY:
                 return allIntervalsHitOnePartition(Timestamps.FLOOR_DD);
             case PartitionBy.MONTH:
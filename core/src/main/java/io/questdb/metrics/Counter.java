@@ -27,4 +27,6 @@ package io.questdb.metrics;
 public interface Counter extends Scrapable {
 
     void inc();
+
+    void add(long value);
 }
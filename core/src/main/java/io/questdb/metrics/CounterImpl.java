@@ -42,6 +42,11 @@ class CounterImpl implements Counter {
         counter.increment();
     }
 
+    @Override
+    public void add(long value) {
+        counter.add(value);
+    }
+
     @Override
     public void scrapeIntoPrometheus(CharSink sink) {
         PrometheusFormatUtils.appendCounterType(name, sink);
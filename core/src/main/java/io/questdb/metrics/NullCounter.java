@@ -36,6 +36,10 @@ class NullCounter implements Counter, CounterWithOneLabel, CounterWithTwoLabels
     public void inc() {
     }
 
+    @Override
+    public void add(long value) {
+    }
+
     @Override
     public void inc(short label0) {
     }
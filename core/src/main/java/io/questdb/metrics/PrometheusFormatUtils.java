@@ -26,22 +26,22 @@ package io.questdb.metrics;
 
 import io.questdb.std.str.CharSink;
 
-class PrometheusFormatUtils {
-    static final CharSequence TYPE_PREFIX = "# TYPE questdb_";
-    static final CharSequence METRIC_NAME_PREFIX = "questdb_";
+public class PrometheusFormatUtils {
+    public static final CharSequence TYPE_PREFIX = "# TYPE questdb_";
+    public static final CharSequence METRIC_NAME_PREFIX = "questdb_";
     static final char LF = '\n';
 
-    static void appendNewLine(CharSink sink) {
+    public static void appendNewLine(CharSink sink) {
         sink.put(LF);
     }
 
-    static void appendSampleLineSuffix(CharSink sink, long value) {
+    public static void appendSampleLineSuffix(CharSink sink, long value) {
         sink.put(' ');
         sink.put(value);
         sink.put(LF);
     }
 
-    static void appendLabel(CharSink sink, CharSequence labelName, CharSequence labelValue) {
+    public static void appendLabel(CharSink sink, CharSequence labelName, CharSequence labelValue) {
         sink.put(labelName);
         sink.put('=');
         sink.putQuoted(labelValue);
@@ -0,0 +1,268 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.std;
+
+/**
+ * Lightweight codecs for fixed-width column data. All methods operate on native memory
+ * addresses, encoders return number of bytes written to destination.
+ * <ul>
+ * <li>delta-of-delta: longs, first value is stored as is, followed by zig-zag varint encoded deltas of deltas.
+ * Regular timestamps encode into one byte per value.</li>
+ * <li>xor: doubles, each value is XOR-ed with the previous one and only non-zero bytes of the result are stored
+ * behind a control byte, which is a byte-granular variant of Gorilla encoding.</li>
+ * <li>bit-pack: ints, frame of reference encoding where values are stored as offsets from column minimum
+ * using as few bits as the value range requires. Offset 0 is reserved for null, which is Integer.MIN_VALUE
+ * for both int and symbol key. Used for symbol keys and small range integers.</li>
+ * </ul>
+ */
+public final class ColumnCodecs {
+    public static final int CODEC_NONE = 0;
+    public static final int CODEC_DELTA_OF_DELTA = 1;
+    public static final int CODEC_XOR = 2;
+    public static final int CODEC_BIT_PACK = 3;
+
+    private ColumnCodecs() {
+    }
+
+    public static void decodeBitPacked(long src, long count, long dst) {
+        if (count == 0) {
+            return;
+        }
+        final int min = Unsafe.getUnsafe().getInt(src);
+        final int width = Unsafe.getUnsafe().getByte(src + 4);
+        if (width == 0) {
+            // all values are null
+            for (long i = 0; i < count; i++) {
+                Unsafe.getUnsafe().putInt(dst + i * Integer.BYTES, Numbers.INT_NaN);
+            }
+            return;
+        }
+        final long mask = (1L << width) - 1;
+        long p = src + 5;
+        long bits = 0;
+        int bitCount = 0;
+        for (long i = 0; i < count; i++) {
+            while (bitCount < width) {
+                bits |= (Unsafe.getUnsafe().getByte(p++) & 0xffL) << bitCount;
+                bitCount += 8;
+            }
+            final long offset = bits & mask;
+            Unsafe.getUnsafe().putInt(dst + i * Integer.BYTES, offset == 0 ? Numbers.INT_NaN : (int) (min + offset - 1));
+            bits >>>= width;
+            bitCount -= width;
+        }
+    }
+
+    public static void decodeDeltaOfDelta(long src, long count, long dst) {
+        if (count == 0) {
+            return;
+        }
+        long prev = Unsafe.getUnsafe().getLong(src);
+        Unsafe.getUnsafe().putLong(dst, prev);
+        long p = src + Long.BYTES;
+        long delta = 0;
+        for (long i = 1; i < count; i++) {
+            long zz = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = Unsafe.getUnsafe().getByte(p++);
+                zz |= (b & 0x7fL) << shift;
+                shift += 7;
+            } while (b < 0);
+            delta += (zz >>> 1) ^ -(zz & 1);
+            prev += delta;
+            Unsafe.getUnsafe().putLong(dst + i * Long.BYTES, prev);
+        }
+    }
+
+    public static void decodeXor(long src, long count, long dst) {
+        long prev = 0;
+        long p = src;
+        for (long i = 0; i < count; i++) {
+            final int control = Unsafe.getUnsafe().getByte(p++) & 0xff;
+            final int n = control & 0x0f;
+            if (n > 0) {
+                long x = 0;
+                for (int k = 0; k < n; k++) {
+                    x |= (Unsafe.getUnsafe().getByte(p++) & 0xffL) << (k << 3);
+                }
+                prev ^= x << ((control >>> 4) << 3);
+            }
+            Unsafe.getUnsafe().putLong(dst + i * Long.BYTES, prev);
+        }
+    }
+
+    public static long encodeBitPacked(long src, long count, long dst) {
+        if (count == 0) {
+            return 0;
+        }
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (long i = 0; i < count; i++) {
+            final int v = Unsafe.getUnsafe().getInt(src + i * Integer.BYTES);
+            if (v != Numbers.INT_NaN) {
+                if (v < min) {
+                    min = v;
+                }
+                if (v > max) {
+                    max = v;
+                }
+            }
+        }
+        if (min > max) {
+            // all values are null
+            min = 0;
+            max = -1;
+        }
+        final int width = 64 - Long.numberOfLeadingZeros((long) max - min + 1);
+        Unsafe.getUnsafe().putInt(dst, min);
+        Unsafe.getUnsafe().putByte(dst + 4, (byte) width);
+        long p = dst + 5;
+        if (width > 0) {
+            long bits = 0;
+            int bitCount = 0;
+            for (long i = 0; i < count; i++) {
+                final int v = Unsafe.getUnsafe().getInt(src + i * Integer.BYTES);
+                bits |= (v == Numbers.INT_NaN ? 0 : (long) v - min + 1) << bitCount;
+                bitCount += width;
+                while (bitCount >= 8) {
+                    Unsafe.getUnsafe().putByte(p++, (byte) bits);
+                    bits >>>= 8;
+                    bitCount -= 8;
+                }
+            }
+            if (bitCount > 0) {
+                Unsafe.getUnsafe().putByte(p++, (byte) bits);
+            }
+        }
+        return p - dst;
+    }
+
+    public static long encodeDeltaOfDelta(long src, long count, long dst) {
+        if (count == 0) {
+            return 0;
+        }
+        long prev = Unsafe.getUnsafe().getLong(src);
+        Unsafe.getUnsafe().putLong(dst, prev);
+        long p = dst + Long.BYTES;
+        long prevDelta = 0;
+        for (long i = 1; i < count; i++) {
+            final long v = Unsafe.getUnsafe().getLong(src + i * Long.BYTES);
+            final long delta = v - prev;
+            final long dod = delta - prevDelta;
+            long zz = (dod << 1) ^ (dod >> 63);
+            while ((zz & ~0x7fL) != 0) {
+                Unsafe.getUnsafe().putByte(p++, (byte) ((zz & 0x7f) | 0x80));
+                zz >>>= 7;
+            }
+            Unsafe.getUnsafe().putByte(p++, (byte) zz);
+            prev = v;
+            prevDelta = delta;
+        }
+        return p - dst;
+    }
+
+    public static long encodeXor(long src, long count, long dst) {
+        long prev = 0;
+        long p = dst;
+        for (long i = 0; i < count; i++) {
+            final long v = Unsafe.getUnsafe().getLong(src + i * Long.BYTES);
+            long x = v ^ prev;
+            prev = v;
+            if (x == 0) {
+                Unsafe.getUnsafe().putByte(p++, (byte) 0);
+            } else {
+                final int tz = Long.numberOfTrailingZeros(x) >>> 3;
+                final int n = 8 - (Long.numberOfLeadingZeros(x) >>> 3) - tz;
+                Unsafe.getUnsafe().putByte(p++, (byte) ((tz << 4) | n));
+                x >>>= tz << 3;
+                for (int k = 0; k < n; k++) {
+                    Unsafe.getUnsafe().putByte(p++, (byte) x);
+                    x >>>= 8;
+                }
+            }
+        }
+        return p - dst;
+    }
+
+    /**
+     * Decodes value count values from compressed block at src into dst. Destination must be large enough to hold
+     * count values of codec's native width.
+     */
+    public static void decode(int codec, long src, long count, long dst) {
+        switch (codec) {
+            case CODEC_DELTA_OF_DELTA:
+                decodeDeltaOfDelta(src, count, dst);
+                break;
+            case CODEC_XOR:
+                decodeXor(src, count, dst);
+                break;
+            case CODEC_BIT_PACK:
+                decodeBitPacked(src, count, dst);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown codec: " + codec);
+        }
+    }
+
+    public static long encode(int codec, long src, long count, long dst) {
+        switch (codec) {
+            case CODEC_DELTA_OF_DELTA:
+                return encodeDeltaOfDelta(src, count, dst);
+            case CODEC_XOR:
+                return encodeXor(src, count, dst);
+            case CODEC_BIT_PACK:
+                return encodeBitPacked(src, count, dst);
+            default:
+                throw new IllegalArgumentException("unknown codec: " + codec);
+        }
+    }
+
+    /**
+     * @return worst case size of encoded block for the given number of values
+     */
+    public static long getMaxEncodedSize(int codec, long count) {
+        switch (codec) {
+            case CODEC_DELTA_OF_DELTA:
+                // up to 10 varint bytes per delta-of-delta
+                return Long.BYTES + count * 10;
+            case CODEC_XOR:
+                return count * 9;
+            case CODEC_BIT_PACK:
+                return 5 + count * Integer.BYTES + 1;
+            default:
+                throw new IllegalArgumentException("unknown codec: " + codec);
+        }
+    }
+
+    /**
+     * @return power of 2 of value size the codec decodes into
+     */
+    public static int getValueSizePow2(int codec) {
+        return codec == CODEC_BIT_PACK ? 2 : 3;
+    }
+}
@@ -0,0 +1,83 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.tasks;
+
+import io.questdb.cairo.vm.ColumnReadAhead;
+import io.questdb.std.str.StringSink;
+
+public class ColumnReadAheadTask {
+    private final StringSink partitionPath = new StringSink();
+    private final StringSink columnName = new StringSink();
+    private int columnType;
+    private long rowLo;
+    private long rowHi;
+    private boolean compressed;
+    private ColumnReadAhead owner;
+    private int epoch;
+
+    public CharSequence getColumnName() {
+        return columnName;
+    }
+
+    public int getColumnType() {
+        return columnType;
+    }
+
+    public int getEpoch() {
+        return epoch;
+    }
+
+    public ColumnReadAhead getOwner() {
+        return owner;
+    }
+
+    public StringSink getPartitionPath() {
+        return partitionPath;
+    }
+
+    public long getRowHi() {
+        return rowHi;
+    }
+
+    public long getRowLo() {
+        return rowLo;
+    }
+
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    public void of(CharSequence columnName, int columnType, long rowLo, long rowHi, boolean compressed, ColumnReadAhead owner, int epoch) {
+        this.columnName.clear();
+        this.columnName.put(columnName);
+        this.columnType = columnType;
+        this.rowLo = rowLo;
+        this.rowHi = rowHi;
+        this.compressed = compressed;
+        this.owner = owner;
+        this.epoch = epoch;
+    }
+}
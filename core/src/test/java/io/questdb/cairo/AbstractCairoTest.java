@@ -60,6 +60,16 @@ public class AbstractCairoTest {
     protected static FilesFacade ff;
     protected static long configOverrideCommitLag = -1;
     protected static int configOverrideMaxUncommittedRows = -1;
+    protected static Boolean configOverrideSqlSortRadixEnabled = null;
+    protected static int configOverrideSqlSortTopKMaxRows = -1;
+    protected static int configOverrideSqlJoinBloomFilterBitsPerKey = -1;
+    protected static Boolean configOverrideSqlAsOfJoinPageFrameEnabled = null;
+    protected static int configOverridePartitionCompressAfter = -1;
+    protected static Boolean configOverridePartitionStatsEnabled = null;
+    protected static int configOverridePartitionZoneMapBlockSize = -1;
+    protected static long configOverrideWalSegmentSize = -1;
+    protected static int configOverrideWalApplyMaxTxnPerCommit = -1;
+    protected static Boolean configOverrideWalInsertEnabled = null;
     protected static Metrics metrics = Metrics.enabled();
     protected static int sampleByIndexSearchPageSize;
 
@@ -109,6 +119,66 @@ public class AbstractCairoTest {
                 return super.getMaxUncommittedRows();
             }
 
+            @Override
+            public boolean isSqlSortRadixEnabled() {
+                if (configOverrideSqlSortRadixEnabled != null) return configOverrideSqlSortRadixEnabled;
+                return super.isSqlSortRadixEnabled();
+            }
+
+            @Override
+            public int getSqlSortTopKMaxRows() {
+                if (configOverrideSqlSortTopKMaxRows >= 0) return configOverrideSqlSortTopKMaxRows;
+                return super.getSqlSortTopKMaxRows();
+            }
+
+            @Override
+            public int getSqlJoinBloomFilterBitsPerKey() {
+                if (configOverrideSqlJoinBloomFilterBitsPerKey >= 0) return configOverrideSqlJoinBloomFilterBitsPerKey;
+                return super.getSqlJoinBloomFilterBitsPerKey();
+            }
+
+            @Override
+            public boolean isSqlAsOfJoinPageFrameEnabled() {
+                if (configOverrideSqlAsOfJoinPageFrameEnabled != null) return configOverrideSqlAsOfJoinPageFrameEnabled;
+                return super.isSqlAsOfJoinPageFrameEnabled();
+            }
+
+            @Override
+            public int getPartitionCompressAfter() {
+                if (configOverridePartitionCompressAfter >= 0) return configOverridePartitionCompressAfter;
+                return super.getPartitionCompressAfter();
+            }
+
+            @Override
+            public boolean isPartitionStatsEnabled() {
+                if (configOverridePartitionStatsEnabled != null) return configOverridePartitionStatsEnabled;
+                return super.isPartitionStatsEnabled();
+            }
+
+            @Override
+            public int getPartitionZoneMapBlockSize() {
+                if (configOverridePartitionZoneMapBlockSize >= 0) return configOverridePartitionZoneMapBlockSize;
+                return super.getPartitionZoneMapBlockSize();
+            }
+
+            @Override
+            public long getWalSegmentSize() {
+                if (configOverrideWalSegmentSize >= 0) return configOverrideWalSegmentSize;
+                return super.getWalSegmentSize();
+            }
+
+            @Override
+            public int getWalApplyMaxTxnPerCommit() {
+                if (configOverrideWalApplyMaxTxnPerCommit >= 0) return configOverrideWalApplyMaxTxnPerCommit;
+                return super.getWalApplyMaxTxnPerCommit();
+            }
+
+            @Override
+            public boolean isWalInsertEnabled() {
+                if (configOverrideWalInsertEnabled != null) return configOverrideWalInsertEnabled;
+                return super.isWalInsertEnabled();
+            }
+
             public int getSampleByIndexSearchPageSize() {
                 return sampleByIndexSearchPageSize > 0 ? sampleByIndexSearchPageSize : super.getSampleByIndexSearchPageSize();
             }
@@ -138,6 +208,16 @@ public class AbstractCairoTest {
         TestUtils.removeTestPath(root);
         configOverrideMaxUncommittedRows = -1;
         configOverrideCommitLag = -1;
+        configOverrideSqlSortRadixEnabled = null;
+        configOverrideSqlSortTopKMaxRows = -1;
+        configOverrideSqlJoinBloomFilterBitsPerKey = -1;
+        configOverrideSqlAsOfJoinPageFrameEnabled = null;
+        configOverridePartitionCompressAfter = -1;
+        configOverridePartitionStatsEnabled = null;
+        configOverridePartitionZoneMapBlockSize = -1;
+        configOverrideWalSegmentSize = -1;
+        configOverrideWalApplyMaxTxnPerCommit = -1;
+        configOverrideWalInsertEnabled = null;
         currentMicros = -1;
         sampleByIndexSearchPageSize = -1;
     }
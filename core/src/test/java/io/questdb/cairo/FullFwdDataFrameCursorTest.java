@@ -2585,5 +2585,80 @@ public class FullFwdDataFrameCursorTest extends AbstractCairoTest {
         public Sequence getLatestBySubSeq() {
             return null;
         }
+
+        @Override
+        public Sequence getPageFrameFilterPubSeq() {
+            return null;
+        }
+
+        @Override
+        public RingQueue<PageFrameFilterTask> getPageFrameFilterQueue() {
+            return null;
+        }
+
+        @Override
+        public Sequence getPageFrameFilterSubSeq() {
+            return null;
+        }
+
+        @Override
+        public Sequence getPageFrameGroupByPubSeq() {
+            return null;
+        }
+
+        @Override
+        public RingQueue<PageFrameGroupByTask> getPageFrameGroupByQueue() {
+            return null;
+        }
+
+        @Override
+        public Sequence getPageFrameGroupBySubSeq() {
+            return null;
+        }
+
+        @Override
+        public Sequence getPageFrameHashJoinPubSeq() {
+            return null;
+        }
+
+        @Override
+        public RingQueue<PageFrameHashJoinTask> getPageFrameHashJoinQueue() {
+            return null;
+        }
+
+        @Override
+        public Sequence getPageFrameHashJoinSubSeq() {
+            return null;
+        }
+
+        @Override
+        public Sequence getColumnReadAheadPubSeq() {
+            return null;
+        }
+
+        @Override
+        public RingQueue<ColumnReadAheadTask> getColumnReadAheadQueue() {
+            return null;
+        }
+
+        @Override
+        public Sequence getColumnReadAheadSubSeq() {
+            return null;
+        }
+
+        @Override
+        public Sequence getWalApplyPubSeq() {
+            return null;
+        }
+
+        @Override
+        public RingQueue<WalApplyTask> getWalApplyQueue() {
+            return null;
+        }
+
+        @Override
+        public Sequence getWalApplySubSeq() {
+            return null;
+        }
     }
 }
@@ -0,0 +1,238 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cairo;
+
+import io.questdb.std.datetime.microtime.Timestamps;
+import io.questdb.std.str.Path;
+import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class GroupCommitTest extends AbstractCairoTest {
+
+    @Test
+    public void testDisabled() {
+        Assert.assertFalse(new GroupCommit(configuration).isEnabled());
+        Assert.assertTrue(newGroupCommit(1000, 8).isEnabled());
+    }
+
+    @Test
+    public void testFullGroupDoesNotWaitForWindow() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final int threadCount = 4;
+            final int commitCount = 50;
+            // window is far longer than the test timeout, groups must close on size
+            final GroupCommit groupCommit = newGroupCommit(TimeUnit.MINUTES.toMicros(10), threadCount);
+            for (int i = 0; i < threadCount; i++) {
+                createTable("t" + i);
+            }
+
+            final CyclicBarrier startBarrier = new CyclicBarrier(threadCount);
+            final CountDownLatch stopLatch = new CountDownLatch(threadCount);
+            final AtomicInteger errors = new AtomicInteger();
+            for (int i = 0; i < threadCount; i++) {
+                final String tableName = "t" + i;
+                new Thread(() -> {
+                    try (TableWriter writer = new TableWriter(configuration, tableName)) {
+                        writer.setGroupCommit(groupCommit);
+                        startBarrier.await();
+                        long ts = 0;
+                        for (int j = 0; j < commitCount; j++) {
+                            ts = appendRows(writer, ts, 10);
+                            writer.commit(CommitMode.SYNC);
+                        }
+                    } catch (Throwable e) {
+                        e.printStackTrace();
+                        errors.incrementAndGet();
+                    } finally {
+                        Path.clearThreadLocals();
+                        stopLatch.countDown();
+                    }
+                }).start();
+            }
+
+            Assert.assertTrue(stopLatch.await(5, TimeUnit.MINUTES));
+            Assert.assertEquals(0, errors.get());
+            for (int i = 0; i < threadCount; i++) {
+                assertRowCount("t" + i, commitCount * 10);
+            }
+        });
+    }
+
+    @Test
+    public void testLoneWriterDoesNotWaitForWindow() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final long windowMicros = TimeUnit.SECONDS.toMicros(5);
+            final GroupCommit groupCommit = newGroupCommit(windowMicros, 64);
+            createTable("x");
+            final long start = System.nanoTime();
+            try (TableWriter writer = new TableWriter(configuration, "x")) {
+                writer.setGroupCommit(groupCommit);
+                long ts = 0;
+                for (int i = 0; i < 10; i++) {
+                    ts = appendRows(writer, ts, 10);
+                    writer.commit(CommitMode.SYNC);
+                }
+            }
+            // no other writer is committing, leader must not wait for the window
+            Assert.assertTrue(System.nanoTime() - start < TimeUnit.MICROSECONDS.toNanos(windowMicros));
+            assertRowCount("x", 100);
+        });
+    }
+
+    @Test
+    public void testMemberSyncErrorDoesNotFailGroup() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final int commitCount = 20;
+            final GroupCommit groupCommit = newGroupCommit(TimeUnit.SECONDS.toMicros(1), 2);
+            createTable("ok");
+            createTable("broken");
+
+            final CyclicBarrier barrier = new CyclicBarrier(2);
+            final CountDownLatch stopLatch = new CountDownLatch(2);
+            final AtomicInteger errors = new AtomicInteger();
+            final AtomicInteger brokenCommitErrors = new AtomicInteger();
+            new Thread(() -> {
+                try (TableWriter writer = new TableWriter(configuration, "ok")) {
+                    writer.setGroupCommit(groupCommit);
+                    long ts = 0;
+                    for (int j = 0; j < commitCount; j++) {
+                        ts = appendRows(writer, ts, 10);
+                        barrier.await();
+                        writer.commit(CommitMode.SYNC);
+                        // commit returned, transaction must be visible
+                        assertRowCount("ok", (j + 1) * 10);
+                    }
+                } catch (Throwable e) {
+                    e.printStackTrace();
+                    errors.incrementAndGet();
+                } finally {
+                    Path.clearThreadLocals();
+                    stopLatch.countDown();
+                }
+            }).start();
+
+            new Thread(() -> {
+                try (TableWriter writer = new TableWriter(configuration, "broken") {
+                    @Override
+                    void groupCommitSyncColumns(boolean async) {
+                        if (!async) {
+                            throw CairoException.instance(0).put("sync failed");
+                        }
+                        super.groupCommitSyncColumns(true);
+                    }
+                }) {
+                    writer.setGroupCommit(groupCommit);
+                    long ts = 0;
+                    for (int j = 0; j < commitCount; j++) {
+                        ts = appendRows(writer, ts, 10);
+                        barrier.await();
+                        try {
+                            writer.commit(CommitMode.SYNC);
+                        } catch (CairoException e) {
+                            TestUtils.assertContains(e.getFlyweightMessage(), "sync failed");
+                            brokenCommitErrors.incrementAndGet();
+                        }
+                    }
+                } catch (Throwable e) {
+                    e.printStackTrace();
+                    errors.incrementAndGet();
+                } finally {
+                    Path.clearThreadLocals();
+                    stopLatch.countDown();
+                }
+            }).start();
+
+            Assert.assertTrue(stopLatch.await(5, TimeUnit.MINUTES));
+            Assert.assertEquals(0, errors.get());
+            Assert.assertEquals(commitCount, brokenCommitErrors.get());
+            assertRowCount("ok", commitCount * 10);
+        });
+    }
+
+    @Test
+    public void testSingleWriter() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final GroupCommit groupCommit = newGroupCommit(1000, 64);
+            createTable("x");
+            try (TableWriter writer = new TableWriter(configuration, "x")) {
+                writer.setGroupCommit(groupCommit);
+                long ts = 0;
+                for (int i = 0; i < 10; i++) {
+                    ts = appendRows(writer, ts, 100);
+                    writer.commit(CommitMode.SYNC);
+                    Assert.assertEquals((i + 1) * 100, writer.size());
+                }
+                // commits that are not durable bypass the group
+                appendRows(writer, ts, 100);
+                writer.commit(CommitMode.NOSYNC);
+            }
+            assertRowCount("x", 1100);
+        });
+    }
+
+    private static long appendRows(TableWriter writer, long ts, int count) {
+        for (int i = 0; i < count; i++) {
+            TableWriter.Row row = writer.newRow(ts += Timestamps.MINUTE_MICROS);
+            row.putLong(0, i);
+            row.append();
+        }
+        return ts;
+    }
+
+    private static void assertRowCount(String tableName, long expected) {
+        try (TableReader reader = new TableReader(configuration, tableName)) {
+            Assert.assertEquals(expected, reader.size());
+        }
+    }
+
+    private static void createTable(String tableName) {
+        try (TableModel model = new TableModel(configuration, tableName, PartitionBy.DAY)
+                .col("v", ColumnType.LONG)
+                .timestamp()) {
+            CairoTestUtils.create(model);
+        }
+    }
+
+    private static GroupCommit newGroupCommit(long window, int maxSize) {
+        return new GroupCommit(new DefaultCairoConfiguration(root) {
+            @Override
+            public long getGroupCommitWindow() {
+                return window;
+            }
+
+            @Override
+            public int getGroupCommitMaxSize() {
+                return maxSize;
+            }
+        });
+    }
+}
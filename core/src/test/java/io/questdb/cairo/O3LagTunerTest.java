@@ -0,0 +1,173 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cairo;
+
+import io.questdb.metrics.MetricsRegistryImpl;
+import io.questdb.std.datetime.microtime.Timestamps;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class O3LagTunerTest extends AbstractCairoTest {
+
+    @Test
+    public void testDisabledKeepsTableValues() {
+        O3LagTuner tuner = new O3LagTuner(configuration);
+        tuner.of(5, 7);
+        Assert.assertEquals(0, tuner.onO3Commit(10, 1000, 0, 100));
+        Assert.assertEquals(5, tuner.getCommitLag());
+        Assert.assertEquals(7, tuner.getMaxUncommittedRows());
+        // statistics are collected regardless
+        Assert.assertEquals(100, tuner.getAmplification(), 0.0001);
+        Assert.assertEquals(100, tuner.getLateness(), 0.0001);
+    }
+
+    @Test
+    public void testHighAmplificationGrowsLag() {
+        O3LagTuner tuner = newTuner();
+        tuner.of(0, 0);
+        Assert.assertEquals(1_000, tuner.getCommitLag());
+        Assert.assertEquals(100, tuner.getMaxUncommittedRows());
+
+        Assert.assertEquals(1, tuner.onO3Commit(10, 1000, 0, 0));
+        Assert.assertEquals(2_000, tuner.getCommitLag());
+        Assert.assertEquals(200, tuner.getMaxUncommittedRows());
+
+        for (int i = 0; i < 10; i++) {
+            tuner.onO3Commit(10, 1000, 0, 0);
+        }
+        Assert.assertEquals(10_000, tuner.getCommitLag());
+        Assert.assertEquals(1_000, tuner.getMaxUncommittedRows());
+        // at the maximum already
+        Assert.assertEquals(0, tuner.onO3Commit(10, 1000, 0, 0));
+    }
+
+    @Test
+    public void testLowAmplificationShrinksLagTowardsLateness() {
+        O3LagTuner tuner = newTuner();
+        tuner.of(10_000, 1_000);
+        Assert.assertEquals(-1, tuner.onO3Commit(1000, 0, 10, 2_000));
+        Assert.assertEquals(7_500, tuner.getCommitLag());
+        Assert.assertEquals(750, tuner.getMaxUncommittedRows());
+
+        while (tuner.onO3Commit(1000, 0, 10, 2_000) != 0) {
+            Assert.assertTrue(tuner.getCommitLag() >= 4_000);
+        }
+        // twice the lateness
+        Assert.assertEquals(4_000, tuner.getCommitLag());
+        Assert.assertEquals(315, tuner.getMaxUncommittedRows());
+    }
+
+    @Test
+    public void testRowLimitGrowsWhenLagIsCut() {
+        O3LagTuner tuner = newTuner();
+        tuner.of(5_000, 100);
+        // moderate amplification, lag is left alone
+        Assert.assertEquals(0, tuner.onO3Commit(100, 50, 100, 1_000));
+        Assert.assertEquals(5_000, tuner.getCommitLag());
+        Assert.assertEquals(200, tuner.getMaxUncommittedRows());
+    }
+
+    @Test
+    public void testWriterMergeIncreasesLag() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            try (TableModel model = new TableModel(configuration, "x", PartitionBy.DAY)
+                    .col("v", ColumnType.LONG)
+                    .timestamp()) {
+                CairoTestUtils.create(model);
+            }
+
+            final MetricsRegistryImpl metricsRegistry = new MetricsRegistryImpl();
+            final CairoConfiguration adaptiveConfiguration = new DefaultCairoConfiguration(root) {
+                @Override
+                public boolean isO3AdaptiveLagEnabled() {
+                    return true;
+                }
+            };
+            try (TableWriter writer = new TableWriter(adaptiveConfiguration, "x")) {
+                writer.setMetrics(new TableWriterMetrics(metricsRegistry));
+                final long lag = writer.getO3LagTuner().getCommitLag();
+
+                long ts = 0;
+                for (int i = 0; i < 1000; i++) {
+                    TableWriter.Row row = writer.newRow(ts += Timestamps.MINUTE_MICROS);
+                    row.putLong(0, i);
+                    row.append();
+                }
+                writer.commit();
+
+                // few rows in the middle of the only partition, it has to be rewritten
+                for (int i = 0; i < 10; i++) {
+                    TableWriter.Row row = writer.newRow(Timestamps.MINUTE_MICROS * 500 + i);
+                    row.putLong(0, i);
+                    row.append();
+                }
+                writer.commit();
+
+                Assert.assertEquals(1010, writer.size());
+                Assert.assertTrue(writer.getO3LagTuner().getAmplification() > O3LagTuner.AMPLIFICATION_HIGH);
+                Assert.assertEquals(lag * 2, writer.getO3LagTuner().getCommitLag());
+            }
+
+            final StringSink sink = new StringSink();
+            metricsRegistry.scrapeIntoPrometheus(sink);
+            TestUtils.assertContains(sink, "questdb_o3_commits_total 1\n");
+            TestUtils.assertContains(sink, "questdb_o3_rows_total 10\n");
+            TestUtils.assertContains(sink, "questdb_o3_rewritten_rows_total 1000\n");
+            TestUtils.assertContains(sink, "questdb_o3_lag_increases_total 1\n");
+        });
+    }
+
+    private static O3LagTuner newTuner() {
+        return new O3LagTuner(new DefaultCairoConfiguration(root) {
+            @Override
+            public boolean isO3AdaptiveLagEnabled() {
+                return true;
+            }
+
+            @Override
+            public long getO3AdaptiveLagMin() {
+                return 1_000;
+            }
+
+            @Override
+            public long getO3AdaptiveLagMax() {
+                return 10_000;
+            }
+
+            @Override
+            public int getO3AdaptiveMaxUncommittedRowsMin() {
+                return 100;
+            }
+
+            @Override
+            public int getO3AdaptiveMaxUncommittedRowsMax() {
+                return 1_000;
+            }
+        });
+    }
+}
@@ -0,0 +1,352 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cairo;
+
+import io.questdb.griffin.engine.TestBinarySequence;
+import io.questdb.std.Rnd;
+import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RowBatchTest extends AbstractCairoTest {
+    private static final long DAY_MICROS = 86_400_000_000L;
+    // 2021-01-01T00:00:00.000Z
+    private static final long START_MICROS = 1_609_459_200_000_000L;
+
+    @Test
+    public void testAppendAfterRows() throws Exception {
+        assertBatch(PartitionBy.DAY, (rnd, expected, actual, batch) -> {
+            long ts = START_MICROS;
+            for (int i = 0; i < 100; i++) {
+                ts += rnd.nextPositiveInt() % 1_000_000_000L;
+                appendRow(rnd, expected, actual, null, ts);
+            }
+            // row in flight is cancelled by the batch
+            actual.newRow(ts).putInt(4, 10);
+            expected.newRow(ts).cancel();
+
+            for (int i = 0; i < 1000; i++) {
+                ts += rnd.nextPositiveInt() % 1_000_000_000L;
+                appendRow(rnd, expected, null, batch, ts);
+            }
+            actual.appendBatch(batch);
+        });
+    }
+
+    @Test
+    public void testAppendInOrder() throws Exception {
+        assertBatch(PartitionBy.DAY, (rnd, expected, actual, batch) -> {
+            long ts = START_MICROS;
+            for (int i = 0; i < 2000; i++) {
+                ts += rnd.nextPositiveInt() % 500_000_000L;
+                appendRow(rnd, expected, null, batch, ts);
+            }
+            actual.appendBatch(batch);
+        });
+    }
+
+    @Test
+    public void testAppendNonPartitioned() throws Exception {
+        assertBatch(PartitionBy.NONE, (rnd, expected, actual, batch) -> {
+            long ts = START_MICROS;
+            for (int i = 0; i < 500; i++) {
+                ts += rnd.nextPositiveInt() % 500_000_000L;
+                appendRow(rnd, expected, null, batch, ts);
+            }
+            actual.appendBatch(batch);
+        });
+    }
+
+    @Test
+    public void testAppendOutOfOrder() throws Exception {
+        assertBatch(PartitionBy.DAY, (rnd, expected, actual, batch) -> {
+            long ts = START_MICROS;
+            for (int i = 0; i < 1000; i++) {
+                ts += rnd.nextPositiveInt() % 500_000_000L;
+                appendRow(rnd, expected, null, batch, ts);
+            }
+            actual.appendBatch(batch);
+            expected.commit();
+            actual.commit();
+
+            // starts in order and then goes back into committed partitions
+            batch.clear();
+            for (int i = 0; i < 200; i++) {
+                ts += rnd.nextPositiveInt() % 500_000_000L;
+                appendRow(rnd, expected, null, batch, ts);
+            }
+            for (int i = 0; i < 1000; i++) {
+                appendRow(rnd, expected, null, batch, START_MICROS + rnd.nextPositiveLong() % (ts - START_MICROS));
+            }
+            actual.appendBatch(batch);
+
+            // o3 rows are not committed yet
+            batch.clear();
+            for (int i = 0; i < 500; i++) {
+                appendRow(rnd, expected, null, batch, START_MICROS - DAY_MICROS + rnd.nextPositiveLong() % (3 * DAY_MICROS));
+            }
+            actual.appendBatch(batch);
+        });
+    }
+
+    @Test
+    public void testLayoutMismatch() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createTable("x", PartitionBy.DAY);
+            try (
+                    TableModel model = new TableModel(configuration, "y", PartitionBy.DAY)
+                            .col("a", ColumnType.INT)
+                            .timestamp();
+                    RowBatch batch = new RowBatch()
+            ) {
+                CairoTestUtils.create(model);
+                try (
+                        TableWriter writerX = new TableWriter(configuration, "x");
+                        TableWriter writerY = new TableWriter(configuration, "y")
+                ) {
+                    batch.of(writerY.getMetadata());
+                    batch.putInt(0, 1);
+                    batch.putTimestamp(1, START_MICROS);
+                    batch.endRow();
+                    try {
+                        writerX.appendBatch(batch);
+                        Assert.fail();
+                    } catch (CairoException e) {
+                        TestUtils.assertContains(e.getFlyweightMessage(), "row batch does not match table columns");
+                    }
+                    Assert.assertEquals(0, writerX.size());
+                }
+            }
+        });
+    }
+
+    private static void appendRow(Rnd rnd, TableWriter expected, TableWriter actual, RowBatch batch, long timestamp) {
+        final TableWriter.Row expectedRow = expected.newRow(timestamp);
+        final TableWriter.Row actualRow = actual != null ? actual.newRow(timestamp) : null;
+        for (int i = 0; i < 13; i++) {
+            if (rnd.nextInt(8) == 0) {
+                // null, batch either pads or takes explicit null
+                if (batch != null && rnd.nextBoolean()) {
+                    batch.putNull(i);
+                }
+                continue;
+            }
+            switch (i) {
+                case 0: {
+                    final boolean value = rnd.nextBoolean();
+                    expectedRow.putBool(i, value);
+                    if (actualRow != null) {
+                        actualRow.putBool(i, value);
+                    } else {
+                        batch.putBool(i, value);
+                    }
+                    break;
+                }
+                case 1: {
+                    final byte value = rnd.nextByte();
+                    expectedRow.putByte(i, value);
+                    if (actualRow != null) {
+                        actualRow.putByte(i, value);
+                    } else {
+                        batch.putByte(i, value);
+                    }
+                    break;
+                }
+                case 2: {
+                    final short value = rnd.nextShort();
+                    expectedRow.putShort(i, value);
+                    if (actualRow != null) {
+                        actualRow.putShort(i, value);
+                    } else {
+                        batch.putShort(i, value);
+                    }
+                    break;
+                }
+                case 3: {
+                    final char value = rnd.nextChar();
+                    expectedRow.putChar(i, value);
+                    if (actualRow != null) {
+                        actualRow.putChar(i, value);
+                    } else {
+                        batch.putChar(i, value);
+                    }
+                    break;
+                }
+                case 4: {
+                    final int value = rnd.nextInt();
+                    expectedRow.putInt(i, value);
+                    if (actualRow != null) {
+                        actualRow.putInt(i, value);
+                    } else {
+                        batch.putInt(i, value);
+                    }
+                    break;
+                }
+                case 5: {
+                    final long value = rnd.nextLong();
+                    expectedRow.putLong(i, value);
+                    if (actualRow != null) {
+                        actualRow.putLong(i, value);
+                    } else {
+                        batch.putLong(i, value);
+                    }
+                    break;
+                }
+                case 6: {
+                    final float value = rnd.nextFloat();
+                    expectedRow.putFloat(i, value);
+                    if (actualRow != null) {
+                        actualRow.putFloat(i, value);
+                    } else {
+                        batch.putFloat(i, value);
+                    }
+                    break;
+                }
+                case 7: {
+                    final double value = rnd.nextDouble();
+                    expectedRow.putDouble(i, value);
+                    if (actualRow != null) {
+                        actualRow.putDouble(i, value);
+                    } else {
+                        batch.putDouble(i, value);
+                    }
+                    break;
+                }
+                case 8: {
+                    final CharSequence value = rnd.nextChars(rnd.nextInt(16));
+                    expectedRow.putStr(i, value);
+                    if (actualRow != null) {
+                        actualRow.putStr(i, value);
+                    } else {
+                        batch.putStr(i, value);
+                    }
+                    break;
+                }
+                case 9: {
+                    final CharSequence value = "sym" + rnd.nextInt(20);
+                    expectedRow.putSym(i, value);
+                    if (actualRow != null) {
+                        actualRow.putSym(i, value);
+                    } else {
+                        batch.putSym(i, value);
+                    }
+                    break;
+                }
+                case 10: {
+                    final TestBinarySequence value = new TestBinarySequence().of(rnd.nextBytes(rnd.nextInt(32)));
+                    expectedRow.putBin(i, value);
+                    if (actualRow != null) {
+                        actualRow.putBin(i, value);
+                    } else {
+                        batch.putBin(i, value);
+                    }
+                    break;
+                }
+                case 11: {
+                    final long l0 = rnd.nextLong();
+                    final long l1 = rnd.nextLong();
+                    final long l2 = rnd.nextLong();
+                    final long l3 = rnd.nextLong();
+                    expectedRow.putLong256(i, l0, l1, l2, l3);
+                    if (actualRow != null) {
+                        actualRow.putLong256(i, l0, l1, l2, l3);
+                    } else {
+                        batch.putLong256(i, l0, l1, l2, l3);
+                    }
+                    break;
+                }
+                default: {
+                    final long value = rnd.nextPositiveLong();
+                    expectedRow.putDate(i, value);
+                    if (actualRow != null) {
+                        actualRow.putDate(i, value);
+                    } else {
+                        batch.putLong(i, value);
+                    }
+                    break;
+                }
+            }
+        }
+        expectedRow.append();
+        if (actualRow != null) {
+            actualRow.append();
+        } else {
+            batch.putTimestamp(13, timestamp);
+            batch.endRow();
+        }
+    }
+
+    private static void assertBatch(int partitionBy, BatchWriter code) throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createTable("expected", partitionBy);
+            createTable("actual", partitionBy);
+            final Rnd rnd = new Rnd();
+            try (
+                    TableWriter expected = new TableWriter(configuration, "expected");
+                    TableWriter actual = new TableWriter(configuration, "actual");
+                    RowBatch batch = new RowBatch()
+            ) {
+                batch.of(actual.getMetadata());
+                code.run(rnd, expected, actual, batch);
+                expected.commit();
+                actual.commit();
+                Assert.assertEquals(expected.size(), actual.size());
+            }
+
+            try (
+                    TableReader expected = new TableReader(configuration, "expected");
+                    TableReader actual = new TableReader(configuration, "actual")
+            ) {
+                TestUtils.assertEquals(expected.getCursor(), expected.getMetadata(), actual.getCursor(), actual.getMetadata());
+            }
+        });
+    }
+
+    private static void createTable(String name, int partitionBy) {
+        try (TableModel model = new TableModel(configuration, name, partitionBy)
+                .col("a", ColumnType.BOOLEAN)
+                .col("b", ColumnType.BYTE)
+                .col("c", ColumnType.SHORT)
+                .col("d", ColumnType.CHAR)
+                .col("e", ColumnType.INT)
+                .col("f", ColumnType.LONG)
+                .col("g", ColumnType.FLOAT)
+                .col("h", ColumnType.DOUBLE)
+                .col("i", ColumnType.STRING)
+                .col("j", ColumnType.SYMBOL)
+                .col("k", ColumnType.BINARY)
+                .col("l", ColumnType.LONG256)
+                .col("m", ColumnType.DATE)
+                .timestamp()) {
+            CairoTestUtils.create(model);
+        }
+    }
+
+    @FunctionalInterface
+    private interface BatchWriter {
+        void run(Rnd rnd, TableWriter expected, TableWriter actual, RowBatch batch);
+    }
+}
@@ -1854,6 +1854,12 @@ public class TableReaderTest extends AbstractCairoTest {
         TestUtils.assertMemoryLeak(this::testTableCursor);
     }
 
+    @Test
+    public void testReadByHour() throws Exception {
+        CairoTestUtils.createAllTable(configuration, PartitionBy.HOUR);
+        TestUtils.assertMemoryLeak(() -> testTableCursor(10 * 60000));
+    }
+
     @Test
     public void testReadByMonth() throws Exception {
         CairoTestUtils.createAllTable(configuration, PartitionBy.MONTH);
@@ -2097,6 +2103,16 @@ public class TableReaderTest extends AbstractCairoTest {
         testReload(PartitionBy.DAY, 150, 6 * 60000L, MUST_SWITCH);
     }
 
+    @Test
+    public void testReloadByHourSamePartition() throws Exception {
+        testReload(PartitionBy.HOUR, 10, 60000L, MUST_NOT_SWITCH);
+    }
+
+    @Test
+    public void testReloadByHourSwitch() throws Exception {
+        testReload(PartitionBy.HOUR, 150, 60000L, MUST_SWITCH);
+    }
+
     @Test
     public void testReloadByMonthSamePartition() throws Exception {
         testReload(PartitionBy.MONTH, 15, 60L * 60000, MUST_NOT_SWITCH);
@@ -2455,6 +2471,16 @@ public class TableReaderTest extends AbstractCairoTest {
         testRemovePartitionReload(PartitionBy.DAY, "2017-12-14", 3000, current -> Timestamps.addDays(Timestamps.floorDD(current), 1));
     }
 
+    @Test
+    public void testRemovePartitionByHour() throws Exception {
+        testRemovePartition(PartitionBy.HOUR, "2017-12-11T13", 3000, current -> Timestamps.addHours(Timestamps.floorHH(current), 1));
+    }
+
+    @Test
+    public void testRemovePartitionByHourReload() throws Exception {
+        testRemovePartitionReload(PartitionBy.HOUR, "2017-12-11T03", 3000, current -> Timestamps.addHours(Timestamps.floorHH(current), 1));
+    }
+
     @Test
     public void testRemovePartitionByMonth() throws Exception {
         testRemovePartition(PartitionBy.MONTH, "2018-01", 1000, current -> Timestamps.addMonths(Timestamps.floorMM(current), 1));
@@ -2579,6 +2579,64 @@ public class TableWriterTest extends AbstractCairoTest {
         });
     }
 
+    @Test
+    public void testSyncCommit() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final LongLongHashMap synced = new LongLongHashMap();
+            final AtomicInteger syncCount = new AtomicInteger();
+            final AtomicInteger syncedUnmapCount = new AtomicInteger();
+            FilesFacade ff = new FilesFacadeImpl() {
+                @Override
+                public int msync(long addr, long len, boolean async) {
+                    syncCount.incrementAndGet();
+                    synced.put(addr, len);
+                    return super.msync(addr, len, async);
+                }
+
+                @Override
+                public void munmap(long address, long size) {
+                    if (synced.get(address) == size) {
+                        syncedUnmapCount.incrementAndGet();
+                    }
+                    synced.put(address, -1);
+                    super.munmap(address, size);
+                }
+            };
+
+            final int N = 1000;
+            create(ff, PartitionBy.DAY, N);
+            CairoConfiguration configuration = new DefaultCairoConfiguration(root) {
+                @Override
+                public FilesFacade getFilesFacade() {
+                    return ff;
+                }
+            };
+
+            try (TableWriter writer = new TableWriter(configuration, PRODUCT)) {
+                long ts = TimestampFormatUtils.parseTimestamp("2013-03-04T00:00:00.000Z");
+                Rnd rnd = new Rnd();
+                for (int i = 0; i < N; i++) {
+                    ts = populateRow(writer, ts, rnd, 60L * 60000L * 1000L);
+                }
+
+                // every column is synced, there are no workers to help the writer
+                writer.commit(CommitMode.SYNC);
+                Assert.assertTrue(syncCount.get() >= writer.getMetadata().getColumnCount());
+                Assert.assertEquals(0, syncedUnmapCount.get());
+
+                // o3 rows land in the first partition, which is rewritten by o3 jobs
+                populateRow(writer, TimestampFormatUtils.parseTimestamp("2013-03-04T10:00:00.000Z"), rnd, 0);
+                writer.commit(CommitMode.NOSYNC);
+                Assert.assertEquals(0, syncedUnmapCount.get());
+
+                populateRow(writer, TimestampFormatUtils.parseTimestamp("2013-03-04T11:00:00.000Z"), rnd, 0);
+                writer.commit(CommitMode.SYNC);
+                Assert.assertTrue(syncedUnmapCount.get() > 0);
+                Assert.assertEquals(N + 2, writer.size());
+            }
+        });
+    }
+
     @Test
     public void testTableDoesNotExist() throws Exception {
         TestUtils.assertMemoryLeak(() -> {
@@ -0,0 +1,530 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cairo;
+
+import io.questdb.cairo.security.AllowAllCairoSecurityContext;
+import io.questdb.cairo.sql.InsertStatement;
+import io.questdb.cairo.sql.WriterOutOfDateException;
+import io.questdb.griffin.*;
+import io.questdb.mp.Sequence;
+import io.questdb.std.FilesFacadeImpl;
+import io.questdb.std.datetime.microtime.Timestamps;
+import io.questdb.std.str.Path;
+import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class WalWriterTest extends AbstractGriffinTest {
+
+    @Test
+    public void testAppliedTxnRecoveredFromTable() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            try (WalWriter walWriter = engine.getWalWriter(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                appendRow(walWriter, Timestamps.HOUR_MICROS, 1, "a", "s1");
+                walWriter.commit();
+                Assert.assertEquals(1, engine.applyWal(AllowAllCairoSecurityContext.INSTANCE, "x"));
+
+                // crash after table commit, progress in _applied is lost
+                try (Path path = new Path()) {
+                    path.of(configuration.getRoot()).concat("x").concat(WalWriter.WAL_DIR_NAME).concat(WalWriter.WAL_APPLIED_FILE_NAME).$();
+                    Assert.assertTrue(FilesFacadeImpl.INSTANCE.remove(path));
+                }
+                Assert.assertEquals(0, engine.applyWal(AllowAllCairoSecurityContext.INSTANCE, "x"));
+            }
+            assertReader(
+                    "i\tsym\tstr\tts\n" +
+                            "1\ta\ts1\t1970-01-01T01:00:00.000000Z\n",
+                    "x"
+            );
+        });
+    }
+
+    @Test
+    public void testApplyBatchIsLimited() throws Exception {
+        configOverrideWalApplyMaxTxnPerCommit = 2;
+        assertMemoryLeak(() -> {
+            createTable();
+            try (WalWriter walWriter = engine.getWalWriter(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                for (int i = 0; i < 5; i++) {
+                    appendRow(walWriter, (5 - i) * Timestamps.HOUR_MICROS, i, "a", "s");
+                    walWriter.commit();
+                }
+            }
+            final long txn;
+            try (TableWriter writer = engine.getWriter(AllowAllCairoSecurityContext.INSTANCE, "x", "test")) {
+                txn = writer.getTxn();
+            }
+            Assert.assertEquals(5, engine.applyWal(AllowAllCairoSecurityContext.INSTANCE, "x"));
+            try (TableWriter writer = engine.getWriter(AllowAllCairoSecurityContext.INSTANCE, "x", "test")) {
+                Assert.assertEquals(txn + 3, writer.getTxn());
+                Assert.assertEquals(5, writer.getWalTxn());
+            }
+        });
+    }
+
+    @Test
+    public void testApplyJob() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            try (
+                    WalWriter walWriter = engine.getWalWriter(AllowAllCairoSecurityContext.INSTANCE, "x");
+                    WalApplyJob job = new WalApplyJob(engine, 1)
+            ) {
+                // drain notifications left by other tests
+                //noinspection StatementWithEmptyBody
+                while (job.run(0)) {
+                }
+                appendRow(walWriter, Timestamps.HOUR_MICROS, 1, "a", "s1");
+                walWriter.commit();
+                Assert.assertTrue(job.run(0));
+                Assert.assertFalse(job.run(0));
+            }
+            assertReader(
+                    "i\tsym\tstr\tts\n" +
+                            "1\ta\ts1\t1970-01-01T01:00:00.000000Z\n",
+                    "x"
+            );
+        });
+    }
+
+    @Test
+    public void testApplyJobRetriesBusyTable() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            currentMicros = 0;
+            try (
+                    WalWriter walWriter = engine.getWalWriter(AllowAllCairoSecurityContext.INSTANCE, "x");
+                    WalApplyJob job = new WalApplyJob(engine, 1)
+            ) {
+                //noinspection StatementWithEmptyBody
+                while (job.run(0)) {
+                }
+                try (TableWriter ignored = engine.getWriter(AllowAllCairoSecurityContext.INSTANCE, "x", "testing")) {
+                    appendRow(walWriter, Timestamps.HOUR_MICROS, 1, "a", "s1");
+                    walWriter.commit();
+                    // writer is busy, table is set aside
+                    Assert.assertTrue(job.run(0));
+                    Assert.assertFalse(job.run(0));
+                }
+                assertReader("i\tsym\tstr\tts\n", "x");
+
+                // not yet time to retry
+                currentMicros = configuration.getWalApplyRetryInterval() * 1000 - 1;
+                Assert.assertFalse(job.run(0));
+
+                // no further commits are needed
+                currentMicros = configuration.getWalApplyRetryInterval() * 1000;
+                Assert.assertTrue(job.run(0));
+                Assert.assertFalse(job.run(0));
+            }
+            assertReader(
+                    "i\tsym\tstr\tts\n" +
+                            "1\ta\ts1\t1970-01-01T01:00:00.000000Z\n",
+                    "x"
+            );
+        });
+    }
+
+    @Test
+    public void testApplyJobSweepsTables() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            try (WalWriter walWriter = engine.getWalWriter(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                appendRow(walWriter, Timestamps.HOUR_MICROS, 1, "a", "s1");
+                walWriter.commit();
+            }
+            // notification is lost, as if the queue was full or server restarted
+            final Sequence subSeq = engine.getMessageBus().getWalApplySubSeq();
+            long cursor;
+            while ((cursor = subSeq.next()) > -1) {
+                subSeq.done(cursor);
+            }
+
+            try (WalApplyJob job = new WalApplyJob(engine, 1)) {
+                Assert.assertTrue(job.run(0));
+                Assert.assertFalse(job.run(0));
+            }
+            assertReader(
+                    "i\tsym\tstr\tts\n" +
+                            "1\ta\ts1\t1970-01-01T01:00:00.000000Z\n",
+                    "x"
+            );
+        });
+    }
+
+    @Test
+    public void testColumnsChangedBeforeApply() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            try (WalWriter walWriter = engine.getWalWriter(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                appendRow(walWriter, Timestamps.HOUR_MICROS, 1, "a", "s1");
+                walWriter.commit();
+            }
+            compiler.compile("alter table x drop column str", sqlExecutionContext);
+            compiler.compile("alter table x add column d double", sqlExecutionContext);
+
+            Assert.assertEquals(1, engine.applyWal(AllowAllCairoSecurityContext.INSTANCE, "x"));
+            assertReader(
+                    "i\tsym\tts\td\n" +
+                            "1\ta\t1970-01-01T01:00:00.000000Z\tNaN\n",
+                    "x"
+            );
+        });
+    }
+
+    @Test
+    public void testCommitAndApply() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            try (WalWriter walWriter = engine.getWalWriter(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                appendRow(walWriter, Timestamps.DAY_MICROS + Timestamps.HOUR_MICROS, 1, "a", "s1");
+                appendRow(walWriter, Timestamps.DAY_MICROS + 2 * Timestamps.HOUR_MICROS, 2, null, null);
+                walWriter.commit();
+                Assert.assertEquals(1, walWriter.getTxn());
+
+                // lands in earlier partition
+                appendRow(walWriter, Timestamps.HOUR_MICROS, 3, "b", "s3");
+                walWriter.commit();
+                Assert.assertEquals(2, walWriter.getTxn());
+
+                // nothing to commit
+                walWriter.commit();
+                Assert.assertEquals(2, walWriter.getTxn());
+
+                // readers do not see transactions that are not applied
+                assertReader("i\tsym\tstr\tts\n", "x");
+                Assert.assertEquals(2, engine.applyWal(AllowAllCairoSecurityContext.INSTANCE, "x"));
+                Assert.assertEquals(0, engine.applyWal(AllowAllCairoSecurityContext.INSTANCE, "x"));
+            }
+            assertReader(
+                    "i\tsym\tstr\tts\n" +
+                            "3\tb\ts3\t1970-01-01T01:00:00.000000Z\n" +
+                            "1\ta\ts1\t1970-01-02T01:00:00.000000Z\n" +
+                            "2\t\t\t1970-01-02T02:00:00.000000Z\n",
+                    "x"
+            );
+        });
+    }
+
+    @Test
+    public void testConcurrentWriters() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            final int writerCount = 4;
+            final int txnCount = 50;
+            final int rowCount = 20;
+            final CyclicBarrier startBarrier = new CyclicBarrier(writerCount + 1);
+            final CountDownLatch stopLatch = new CountDownLatch(writerCount);
+            final AtomicInteger errors = new AtomicInteger();
+            for (int i = 0; i < writerCount; i++) {
+                final int writerIndex = i;
+                new Thread(() -> {
+                    try (WalWriter walWriter = engine.getWalWriter(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                        startBarrier.await();
+                        for (int j = 0; j < txnCount; j++) {
+                            for (int k = 0; k < rowCount; k++) {
+                                // writers interleave in time
+                                appendRow(walWriter, (k * writerCount + writerIndex + 1) * Timestamps.MINUTE_MICROS, 1, "a", "s");
+                            }
+                            walWriter.commit();
+                        }
+                    } catch (Throwable e) {
+                        e.printStackTrace();
+                        errors.incrementAndGet();
+                    } finally {
+                        Path.clearThreadLocals();
+                        stopLatch.countDown();
+                    }
+                }).start();
+            }
+
+            startBarrier.await();
+            long applied = 0;
+            // fold shards while writers are appending
+            while (stopLatch.getCount() > 0) {
+                applied += engine.applyWal(AllowAllCairoSecurityContext.INSTANCE, "x");
+            }
+            applied += engine.applyWal(AllowAllCairoSecurityContext.INSTANCE, "x");
+
+            Assert.assertEquals(0, errors.get());
+            Assert.assertEquals(writerCount * txnCount, applied);
+            try (TableReader reader = engine.getReader(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                Assert.assertEquals(writerCount * txnCount * rowCount, reader.size());
+            }
+        });
+    }
+
+    @Test
+    public void testFailedApplyIsNotMarkedApplied() throws Exception {
+        configOverrideWalSegmentSize = 1;
+        assertMemoryLeak(() -> {
+            createTable();
+            try (WalWriter walWriter = engine.getWalWriter(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                appendRow(walWriter, 2 * Timestamps.HOUR_MICROS, 1, "a", "s1");
+                walWriter.commit();
+                appendRow(walWriter, Timestamps.HOUR_MICROS, 2, "b", "s2");
+                walWriter.commit();
+            }
+
+            // second transaction is in a segment that cannot be opened
+            try (Path path = new Path(); Path other = new Path()) {
+                path.of(configuration.getRoot()).concat("x").concat(WalWriter.WAL_DIR_NAME).concat("0").concat("1").$();
+                other.of(path).put(".bak").$();
+                Assert.assertTrue(FilesFacadeImpl.INSTANCE.rename(path, other));
+                Assert.assertEquals(0, engine.applyWal(AllowAllCairoSecurityContext.INSTANCE, "x"));
+
+                // commit of table writer does not take failed batch along
+                executeInsert("insert into x values (3, 'c', 's3', 0)");
+                try (TableWriter writer = engine.getWriter(AllowAllCairoSecurityContext.INSTANCE, "x", "test")) {
+                    Assert.assertEquals(0, writer.getWalTxn());
+                }
+                Assert.assertTrue(FilesFacadeImpl.INSTANCE.rename(other, path));
+            }
+
+            Assert.assertEquals(2, engine.applyWal(AllowAllCairoSecurityContext.INSTANCE, "x"));
+            assertReader(
+                    "i\tsym\tstr\tts\n" +
+                            "3\tc\ts3\t1970-01-01T00:00:00.000000Z\n" +
+                            "2\tb\ts2\t1970-01-01T01:00:00.000000Z\n" +
+                            "1\ta\ts1\t1970-01-01T02:00:00.000000Z\n",
+                    "x"
+            );
+        });
+    }
+
+    @Test
+    public void testPendingWalTxn() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            try (TableWriter writer = engine.getWriter(AllowAllCairoSecurityContext.INSTANCE, "x", "test")) {
+                TableWriter.Row row = writer.newRow(Timestamps.HOUR_MICROS);
+                row.putInt(0, 1);
+                row.append();
+                writer.setPendingWalTxn(3);
+                writer.rollback();
+
+                row = writer.newRow(Timestamps.HOUR_MICROS);
+                row.putInt(0, 2);
+                row.append();
+                writer.commit();
+                Assert.assertEquals(0, writer.getWalTxn());
+
+                row = writer.newRow(Timestamps.DAY_MICROS);
+                row.putInt(0, 3);
+                row.append();
+                writer.setPendingWalTxn(5);
+                writer.commit();
+                Assert.assertEquals(5, writer.getWalTxn());
+            }
+
+            // partition table is moved when symbol column is added
+            compiler.compile("alter table x add column sym2 symbol", sqlExecutionContext);
+            try (TableWriter writer = engine.getWriter(AllowAllCairoSecurityContext.INSTANCE, "x", "test")) {
+                Assert.assertEquals(5, writer.getWalTxn());
+                writer.truncate();
+            }
+            try (TableWriter writer = engine.getWriter(AllowAllCairoSecurityContext.INSTANCE, "x", "test")) {
+                Assert.assertEquals(5, writer.getWalTxn());
+            }
+        });
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+        assertMemoryLeak(() -> {
+            createTable();
+            try (WalWriter walWriter = engine.getWalWriter(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                appendRow(walWriter, 2 * Timestamps.HOUR_MICROS, 1, "a", "s1");
+                walWriter.commit();
+                // uncommitted rows are discarded on close
+                appendRow(walWriter, 3 * Timestamps.HOUR_MICROS, 2, "b", "s2");
+            }
+
+            try (WalWriter walWriter = engine.getWalWriter(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                Assert.assertEquals(1, walWriter.getTxn());
+                Assert.assertEquals(0, walWriter.getShardId());
+                try (WalWriter walWriter2 = engine.getWalWriter(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                    Assert.assertEquals(1, walWriter2.getShardId());
+                    appendRow(walWriter2, 5 * Timestamps.HOUR_MICROS, 5, "e", "s5");
+                    appendRow(walWriter, Timestamps.HOUR_MICROS, 3, "c", "s3");
+                    walWriter.commit();
+                    walWriter2.commit();
+                    Assert.assertEquals(3, walWriter.getTxn());
+                }
+                appendRow(walWriter, 4 * Timestamps.HOUR_MICROS, 4, "d", "s4");
+                walWriter.rollback();
+                Assert.assertEquals(0, walWriter.size());
+                Assert.assertEquals(3, engine.applyWal(AllowAllCairoSecurityContext.INSTANCE, "x"));
+            }
+            assertReader(
+                    "i\tsym\tstr\tts\n" +
+                            "3\tc\ts3\t1970-01-01T01:00:00.000000Z\n" +
+                            "1\ta\ts1\t1970-01-01T02:00:00.000000Z\n" +
+                            "5\te\ts5\t1970-01-01T05:00:00.000000Z\n",
+                    "x"
+            );
+        });
+    }
+
+    @Test
+    public void testSegmentsRemovedOnceApplied() throws Exception {
+        configOverrideWalSegmentSize = 1;
+        assertMemoryLeak(() -> {
+            createTable();
+            try (WalWriter walWriter = engine.getWalWriter(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                for (int i = 0; i < 5; i++) {
+                    appendRow(walWriter, (5 - i) * Timestamps.HOUR_MICROS, i, "a", "s");
+                    walWriter.commit();
+                }
+                for (int i = 0; i < 6; i++) {
+                    Assert.assertTrue(segmentExists(i));
+                }
+                Assert.assertEquals(5, engine.applyWal(AllowAllCairoSecurityContext.INSTANCE, "x"));
+                for (int i = 0; i < 4; i++) {
+                    Assert.assertFalse(segmentExists(i));
+                }
+                // last applied segment is kept until a later transaction moves past it
+                Assert.assertTrue(segmentExists(4));
+            }
+            assertReader(
+                    "i\tsym\tstr\tts\n" +
+                            "4\ta\ts\t1970-01-01T01:00:00.000000Z\n" +
+                            "3\ta\ts\t1970-01-01T02:00:00.000000Z\n" +
+                            "2\ta\ts\t1970-01-01T03:00:00.000000Z\n" +
+                            "1\ta\ts\t1970-01-01T04:00:00.000000Z\n" +
+                            "0\ta\ts\t1970-01-01T05:00:00.000000Z\n",
+                    "x"
+            );
+        });
+    }
+
+    @Test
+    public void testSqlInsert() throws Exception {
+        configOverrideWalInsertEnabled = true;
+        assertMemoryLeak(() -> {
+            createTable();
+            try (TableWriter ignored = engine.getWriter(AllowAllCairoSecurityContext.INSTANCE, "x", "testing")) {
+                // table writer is busy, insert goes to the log
+                executeInsert("insert into x values (1, 'a', 's1', '1970-01-01T02:00:00.000000Z')");
+                executeInsert("insert into x (ts, i) values ('1970-01-01T01:00:00.000000Z', 2)");
+                Assert.assertEquals(0, engine.applyWal(AllowAllCairoSecurityContext.INSTANCE, "x"));
+            }
+            assertReader("i\tsym\tstr\tts\n", "x");
+            Assert.assertEquals(2, engine.applyWal(AllowAllCairoSecurityContext.INSTANCE, "x"));
+            assertReader(
+                    "i\tsym\tstr\tts\n" +
+                            "2\t\t\t1970-01-01T01:00:00.000000Z\n" +
+                            "1\ta\ts1\t1970-01-01T02:00:00.000000Z\n",
+                    "x"
+            );
+
+            final InsertStatement insert = compiler.compile("insert into x values (3, 'b', 's3', '1970-01-01T03:00:00.000000Z')", sqlExecutionContext).getInsertStatement();
+            try {
+                compiler.compile("alter table x add column d double", sqlExecutionContext);
+                try {
+                    insert.createMethod(sqlExecutionContext);
+                    Assert.fail();
+                } catch (WriterOutOfDateException ignored) {
+                }
+            } finally {
+                insert.close();
+            }
+        });
+    }
+
+    @Test
+    public void testSqlInsertConcurrent() throws Exception {
+        configOverrideWalInsertEnabled = true;
+        assertMemoryLeak(() -> {
+            createTable();
+            final int threadCount = 4;
+            final int insertCount = 50;
+            final CyclicBarrier startBarrier = new CyclicBarrier(threadCount);
+            final CountDownLatch stopLatch = new CountDownLatch(threadCount);
+            final AtomicInteger errors = new AtomicInteger();
+            for (int i = 0; i < threadCount; i++) {
+                final int threadIndex = i;
+                new Thread(() -> {
+                    try (
+                            SqlCompiler compiler = new SqlCompiler(engine);
+                            SqlExecutionContext context = new SqlExecutionContextImpl(engine, 1)
+                    ) {
+                        startBarrier.await();
+                        for (int j = 0; j < insertCount; j++) {
+                            TestUtils.insert(
+                                    compiler,
+                                    context,
+                                    "insert into x values (" + threadIndex + ", 'a', 's', " + (j * threadCount + threadIndex + 1) * Timestamps.MINUTE_MICROS + ")"
+                            );
+                        }
+                    } catch (Throwable e) {
+                        e.printStackTrace();
+                        errors.incrementAndGet();
+                    } finally {
+                        Path.clearThreadLocals();
+                        stopLatch.countDown();
+                    }
+                }).start();
+            }
+            stopLatch.await();
+
+            Assert.assertEquals(0, errors.get());
+            Assert.assertEquals(threadCount * insertCount, engine.applyWal(AllowAllCairoSecurityContext.INSTANCE, "x"));
+            assertSql(
+                    "select i, count() from x order by i",
+                    "i\tcount\n" +
+                            "0\t50\n" +
+                            "1\t50\n" +
+                            "2\t50\n" +
+                            "3\t50\n"
+            );
+        });
+    }
+
+    private static void appendRow(WalWriter walWriter, long timestamp, int i, CharSequence sym, CharSequence str) {
+        WalWriter.Row row = walWriter.newRow(timestamp);
+        row.putInt(0, i);
+        row.putSym(1, sym);
+        row.putStr(2, str);
+        row.append();
+    }
+
+    private static void createTable() throws SqlException {
+        compiler.compile("create table x (i int, sym symbol, str string, ts timestamp) timestamp(ts) partition by DAY", sqlExecutionContext);
+    }
+
+    private static boolean segmentExists(long segmentId) {
+        try (Path path = new Path()) {
+            path.of(configuration.getRoot()).concat("x").concat(WalWriter.WAL_DIR_NAME).concat("0").slash().put(segmentId).$();
+            return FilesFacadeImpl.INSTANCE.exists(path);
+        }
+    }
+}
@@ -24,6 +24,8 @@
 
 package io.questdb.cutlass.line.tcp;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Random;
@@ -42,6 +44,7 @@ import io.questdb.cairo.TableModel;
 import io.questdb.cairo.TableReader;
 import io.questdb.cairo.TableReaderRecordCursor;
 import io.questdb.cairo.security.AllowAllCairoSecurityContext;
+import io.questdb.cairo.sql.SymbolTable;
 import io.questdb.cutlass.line.tcp.LineTcpMeasurementScheduler.NetworkIOJob;
 import io.questdb.cutlass.line.tcp.LineTcpMeasurementScheduler.TableUpdateDetails;
 import io.questdb.griffin.SqlCompiler;
@@ -65,8 +68,11 @@ import io.questdb.std.ObjList;
 import io.questdb.std.Unsafe;
 import io.questdb.std.datetime.microtime.MicrosecondClock;
 import io.questdb.std.datetime.microtime.MicrosecondClockImpl;
+import io.questdb.std.datetime.microtime.TimestampFormatUtils;
 import io.questdb.std.str.FloatingDirectCharSink;
 import io.questdb.std.str.LPSZ;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
 
 public class LineTcpConnectionContextTest extends AbstractCairoTest {
     private final static Log LOG = LogFactory.getLog(LineTcpConnectionContextTest.class);
@@ -76,7 +82,14 @@ public class LineTcpConnectionContextTest extends AbstractCairoTest {
     private LineTcpMeasurementScheduler scheduler;
     private boolean disconnected;
     private String recvBuffer;
+    // binary input is received before recvBuffer, in chunks of given size
+    private byte[] recvBytes;
+    private int recvBytesPos;
+    private int recvBytesChunkSize;
     private int nWriterThreads;
+    private int tableStealThreshold;
+    private int maxBinarySymbolDictionarySize;
+    private long maintenanceInterval;
     private WorkerPool workerPool;
     private int[] rebalanceLoadByThread;
     private int rebalanceNLoadCheckCycles = 0;
@@ -89,6 +102,14 @@ public class LineTcpConnectionContextTest extends AbstractCairoTest {
             @Override
             public int recv(long fd, long buffer, int bufferLen) {
                 Assert.assertEquals(FD, fd);
+                if (null != recvBytes && recvBytesPos < recvBytes.length) {
+                    int n = Math.min(Math.min(bufferLen, recvBytesChunkSize), recvBytes.length - recvBytesPos);
+                    for (int i = 0; i < n; i++) {
+                        Unsafe.getUnsafe().putByte(buffer + i, recvBytes[recvBytesPos++]);
+                    }
+                    return n;
+                }
+
                 if (null == recvBuffer) {
                     return -1;
                 }
@@ -103,7 +124,13 @@ public class LineTcpConnectionContextTest extends AbstractCairoTest {
             }
         };
         nWriterThreads = 2;
+        tableStealThreshold = 1000;
+        maxBinarySymbolDictionarySize = 1024 * 1024;
+        maintenanceInterval = 100;
         microSecondTicks = -1;
+        recvBytes = null;
+        recvBytesPos = 0;
+        recvBytesChunkSize = Integer.MAX_VALUE;
         lineTcpConfiguration = new DefaultLineTcpReceiverConfiguration() {
             @Override
             public int getNetMsgBufferSize() {
@@ -125,6 +152,21 @@ public class LineTcpConnectionContextTest extends AbstractCairoTest {
                 return 150;
             }
 
+            @Override
+            public long getMaintenanceInterval() {
+                return maintenanceInterval;
+            }
+
+            @Override
+            public int getMaxBinarySymbolDictionarySize() {
+                return maxBinarySymbolDictionarySize;
+            }
+
+            @Override
+            public int getTableStealThreshold() {
+                return tableStealThreshold;
+            }
+
             @Override
             public MicrosecondClock getMicrosecondClock() {
                 return new MicrosecondClockImpl() {
@@ -542,6 +584,60 @@ public class LineTcpConnectionContextTest extends AbstractCairoTest {
                 }, null);
     }
 
+    @Test
+    public void testBinaryInvalidHeader() throws Exception {
+        runInContext(() -> {
+            ByteBuffer bb = newBinaryBuffer();
+            bb.put(Integer.BYTES, (byte) (BinaryLineProtoParser.VERSION + 1));
+            recvBinary(bb);
+            handleContextIO();
+            Assert.assertTrue(disconnected);
+        });
+    }
+
+    @Test
+    public void testBinaryMeasurements() throws Exception {
+        runInContext(() -> testBinaryMeasurements(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testBinaryMeasurementsFragmented() throws Exception {
+        runInContext(() -> testBinaryMeasurements(7));
+    }
+
+    @Test
+    public void testBinarySymbolDictionaryFull() throws Exception {
+        maxBinarySymbolDictionarySize = 1024;
+        runInContext(() -> {
+            ByteBuffer bb = newBinaryBuffer();
+            // empty symbols take no value bytes, but their offsets count towards the limit
+            for (int i = 0; i < 100; i++) {
+                putBinarySymbol(bb, "");
+            }
+            recvBinary(bb);
+            handleContextIO();
+            Assert.assertTrue(disconnected);
+        });
+    }
+
+    @Test
+    public void testBinaryUnknownSymbol() throws Exception {
+        runInContext(() -> {
+            ByteBuffer bb = newBinaryBuffer();
+            putBinarySymbol(bb, "us-midwest");
+            putBinaryBatch(bb, "weather", 2, NewLineProtoParser.ENTITY_TYPE_TAG, "location", NewLineProtoParser.ENTITY_TYPE_FLOAT, "temperature");
+            bb.putLong(1465839830100400L).putInt(0).putDouble(82);
+            bb.putLong(1465839830100500L).putInt(1).putDouble(83);
+            recvBinary(bb);
+            handleContextIO();
+            Assert.assertTrue(disconnected);
+            waitForIOCompletion();
+            closeContext();
+            assertTable("location\ttemperature\ttimestamp\n" +
+                    "us-midwest\t82.0\t2016-06-13T17:43:50.100400Z\n", "weather");
+        });
+    }
+
     @Test
     public void testColumnConversion1() throws Exception {
         runInContext(() -> {
@@ -856,6 +952,41 @@ public class LineTcpConnectionContextTest extends AbstractCairoTest {
         });
     }
 
+    @Test
+    public void testMeasurementBatches() throws Exception {
+        runInContext(() -> {
+            // measurements of a table are packed into queue events until a line of another table arrives
+            // or event buffer is full, batches should not reorder or lose rows
+            StringSink lines = new StringSink();
+            StringSink expectedWeather = new StringSink();
+            StringSink expectedRain = new StringSink();
+            expectedWeather.put("location\ttemperature\ttimestamp\n");
+            expectedRain.put("location\tlevel\ttimestamp\n");
+            for (int i = 0; i < 100; i++) {
+                final long ts = 1465839830100400200L + i * 1000L;
+                lines.put("weather,location=us-midwest temperature=").put(i).put(' ').put(ts).put('\n');
+                expectedWeather.put("us-midwest\t").put(i).put(".0\t");
+                TimestampFormatUtils.appendDateTimeUSec(expectedWeather, ts / 1000);
+                expectedWeather.put('\n');
+                if (i % 7 == 0) {
+                    lines.put("rain,location=us-eastcoast level=").put(i).put("i ").put(ts).put('\n');
+                    expectedRain.put("us-eastcoast\t").put(i).put('\t');
+                    TimestampFormatUtils.appendDateTimeUSec(expectedRain, ts / 1000);
+                    expectedRain.put('\n');
+                }
+            }
+            recvBuffer = lines.toString();
+            do {
+                handleContextIO();
+                Assert.assertFalse(disconnected);
+            } while (recvBuffer.length() > 0);
+            waitForIOCompletion();
+            closeContext();
+            assertTable(expectedWeather.toString(), "weather");
+            assertTable(expectedRain.toString(), "rain");
+        });
+    }
+
     @Test
     public void testMultiplTablesWithMultipleWriterThreads() throws Exception {
         nWriterThreads = 5;
@@ -1008,6 +1139,82 @@ public class LineTcpConnectionContextTest extends AbstractCairoTest {
         });
     }
 
+    @Test
+    public void testSymbolsSharedOnceCommitted() throws Exception {
+        maintenanceInterval = 1000;
+        runInContext(() -> {
+            recvBuffer = "weather,location=us-midwest temperature=82 1465839830100400200\n";
+            handleContextIO();
+            Assert.assertFalse(disconnected);
+            TableUpdateDetails tableUpdateDetails = netIoJob.getTableUpdateDetails("weather");
+            Assert.assertNotNull(tableUpdateDetails);
+            // row is written, but not committed, writer can still discard the symbol key
+            LockSupport.parkNanos(200_000_000);
+            Assert.assertEquals(SymbolTable.VALUE_NOT_FOUND, tableUpdateDetails.getPublishedSymbolKey(0, "us-midwest"));
+
+            // connection stays open, writer is held until maintenance commit of writer thread
+            final long deadline = System.currentTimeMillis() + 10_000;
+            while (tableUpdateDetails.getPublishedSymbolKey(0, "us-midwest") == SymbolTable.VALUE_NOT_FOUND && System.currentTimeMillis() < deadline) {
+                LockSupport.parkNanos(10_000_000);
+            }
+            Assert.assertEquals(0, tableUpdateDetails.getPublishedSymbolKey(0, "us-midwest"));
+            waitForIOCompletion();
+            closeContext();
+            assertTable("location\ttemperature\ttimestamp\n" +
+                    "us-midwest\t82.0\t2016-06-13T17:43:50.100400Z\n", "weather");
+        });
+    }
+
+    @Test
+    public void testTableStealing() throws Exception {
+        tableStealThreshold = 10;
+        final int nTables = 3;
+        final int nRowsPerTable = 15;
+        final Thread ioThread = Thread.currentThread();
+        runInContext(
+                new FilesFacadeImpl() {
+                    @Override
+                    public long openRW(LPSZ name) {
+                        // weather0 and weather1 are assigned to the first writer thread, slow it down when
+                        // opening their writers, so that rows of both tables queue up
+                        if (Thread.currentThread() != ioThread && (Chars.contains(name, "weather0") || Chars.contains(name, "weather1"))) {
+                            LockSupport.parkNanos(10_000_000);
+                        }
+                        return super.openRW(name);
+                    }
+                },
+                () -> {
+                    final long timestampIncrementInNanos = 1000;
+                    long timestamp = 1465839830100400200L;
+                    StringBuilder lines = new StringBuilder();
+                    for (int i = 0; i < nRowsPerTable; i++) {
+                        for (int nTable = 0; nTable < nTables; nTable++) {
+                            lines.append("weather").append(nTable).append(",location=us-midwest temperature=82 ").append(timestamp).append('\n');
+                        }
+                        timestamp += timestampIncrementInNanos;
+                    }
+                    recvBuffer = lines.toString();
+                    do {
+                        handleContextIO();
+                        Assert.assertFalse(disconnected);
+                    } while (recvBuffer.length() > 0);
+                    waitForIOCompletion();
+                    Assert.assertTrue(scheduler.getNSteals() > 0);
+
+                    StringSink sink = new StringSink();
+                    engine.getMetrics().lineTcp().scrapeIntoPrometheus(sink);
+                    for (int nTable = 0; nTable < nTables; nTable++) {
+                        TestUtils.assertContains(sink, "questdb_line_tcp_table_queued_rows{table=\"weather" + nTable + "\"} 0\n");
+                    }
+                    closeContext();
+                    for (int nTable = 0; nTable < nTables; nTable++) {
+                        assertTableCount("weather" + nTable, nRowsPerTable, timestamp - timestampIncrementInNanos);
+                    }
+                },
+                null
+        );
+    }
+
     @Test
     public void testThreadsWithUnbalancedLoad() throws Exception {
         nWriterThreads = 3;
@@ -1114,6 +1321,27 @@ public class LineTcpConnectionContextTest extends AbstractCairoTest {
         });
     }
 
+    @Test
+    public void testNonAsciiValues() throws Exception {
+        runInContext(() -> {
+            // decoded values take fewer chars than their UTF8 bytes
+            recvBuffer = "weather,location=\u0449\u0443\u043a\u0430 note=\"\u043f\u0440\u0438\u0432\u0435\u0442 \u043c\u0438\u0440\",temperature=82 1465839830100400200\n" +
+                    "weather,location=us-midwest note=\"ok\",temperature=83 1465839830100500200\n" +
+                    "weather,location=\u0449\u0443\u043a\u0430 note=\"\u00e9t\u00e9\",temperature=84 1465839830100600200\n";
+            do {
+                handleContextIO();
+                Assert.assertFalse(disconnected);
+            } while (recvBuffer.length() > 0);
+            waitForIOCompletion();
+            closeContext();
+            String expected = "location\tnote\ttemperature\ttimestamp\n" +
+                    "\u0449\u0443\u043a\u0430\t\u043f\u0440\u0438\u0432\u0435\u0442 \u043c\u0438\u0440\t82.0\t2016-06-13T17:43:50.100400Z\n" +
+                    "us-midwest\tok\t83.0\t2016-06-13T17:43:50.100500Z\n" +
+                    "\u0449\u0443\u043a\u0430\t\u00e9t\u00e9\t84.0\t2016-06-13T17:43:50.100600Z\n";
+            assertTable(expected, "weather");
+        });
+    }
+
     @Test
     public void testSymbolOrder1() throws Exception {
         addTable();
@@ -1184,6 +1412,37 @@ public class LineTcpConnectionContextTest extends AbstractCairoTest {
         }
     }
 
+    private static ByteBuffer newBinaryBuffer() {
+        ByteBuffer bb = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        bb.putInt(BinaryLineProtoParser.MAGIC).put(BinaryLineProtoParser.VERSION);
+        return bb;
+    }
+
+    private static void putBinaryBatch(ByteBuffer bb, String tableName, int rowCount, Object... columns) {
+        bb.put(BinaryLineProtoParser.FRAME_BATCH);
+        putBinaryString(bb, tableName);
+        bb.putInt(columns.length / 2);
+        for (int i = 0; i < columns.length; i += 2) {
+            bb.put((Byte) columns[i]);
+            putBinaryString(bb, (String) columns[i + 1]);
+        }
+        bb.putInt(rowCount);
+    }
+
+    private static void putBinaryString(ByteBuffer bb, String value) {
+        if (value == null) {
+            bb.putInt(BinaryLineProtoParser.ABSENT_LENGTH);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        bb.putInt(bytes.length).put(bytes);
+    }
+
+    private static void putBinarySymbol(ByteBuffer bb, String value) {
+        bb.put(BinaryLineProtoParser.FRAME_SYMBOL);
+        putBinaryString(bb, value);
+    }
+
     private void assertTable(CharSequence expected, CharSequence tableName) {
         try (TableReader reader = new TableReader(configuration, tableName)) {
             assertCursorTwoPass(expected, reader.getCursor(), reader.getMetadata());
@@ -1221,6 +1480,12 @@ public class LineTcpConnectionContextTest extends AbstractCairoTest {
         }
     }
 
+    private void recvBinary(ByteBuffer bb) {
+        recvBytes = Arrays.copyOf(bb.array(), bb.position());
+        recvBytesPos = 0;
+        recvBuffer = "";
+    }
+
     private void runInContext(Runnable r) throws Exception {
         runInContext(r, null);
     }
@@ -1453,6 +1718,79 @@ public class LineTcpConnectionContextTest extends AbstractCairoTest {
         }
     }
 
+    private void testBinaryMeasurements(int chunkSize) {
+        // rows do not fit receive buffer, some of the values are absent
+        ByteBuffer bb = newBinaryBuffer();
+        putBinarySymbol(bb, "us-midwest");
+        putBinarySymbol(bb, "us-eastcoast");
+        StringSink expectedWeather = new StringSink();
+        expectedWeather.put("location\ttemperature\thumidity\tnote\training\ttimestamp\n");
+        final int rowCount = 50;
+        putBinaryBatch(
+                bb,
+                "weather",
+                rowCount,
+                NewLineProtoParser.ENTITY_TYPE_TAG, "location",
+                NewLineProtoParser.ENTITY_TYPE_FLOAT, "temperature",
+                NewLineProtoParser.ENTITY_TYPE_INTEGER, "humidity",
+                NewLineProtoParser.ENTITY_TYPE_STRING, "note",
+                NewLineProtoParser.ENTITY_TYPE_BOOLEAN, "raining"
+        );
+        for (int i = 0; i < rowCount; i++) {
+            final long ts = 1465839830100400L + i * 1000L;
+            if (i == 10) {
+                // server time
+                microSecondTicks = ts;
+                bb.putLong(Long.MIN_VALUE);
+            } else {
+                bb.putLong(ts);
+            }
+            final boolean hasLocation = i % 5 != 4;
+            bb.putInt(hasLocation ? i % 2 : BinaryLineProtoParser.ABSENT_SYMBOL);
+            bb.putDouble(i + 0.5);
+            final boolean hasHumidity = i % 3 != 2;
+            bb.putLong(hasHumidity ? i : Long.MIN_VALUE);
+            final String note = i % 4 != 1 ? "note " + i : null;
+            putBinaryString(bb, note);
+            bb.put((byte) (i % 2 == 0 ? 1 : 0));
+
+            expectedWeather.put(hasLocation ? (i % 2 == 0 ? "us-midwest" : "us-eastcoast") : "").put('\t');
+            expectedWeather.put(i + 0.5).put('\t');
+            expectedWeather.put(hasHumidity ? String.valueOf(i) : "NaN").put('\t');
+            expectedWeather.put(note != null ? note : "").put('\t');
+            expectedWeather.put(i % 2 == 0).put('\t');
+            TimestampFormatUtils.appendDateTimeUSec(expectedWeather, ts);
+            expectedWeather.put('\n');
+        }
+
+        // symbols stay defined across batches
+        putBinarySymbol(bb, "\u0449\u0443\u043a\u0430");
+        putBinaryBatch(
+                bb,
+                "rain",
+                3,
+                NewLineProtoParser.ENTITY_TYPE_TAG, "location",
+                NewLineProtoParser.ENTITY_TYPE_INTEGER, "level"
+        );
+        bb.putLong(1465839830100400L).putInt(2).putLong(1);
+        bb.putLong(1465839830100500L).putInt(1).putLong(2);
+        bb.putLong(1465839830100600L).putInt(2).putLong(3);
+
+        recvBinary(bb);
+        recvBytesChunkSize = chunkSize;
+        do {
+            handleContextIO();
+            Assert.assertFalse(disconnected);
+        } while (recvBytesPos < recvBytes.length);
+        waitForIOCompletion();
+        closeContext();
+        assertTable(expectedWeather, "weather");
+        assertTable("location\tlevel\ttimestamp\n" +
+                "\u0449\u0443\u043a\u0430\t1\t2016-06-13T17:43:50.100400Z\n" +
+                "us-eastcoast\t2\t2016-06-13T17:43:50.100500Z\n" +
+                "\u0449\u0443\u043a\u0430\t3\t2016-06-13T17:43:50.100600Z\n", "rain");
+    }
+
     private void waitForIOCompletion() {
         waitForIOCompletion(true);
     }
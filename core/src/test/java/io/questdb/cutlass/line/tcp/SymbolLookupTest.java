@@ -0,0 +1,118 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.cutlass.line.tcp;
+
+import io.questdb.cairo.sql.SymbolTable;
+import io.questdb.std.str.StringSink;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SymbolLookupTest {
+
+    @Test
+    public void testConcurrentReaders() throws Exception {
+        final int nReaders = 3;
+        final int nSymbols = 100_000;
+        final SymbolLookup lookup = new SymbolLookup(nSymbols);
+        final CyclicBarrier barrier = new CyclicBarrier(nReaders + 1);
+        final AtomicInteger errors = new AtomicInteger();
+        final Thread[] readers = new Thread[nReaders];
+        for (int i = 0; i < nReaders; i++) {
+            readers[i] = new Thread(() -> {
+                final StringSink sink = new StringSink();
+                try {
+                    barrier.await();
+                    int found = 0;
+                    while (found < nSymbols) {
+                        found = 0;
+                        for (int k = 0; k < nSymbols; k++) {
+                            sink.clear();
+                            sink.put("sym").put(k);
+                            final int key = lookup.keyOf(sink);
+                            if (key != SymbolTable.VALUE_NOT_FOUND) {
+                                if (key != k) {
+                                    errors.incrementAndGet();
+                                }
+                                found++;
+                            }
+                        }
+                    }
+                } catch (Throwable e) {
+                    e.printStackTrace();
+                    errors.incrementAndGet();
+                }
+            });
+            readers[i].start();
+        }
+
+        barrier.await();
+        final StringSink sink = new StringSink();
+        for (int k = 0; k < nSymbols; k++) {
+            sink.clear();
+            sink.put("sym").put(k);
+            lookup.put(sink, k);
+        }
+        for (int i = 0; i < nReaders; i++) {
+            readers[i].join();
+        }
+        Assert.assertEquals(0, errors.get());
+        Assert.assertEquals(nSymbols, lookup.size());
+    }
+
+    @Test
+    public void testMaxSize() {
+        final SymbolLookup lookup = new SymbolLookup(10);
+        for (int i = 0; i < 20; i++) {
+            lookup.put("sym" + i, i);
+        }
+        Assert.assertEquals(10, lookup.size());
+        Assert.assertEquals(9, lookup.keyOf("sym9"));
+        Assert.assertEquals(SymbolTable.VALUE_NOT_FOUND, lookup.keyOf("sym10"));
+    }
+
+    @Test
+    public void testPutAndResize() {
+        final SymbolLookup lookup = new SymbolLookup(Integer.MAX_VALUE);
+        Assert.assertEquals(SymbolTable.VALUE_NOT_FOUND, lookup.keyOf("sym0"));
+        for (int i = 0; i < 1000; i++) {
+            lookup.put("sym" + i, i);
+        }
+        // existing value keeps its key
+        lookup.put("sym5", 42);
+        Assert.assertEquals(1000, lookup.size());
+
+        final StringSink sink = new StringSink();
+        for (int i = 0; i < 1000; i++) {
+            sink.clear();
+            sink.put("sym").put(i);
+            Assert.assertEquals(i, lookup.keyOf(sink));
+        }
+        Assert.assertEquals(SymbolTable.VALUE_NOT_FOUND, lookup.keyOf("sym1000"));
+    }
+}
@@ -0,0 +1,486 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin;
+
+import io.questdb.cairo.TableReader;
+import io.questdb.cairo.TableReaderRecordCursor;
+import io.questdb.cairo.TableWriter;
+import io.questdb.cairo.security.AllowAllCairoSecurityContext;
+import io.questdb.cairo.sql.PageFrame;
+import io.questdb.cairo.sql.PageFrameCursor;
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.cairo.vm.CompressedColumnReadOnlyMemory;
+import io.questdb.cairo.vm.ReadOnlyVirtualMemory;
+import io.questdb.griffin.engine.functions.rnd.SharedRandom;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.Chars;
+import io.questdb.std.Files;
+import io.questdb.std.FilesFacade;
+import io.questdb.std.FilesFacadeImpl;
+import io.questdb.std.LongList;
+import io.questdb.std.Rnd;
+import io.questdb.std.Rows;
+import io.questdb.std.Unsafe;
+import io.questdb.std.datetime.microtime.TimestampFormatUtils;
+import io.questdb.std.str.LPSZ;
+import io.questdb.std.str.Path;
+import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.questdb.griffin.CompiledQuery.ALTER;
+
+public class AlterTableCompressPartitionTest extends AbstractGriffinTest {
+    private static final Log LOG = LogFactory.getLog(AlterTableCompressPartitionTest.class);
+
+    @Before
+    public void setUp3() {
+        SharedRandom.RANDOM.set(new Rnd());
+    }
+
+    @Test
+    public void testAddIndexToCompressedPartitions() throws Exception {
+        assertMemoryLeak(() -> {
+            createXY();
+            compiler.compile("alter table x compress partition where timestamp < '2018-01-07'", sqlExecutionContext);
+            assertCompressed("2018-01-03", "sym", true);
+
+            compiler.compile("alter table x alter column sym add index", sqlExecutionContext);
+            assertCursors("y where sym = 'msft'", "x where sym = 'msft'");
+        });
+    }
+
+    @Test
+    public void testAutomaticCompression() throws Exception {
+        assertMemoryLeak(() -> {
+            createY();
+            configOverridePartitionCompressAfter = 2;
+            compiler.compile("create table x as (select * from y) timestamp (timestamp) partition by DAY", sqlExecutionContext);
+
+            assertCompressed("2018-01-01", "timestamp", true);
+            assertCompressed("2018-01-07", "px", true);
+            assertCompressed("2018-01-08", "px", false);
+            assertCompressed("2018-01-09", "px", false);
+            assertCursors("y", "x");
+
+            compiler.compile("insert into x select * from y where timestamp > '2018-01-08'", sqlExecutionContext);
+            compiler.compile("insert into y select * from y where timestamp > '2018-01-08'", sqlExecutionContext);
+            assertCursors("y", "x");
+        });
+    }
+
+    @Test
+    public void testAutomaticCompressionAfterRestart() throws Exception {
+        final AtomicInteger oldPartitionOpenCount = new AtomicInteger();
+        final FilesFacade ff = new FilesFacadeImpl() {
+            @Override
+            public long openRO(LPSZ name) {
+                // "j" is not compressible, its .d file stays in compressed partitions
+                if (Chars.endsWith(name, Files.SEPARATOR + "j.d") && !Chars.contains(name, "2018-01-08") && !Chars.contains(name, "2018-01-09")) {
+                    oldPartitionOpenCount.incrementAndGet();
+                }
+                return super.openRO(name);
+            }
+        };
+        assertMemoryLeak(ff, () -> {
+            createY();
+            configOverridePartitionCompressAfter = 2;
+            compiler.compile("create table x as (select * from y) timestamp (timestamp) partition by DAY", sqlExecutionContext);
+            assertCompressed("2018-01-07", "px", true);
+            assertCompressed("2018-01-08", "px", false);
+            engine.releaseAllWriters();
+
+            // reopened writer carries on from the newest compressed partition
+            oldPartitionOpenCount.set(0);
+            try (TableWriter writer = engine.getWriter(AllowAllCairoSecurityContext.INSTANCE, "x", "test")) {
+                TableWriter.Row row = writer.newRow(TimestampFormatUtils.parseTimestamp("2018-01-11T00:00:00.000000Z"));
+                row.putInt(0, 1001);
+                row.append();
+                writer.commit();
+            }
+            Assert.assertEquals(0, oldPartitionOpenCount.get());
+            assertCompressed("2018-01-08", "px", true);
+            assertCompressed("2018-01-09", "px", false);
+        });
+    }
+
+    @Test
+    public void testCompressActivePartition() throws Exception {
+        assertMemoryLeak(() -> {
+            createXY();
+            try {
+                compiler.compile("alter table x compress partition list '2018-01-09'", sqlExecutionContext);
+                Assert.fail();
+            } catch (SqlException e) {
+                Assert.assertEquals(38, e.getPosition());
+                TestUtils.assertContains(e.getFlyweightMessage(), "could not compress partition '2018-01-09'");
+            }
+        });
+    }
+
+    @Test
+    public void testCompressExpectPartition() throws Exception {
+        assertMemoryLeak(() -> {
+            createXY();
+            try {
+                compiler.compile("alter table x compress column amt", sqlExecutionContext);
+                Assert.fail();
+            } catch (SqlException e) {
+                Assert.assertEquals(23, e.getPosition());
+                TestUtils.assertContains(e.getFlyweightMessage(), "'partition' expected");
+            }
+        });
+    }
+
+    @Test
+    public void testCompressPartitionList() throws Exception {
+        assertMemoryLeak(() -> {
+            createXY();
+            Assert.assertEquals(ALTER, compiler.compile("alter table x compress partition list '2018-01-03', '2018-01-05'", sqlExecutionContext).getType());
+
+            for (String column : new String[]{"i", "sym", "timestamp", "k", "ik", "seq", "px"}) {
+                assertCompressed("2018-01-03", column, true);
+                assertCompressed("2018-01-05", column, true);
+                assertCompressed("2018-01-04", column, false);
+            }
+            // types without codec and incompressible columns are left as is
+            assertCompressed("2018-01-03", "e", false);
+            assertCompressed("2018-01-03", "c", false);
+            assertCompressed("2018-01-03", "j", false);
+
+            assertCursors("y", "x");
+            assertCursors("y where timestamp in '2018-01-05'", "x where timestamp in '2018-01-05'");
+            assertCursors(
+                    "select sym, sum(px), count(), min(timestamp), max(seq), sum(i) from y order by sym",
+                    "select sym, sum(px), count(), min(timestamp), max(seq), sum(i) from x order by sym"
+            );
+            assertCursors(
+                    "select timestamp, avg(px), last(seq) from y sample by 1h",
+                    "select timestamp, avg(px), last(seq) from x sample by 1h"
+            );
+
+            // second compression is a no-op
+            compiler.compile("alter table x compress partition list '2018-01-03'", sqlExecutionContext);
+            assertCursors("y", "x");
+        });
+    }
+
+    @Test
+    public void testCompressPartitionWhere() throws Exception {
+        assertMemoryLeak(() -> {
+            createXY();
+            Assert.assertEquals(ALTER, compiler.compile("alter table x compress partition where timestamp < '2018-01-05'", sqlExecutionContext).getType());
+            assertCompressed("2018-01-01", "px", true);
+            assertCompressed("2018-01-04", "px", true);
+            assertCompressed("2018-01-05", "px", false);
+            assertCursors("y", "x");
+        });
+    }
+
+    @Test
+    public void testDecodedPartitionsAreReleased() throws Exception {
+        assertMemoryLeak(() -> {
+            createXY();
+            compiler.compile("alter table x compress partition where timestamp < '2018-01-07'", sqlExecutionContext);
+            try (TableReader reader = engine.getReader(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                final int px = reader.getMetadata().getColumnIndex("px");
+                // opening partition does not decode it
+                reader.openPartition(0);
+                Assert.assertFalse(isDecoded(reader, 0, px));
+
+                final TableReaderRecordCursor cursor = reader.getCursor();
+                final Record record = cursor.getRecord();
+                int lastPartitionIndex = -1;
+                while (cursor.hasNext()) {
+                    final int partitionIndex = Rows.toPartitionIndex(record.getRowId());
+                    record.getDouble(px);
+                    if (partitionIndex != lastPartitionIndex && partitionIndex < 6) {
+                        Assert.assertTrue(isDecoded(reader, partitionIndex, px));
+                        if (lastPartitionIndex != -1) {
+                            Assert.assertFalse(isDecoded(reader, lastPartitionIndex, px));
+                        }
+                        lastPartitionIndex = partitionIndex;
+                    }
+                }
+
+                // released partition is decoded again on access
+                final Record recordB = cursor.getRecordB();
+                cursor.recordAt(recordB, Rows.toRowID(0, 50));
+                Assert.assertEquals(2.0, recordB.getDouble(px), 0.0000001);
+                Assert.assertTrue(isDecoded(reader, 0, px));
+            }
+
+            assertCursors("y", "x");
+            try (TableReader reader = engine.getReader(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                // pooled reader does not hold on to decoded partitions
+                for (int i = 0; i < 6; i++) {
+                    reader.openPartition(i);
+                    for (int j = 0, n = reader.getMetadata().getColumnCount(); j < n; j++) {
+                        final ReadOnlyVirtualMemory mem = reader.getColumn(TableReader.getPrimaryColumnIndex(reader.getColumnBase(i), j));
+                        if (mem instanceof CompressedColumnReadOnlyMemory) {
+                            Assert.assertFalse(((CompressedColumnReadOnlyMemory) mem).isDecoded());
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testDecodedOnceByConcurrentReaders() throws Exception {
+        assertMemoryLeak(() -> {
+            createXY();
+            compiler.compile("alter table x compress partition list '2018-01-03'", sqlExecutionContext);
+            try (TableReader reader = engine.getReader(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                reader.openPartition(2);
+                final ReadOnlyVirtualMemory mem = reader.getColumn(TableReader.getPrimaryColumnIndex(reader.getColumnBase(2), reader.getMetadata().getColumnIndex("px")));
+                Assert.assertTrue(mem instanceof CompressedColumnReadOnlyMemory);
+
+                final int threadCount = 4;
+                final CyclicBarrier barrier = new CyclicBarrier(threadCount);
+                final CountDownLatch doneLatch = new CountDownLatch(threadCount);
+                final long[] addresses = new long[threadCount];
+                final AtomicInteger errors = new AtomicInteger();
+                for (int i = 0; i < threadCount; i++) {
+                    final int index = i;
+                    new Thread(() -> {
+                        try {
+                            barrier.await();
+                            addresses[index] = mem.getPageAddress(0);
+                        } catch (Throwable e) {
+                            LOG.error().$(e).$();
+                            errors.incrementAndGet();
+                        } finally {
+                            doneLatch.countDown();
+                        }
+                    }).start();
+                }
+                doneLatch.await();
+                Assert.assertEquals(0, errors.get());
+                for (int i = 1; i < threadCount; i++) {
+                    Assert.assertEquals(addresses[0], addresses[i]);
+                }
+            }
+            assertCursors("y", "x");
+        });
+    }
+
+    @Test
+    public void testDecodedPartitionsArePinnedByPageFrames() throws Exception {
+        assertMemoryLeak(() -> {
+            createXY();
+            compiler.compile("alter table x compress partition where timestamp < '2018-01-07'", sqlExecutionContext);
+            try (TableReader reader = engine.getReader(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                final int px = reader.getMetadata().getColumnIndex("px");
+                reader.openPartition(0);
+                reader.pinDecodedColumns(0);
+                Assert.assertTrue(isDecoded(reader, 0, px));
+
+                // cursor moving past partition does not free data that page frames still point to
+                reader.releaseDecodedColumns(0);
+                Assert.assertTrue(isDecoded(reader, 0, px));
+                reader.unpinDecodedColumns(0);
+                Assert.assertFalse(isDecoded(reader, 0, px));
+
+                // unpinned partition stays decoded until it is released
+                reader.pinDecodedColumns(0);
+                reader.unpinDecodedColumns(0);
+                Assert.assertTrue(isDecoded(reader, 0, px));
+                reader.releaseDecodedColumns(0);
+                Assert.assertFalse(isDecoded(reader, 0, px));
+            }
+
+            try (RecordCursorFactory factory = compiler.compile("select timestamp, px from x", sqlExecutionContext).getRecordCursorFactory()) {
+                Assert.assertTrue(factory.supportPageFrameCursor());
+                final int px = factory.getMetadata().getColumnIndex("px");
+                final LongList addresses = new LongList();
+                final LongList values = new LongList();
+                try (PageFrameCursor cursor = factory.getPageFrameCursor(sqlExecutionContext)) {
+                    PageFrame frame;
+                    while ((frame = cursor.next()) != null) {
+                        addresses.add(frame.getPageAddress(px));
+                        values.add(Unsafe.getUnsafe().getLong(frame.getPageAddress(px)));
+                    }
+                    // frames of all partitions stay readable until the cursor is closed
+                    Assert.assertTrue(addresses.size() > 5);
+                    for (int i = 0, n = addresses.size(); i < n; i++) {
+                        Assert.assertEquals(values.getQuick(i), Unsafe.getUnsafe().getLong(addresses.getQuick(i)));
+                    }
+                }
+            }
+
+            try (TableReader reader = engine.getReader(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+                // reader went back to the pool and released decoded data
+                final int px = reader.getMetadata().getColumnIndex("px");
+                for (int i = 0; i < 6; i++) {
+                    reader.openPartition(i);
+                    Assert.assertFalse(isDecoded(reader, i, px));
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testDropColumnOfCompressedPartition() throws Exception {
+        assertMemoryLeak(() -> {
+            createXY();
+            compiler.compile("alter table x compress partition list '2018-01-03'", sqlExecutionContext);
+            assertCompressed("2018-01-03", "seq", true);
+            compiler.compile("alter table x drop column seq", sqlExecutionContext);
+            compiler.compile("alter table y drop column seq", sqlExecutionContext);
+            assertFile("2018-01-03", "seq", ".z", false);
+            assertCursors("y", "x");
+        });
+    }
+
+    @Test
+    public void testDropFirstPartitionNextCompressed() throws Exception {
+        assertMemoryLeak(() -> {
+            createXY();
+            compiler.compile("alter table x compress partition list '2018-01-01', '2018-01-02'", sqlExecutionContext);
+            compiler.compile("alter table x drop partition list '2018-01-01'", sqlExecutionContext);
+            compiler.compile("alter table y drop partition list '2018-01-01'", sqlExecutionContext);
+
+            try (
+                    TableReader x = engine.getReader(AllowAllCairoSecurityContext.INSTANCE, "x");
+                    TableReader y = engine.getReader(AllowAllCairoSecurityContext.INSTANCE, "y")
+            ) {
+                Assert.assertEquals(y.getMinTimestamp(), x.getMinTimestamp());
+            }
+            assertCursors("y", "x");
+        });
+    }
+
+    @Test
+    public void testO3IntoCompressedPartition() throws Exception {
+        assertMemoryLeak(() -> {
+            createXY();
+            compiler.compile("alter table x compress partition where timestamp < '2018-01-08'", sqlExecutionContext);
+            assertCursors("y", "x");
+
+            final String o3 = " select" +
+                    " cast(x as int) i," +
+                    " rnd_symbol('msft','ibm', 'googl') sym," +
+                    " round(rnd_double(0)*100, 3) amt," +
+                    " to_timestamp('2018-01-03', 'yyyy-MM-dd') + x * 1000000000 timestamp," +
+                    " rnd_boolean() b," +
+                    " rnd_str('ABC', 'CDE', null, 'XYZ') c," +
+                    " rnd_double(2) d," +
+                    " rnd_float(2) e," +
+                    " rnd_short(10,1024) f," +
+                    " rnd_date(to_date('2015', 'yyyy'), to_date('2016', 'yyyy'), 2) g," +
+                    " rnd_symbol(4,4,4,2) ik," +
+                    " rnd_long() j," +
+                    " timestamp_sequence(0, 1000000000) k," +
+                    " rnd_byte(2,50) l," +
+                    " rnd_bin(10, 20, 2) m," +
+                    " rnd_str(5,16,2) n," +
+                    " x * 3 seq," +
+                    " cast(x / 20 as double) px" +
+                    " from long_sequence(100)";
+            compiler.compile("create table z as (" + o3 + ")", sqlExecutionContext);
+            compiler.compile("insert into x select * from z", sqlExecutionContext);
+            compiler.compile("insert into y select * from z", sqlExecutionContext);
+
+            assertCursors("y", "x");
+            assertCursors("y where timestamp in '2018-01-03'", "x where timestamp in '2018-01-03'");
+        });
+    }
+
+    @Test
+    public void testRenameColumnOfCompressedPartition() throws Exception {
+        assertMemoryLeak(() -> {
+            createXY();
+            compiler.compile("alter table x compress partition list '2018-01-03'", sqlExecutionContext);
+            compiler.compile("alter table x rename column px to price", sqlExecutionContext);
+            assertFile("2018-01-03", "px", ".z", false);
+            assertCompressed("2018-01-03", "price", true);
+            assertCursors("select px from y", "select price px from x");
+        });
+    }
+
+    private static void assertCompressed(String partition, String column, boolean compressed) {
+        assertFile(partition, column, ".z", compressed);
+        assertFile(partition, column, ".d", !compressed);
+    }
+
+    private static void assertFile(String partition, String column, String suffix, boolean exists) {
+        try (Path path = new Path()) {
+            path.of(root).concat("x").concat(partition).concat(column).put(suffix).$();
+            Assert.assertEquals(path.toString(), exists, FilesFacadeImpl.INSTANCE.exists(path));
+        }
+    }
+
+    private static boolean isDecoded(TableReader reader, int partitionIndex, int columnIndex) {
+        final ReadOnlyVirtualMemory mem = reader.getColumn(TableReader.getPrimaryColumnIndex(reader.getColumnBase(partitionIndex), columnIndex));
+        Assert.assertTrue(mem instanceof CompressedColumnReadOnlyMemory);
+        return ((CompressedColumnReadOnlyMemory) mem).isDecoded();
+    }
+
+    private void assertCursors(String expected, String actual) throws SqlException {
+        TestUtils.assertSqlCursors(compiler, sqlExecutionContext, expected, actual, LOG);
+    }
+
+    private void createXY() throws SqlException {
+        createY();
+        compiler.compile("create table x as (select * from y) timestamp (timestamp) partition by DAY", sqlExecutionContext);
+    }
+
+    private void createY() throws SqlException {
+        compiler.compile(
+                "create table y as (" +
+                        "select" +
+                        " cast(x as int) i," +
+                        " rnd_symbol('msft','ibm', 'googl') sym," +
+                        " round(rnd_double(0)*100, 3) amt," +
+                        " to_timestamp('2018-01', 'yyyy-MM') + x * 720000000 timestamp," +
+                        " rnd_boolean() b," +
+                        " rnd_str('ABC', 'CDE', null, 'XYZ') c," +
+                        " rnd_double(2) d," +
+                        " rnd_float(2) e," +
+                        " rnd_short(10,1024) f," +
+                        " rnd_date(to_date('2015', 'yyyy'), to_date('2016', 'yyyy'), 2) g," +
+                        " rnd_symbol(4,4,4,2) ik," +
+                        " rnd_long() j," +
+                        " timestamp_sequence(0, 1000000000) k," +
+                        " rnd_byte(2,50) l," +
+                        " rnd_bin(10, 20, 2) m," +
+                        " rnd_str(5,16,2) n," +
+                        " x * 3 seq," +
+                        " cast(x / 20 as double) px" +
+                        " from long_sequence(1000)" +
+                        ") timestamp (timestamp) partition by DAY",
+                sqlExecutionContext
+        );
+    }
+}
@@ -372,6 +372,30 @@ public class AlterTableDropPartitionTest extends AbstractGriffinTest {
         );
     }
 
+    @Test
+    public void testDropTwoPartitionsByHour() throws Exception {
+        assertMemoryLeak(() -> {
+                    createX("HOUR", 60000000);
+
+                    assertPartitionResult("count\n" +
+                            "59\n", "2018-01-01T00");
+
+                    assertPartitionResult("count\n" +
+                            "60\n", "2018-01-01T05");
+
+                    Assert.assertEquals(ALTER, compiler.compile("alter table x drop partition list '2018-01-01T00', '2018-01-01T05'", sqlExecutionContext).getType());
+
+                    String expectedAfterDrop = "count\n" +
+                            "0\n";
+
+                    assertPartitionResult(expectedAfterDrop, "2018-01-01T00");
+                    assertPartitionResult(expectedAfterDrop, "2018-01-01T05");
+                    assertPartitionResult("count\n" +
+                            "60\n", "2018-01-01T06");
+                }
+        );
+    }
+
     @Test
     public void testDropTwoPartitionsByMonth() throws Exception {
         assertMemoryLeak(() -> {
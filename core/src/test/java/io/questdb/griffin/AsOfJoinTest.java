@@ -24,8 +24,14 @@
 
 package io.questdb.griffin;
 
+import io.questdb.cairo.sql.RecordCursorFactory;
 import io.questdb.griffin.engine.functions.rnd.SharedRandom;
+import io.questdb.griffin.engine.join.AsOfJoinPageFrameRecordCursorFactory;
+import io.questdb.griffin.engine.table.SelectedRecordCursorFactory;
 import io.questdb.std.Rnd;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -170,6 +176,79 @@ public class AsOfJoinTest extends AbstractGriffinTest {
         );
     }
 
+    @Test
+    public void testAsOfJoinPageFrame() throws Exception {
+        assertMemoryLeak(() -> {
+            compiler.compile(
+                    "create table x as (select rnd_symbol('a','b','c','d',null) s, rnd_int(0, 20, 2) i, rnd_long() l," +
+                            " timestamp_sequence(0, 1000000000) ts from long_sequence(1000)) timestamp(ts) partition by DAY",
+                    sqlExecutionContext
+            );
+            compiler.compile(
+                    "create table y as (select rnd_symbol('c','b','e',null) s, rnd_int(0, 20, 2) i, rnd_double() d," +
+                            " timestamp_sequence(10000, 70000000) ts from long_sequence(10000)) timestamp(ts) partition by DAY",
+                    sqlExecutionContext
+            );
+            assertPageFrameAsOfJoin(
+                    "select x.ts, x.l, y.d, y.ts from x asof join y",
+                    "select x.ts, x.l, y.d, y.ts from x lt join y",
+                    "select x.s, x.ts, y.s, y.d, y.ts from x asof join y on (s)",
+                    "select x.s, x.ts, y.s, y.d, y.ts from x lt join y on (s)",
+                    "select x.i, x.ts, y.i, y.d, y.ts from x asof join y on (i)",
+                    "select x.i, x.ts, y.i, y.d, y.ts from x lt join y on (i)",
+                    "select x.i, x.s, x.ts, y.d, y.ts from x asof join y on (i, s)",
+                    "select x.ts, y.d, y.ts from (x where ts in '1970-01-02') x asof join y",
+                    "select x.ts, y.d, y.ts from (x where ts in '1970-01-03') x asof join (y where ts in '1970-01-02') y on (s)",
+                    "select x.ts, y.d, y.ts from x asof join (y where ts > '2100-01-01') y"
+            );
+        });
+    }
+
+    @Test
+    public void testAsOfJoinPageFrameColumnTop() throws Exception {
+        assertMemoryLeak(() -> {
+            compiler.compile(
+                    "create table x as (select rnd_symbol('a','b','c') s, rnd_int(0, 5, 0) i," +
+                            " timestamp_sequence(0, 1000000000) ts from long_sequence(300)) timestamp(ts) partition by DAY",
+                    sqlExecutionContext
+            );
+            compiler.compile(
+                    "create table y as (select rnd_double() d, timestamp_sequence(0, 100000000) ts from long_sequence(1000)) timestamp(ts) partition by DAY",
+                    sqlExecutionContext
+            );
+            compiler.compile("alter table y add column s symbol", sqlExecutionContext);
+            compiler.compile("alter table y add column i int", sqlExecutionContext);
+            compiler.compile(
+                    "insert into y select rnd_double() d, timestamp_sequence(100000000000, 100000000) ts," +
+                            " rnd_symbol('a','b','c') s, rnd_int(0, 5, 0) i from long_sequence(1000)",
+                    sqlExecutionContext
+            );
+            assertPageFrameAsOfJoin(
+                    "select x.s, x.ts, y.s, y.d, y.ts from x asof join y on (s)",
+                    "select x.i, x.ts, y.i, y.d, y.ts from x asof join y on (i)",
+                    "select x.ts, y.s, y.i, y.d, y.ts from x lt join y"
+            );
+        });
+    }
+
+    @Test
+    public void testAsOfJoinPageFrameFallback() throws Exception {
+        assertMemoryLeak(() -> {
+            compiler.compile("create table x as (select rnd_str('a','b') s, rnd_int() i, timestamp_sequence(0, 1000000) ts from long_sequence(10)) timestamp(ts)", sqlExecutionContext);
+            compiler.compile("create table y as (select rnd_str('a','b') s, rnd_int() i, timestamp_sequence(0, 1000000) ts from long_sequence(10)) timestamp(ts)", sqlExecutionContext);
+            try (RecordCursorFactory factory = compiler.compile("select x.s, x.ts, y.i from x asof join y on (s)", sqlExecutionContext).getRecordCursorFactory()) {
+                Assert.assertFalse(unwrap(factory) instanceof AsOfJoinPageFrameRecordCursorFactory);
+            }
+            try (RecordCursorFactory factory = compiler.compile("select x.i, x.ts, y.i from x asof join y on (i)", sqlExecutionContext).getRecordCursorFactory()) {
+                Assert.assertTrue(unwrap(factory) instanceof AsOfJoinPageFrameRecordCursorFactory);
+            }
+            configOverrideSqlAsOfJoinPageFrameEnabled = false;
+            try (RecordCursorFactory factory = compiler.compile("select x.i, x.ts, y.i from x asof join y on (i)", sqlExecutionContext).getRecordCursorFactory()) {
+                Assert.assertFalse(unwrap(factory) instanceof AsOfJoinPageFrameRecordCursorFactory);
+            }
+        });
+    }
+
     @Test
     public void testLtJoin() throws Exception {
         final String expected = "tag\thi\tlo\tts\tts1\n" +
@@ -607,5 +686,22 @@ public class AsOfJoinTest extends AbstractGriffinTest {
             printSqlResult(ex, query, null, false, false);
         });
     }
-}
 
+    private static RecordCursorFactory unwrap(RecordCursorFactory factory) {
+        return factory instanceof SelectedRecordCursorFactory ? ((SelectedRecordCursorFactory) factory).getBaseFactory() : factory;
+    }
+
+    private void assertPageFrameAsOfJoin(String... queries) throws SqlException {
+        // full fat joins are the reference, they copy slave records and do not read page frames
+        final StringSink expected = new StringSink();
+        for (String query : queries) {
+            compiler.setFullSatJoins(true);
+            try {
+                TestUtils.printSql(compiler, sqlExecutionContext, query, expected);
+            } finally {
+                compiler.setFullSatJoins(false);
+            }
+            TestUtils.assertSql(compiler, sqlExecutionContext, query, sink, expected);
+        }
+    }
+}
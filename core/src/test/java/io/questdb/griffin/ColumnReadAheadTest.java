@@ -0,0 +1,433 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin;
+
+import io.questdb.cairo.ColumnReadAheadJob;
+import io.questdb.cairo.TableReader;
+import io.questdb.cairo.TableUtils;
+import io.questdb.cairo.vm.ColumnReadAhead;
+import io.questdb.mp.Sequence;
+import io.questdb.std.FilesFacadeImpl;
+import io.questdb.std.IntList;
+import io.questdb.std.str.Path;
+import io.questdb.std.str.StringSink;
+import io.questdb.tasks.ColumnReadAheadTask;
+import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ColumnReadAheadTest extends AbstractGriffinTest {
+
+    @Test
+    public void testBackwardScan() throws Exception {
+        assertMemoryLeak(() -> {
+            createX();
+            drain();
+            try (TableReader reader = engine.getReader(sqlExecutionContext.getCairoSecurityContext(), "x")) {
+                final ColumnReadAhead readAhead = new ColumnReadAhead();
+                readAhead.of(messageBus, reader, columns(0));
+                // last partition is never read ahead
+                readAhead.onFrame(3, 12, 24);
+                assertTasks("");
+                // tail of the previous partition is read ahead with the head of current one
+                readAhead.onFrame(3, 0, 12);
+                assertTasks("2018-01-03:i[12,24)\n");
+                readAhead.onFrame(2, 12, 24);
+                assertTasks("");
+                readAhead.onFrame(2, 0, 12);
+                assertTasks(
+                        "2018-01-03:i[0,12)\n" +
+                                "2018-01-02:i[12,24)\n"
+                );
+                readAhead.onFrame(1, 0, 24);
+                assertTasks(
+                        "2018-01-02:i[0,12)\n" +
+                                "2018-01-01:i[0,24)\n"
+                );
+                readAhead.onFrame(0, 0, 24);
+                assertTasks("");
+            }
+        });
+    }
+
+    @Test
+    public void testCancelled() throws Exception {
+        final MappingFacade ff = new MappingFacade();
+        assertMemoryLeak(ff, () -> {
+            createX();
+            drain();
+            final ColumnReadAheadJob job = new ColumnReadAheadJob(messageBus);
+            try (TableReader reader = engine.getReader(sqlExecutionContext.getCairoSecurityContext(), "x")) {
+                final ColumnReadAhead readAhead = new ColumnReadAhead();
+                readAhead.of(messageBus, reader, columns(0, 1));
+                readAhead.onFrame(0, 0, 24);
+                readAhead.toTop();
+                readAhead.onFrame(1, 0, 24);
+                readAhead.close();
+
+                ff.recording = true;
+                Assert.assertEquals(8, runJob(job));
+                ff.recording = false;
+                TestUtils.assertEquals("", ff.mappings);
+            }
+        });
+    }
+
+    @Test
+    public void testColumnTop() throws Exception {
+        assertMemoryLeak(() -> {
+            compiler.compile(
+                    "create table x as (" +
+                            "select" +
+                            " cast(x as int) i," +
+                            " timestamp_sequence(to_timestamp('2018-01-01', 'yyyy-MM-dd'), 3600000000) ts" +
+                            " from long_sequence(36)" +
+                            ") timestamp(ts) partition by DAY",
+                    sqlExecutionContext
+            );
+            compiler.compile("alter table x add column j long", sqlExecutionContext);
+            compiler.compile(
+                    "insert into x select" +
+                            " cast(x as int) i," +
+                            " timestamp_sequence(to_timestamp('2018-01-02 12', 'yyyy-MM-dd HH'), 3600000000) ts," +
+                            " x j" +
+                            " from long_sequence(24)",
+                    sqlExecutionContext
+            );
+            drain();
+            try (TableReader reader = engine.getReader(sqlExecutionContext.getCairoSecurityContext(), "x")) {
+                // cursors publish frames of opened partitions
+                reader.openPartition(0);
+                reader.openPartition(1);
+                final ColumnReadAhead readAhead = new ColumnReadAhead();
+                readAhead.of(messageBus, reader, columns(0, 2));
+                readAhead.onFrame(0, 0, 12);
+                assertTasks("2018-01-01:i[0,12)\n");
+                // head of the next partition precedes column top
+                readAhead.onFrame(0, 12, 24);
+                assertTasks(
+                        "2018-01-01:i[12,24)\n" +
+                                "2018-01-02:i[0,12)\n"
+                );
+                readAhead.onFrame(1, 4, 12);
+                assertTasks("");
+                readAhead.onFrame(1, 16, 20);
+                assertTasks(
+                        "2018-01-02:i[16,20)\n" +
+                                "2018-01-02:j[4,8)\n"
+                );
+                readAhead.onFrame(1, 0, 24);
+                assertTasks(
+                        "2018-01-02:i[12,24)\n" +
+                                "2018-01-02:j[0,12)\n"
+                );
+            }
+        });
+    }
+
+    @Test
+    public void testCompressedPartition() throws Exception {
+        final MappingFacade ff = new MappingFacade();
+        assertMemoryLeak(ff, () -> {
+            compiler.compile(
+                    "create table x as (" +
+                            "select" +
+                            " 's' || x s," +
+                            " x l," +
+                            " timestamp_sequence(to_timestamp('2018-01-01', 'yyyy-MM-dd'), 3600000000) ts" +
+                            " from long_sequence(72)" +
+                            ") timestamp(ts) partition by DAY",
+                    sqlExecutionContext
+            );
+            compiler.compile("alter table x compress partition list '2018-01-02'", sqlExecutionContext);
+            drain();
+            final ColumnReadAheadJob job = new ColumnReadAheadJob(messageBus);
+            try (TableReader reader = engine.getReader(sqlExecutionContext.getCairoSecurityContext(), "x")) {
+                final ColumnReadAhead readAhead = new ColumnReadAhead();
+                readAhead.of(messageBus, reader, columns(0, 1));
+                // compressed column is decoded on access, it is read ahead only for the next partition
+                reader.openPartition(1);
+                readAhead.onFrame(1, 0, 12);
+                assertTasks("2018-01-02:s[0,12)\n");
+
+                readAhead.toTop();
+                readAhead.onFrame(0, 0, 24);
+                readAhead.onFrame(1, 0, 24);
+                ff.recording = true;
+                Assert.assertEquals(4, runJob(job));
+                ff.recording = false;
+
+                readAhead.toTop();
+                readAhead.onFrame(0, 0, 24);
+                assertTasks(
+                        "2018-01-01:s[0,24)\n" +
+                                "2018-01-01:l[0,24)\n" +
+                                "2018-01-02:s[0,24)\n" +
+                                "2018-01-02:l.z\n"
+                );
+            }
+
+            // whole compressed file is mapped
+            try (Path path = new Path()) {
+                path.of(configuration.getRoot()).concat("x").concat("2018-01-02").concat("l").put(TableUtils.FILE_SUFFIX_Z).$();
+                final long fd = ff.openRO(path);
+                Assert.assertTrue(fd > -1);
+                try {
+                    final String expected = "0:" + ff.length(fd) + "\n";
+                    final String mappings = ff.mappings.toString();
+                    Assert.assertTrue(mappings, mappings.endsWith(expected));
+                } finally {
+                    ff.close(fd);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testDisabledWithoutMessageBus() throws Exception {
+        assertMemoryLeak(() -> {
+            createX();
+            drain();
+            try (TableReader reader = engine.getReader(sqlExecutionContext.getCairoSecurityContext(), "x")) {
+                final ColumnReadAhead readAhead = new ColumnReadAhead();
+                readAhead.of(null, reader, columns(0, 1));
+                readAhead.onFrame(0, 0, 24);
+                readAhead.onFrame(1, 0, 24);
+                assertTasks("");
+            }
+        });
+    }
+
+    @Test
+    public void testForwardScan() throws Exception {
+        assertMemoryLeak(() -> {
+            createX();
+            drain();
+            try (TableReader reader = engine.getReader(sqlExecutionContext.getCairoSecurityContext(), "x")) {
+                final ColumnReadAhead readAhead = new ColumnReadAhead();
+                readAhead.of(messageBus, reader, columns(0, 1));
+                readAhead.onFrame(0, 0, 12);
+                assertTasks(
+                        "2018-01-01:i[0,12)\n" +
+                                "2018-01-01:s[0,12)\n"
+                );
+                // head of the next partition is read ahead with the tail of current one
+                readAhead.onFrame(0, 12, 24);
+                assertTasks(
+                        "2018-01-01:i[12,24)\n" +
+                                "2018-01-01:s[12,24)\n" +
+                                "2018-01-02:i[0,12)\n" +
+                                "2018-01-02:s[0,12)\n"
+                );
+                readAhead.onFrame(1, 10, 12);
+                assertTasks("");
+                readAhead.onFrame(1, 12, 24);
+                assertTasks(
+                        "2018-01-02:i[12,24)\n" +
+                                "2018-01-02:s[12,24)\n" +
+                                "2018-01-03:i[0,12)\n" +
+                                "2018-01-03:s[0,12)\n"
+                );
+                readAhead.onFrame(2, 5, 5);
+                assertTasks("");
+                readAhead.onFrame(2, 0, 24);
+                assertTasks(
+                        "2018-01-03:i[12,24)\n" +
+                                "2018-01-03:s[12,24)\n"
+                );
+                readAhead.onFrame(3, 0, 24);
+                assertTasks("");
+            }
+        });
+    }
+
+    @Test
+    public void testMapsFrameRangeOnly() throws Exception {
+        final MappingFacade ff = new MappingFacade();
+        assertMemoryLeak(ff, () -> {
+            compiler.compile(
+                    "create table x as (" +
+                            "select" +
+                            " x i," +
+                            " 's' || x s," +
+                            " timestamp_sequence(to_timestamp('2018-01-01', 'yyyy-MM-dd'), 864000) ts" +
+                            " from long_sequence(300000)" +
+                            ") timestamp(ts) partition by DAY",
+                    sqlExecutionContext
+            );
+            drain();
+            final ColumnReadAheadJob job = new ColumnReadAheadJob(messageBus);
+            try (TableReader reader = engine.getReader(sqlExecutionContext.getCairoSecurityContext(), "x")) {
+                final ColumnReadAhead readAhead = new ColumnReadAhead();
+                reader.openPartition(1);
+                readAhead.of(messageBus, reader, columns(0, 1));
+                readAhead.onFrame(1, 50_000, 50_010);
+
+                ff.recording = true;
+                Assert.assertEquals(2, runJob(job));
+                ff.recording = false;
+            }
+
+            final long pageSize = ff.getPageSize();
+            final long iLo = 50_000 * Long.BYTES / pageSize * pageSize;
+            // index entries of string column include the end of the range
+            final String expected = iLo + ":" + (50_010 * Long.BYTES - iLo) + "\n" +
+                    iLo + ":" + (50_011 * Long.BYTES - iLo) + "\n";
+            final String mappings = ff.mappings.toString();
+            Assert.assertTrue(mappings, mappings.startsWith(expected));
+            // string data of 10 rows
+            final String[] data = mappings.substring(expected.length()).split("[:\n]");
+            Assert.assertEquals(mappings, 2, data.length);
+            Assert.assertEquals(0, Long.parseLong(data[0]) % pageSize);
+            Assert.assertTrue(mappings, Long.parseLong(data[1]) < 2 * pageSize);
+        });
+    }
+
+    @Test
+    public void testQueueFull() throws Exception {
+        assertMemoryLeak(() -> {
+            compiler.compile(
+                    "create table x as (" +
+                            "select" +
+                            " x i," +
+                            " timestamp_sequence(to_timestamp('2018-01-01', 'yyyy-MM-dd'), 3600000000) ts" +
+                            " from long_sequence(2400)" +
+                            ") timestamp(ts) partition by DAY",
+                    sqlExecutionContext
+            );
+            drain();
+            final int capacity = messageBus.getColumnReadAheadQueue().getCapacity();
+            try (TableReader reader = engine.getReader(sqlExecutionContext.getCairoSecurityContext(), "x")) {
+                final ColumnReadAhead readAhead = new ColumnReadAhead();
+                readAhead.of(messageBus, reader, columns(0, 1));
+                for (int i = 0; i < reader.getPartitionCount(); i++) {
+                    readAhead.onFrame(i, 0, 24);
+                }
+            }
+            Assert.assertEquals(capacity, drain());
+        });
+    }
+
+    @Test
+    public void testScansPublishTasks() throws Exception {
+        assertMemoryLeak(() -> {
+            createX();
+            drain();
+            final ColumnReadAheadJob job = new ColumnReadAheadJob(messageBus);
+
+            assertSql("select * from x where ts = '2018-01-02T00:00:00.000000Z'", "i\ts\tts\n25\ts25\t2018-01-02T00:00:00.000000Z\n");
+            Assert.assertTrue(runJob(job) > 0);
+
+            assertSql("select i, s from x where i = 30", "i\ts\n30\ts30\n");
+            Assert.assertTrue(runJob(job) > 0);
+
+            assertSql("select sum(i) from x", "sum\n4656\n");
+            Assert.assertTrue(runJob(job) > 0);
+
+            // partition is gone, job must not fail
+            compiler.compile("alter table x drop partition list '2018-01-01'", sqlExecutionContext);
+            try (TableReader reader = engine.getReader(sqlExecutionContext.getCairoSecurityContext(), "x")) {
+                final ColumnReadAhead readAhead = new ColumnReadAhead();
+                readAhead.of(messageBus, reader, columns(0, 1));
+                readAhead.onFrame(0, 0, 24);
+            }
+            compiler.compile("drop table x", sqlExecutionContext);
+            Assert.assertTrue(runJob(job) > 0);
+        });
+    }
+
+    private static void assertTasks(CharSequence expected) {
+        final StringSink sink = new StringSink();
+        final Sequence subSeq = messageBus.getColumnReadAheadSubSeq();
+        long cursor;
+        while ((cursor = subSeq.next()) > -1) {
+            final ColumnReadAheadTask task = messageBus.getColumnReadAheadQueue().get(cursor);
+            final CharSequence path = task.getPartitionPath();
+            sink.put(path, path.toString().lastIndexOf('/') + 1, path.length());
+            sink.put(':').put(task.getColumnName());
+            if (task.isCompressed()) {
+                sink.put(TableUtils.FILE_SUFFIX_Z).put('\n');
+            } else {
+                sink.put('[').put(task.getRowLo()).put(',').put(task.getRowHi()).put(")\n");
+            }
+            subSeq.done(cursor);
+        }
+        TestUtils.assertEquals(expected, sink);
+    }
+
+    private static IntList columns(int... indexes) {
+        final IntList columns = new IntList();
+        for (int index : indexes) {
+            columns.add(index);
+        }
+        return columns;
+    }
+
+    private static void createX() throws SqlException {
+        compiler.compile(
+                "create table x as (" +
+                        "select" +
+                        " cast(x as int) i," +
+                        " 's' || x s," +
+                        " timestamp_sequence(to_timestamp('2018-01-01', 'yyyy-MM-dd'), 3600000000) ts" +
+                        " from long_sequence(96)" +
+                        ") timestamp(ts) partition by DAY",
+                sqlExecutionContext
+        );
+    }
+
+    private static int drain() {
+        final Sequence subSeq = messageBus.getColumnReadAheadSubSeq();
+        int count = 0;
+        long cursor;
+        while ((cursor = subSeq.next()) > -1) {
+            subSeq.done(cursor);
+            count++;
+        }
+        return count;
+    }
+
+    private static int runJob(ColumnReadAheadJob job) {
+        int count = 0;
+        while (job.run(0)) {
+            count++;
+        }
+        return count;
+    }
+
+    private static class MappingFacade extends FilesFacadeImpl {
+        private final StringSink mappings = new StringSink();
+        private volatile boolean recording;
+
+        @Override
+        public long mmap(long fd, long len, long offset, int flags) {
+            if (recording) {
+                mappings.put(offset).put(':').put(len).put('\n');
+            }
+            return super.mmap(fd, len, offset, flags);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin;
+
+import io.questdb.WorkerPoolAwareConfiguration;
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.CairoEngine;
+import io.questdb.cairo.DefaultCairoConfiguration;
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.griffin.engine.functions.rnd.SharedRandom;
+import io.questdb.griffin.engine.table.FilteredRecordCursorFactory;
+import io.questdb.griffin.engine.table.PageFrameFilterJob;
+import io.questdb.griffin.engine.table.ParallelFilteredRecordCursorFactory;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.mp.WorkerPool;
+import io.questdb.std.Rnd;
+import io.questdb.std.str.Path;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+public class CompiledFilterTest {
+    private static final Log LOG = LogFactory.getLog(CompiledFilterTest.class);
+    private static final StringSink sink = new StringSink();
+    private static final StringSink expectedSink = new StringSink();
+    @ClassRule
+    public static TemporaryFolder temp = new TemporaryFolder();
+    private static CharSequence root;
+    private static boolean compiledFilterEnabled;
+
+    @BeforeClass
+    public static void setupStatic() {
+        try {
+            root = temp.newFolder("dbRoot").getAbsolutePath();
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        SharedRandom.RANDOM.set(new Rnd());
+        TestUtils.createTestPath(root);
+    }
+
+    @After
+    public void tearDown() {
+        TestUtils.removeTestPath(root);
+    }
+
+    @Test
+    public void testBoolean() throws Exception {
+        execute(1, (compiler, context) -> {
+            compiler.compile(
+                    "create table x as (select rnd_boolean() b, rnd_boolean() c, rnd_int(0, 10, 0) a from long_sequence(1000))",
+                    context
+            );
+            assertCompiled(compiler, context, "select * from x where b");
+            assertCompiled(compiler, context, "select * from x where not b and a > 5");
+            assertCompiled(compiler, context, "select * from x where b = false or c != true");
+            assertCompiled(compiler, context, "select * from x where b = c");
+        });
+    }
+
+    @Test
+    public void testColumnTop() throws Exception {
+        execute(1, (compiler, context) -> {
+            compiler.compile(
+                    "create table x as (select rnd_int(0, 100, 0) a, timestamp_sequence(0, 10000000000) ts from long_sequence(50)) timestamp(ts) partition by DAY",
+                    context
+            );
+            compiler.compile("alter table x add column b double", context);
+            compiler.compile("alter table x add column i int", context);
+            compiler.compile("alter table x add column s short", context);
+            compiler.compile(
+                    "insert into x select rnd_int(0, 100, 0) a, timestamp_sequence(500000000000, 10000000000) ts, rnd_double(2) b, rnd_int(0, 10, 2) i, rnd_short(0, 10) s from long_sequence(50)",
+                    context
+            );
+            assertCompiled(compiler, context, "select * from x where a > 30 and b < 0.5");
+            assertCompiled(compiler, context, "select * from x where b = NaN or i = null");
+            assertCompiled(compiler, context, "select * from x where i != null and s = 0");
+        });
+    }
+
+    @Test
+    public void testDateAndTimestamp() throws Exception {
+        execute(1, (compiler, context) -> {
+            compiler.compile(
+                    "create table x as (" +
+                            "select rnd_date(to_date('2015', 'yyyy'), to_date('2016', 'yyyy'), 2) d," +
+                            " rnd_timestamp(to_timestamp('2015', 'yyyy'), to_timestamp('2016', 'yyyy'), 2) t," +
+                            " timestamp_sequence(0, 100000000) ts" +
+                            " from long_sequence(1000)" +
+                            ") timestamp(ts) partition by DAY",
+                    context
+            );
+            assertCompiled(compiler, context, "select * from x where t > 1440000000000000 and d != null");
+            assertCompiled(compiler, context, "select * from x where t = null or d != null");
+            assertCompiled(compiler, context, "select * from x where ts < t");
+        });
+    }
+
+    @Test
+    public void testNotCompiled() throws Exception {
+        execute(1, (compiler, context) -> {
+            compiler.compile(
+                    "create table x as (select rnd_str(4,4,0) s, rnd_int() a, rnd_date(to_date('2015', 'yyyy'), to_date('2016', 'yyyy'), 2) d, timestamp_sequence(0, 1000000) ts from long_sequence(100)) timestamp(ts)",
+                    context
+            );
+            assertNotCompiled(compiler, context, "select * from x where s ~ 'A'");
+            assertNotCompiled(compiler, context, "select * from x where a + 1 > 5");
+            assertNotCompiled(compiler, context, "select * from x where a in (1, 2)");
+            assertNotCompiled(compiler, context, "select * from x where a > 5 and s = 'ABCD'");
+            // date and timestamp use different units
+            assertNotCompiled(compiler, context, "select * from x where d < ts");
+            assertNotCompiled(compiler, context, "select * from x where d < 1440000000000");
+        });
+    }
+
+    @Test
+    public void testNumeric() throws Exception {
+        execute(1, (compiler, context) -> {
+            compiler.compile(
+                    "create table x as (" +
+                            "select rnd_byte(0, 10) b," +
+                            " rnd_short(-10, 10) s," +
+                            " rnd_int(-10, 10, 2) i," +
+                            " rnd_long(-10, 10, 2) l," +
+                            " rnd_float(2) f," +
+                            " rnd_double(2) d" +
+                            " from long_sequence(2000)" +
+                            ")",
+                    context
+            );
+            assertCompiled(compiler, context, "select * from x where b > 5 and s <= -2");
+            assertCompiled(compiler, context, "select * from x where i < 0 or l >= 3");
+            assertCompiled(compiler, context, "select * from x where i = null or l != null");
+            assertCompiled(compiler, context, "select * from x where i <> -5 and l = 4");
+            assertCompiled(compiler, context, "select * from x where i > 2.5 or l < -7.5");
+            assertCompiled(compiler, context, "select * from x where f < 0.3 and d >= 0.6");
+            assertCompiled(compiler, context, "select * from x where d = NaN or f = null");
+            assertCompiled(compiler, context, "select * from x where i < l and b > s");
+            assertCompiled(compiler, context, "select * from x where d > f or i = l");
+            assertCompiled(compiler, context, "select * from x where 3 > i");
+            assertCompiled(compiler, context, "select * from x where not (i > 0 or (l < 0 and b = 3))");
+        });
+    }
+
+    @Test
+    public void testParallel() throws Exception {
+        execute(4, (compiler, context) -> {
+            compiler.compile(
+                    "create table x as (select rnd_symbol('A','B','C', null) sym, rnd_double(2) price, rnd_long(0, 100, 2) qty, timestamp_sequence(0, 100000000) ts from long_sequence(10000)) timestamp(ts) partition by DAY",
+                    context
+            );
+            assertCompiled(compiler, context, "select * from x where price > 0.3 and sym = 'B' and qty < 40");
+            assertCompiled(compiler, context, "select * from x where sym != null or price = null");
+        });
+    }
+
+    @Test
+    public void testSymbol() throws Exception {
+        execute(1, (compiler, context) -> {
+            compiler.compile(
+                    "create table x as (select rnd_symbol('A','BB','C', null) sym, rnd_int(0, 10, 0) a from long_sequence(1000))",
+                    context
+            );
+            assertCompiled(compiler, context, "select * from x where sym = 'BB'");
+            assertCompiled(compiler, context, "select * from x where sym != 'A' and a > 3");
+            assertCompiled(compiler, context, "select * from x where 'C' = sym or sym = null");
+            assertCompiled(compiler, context, "select * from x where sym <> null");
+            // values not in symbol table
+            assertCompiled(compiler, context, "select * from x where sym = 'D'");
+            assertCompiled(compiler, context, "select * from x where sym != 'D'");
+        });
+    }
+
+    private static void assertCompiled(SqlCompiler compiler, SqlExecutionContext context, String query) throws SqlException {
+        compiledFilterEnabled = false;
+        TestUtils.printSql(compiler, context, query, expectedSink);
+        compiledFilterEnabled = true;
+        try (RecordCursorFactory factory = compiler.compile(query, context).getRecordCursorFactory()) {
+            Assert.assertTrue(factory instanceof ParallelFilteredRecordCursorFactory);
+        }
+        TestUtils.assertSql(compiler, context, query, sink, expectedSink);
+    }
+
+    private static void assertNotCompiled(SqlCompiler compiler, SqlExecutionContext context, String query) throws SqlException {
+        compiledFilterEnabled = true;
+        try (RecordCursorFactory factory = compiler.compile(query, context).getRecordCursorFactory()) {
+            Assert.assertTrue(factory instanceof FilteredRecordCursorFactory);
+        }
+    }
+
+    private static void execute(int workerCount, CompiledFilterRunnable runnable) throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final int[] affinity = new int[workerCount];
+            for (int i = 0; i < workerCount; i++) {
+                affinity[i] = -1;
+            }
+
+            final WorkerPool pool = new WorkerPool(
+                    new WorkerPoolAwareConfiguration() {
+                        @Override
+                        public int[] getWorkerAffinity() {
+                            return affinity;
+                        }
+
+                        @Override
+                        public int getWorkerCount() {
+                            return workerCount;
+                        }
+
+                        @Override
+                        public boolean haltOnError() {
+                            return false;
+                        }
+
+                        @Override
+                        public boolean isEnabled() {
+                            return true;
+                        }
+                    }
+            );
+
+            final CairoConfiguration configuration = new DefaultCairoConfiguration(root) {
+                @Override
+                public int getSqlParallelFilterFrameRowCount() {
+                    return 100;
+                }
+
+                @Override
+                public boolean isSqlCompiledFilterEnabled() {
+                    return compiledFilterEnabled;
+                }
+            };
+
+            try (
+                    final CairoEngine engine = new CairoEngine(configuration);
+                    final SqlCompiler compiler = new SqlCompiler(engine);
+                    final SqlExecutionContext context = new SqlExecutionContextImpl(engine, workerCount)
+            ) {
+                try {
+                    pool.assignCleaner(Path.CLEANER);
+                    pool.assign(new PageFrameFilterJob(engine.getMessageBus()));
+                    pool.start(LOG);
+
+                    runnable.run(compiler, context);
+                    Assert.assertEquals(0, engine.getBusyWriterCount());
+                    Assert.assertEquals(0, engine.getBusyReaderCount());
+                } finally {
+                    pool.halt();
+                }
+            }
+        });
+    }
+
+    @FunctionalInterface
+    interface CompiledFilterRunnable {
+        void run(SqlCompiler compiler, SqlExecutionContext context) throws Exception;
+    }
+}
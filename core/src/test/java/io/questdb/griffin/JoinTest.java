@@ -33,6 +33,7 @@ import io.questdb.std.Chars;
 import io.questdb.std.Misc;
 import io.questdb.std.Rnd;
 import io.questdb.std.datetime.microtime.TimestampFormatUtils;
+import io.questdb.std.str.StringSink;
 import io.questdb.test.tools.TestUtils;
 import org.junit.Assert;
 import org.junit.Before;
@@ -2180,6 +2181,31 @@ public class JoinTest extends AbstractGriffinTest {
         testFullFat(this::testJoinInnerAllTypes);
     }
 
+    @Test
+    public void testJoinInnerBloomFilter() throws Exception {
+        assertMemoryLeak(() -> {
+            compiler.compile(
+                    "create table x as (select rnd_int(0, 10000, 2) i, rnd_long(0, 100, 2) l, rnd_double(2) d, rnd_short() sh, rnd_char() c," +
+                            " timestamp_sequence(0, 1000000) ts from long_sequence(10000)) timestamp(ts)",
+                    sqlExecutionContext
+            );
+            compiler.compile("create table y as (select * from x where rnd_int(0, 50, 0) = 0)", sqlExecutionContext);
+            final String[] queries = {
+                    "select x.i, x.ts, y.sh from x join y on (i)",
+                    "select x.l, x.d, y.ts from x join y on (l, d)",
+                    "select x.sh, x.c, y.ts from x join y on (sh, c)",
+                    "select x.i, x.sh, y.l from x join (y where l > 90) y on (i)"
+            };
+            final StringSink expected = new StringSink();
+            for (String query : queries) {
+                configOverrideSqlJoinBloomFilterBitsPerKey = 0;
+                TestUtils.printSql(compiler, sqlExecutionContext, query, expected);
+                configOverrideSqlJoinBloomFilterBitsPerKey = -1;
+                TestUtils.assertSql(compiler, sqlExecutionContext, query, sink, expected);
+            }
+        });
+    }
+
     @Test
     public void testJoinInnerDifferentColumnNames() throws Exception {
         assertMemoryLeak(() -> {
@@ -31,6 +31,7 @@ import io.questdb.cairo.TableModel;
 import io.questdb.cairo.sql.Record;
 import io.questdb.cairo.sql.RecordCursorFactory;
 import io.questdb.griffin.engine.functions.rnd.SharedRandom;
+import io.questdb.griffin.engine.groupby.vect.GroupByRecordCursorFactory;
 import io.questdb.std.Os;
 import io.questdb.std.Rnd;
 import io.questdb.test.tools.TestUtils;
@@ -861,6 +862,113 @@ public class KeyedAggregationTest extends AbstractGriffinTest {
         });
     }
 
+    @Test
+    public void testPackedKeysBooleanByteSymbol() throws Exception {
+        assertMemoryLeak(() -> {
+            compiler.compile("create table tab as (select rnd_symbol('s1','s2','s3', null) s1, rnd_symbol('a1','a2', null) s2, rnd_long(-100, 100, 2) val, rnd_boolean() b, rnd_byte(1, 3) bt from long_sequence(10000))", sqlExecutionContext);
+            assertSql(
+                    "select s1, b, bt, sum(val), count() from tab order by s1, b, bt",
+                    "s1\tb\tbt\tsum\tcount\n" +
+                            "\tfalse\t1\t-2187\t446\n" +
+                            "\tfalse\t2\t-420\t428\n" +
+                            "\tfalse\t3\t16\t419\n" +
+                            "\ttrue\t1\t-618\t404\n" +
+                            "\ttrue\t2\t465\t402\n" +
+                            "\ttrue\t3\t476\t429\n" +
+                            "s1\tfalse\t1\t651\t423\n" +
+                            "s1\tfalse\t2\t-471\t427\n" +
+                            "s1\tfalse\t3\t583\t418\n" +
+                            "s1\ttrue\t1\t-1157\t403\n" +
+                            "s1\ttrue\t2\t-280\t389\n" +
+                            "s1\ttrue\t3\t-1500\t412\n" +
+                            "s2\tfalse\t1\t-1814\t399\n" +
+                            "s2\tfalse\t2\t621\t448\n" +
+                            "s2\tfalse\t3\t1607\t442\n" +
+                            "s2\ttrue\t1\t-830\t416\n" +
+                            "s2\ttrue\t2\t-651\t410\n" +
+                            "s2\ttrue\t3\t-764\t414\n" +
+                            "s3\tfalse\t1\t349\t422\n" +
+                            "s3\tfalse\t2\t1104\t400\n" +
+                            "s3\tfalse\t3\t1303\t398\n" +
+                            "s3\ttrue\t1\t-210\t429\n" +
+                            "s3\ttrue\t2\t-531\t406\n" +
+                            "s3\ttrue\t3\t785\t416\n"
+            );
+        });
+    }
+
+    @Test
+    public void testPackedKeysColumnTop() throws Exception {
+        assertMemoryLeak(() -> {
+            compiler.compile("create table tab as (select rnd_symbol('s1','s2', null) s1, rnd_long(-100, 100, 2) val from long_sequence(1000))", sqlExecutionContext);
+            compiler.compile("alter table tab add column sh short", sqlExecutionContext);
+            compiler.compile("insert into tab select rnd_symbol('s1','s2', null), rnd_long(-100, 100, 2), rnd_short(1, 2) from long_sequence(200)", sqlExecutionContext);
+
+            try (RecordCursorFactory factory = compiler.compile("select s1, sh, sum(val), count() from tab", sqlExecutionContext).getRecordCursorFactory()) {
+                Assert.assertTrue(factory instanceof GroupByRecordCursorFactory);
+            }
+
+            assertSql(
+                    "select s1, sh, sum(val), count() from tab order by s1, sh",
+                    "s1\tsh\tsum\tcount\n" +
+                            "\t0\t-922\t329\n" +
+                            "\t1\t-117\t32\n" +
+                            "\t2\t3\t30\n" +
+                            "s1\t0\t-581\t338\n" +
+                            "s1\t1\t-87\t29\n" +
+                            "s1\t2\t-21\t34\n" +
+                            "s2\t0\t329\t333\n" +
+                            "s2\t1\t-146\t36\n" +
+                            "s2\t2\t308\t39\n"
+            );
+        });
+    }
+
+    @Test
+    public void testPackedKeysOverflowFallback() throws Exception {
+        assertMemoryLeak(() -> {
+            // short x short key space does not fit into INT, cursor falls back to hash map
+            compiler.compile("create table tab as (select rnd_short() a, rnd_short() b, rnd_long(1, 3, 0) val from long_sequence(10))", sqlExecutionContext);
+            assertSql(
+                    "select a, b, sum(val) from tab order by a, b",
+                    "a\tb\tsum\n" +
+                            "-31548\t11665\t3\n" +
+                            "-30872\t-11679\t3\n" +
+                            "-27056\t24814\t3\n" +
+                            "-24357\t31987\t3\n" +
+                            "-21227\t-22955\t1\n" +
+                            "-4914\t-24335\t3\n" +
+                            "-1593\t-4472\t2\n" +
+                            "18457\t-12348\t2\n" +
+                            "26745\t4924\t2\n" +
+                            "30202\t-19496\t1\n"
+            );
+        });
+    }
+
+    @Test
+    public void testPackedKeysSymbolSymbol() throws Exception {
+        assertMemoryLeak(() -> {
+            compiler.compile("create table tab as (select rnd_symbol('s1','s2','s3', null) s1, rnd_symbol('a1','a2', null) s2, rnd_long(-100, 100, 2) val from long_sequence(10000))", sqlExecutionContext);
+            assertSql(
+                    "select s1, s2, sum(val), count() from tab order by s1, s2",
+                    "s1\ts2\tsum\tcount\n" +
+                            "\t\t1507\t822\n" +
+                            "\ta1\t395\t822\n" +
+                            "\ta2\t669\t820\n" +
+                            "s1\t\t1773\t861\n" +
+                            "s1\ta1\t742\t850\n" +
+                            "s1\ta2\t1701\t871\n" +
+                            "s2\t\t615\t806\n" +
+                            "s2\ta1\t2186\t805\n" +
+                            "s2\ta2\t-697\t840\n" +
+                            "s3\t\t-1736\t834\n" +
+                            "s3\ta1\t-1500\t832\n" +
+                            "s3\ta2\t901\t837\n"
+            );
+        });
+    }
+
     @Test
     public void testSumInTimestampRange() throws Exception {
         long step = 1000000L;
@@ -384,6 +384,16 @@ public class O3Test extends AbstractO3Test {
         executeWithPool(4, O3Test::testOooFollowedByAnotherOOO0);
     }
 
+    @Test
+    public void testPartitionedByHourOOData() throws Exception {
+        executeVanilla(O3Test::testPartitionedByHourOOData0);
+    }
+
+    @Test
+    public void testPartitionedByHourOODataParallel() throws Exception {
+        executeWithPool(4, O3Test::testPartitionedByHourOOData0);
+    }
+
     @Test
     public void testPartitionedDataAppendOOData() throws Exception {
         executeVanilla(O3Test::testPartitionedDataAppendOOData0);
@@ -4158,6 +4168,54 @@ public class O3Test extends AbstractO3Test {
         );
     }
 
+    private static void testPartitionedByHourOOData0(
+            CairoEngine engine,
+            SqlCompiler compiler,
+            SqlExecutionContext executionContext
+    ) throws SqlException {
+        // ten hours of data, a row every minute
+        compiler.compile(
+                "create table x as (" +
+                        "select" +
+                        " cast(x as int) i," +
+                        " rnd_symbol('msft','ibm', 'googl') sym," +
+                        " round(rnd_double(0)*100, 3) amt," +
+                        " rnd_str('ABC', 'CDE', null, 'XYZ') c," +
+                        " rnd_long() j," +
+                        " timestamp_sequence(500000000000L,60000000L) ts" +
+                        " from long_sequence(600)" +
+                        "), index(sym) timestamp (ts) partition by HOUR",
+                executionContext
+        );
+
+        // spans the middle hours of x and one hour past its end
+        compiler.compile(
+                "create table append as (" +
+                        "select" +
+                        " cast(x as int) i," +
+                        " rnd_symbol('msft','ibm', 'googl') sym," +
+                        " round(rnd_double(0)*100, 3) amt," +
+                        " rnd_str('ABC', 'CDE', null, 'XYZ') c," +
+                        " rnd_long() j," +
+                        " timestamp_sequence(515000000010L,25000000L) ts" +
+                        " from long_sequence(1000)" +
+                        ") timestamp (ts) partition by HOUR",
+                executionContext
+        );
+
+        assertO3DataCursors(
+                engine,
+                compiler,
+                executionContext,
+                "create table y as (x union all append)",
+                "y order by ts",
+                "insert into x select * from append",
+                "x"
+        );
+
+        assertIndexConsistency(compiler, executionContext);
+    }
+
     private static void testPartitionedDataAppendOOData0(
             CairoEngine engine,
             SqlCompiler compiler,
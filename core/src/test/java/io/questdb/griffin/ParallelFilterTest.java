@@ -0,0 +1,368 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin;
+
+import io.questdb.WorkerPoolAwareConfiguration;
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.CairoEngine;
+import io.questdb.cairo.CairoException;
+import io.questdb.cairo.DefaultCairoConfiguration;
+import io.questdb.cairo.sql.Function;
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.griffin.engine.functions.BooleanFunction;
+import io.questdb.griffin.engine.functions.UnaryFunction;
+import io.questdb.griffin.engine.functions.rnd.SharedRandom;
+import io.questdb.griffin.engine.table.FilteredRecordCursorFactory;
+import io.questdb.griffin.engine.table.PageFrameFilterJob;
+import io.questdb.griffin.engine.table.ParallelFilteredRecordCursorFactory;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.mp.WorkerPool;
+import io.questdb.std.IntList;
+import io.questdb.std.ObjList;
+import io.questdb.std.Rnd;
+import io.questdb.std.str.Path;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.ServiceLoader;
+
+public class ParallelFilterTest {
+    private static final Log LOG = LogFactory.getLog(ParallelFilterTest.class);
+    private static final StringSink sink = new StringSink();
+    private static final StringSink expectedSink = new StringSink();
+    @ClassRule
+    public static TemporaryFolder temp = new TemporaryFolder();
+    private static CharSequence root;
+
+    @BeforeClass
+    public static void setupStatic() {
+        try {
+            root = temp.newFolder("dbRoot").getAbsolutePath();
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        SharedRandom.RANDOM.set(new Rnd());
+        TestUtils.createTestPath(root);
+    }
+
+    @After
+    public void tearDown() {
+        TestUtils.removeTestPath(root);
+    }
+
+    @Test
+    public void testColumnTop() throws Exception {
+        executeWithPool(4, 64, 16, (compiler, parallelContext, vanillaContext) -> {
+            compiler.compile(
+                    "create table x as (select rnd_int(0, 100, 0) a, timestamp_sequence(0, 10000000000) ts from long_sequence(50)) timestamp(ts) partition by DAY",
+                    vanillaContext
+            );
+            compiler.compile("alter table x add column b double", vanillaContext);
+            compiler.compile(
+                    "insert into x select rnd_int(0, 100, 0) a, timestamp_sequence(500000000000, 10000000000) ts, rnd_double() b from long_sequence(50)",
+                    vanillaContext
+            );
+            assertParallel(compiler, parallelContext, vanillaContext, "select * from x where a > 30 and b < 0.5");
+            assertParallel(compiler, parallelContext, vanillaContext, "select * from x where b = NaN or a < 10");
+        });
+    }
+
+    @Test
+    public void testErrorPropagated() throws Exception {
+        executeWithPool(4, 64, 16, 4, (compiler, parallelContext, vanillaContext) -> {
+            compiler.compile(
+                    "create table x as (select x l, timestamp_sequence(0, 100000000) ts from long_sequence(10000)) timestamp(ts) partition by DAY",
+                    vanillaContext
+            );
+            try (RecordCursorFactory factory = compiler.compile("select * from x where fail_at(l)", parallelContext).getRecordCursorFactory()) {
+                Assert.assertTrue(factory instanceof ParallelFilteredRecordCursorFactory);
+                try (RecordCursor cursor = factory.getCursor(parallelContext)) {
+                    //noinspection StatementWithEmptyBody
+                    while (cursor.hasNext()) {
+                    }
+                    Assert.fail();
+                } catch (CairoException e) {
+                    Assert.assertEquals(42, e.getErrno());
+                    TestUtils.assertEquals("filter failed [value=5000]", e.getFlyweightMessage());
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testFilterNotThreadSafe() throws Exception {
+        executeWithPool(4, 64, 16, (compiler, parallelContext, vanillaContext) -> {
+            compiler.compile(
+                    "create table x as (select rnd_str(4,4,0) s, rnd_int() a, timestamp_sequence(0, 1000000) ts from long_sequence(100)) timestamp(ts)",
+                    vanillaContext
+            );
+            try (RecordCursorFactory factory = compiler.compile("select * from x where s ~ 'A'", parallelContext).getRecordCursorFactory()) {
+                Assert.assertTrue(factory instanceof FilteredRecordCursorFactory);
+            }
+        });
+    }
+
+    @Test
+    public void testOrderBy() throws Exception {
+        executeWithPool(4, 64, 16, (compiler, parallelContext, vanillaContext) -> {
+            compiler.compile(
+                    "create table x as (select rnd_double() d, rnd_long(-10, 10, 2) l, timestamp_sequence(0, 1000000000) ts from long_sequence(1000)) timestamp(ts) partition by DAY",
+                    vanillaContext
+            );
+            assertParallel(compiler, parallelContext, vanillaContext, "select * from x where l > 0");
+            // sort uses random access to the records of parallel filter
+            assertResults(compiler, parallelContext, vanillaContext, "select * from x where l > 0 order by d");
+        });
+    }
+
+    @Test
+    public void testQueueFull() throws Exception {
+        // tiny queue makes owner thread execute most of the frames
+        executeWithPool(2, 1, 16, (compiler, parallelContext, vanillaContext) -> {
+            compiler.compile(
+                    "create table x as (select rnd_symbol('A','B','C') sym, rnd_double() price, timestamp_sequence(0, 100000000) ts from long_sequence(10000)) timestamp(ts) partition by DAY",
+                    vanillaContext
+            );
+            assertParallel(compiler, parallelContext, vanillaContext, "select * from x where price > 0.3 and sym = 'B' and ts in '1970-01-02'");
+        });
+    }
+
+    @Test
+    public void testSmallBatches() throws Exception {
+        // rows of a batch are returned before the next batch is filtered
+        executeWithPool(4, 64, 16, 2, (compiler, parallelContext, vanillaContext) -> {
+            compiler.compile(
+                    "create table x as (select rnd_double() d, rnd_long(-10, 10, 2) l, timestamp_sequence(0, 100000000) ts from long_sequence(10000)) timestamp(ts) partition by DAY",
+                    vanillaContext
+            );
+            assertParallel(compiler, parallelContext, vanillaContext, "select * from x where l > 0");
+            assertResults(compiler, parallelContext, vanillaContext, "select * from x where l > 0 order by d");
+            assertResults(compiler, parallelContext, vanillaContext, "select count() from x where l > 5");
+            try (RecordCursorFactory factory = compiler.compile("select * from x where l > 5", parallelContext).getRecordCursorFactory()) {
+                try (RecordCursor cursor = factory.getCursor(parallelContext)) {
+                    long count = 0;
+                    while (cursor.hasNext()) {
+                        count++;
+                    }
+                    Assert.assertFalse(cursor.hasNext());
+                    cursor.toTop();
+                    while (cursor.hasNext()) {
+                        count--;
+                    }
+                    Assert.assertEquals(0, count);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testSymbolAndTimestamp() throws Exception {
+        executeWithPool(4, 64, 16, (compiler, parallelContext, vanillaContext) -> {
+            compiler.compile(
+                    "create table x as (select rnd_symbol('A','B','C', null) sym, rnd_double() price, timestamp_sequence(0, 100000000) ts from long_sequence(10000)) timestamp(ts) partition by DAY",
+                    vanillaContext
+            );
+            assertParallel(compiler, parallelContext, vanillaContext, "select * from x where price > 0.3 and sym = 'B' and ts in '1970-01-02'");
+            assertResults(compiler, parallelContext, vanillaContext, "select sym, ts from x where not(sym = 'A') and price < 0.1");
+            assertParallel(compiler, parallelContext, vanillaContext, "select * from x where price > 2");
+        });
+    }
+
+    private static void assertParallel(
+            SqlCompiler compiler,
+            SqlExecutionContext parallelContext,
+            SqlExecutionContext vanillaContext,
+            String query
+    ) throws SqlException {
+        try (RecordCursorFactory factory = compiler.compile(query, parallelContext).getRecordCursorFactory()) {
+            Assert.assertTrue(factory instanceof ParallelFilteredRecordCursorFactory);
+        }
+        assertResults(compiler, parallelContext, vanillaContext, query);
+    }
+
+    private static void assertResults(
+            SqlCompiler compiler,
+            SqlExecutionContext parallelContext,
+            SqlExecutionContext vanillaContext,
+            String query
+    ) throws SqlException {
+        TestUtils.printSql(compiler, vanillaContext, query, expectedSink);
+        TestUtils.assertSql(compiler, parallelContext, query, sink, expectedSink);
+    }
+
+    private static void executeWithPool(
+            int workerCount,
+            int queueCapacity,
+            int frameRowCount,
+            ParallelFilterRunnable runnable
+    ) throws Exception {
+        executeWithPool(workerCount, queueCapacity, frameRowCount, 16, runnable);
+    }
+
+    private static void executeWithPool(
+            int workerCount,
+            int queueCapacity,
+            int frameRowCount,
+            int batchSize,
+            ParallelFilterRunnable runnable
+    ) throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final int[] affinity = new int[workerCount];
+            for (int i = 0; i < workerCount; i++) {
+                affinity[i] = -1;
+            }
+
+            final WorkerPool pool = new WorkerPool(
+                    new WorkerPoolAwareConfiguration() {
+                        @Override
+                        public int[] getWorkerAffinity() {
+                            return affinity;
+                        }
+
+                        @Override
+                        public int getWorkerCount() {
+                            return workerCount;
+                        }
+
+                        @Override
+                        public boolean haltOnError() {
+                            return false;
+                        }
+
+                        @Override
+                        public boolean isEnabled() {
+                            return true;
+                        }
+                    }
+            );
+
+            final CairoConfiguration configuration = new DefaultCairoConfiguration(root) {
+                @Override
+                public int getPageFrameFilterQueueCapacity() {
+                    return queueCapacity;
+                }
+
+                @Override
+                public int getSqlParallelFilterFrameRowCount() {
+                    return frameRowCount;
+                }
+
+                @Override
+                public int getSqlParallelFilterBatchSize() {
+                    return batchSize;
+                }
+
+                @Override
+                public boolean isSqlCompiledFilterEnabled() {
+                    // compiled filters are covered by CompiledFilterTest
+                    return false;
+                }
+            };
+
+            final ArrayList<FunctionFactory> functions = new ArrayList<>();
+            for (FunctionFactory factory : ServiceLoader.load(FunctionFactory.class, FunctionFactory.class.getClassLoader())) {
+                functions.add(factory);
+            }
+            functions.add(new FailAtFunctionFactory());
+
+            try (
+                    final CairoEngine engine = new CairoEngine(configuration);
+                    final SqlCompiler compiler = new SqlCompiler(engine, engine.getMessageBus(), new FunctionFactoryCache(configuration, functions));
+                    final SqlExecutionContext parallelContext = new SqlExecutionContextImpl(engine, workerCount);
+                    final SqlExecutionContext vanillaContext = new SqlExecutionContextImpl(engine, 1)
+            ) {
+                try {
+                    pool.assignCleaner(Path.CLEANER);
+                    pool.assign(new PageFrameFilterJob(engine.getMessageBus()));
+                    pool.start(LOG);
+
+                    runnable.run(compiler, parallelContext, vanillaContext);
+                    Assert.assertEquals(0, engine.getBusyWriterCount());
+                    Assert.assertEquals(0, engine.getBusyReaderCount());
+                } finally {
+                    pool.halt();
+                }
+            }
+        });
+    }
+
+    // thread-safe filter that fails on the given value
+    private static class FailAtFunctionFactory implements FunctionFactory {
+        @Override
+        public String getSignature() {
+            return "fail_at(L)";
+        }
+
+        @Override
+        public Function newInstance(int position, ObjList<Function> args, IntList argPositions, CairoConfiguration configuration, SqlExecutionContext sqlExecutionContext) {
+            final Function arg = args.getQuick(0);
+            return new FailAtFunction(arg);
+        }
+
+        private static class FailAtFunction extends BooleanFunction implements UnaryFunction {
+            private final Function arg;
+
+            FailAtFunction(Function arg) {
+                this.arg = arg;
+            }
+
+            @Override
+            public Function getArg() {
+                return arg;
+            }
+
+            @Override
+            public boolean getBool(Record rec) {
+                final long value = arg.getLong(rec);
+                if (value == 5000) {
+                    throw CairoException.instance(42).put("filter failed [value=").put(value).put(']');
+                }
+                return value % 2 == 0;
+            }
+
+            @Override
+            public boolean isReadThreadSafe() {
+                return true;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface ParallelFilterRunnable {
+        void run(SqlCompiler compiler, SqlExecutionContext parallelContext, SqlExecutionContext vanillaContext) throws Exception;
+    }
+}
@@ -0,0 +1,508 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin;
+
+import io.questdb.WorkerPoolAwareConfiguration;
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.CairoEngine;
+import io.questdb.cairo.CairoException;
+import io.questdb.cairo.DefaultCairoConfiguration;
+import io.questdb.cairo.sql.Function;
+import io.questdb.cairo.sql.Record;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.griffin.engine.functions.LongFunction;
+import io.questdb.griffin.engine.functions.UnaryFunction;
+import io.questdb.griffin.engine.functions.rnd.SharedRandom;
+import io.questdb.griffin.engine.groupby.GroupByRecordCursorFactory;
+import io.questdb.griffin.engine.groupby.PageFrameGroupByJob;
+import io.questdb.griffin.engine.groupby.ParallelGroupByRecordCursorFactory;
+import io.questdb.griffin.engine.groupby.ParallelSampleByRecordCursorFactory;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.mp.WorkerPool;
+import io.questdb.std.IntList;
+import io.questdb.std.ObjList;
+import io.questdb.std.Rnd;
+import io.questdb.std.str.Path;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.ServiceLoader;
+
+public class ParallelGroupByTest {
+    private static final Log LOG = LogFactory.getLog(ParallelGroupByTest.class);
+    private static final StringSink sink = new StringSink();
+    private static final StringSink expectedSink = new StringSink();
+    @ClassRule
+    public static TemporaryFolder temp = new TemporaryFolder();
+    private static CharSequence root;
+
+    @BeforeClass
+    public static void setupStatic() {
+        try {
+            root = temp.newFolder("dbRoot").getAbsolutePath();
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        SharedRandom.RANDOM.set(new Rnd());
+        TestUtils.createTestPath(root);
+    }
+
+    @After
+    public void tearDown() {
+        TestUtils.removeTestPath(root);
+    }
+
+    @Test
+    public void testColumnTop() throws Exception {
+        executeWithPool(4, 64, 100, (compiler, parallelContext, vanillaContext) -> {
+            compiler.compile(
+                    "create table x as (select rnd_symbol('A','B','C') sym, rnd_long(0, 10, 0) l, timestamp_sequence(0, 10000000000) ts from long_sequence(500)) timestamp(ts) partition by DAY",
+                    vanillaContext
+            );
+            compiler.compile("alter table x add column i int", vanillaContext);
+            compiler.compile(
+                    "insert into x select rnd_symbol('A','B','C') sym, rnd_long(0, 10, 0) l, timestamp_sequence(5000000000000, 10000000000) ts, rnd_int(0, 1000, 2) i from long_sequence(500)",
+                    vanillaContext
+            );
+            assertParallel(compiler, parallelContext, vanillaContext, "select sym, l, count(), sum(i), min(i), max(i), first(i), last(i) from x");
+            assertParallel(compiler, parallelContext, vanillaContext, "select i, count(), first(l), last(ts) from x order by i");
+        });
+    }
+
+    @Test
+    public void testErrorPropagated() throws Exception {
+        executeWithPool(4, 64, 100, (compiler, parallelContext, vanillaContext) -> {
+            compiler.compile(
+                    "create table x as (select x l, rnd_symbol('A','B','C') sym, timestamp_sequence(0, 1000000) ts from long_sequence(10000)) timestamp(ts) partition by HOUR",
+                    vanillaContext
+            );
+            try (RecordCursorFactory factory = compiler.compile("select sym, sum(fail_at(l)) from x", parallelContext).getRecordCursorFactory()) {
+                Assert.assertTrue(factory instanceof ParallelGroupByRecordCursorFactory);
+                assertFailure(factory, parallelContext);
+            }
+        });
+    }
+
+    @Test
+    public void testFirstLast() throws Exception {
+        executeWithPool(4, 64, 100, (compiler, parallelContext, vanillaContext) -> {
+            compiler.compile(
+                    "create table x as (" +
+                            "select rnd_symbol('A','B','C', null) sym," +
+                            " rnd_byte() b," +
+                            " rnd_short() sh," +
+                            " rnd_char() c," +
+                            " rnd_int(0, 100, 2) i," +
+                            " rnd_long(0, 100, 2) l," +
+                            " rnd_float(2) f," +
+                            " rnd_double(2) d," +
+                            " rnd_date(to_date('2015', 'yyyy'), to_date('2016', 'yyyy'), 2) dt," +
+                            " timestamp_sequence(0, 1000000000) ts" +
+                            " from long_sequence(5000)" +
+                            ") timestamp(ts) partition by DAY",
+                    vanillaContext
+            );
+            assertParallel(
+                    compiler,
+                    parallelContext,
+                    vanillaContext,
+                    "select sym, first(b), last(b), first(sh), last(sh), first(c), last(c), first(i), last(i), first(l), last(l)," +
+                            " first(f), last(f), first(d), last(d), first(dt), last(dt), first(ts), last(ts) from x"
+            );
+        });
+    }
+
+    @Test
+    public void testMinMaxSum() throws Exception {
+        executeWithPool(4, 64, 100, (compiler, parallelContext, vanillaContext) -> {
+            compiler.compile(
+                    "create table x as (" +
+                            "select rnd_symbol('A','B','C', null) sym," +
+                            " rnd_int(0, 5, 0) k," +
+                            " rnd_char() c," +
+                            " rnd_int(-1000, 1000, 2) i," +
+                            " rnd_long(-1000, 1000, 2) l," +
+                            " rnd_float(2) f," +
+                            " rnd_double(2) d," +
+                            " cast(rnd_int(0, 100, 2) as double) di," +
+                            " rnd_date(to_date('2015', 'yyyy'), to_date('2016', 'yyyy'), 2) dt," +
+                            " timestamp_sequence(0, 1000000000) ts" +
+                            " from long_sequence(5000)" +
+                            ") timestamp(ts) partition by DAY",
+                    vanillaContext
+            );
+            assertParallel(
+                    compiler,
+                    parallelContext,
+                    vanillaContext,
+                    "select sym, k, count(), min(c), max(c), min(i), max(i), min(l), max(l), min(f), min(d), max(d)," +
+                            " min(dt), max(dt), min(ts), max(ts) from x order by sym, k"
+            );
+            // integer-valued doubles add up exactly, regardless of the order of additions
+            assertParallel(
+                    compiler,
+                    parallelContext,
+                    vanillaContext,
+                    "select sym, k, sum(i), sum(l), sum(di), avg(di), ksum(di), nsum(di) from x where k < 3 order by sym, k"
+            );
+        });
+    }
+
+    @Test
+    public void testNotThreadSafe() throws Exception {
+        executeWithPool(4, 64, 100, (compiler, parallelContext, vanillaContext) -> {
+            compiler.compile(
+                    "create table x as (select rnd_symbol('A','B','C') sym, rnd_long(0, 10, 0) l, timestamp_sequence(0, 1000000) ts from long_sequence(1000)) timestamp(ts)",
+                    vanillaContext
+            );
+            try (RecordCursorFactory factory = compiler.compile("select l, first(sym) from x", parallelContext).getRecordCursorFactory()) {
+                Assert.assertTrue(factory instanceof GroupByRecordCursorFactory);
+            }
+            assertResults(compiler, parallelContext, vanillaContext, "select l, first(sym) from x");
+        });
+    }
+
+    @Test
+    public void testQueueFull() throws Exception {
+        // tiny queue makes owner thread aggregate most of the slices
+        executeWithPool(4, 1, 10, (compiler, parallelContext, vanillaContext) -> {
+            compiler.compile(
+                    "create table x as (select rnd_long(0, 200, 0) l, rnd_int(0, 10, 0) i, timestamp_sequence(0, 100000000) ts from long_sequence(10000)) timestamp(ts) partition by DAY",
+                    vanillaContext
+            );
+            assertParallel(compiler, parallelContext, vanillaContext, "select l, count(), sum(i), first(ts), last(ts) from x");
+        });
+    }
+
+    @Test
+    public void testSampleByBucketLargerThanSlice() throws Exception {
+        // every bucket spans several nominal slices, so that slices collapse onto bucket boundaries
+        executeWithPool(4, 64, 10, (compiler, parallelContext, vanillaContext) -> {
+            compiler.compile(
+                    "create table x as (select rnd_symbol('A','B') sym, rnd_int(0, 100, 0) i, timestamp_sequence(0, 60000000) ts from long_sequence(3000)) timestamp(ts)",
+                    vanillaContext
+            );
+            assertParallelSampleBy(compiler, parallelContext, vanillaContext, "select ts, count(), sum(i), first(i), last(i) from x sample by 1d");
+            assertParallelSampleBy(compiler, parallelContext, vanillaContext, "select ts, sym, count(), min(i), max(i) from x sample by 1M");
+        });
+    }
+
+    @Test
+    public void testSampleByColumnTop() throws Exception {
+        executeWithPool(4, 64, 100, (compiler, parallelContext, vanillaContext) -> {
+            compiler.compile(
+                    "create table x as (select rnd_symbol('A','B','C') sym, rnd_long(0, 10, 0) l, timestamp_sequence(0, 100000000) ts from long_sequence(2000)) timestamp(ts) partition by DAY",
+                    vanillaContext
+            );
+            compiler.compile("alter table x add column i int", vanillaContext);
+            compiler.compile(
+                    "insert into x select rnd_symbol('A','B','C') sym, rnd_long(0, 10, 0) l, timestamp_sequence(200000000000, 100000000) ts, rnd_int(0, 1000, 2) i from long_sequence(2000)",
+                    vanillaContext
+            );
+            assertParallelSampleBy(compiler, parallelContext, vanillaContext, "select ts, sym, count(), sum(i), min(i), max(i), first(i), last(l) from x sample by 1h");
+        });
+    }
+
+    @Test
+    public void testSampleByErrorPropagated() throws Exception {
+        executeWithPool(4, 64, 100, (compiler, parallelContext, vanillaContext) -> {
+            compiler.compile(
+                    "create table x as (select x l, rnd_symbol('A','B','C') sym, timestamp_sequence(0, 1000000) ts from long_sequence(10000)) timestamp(ts) partition by HOUR",
+                    vanillaContext
+            );
+            final String query = "select ts, sym, sum(fail_at(l)) from x sample by 1m";
+            try (RecordCursorFactory factory = compiler.compile(query, parallelContext).getRecordCursorFactory()) {
+                Assert.assertTrue(factory instanceof ParallelSampleByRecordCursorFactory);
+                assertFailure(factory, parallelContext);
+                // failed aggregation leaves factory reusable
+                assertFailure(factory, parallelContext);
+            }
+            assertResults(compiler, parallelContext, vanillaContext, "select ts, sym, sum(l) from x sample by 1m");
+        });
+    }
+
+    @Test
+    public void testSampleByFillNotParallel() throws Exception {
+        executeWithPool(4, 64, 100, (compiler, parallelContext, vanillaContext) -> {
+            compiler.compile(
+                    "create table x as (select rnd_symbol('A','B','C') sym, rnd_double(0) d, timestamp_sequence(0, 100000000) ts from long_sequence(2000)) timestamp(ts) partition by DAY",
+                    vanillaContext
+            );
+            final String query = "select ts, sym, sum(d) from x sample by 1h fill(prev)";
+            try (RecordCursorFactory factory = compiler.compile(query, parallelContext).getRecordCursorFactory()) {
+                Assert.assertFalse(factory instanceof ParallelSampleByRecordCursorFactory);
+            }
+            assertResults(compiler, parallelContext, vanillaContext, query);
+        });
+    }
+
+    @Test
+    public void testSampleByKeyed() throws Exception {
+        // first timestamp is not aligned to the bucket, buckets keep the offset of the first row
+        executeWithPool(4, 64, 100, (compiler, parallelContext, vanillaContext) -> {
+            compiler.compile(
+                    "create table x as (" +
+                            "select rnd_symbol('A','B','C', null) sym," +
+                            " rnd_int(0, 5, 0) k," +
+                            " rnd_int(-1000, 1000, 2) i," +
+                            " rnd_long(-1000, 1000, 2) l," +
+                            " rnd_double(2) d," +
+                            " timestamp_sequence(17000000, 33000000) ts" +
+                            " from long_sequence(10000)" +
+                            ") timestamp(ts) partition by DAY",
+                    vanillaContext
+            );
+            assertParallelSampleBy(
+                    compiler,
+                    parallelContext,
+                    vanillaContext,
+                    "select ts, sym, k, count(), sum(i), min(l), max(l), first(d), last(d), avg(d), first(ts), last(ts) from x sample by 1h"
+            );
+            assertParallelSampleBy(compiler, parallelContext, vanillaContext, "select sym, ts, sum(d), ksum(d), nsum(d) from x sample by 7m");
+        });
+    }
+
+    @Test
+    public void testSampleByNotKeyed() throws Exception {
+        executeWithPool(4, 64, 100, (compiler, parallelContext, vanillaContext) -> {
+            compiler.compile(
+                    "create table x as (select rnd_int(0, 100, 2) i, rnd_double(2) d, timestamp_sequence(0, 20000000) ts from long_sequence(10000)) timestamp(ts) partition by DAY",
+                    vanillaContext
+            );
+            assertParallelSampleBy(compiler, parallelContext, vanillaContext, "select ts, count(), sum(i), min(d), max(d), first(i), last(i) from x sample by 10m");
+            assertParallelSampleBy(compiler, parallelContext, vanillaContext, "select count(), sum(i), ts from x sample by 3s");
+        });
+    }
+
+    @Test
+    public void testSampleByNotThreadSafe() throws Exception {
+        executeWithPool(4, 64, 100, (compiler, parallelContext, vanillaContext) -> {
+            compiler.compile(
+                    "create table x as (select rnd_symbol('A','B','C') sym, rnd_long(0, 10, 0) l, timestamp_sequence(0, 1000000) ts from long_sequence(1000)) timestamp(ts)",
+                    vanillaContext
+            );
+            final String query = "select ts, l, first(sym) from x sample by 1m";
+            try (RecordCursorFactory factory = compiler.compile(query, parallelContext).getRecordCursorFactory()) {
+                Assert.assertFalse(factory instanceof ParallelSampleByRecordCursorFactory);
+            }
+            assertResults(compiler, parallelContext, vanillaContext, query);
+        });
+    }
+
+    @Test
+    public void testSingleFrame() throws Exception {
+        // table is not partitioned, slices split the only page frame
+        executeWithPool(4, 64, 100, (compiler, parallelContext, vanillaContext) -> {
+            compiler.compile(
+                    "create table x as (select rnd_long(0, 1000, 1) l, rnd_int(0, 10, 0) i, timestamp_sequence(0, 1000000) ts from long_sequence(10000)) timestamp(ts)",
+                    vanillaContext
+            );
+            assertParallel(compiler, parallelContext, vanillaContext, "select l, count(), sum(i), max(i), first(ts), last(ts) from x");
+            assertParallel(compiler, parallelContext, vanillaContext, "select l, i, count() from x order by l, i");
+        });
+    }
+
+    private static void assertFailure(RecordCursorFactory factory, SqlExecutionContext executionContext) {
+        try (RecordCursor cursor = factory.getCursor(executionContext)) {
+            //noinspection StatementWithEmptyBody
+            while (cursor.hasNext()) {
+            }
+            Assert.fail();
+        } catch (CairoException e) {
+            Assert.assertEquals(42, e.getErrno());
+            TestUtils.assertEquals("aggregation failed [value=5000]", e.getFlyweightMessage());
+        }
+    }
+
+    private static void assertParallel(
+            SqlCompiler compiler,
+            SqlExecutionContext parallelContext,
+            SqlExecutionContext vanillaContext,
+            String query
+    ) throws SqlException {
+        try (RecordCursorFactory factory = compiler.compile(query, parallelContext).getRecordCursorFactory()) {
+            if (!query.contains("order by")) {
+                Assert.assertTrue(factory instanceof ParallelGroupByRecordCursorFactory);
+            }
+        }
+        assertResults(compiler, parallelContext, vanillaContext, query);
+    }
+
+    private static void assertParallelSampleBy(
+            SqlCompiler compiler,
+            SqlExecutionContext parallelContext,
+            SqlExecutionContext vanillaContext,
+            String query
+    ) throws SqlException {
+        try (RecordCursorFactory factory = compiler.compile(query, parallelContext).getRecordCursorFactory()) {
+            Assert.assertTrue(factory instanceof ParallelSampleByRecordCursorFactory);
+        }
+        try (RecordCursorFactory factory = compiler.compile(query, vanillaContext).getRecordCursorFactory()) {
+            Assert.assertFalse(factory instanceof ParallelSampleByRecordCursorFactory);
+        }
+        assertResults(compiler, parallelContext, vanillaContext, query);
+    }
+
+    private static void assertResults(
+            SqlCompiler compiler,
+            SqlExecutionContext parallelContext,
+            SqlExecutionContext vanillaContext,
+            String query
+    ) throws SqlException {
+        TestUtils.printSql(compiler, vanillaContext, query, expectedSink);
+        TestUtils.assertSql(compiler, parallelContext, query, sink, expectedSink);
+    }
+
+    private static void executeWithPool(
+            int workerCount,
+            int queueCapacity,
+            int sliceRowCount,
+            ParallelGroupByRunnable runnable
+    ) throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final int[] affinity = new int[workerCount];
+            for (int i = 0; i < workerCount; i++) {
+                affinity[i] = -1;
+            }
+
+            final WorkerPool pool = new WorkerPool(
+                    new WorkerPoolAwareConfiguration() {
+                        @Override
+                        public int[] getWorkerAffinity() {
+                            return affinity;
+                        }
+
+                        @Override
+                        public int getWorkerCount() {
+                            return workerCount;
+                        }
+
+                        @Override
+                        public boolean haltOnError() {
+                            return false;
+                        }
+
+                        @Override
+                        public boolean isEnabled() {
+                            return true;
+                        }
+                    }
+            );
+
+            final CairoConfiguration configuration = new DefaultCairoConfiguration(root) {
+                @Override
+                public int getPageFrameGroupByQueueCapacity() {
+                    return queueCapacity;
+                }
+
+                @Override
+                public int getSqlParallelGroupBySliceRowCount() {
+                    return sliceRowCount;
+                }
+            };
+
+            final ArrayList<FunctionFactory> functions = new ArrayList<>();
+            for (FunctionFactory factory : ServiceLoader.load(FunctionFactory.class, FunctionFactory.class.getClassLoader())) {
+                functions.add(factory);
+            }
+            functions.add(new FailAtFunctionFactory());
+
+            try (
+                    final CairoEngine engine = new CairoEngine(configuration);
+                    final SqlCompiler compiler = new SqlCompiler(engine, engine.getMessageBus(), new FunctionFactoryCache(configuration, functions));
+                    final SqlExecutionContext parallelContext = new SqlExecutionContextImpl(engine, workerCount);
+                    final SqlExecutionContext vanillaContext = new SqlExecutionContextImpl(engine, 1)
+            ) {
+                try {
+                    pool.assignCleaner(Path.CLEANER);
+                    pool.assign(new PageFrameGroupByJob(engine.getMessageBus()));
+                    pool.start(LOG);
+
+                    runnable.run(compiler, parallelContext, vanillaContext);
+                    Assert.assertEquals(0, engine.getBusyWriterCount());
+                    Assert.assertEquals(0, engine.getBusyReaderCount());
+                } finally {
+                    pool.halt();
+                }
+            }
+        });
+    }
+
+    // thread-safe function that fails on the given value
+    private static class FailAtFunctionFactory implements FunctionFactory {
+        @Override
+        public String getSignature() {
+            return "fail_at(L)";
+        }
+
+        @Override
+        public Function newInstance(int position, ObjList<Function> args, IntList argPositions, CairoConfiguration configuration, SqlExecutionContext sqlExecutionContext) {
+            return new FailAtFunction(args.getQuick(0));
+        }
+
+        private static class FailAtFunction extends LongFunction implements UnaryFunction {
+            private final Function arg;
+
+            FailAtFunction(Function arg) {
+                this.arg = arg;
+            }
+
+            @Override
+            public Function getArg() {
+                return arg;
+            }
+
+            @Override
+            public long getLong(Record rec) {
+                final long value = arg.getLong(rec);
+                if (value == 5000) {
+                    throw CairoException.instance(42).put("aggregation failed [value=").put(value).put(']');
+                }
+                return value;
+            }
+
+            @Override
+            public boolean isReadThreadSafe() {
+                return true;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface ParallelGroupByRunnable {
+        void run(SqlCompiler compiler, SqlExecutionContext parallelContext, SqlExecutionContext vanillaContext) throws Exception;
+    }
+}
@@ -0,0 +1,350 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin;
+
+import io.questdb.WorkerPoolAwareConfiguration;
+import io.questdb.cairo.CairoConfiguration;
+import io.questdb.cairo.CairoEngine;
+import io.questdb.cairo.DefaultCairoConfiguration;
+import io.questdb.cairo.sql.RecordCursor;
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.griffin.engine.LimitOverflowException;
+import io.questdb.griffin.engine.functions.rnd.SharedRandom;
+import io.questdb.griffin.engine.join.PageFrameHashJoinJob;
+import io.questdb.griffin.engine.join.ParallelHashJoinLightRecordCursorFactory;
+import io.questdb.griffin.engine.table.SelectedRecordCursorFactory;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.mp.WorkerPool;
+import io.questdb.std.Rnd;
+import io.questdb.std.str.Path;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+public class ParallelHashJoinTest {
+    private static final Log LOG = LogFactory.getLog(ParallelHashJoinTest.class);
+    private static final StringSink sink = new StringSink();
+    private static final StringSink expectedSink = new StringSink();
+    @ClassRule
+    public static TemporaryFolder temp = new TemporaryFolder();
+    private static CharSequence root;
+
+    @BeforeClass
+    public static void setupStatic() {
+        try {
+            root = temp.newFolder("dbRoot").getAbsolutePath();
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        SharedRandom.RANDOM.set(new Rnd());
+        TestUtils.createTestPath(root);
+    }
+
+    @After
+    public void tearDown() {
+        TestUtils.removeTestPath(root);
+    }
+
+    @Test
+    public void testColumnTop() throws Exception {
+        executeWithPool(4, 100, true, (compiler, parallelContext, vanillaContext) -> {
+            createTables(compiler, vanillaContext);
+            compiler.compile("alter table x add column j int", vanillaContext);
+            compiler.compile("alter table y add column j int", vanillaContext);
+            compiler.compile(
+                    "insert into x select rnd_symbol('A','B','C') sym, rnd_int(0, 50, 0) k, rnd_long(0, 10, 0) l, timestamp_sequence(5000000000000, 10000000000) ts, rnd_int(0, 20, 2) j from long_sequence(500)",
+                    vanillaContext
+            );
+            compiler.compile(
+                    "insert into y select rnd_int(0, 50, 0) k, rnd_long(0, 10, 0) l, rnd_double() d, rnd_symbol('X','Y') s, timestamp_sequence(5000000000000, 10000000000) ts, rnd_int(0, 20, 2) j from long_sequence(100)",
+                    vanillaContext
+            );
+            assertParallel(compiler, parallelContext, vanillaContext, "x join y on (j)");
+            assertParallel(compiler, parallelContext, vanillaContext, "x join y on (k, j)");
+        });
+    }
+
+    @Test
+    public void testEmptySlave() throws Exception {
+        executeWithPool(4, 100, true, (compiler, parallelContext, vanillaContext) -> {
+            createTables(compiler, vanillaContext);
+            assertParallel(compiler, parallelContext, vanillaContext, "x join (y where ts > '2100-01-01') on (k)");
+            assertParallel(compiler, parallelContext, vanillaContext, "(x where ts > '2100-01-01') join y on (k)");
+        });
+    }
+
+    @Test
+    public void testFloatingPointKeys() throws Exception {
+        executeWithPool(4, 100, true, (compiler, parallelContext, vanillaContext) -> {
+            compiler.compile(
+                    "create table x as (select rnd_double(2) d, rnd_float(2) f, rnd_long() l from long_sequence(2000))",
+                    vanillaContext
+            );
+            compiler.compile("create table y as (select * from x where rnd_boolean())", vanillaContext);
+            assertParallel(compiler, parallelContext, vanillaContext, "x join y on (d)");
+            assertParallel(compiler, parallelContext, vanillaContext, "x join y on (f)");
+        });
+    }
+
+    @Test
+    public void testMemoryLimitExceeded() throws Exception {
+        executeWithPool(4, 100, true, 256, 1, (compiler, parallelContext, vanillaContext) -> {
+            createTables(compiler, vanillaContext);
+            try (RecordCursorFactory factory = compiler.compile("x join y on (k)", parallelContext).getRecordCursorFactory()) {
+                Assert.assertTrue(unwrap(factory) instanceof ParallelHashJoinLightRecordCursorFactory);
+                try (RecordCursor ignored = factory.getCursor(parallelContext)) {
+                    Assert.fail();
+                } catch (LimitOverflowException e) {
+                    TestUtils.assertContains(e.getFlyweightMessage(), "breached");
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testMemoryNotProportionalToOutput() throws Exception {
+        // every master row matches about hundred slave rows, pairs of row ids of the output
+        // would not fit the limit, matched master rows do
+        executeWithPool(4, 100, true, 4096, 16, (compiler, parallelContext, vanillaContext) -> {
+            compiler.compile(
+                    "create table x as (select rnd_int(0, 2, 0) k, rnd_long() l from long_sequence(2000))",
+                    vanillaContext
+            );
+            compiler.compile(
+                    "create table y as (select rnd_int(0, 2, 0) k, rnd_double() d from long_sequence(300))",
+                    vanillaContext
+            );
+            assertParallel(compiler, parallelContext, vanillaContext, "x join y on (k)");
+        });
+    }
+
+    @Test
+    public void testMultipleKeys() throws Exception {
+        executeWithPool(4, 100, true, (compiler, parallelContext, vanillaContext) -> {
+            createTables(compiler, vanillaContext);
+            assertParallel(compiler, parallelContext, vanillaContext, "x join y on (k, l)");
+            assertParallel(compiler, parallelContext, vanillaContext, "select x.sym, y.s, x.k, y.d from x join y on (k, l) where y.d > 0.5");
+        });
+    }
+
+    @Test
+    public void testOrdered() throws Exception {
+        executeWithPool(4, 100, true, (compiler, parallelContext, vanillaContext) -> {
+            createTables(compiler, vanillaContext);
+            try (RecordCursorFactory factory = compiler.compile("x join y on (k)", parallelContext).getRecordCursorFactory()) {
+                Assert.assertEquals(3, factory.getMetadata().getTimestampIndex());
+            }
+            assertParallel(compiler, parallelContext, vanillaContext, "x join y on (k)");
+            assertParallel(compiler, parallelContext, vanillaContext, "select x.sym, x.k, y.s, y.d, x.ts from x join y on (k)");
+        });
+    }
+
+    @Test
+    public void testSingleWorkerNotParallel() throws Exception {
+        executeWithPool(4, 100, true, (compiler, parallelContext, vanillaContext) -> {
+            createTables(compiler, vanillaContext);
+            try (RecordCursorFactory factory = compiler.compile("x join y on (k)", vanillaContext).getRecordCursorFactory()) {
+                Assert.assertFalse(unwrap(factory) instanceof ParallelHashJoinLightRecordCursorFactory);
+            }
+        });
+    }
+
+    @Test
+    public void testSymbolKeyNotParallel() throws Exception {
+        executeWithPool(4, 100, true, (compiler, parallelContext, vanillaContext) -> {
+            createTables(compiler, vanillaContext);
+            compiler.compile("create table z as (select rnd_symbol('A','B','C') sym, rnd_int() i from long_sequence(100))", vanillaContext);
+            final String query = "x join z on (sym)";
+            try (RecordCursorFactory factory = compiler.compile(query, parallelContext).getRecordCursorFactory()) {
+                Assert.assertFalse(unwrap(factory) instanceof ParallelHashJoinLightRecordCursorFactory);
+            }
+            assertResults(compiler, parallelContext, vanillaContext, query);
+        });
+    }
+
+    @Test
+    public void testUnordered() throws Exception {
+        executeWithPool(4, 100, false, (compiler, parallelContext, vanillaContext) -> {
+            createTables(compiler, vanillaContext);
+            try (RecordCursorFactory factory = compiler.compile("x join y on (k)", parallelContext).getRecordCursorFactory()) {
+                Assert.assertTrue(unwrap(factory) instanceof ParallelHashJoinLightRecordCursorFactory);
+                Assert.assertEquals(-1, factory.getMetadata().getTimestampIndex());
+            }
+            assertResults(compiler, parallelContext, vanillaContext, "select * from (x join y on (k)) order by ts, ts1");
+            assertResults(compiler, parallelContext, vanillaContext, "select k, count() from (x join y on (k)) order by k");
+        });
+    }
+
+    private static void assertParallel(
+            SqlCompiler compiler,
+            SqlExecutionContext parallelContext,
+            SqlExecutionContext vanillaContext,
+            String query
+    ) throws SqlException {
+        if (!query.startsWith("select")) {
+            try (RecordCursorFactory factory = compiler.compile(query, parallelContext).getRecordCursorFactory()) {
+                Assert.assertTrue(unwrap(factory) instanceof ParallelHashJoinLightRecordCursorFactory);
+            }
+        }
+        assertResults(compiler, parallelContext, vanillaContext, query);
+    }
+
+    private static void assertResults(
+            SqlCompiler compiler,
+            SqlExecutionContext parallelContext,
+            SqlExecutionContext vanillaContext,
+            String query
+    ) throws SqlException {
+        TestUtils.printSql(compiler, vanillaContext, query, expectedSink);
+        TestUtils.assertSql(compiler, parallelContext, query, sink, expectedSink);
+    }
+
+    private static RecordCursorFactory unwrap(RecordCursorFactory factory) {
+        if (factory instanceof SelectedRecordCursorFactory) {
+            return ((SelectedRecordCursorFactory) factory).getBaseFactory();
+        }
+        return factory;
+    }
+
+    private static void createTables(SqlCompiler compiler, SqlExecutionContext context) throws SqlException {
+        compiler.compile(
+                "create table x as (" +
+                        "select rnd_symbol('A','B','C') sym, rnd_int(0, 50, 0) k, rnd_long(0, 10, 0) l, timestamp_sequence(0, 1000000000) ts" +
+                        " from long_sequence(2000)" +
+                        ") timestamp(ts) partition by DAY",
+                context
+        );
+        compiler.compile(
+                "create table y as (" +
+                        "select rnd_int(0, 50, 0) k, rnd_long(0, 10, 0) l, rnd_double() d, rnd_symbol('X','Y') s, timestamp_sequence(0, 10000000000) ts" +
+                        " from long_sequence(300)" +
+                        ") timestamp(ts) partition by DAY",
+                context
+        );
+    }
+
+    private static void executeWithPool(
+            int workerCount,
+            int sliceRowCount,
+            boolean ordered,
+            ParallelHashJoinRunnable runnable
+    ) throws Exception {
+        executeWithPool(workerCount, sliceRowCount, ordered, 1048576, Integer.MAX_VALUE, runnable);
+    }
+
+    private static void executeWithPool(
+            int workerCount,
+            int sliceRowCount,
+            boolean ordered,
+            int valuePageSize,
+            int valueMaxPages,
+            ParallelHashJoinRunnable runnable
+    ) throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final int[] affinity = new int[workerCount];
+            for (int i = 0; i < workerCount; i++) {
+                affinity[i] = -1;
+            }
+
+            final WorkerPool pool = new WorkerPool(
+                    new WorkerPoolAwareConfiguration() {
+                        @Override
+                        public int[] getWorkerAffinity() {
+                            return affinity;
+                        }
+
+                        @Override
+                        public int getWorkerCount() {
+                            return workerCount;
+                        }
+
+                        @Override
+                        public boolean haltOnError() {
+                            return false;
+                        }
+
+                        @Override
+                        public boolean isEnabled() {
+                            return true;
+                        }
+                    }
+            );
+
+            final CairoConfiguration configuration = new DefaultCairoConfiguration(root) {
+                @Override
+                public int getSqlHashJoinLightValueMaxPages() {
+                    return valueMaxPages;
+                }
+
+                @Override
+                public int getSqlHashJoinLightValuePageSize() {
+                    return valuePageSize;
+                }
+
+                @Override
+                public int getSqlParallelHashJoinSliceRowCount() {
+                    return sliceRowCount;
+                }
+
+                @Override
+                public boolean isSqlParallelHashJoinOrdered() {
+                    return ordered;
+                }
+            };
+
+            try (
+                    final CairoEngine engine = new CairoEngine(configuration);
+                    final SqlCompiler compiler = new SqlCompiler(engine);
+                    final SqlExecutionContext parallelContext = new SqlExecutionContextImpl(engine, workerCount);
+                    final SqlExecutionContext vanillaContext = new SqlExecutionContextImpl(engine, 1)
+            ) {
+                try {
+                    pool.assignCleaner(Path.CLEANER);
+                    pool.assign(new PageFrameHashJoinJob(engine.getMessageBus()));
+                    pool.start(LOG);
+
+                    runnable.run(compiler, parallelContext, vanillaContext);
+                    Assert.assertEquals(0, engine.getBusyWriterCount());
+                    Assert.assertEquals(0, engine.getBusyReaderCount());
+                } finally {
+                    pool.halt();
+                }
+            }
+        });
+    }
+
+    @FunctionalInterface
+    interface ParallelHashJoinRunnable {
+        void run(SqlCompiler compiler, SqlExecutionContext parallelContext, SqlExecutionContext vanillaContext) throws Exception;
+    }
+}
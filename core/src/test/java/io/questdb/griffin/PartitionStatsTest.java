@@ -0,0 +1,438 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin;
+
+import io.questdb.cairo.FullFwdDataFrameCursorFactory;
+import io.questdb.cairo.PartitionStats;
+import io.questdb.cairo.TableReader;
+import io.questdb.cairo.TableUtils;
+import io.questdb.cairo.security.AllowAllCairoSecurityContext;
+import io.questdb.cairo.sql.DataFrame;
+import io.questdb.cairo.sql.DataFrameCursor;
+import io.questdb.griffin.engine.functions.rnd.SharedRandom;
+import io.questdb.griffin.engine.table.PartitionStatsDataFrameCursorFactory;
+import io.questdb.griffin.engine.table.PartitionStatsFilter;
+import io.questdb.griffin.model.QueryModel;
+import io.questdb.log.Log;
+import io.questdb.log.LogFactory;
+import io.questdb.std.DirectLongList;
+import io.questdb.std.FilesFacadeImpl;
+import io.questdb.std.Rnd;
+import io.questdb.std.Unsafe;
+import io.questdb.std.str.Path;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PartitionStatsTest extends AbstractGriffinTest {
+    private static final Log LOG = LogFactory.getLog(PartitionStatsTest.class);
+    private static final QueryModel queryModel = QueryModel.FACTORY.newInstance();
+
+    @Before
+    public void setUp3() {
+        SharedRandom.RANDOM.set(new Rnd());
+        configOverridePartitionStatsEnabled = true;
+    }
+
+    @Test
+    public void testDropColumn() throws Exception {
+        assertMemoryLeak(() -> {
+            createXY();
+            assertStats("2018-01-03", "px", true);
+            compiler.compile("alter table x drop column px", sqlExecutionContext);
+            assertStats("2018-01-03", "px", false);
+            assertCursors("select seq from y where seq > 2000", "select seq from x where seq > 2000");
+        });
+    }
+
+    @Test
+    public void testMatchingPartitions() throws Exception {
+        assertMemoryLeak(() -> {
+            createXY();
+            assertMatchingPartitions("seq = 30", "0,8");
+            assertMatchingPartitions("30 = seq", "0,8");
+            assertMatchingPartitions("px > 45", "7,8");
+            assertMatchingPartitions("45 < px", "7,8");
+            assertMatchingPartitions("px >= 45.5 and seq > 0", "7,8");
+            assertMatchingPartitions("seq < 360", "0,8");
+            assertMatchingPartitions("seq <= 360", "0,1,8");
+            assertMatchingPartitions("px > 45 and seq < 360", "8");
+            assertMatchingPartitions("i < 0", "8");
+            assertMatchingPartitions("d > 2", "8");
+            assertMatchingPartitions("sym = 'msft'", "0,1,2,3,4,5,6,7,8");
+            assertMatchingPartitions("sym = 'oracle'", "0,1,2,3,4,5,6,7,8");
+            // nulls compare as the smallest value
+            assertMatchingPartitions("j < 0", "0,1,2,3,4,5,6,7,8");
+            assertMatchingPartitions("px > 45 or seq = 30", null);
+            assertMatchingPartitions("c = 'ABC'", null);
+            assertMatchingPartitions("px + 1 > 45", null);
+        });
+    }
+
+    @Test
+    public void testO3InvalidatesStats() throws Exception {
+        assertMemoryLeak(() -> {
+            createXY();
+            assertMatchingPartitions("seq = 1000000", "8");
+
+            compiler.compile(
+                    "insert into x select" +
+                            " i, sym, amt, cast('2018-01-03T10:00:00.000000Z' as timestamp) timestamp," +
+                            " b, c, d, e, f, g, ik, j, k, l, m, n, 1000000 seq, 100.0 px" +
+                            " from y where i = 1",
+                    sqlExecutionContext
+            );
+
+            // merged partition has statistics recomputed
+            assertMatchingPartitions("seq = 30", "0,8");
+            assertMatchingPartitions("seq = 1000000", "2,8");
+            assertMatchingPartitions("px > 99", "2,8");
+            assertSql(
+                    "select i, timestamp, seq, px from x where seq = 1000000",
+                    "i\ttimestamp\tseq\tpx\n" +
+                            "1\t2018-01-03T10:00:00.000000Z\t1000000\t100.0\n"
+            );
+            assertSql("select count() from x where px > 99", "count\n1\n");
+        });
+    }
+
+    @Test
+    public void testQueries() throws Exception {
+        assertMemoryLeak(() -> {
+            createXY();
+            final String[] filters = {
+                    "seq = 30",
+                    "seq > 2700",
+                    "seq <= 360 and px < 10",
+                    "px > 45",
+                    "45.0 <= px",
+                    "px = 10",
+                    "i < 10",
+                    "i > 990",
+                    "sym = 'msft'",
+                    "sym = 'oracle'",
+                    "ik = 'XYZ' and seq > 100",
+                    "d > 0.99",
+                    "e < 0.01",
+                    "f = 100",
+                    "l > 48",
+                    "g < 1000",
+                    "j < 0",
+                    "timestamp > '2018-01-05' and seq < 1200",
+                    "k > 500000000000",
+            };
+            for (String filter : filters) {
+                assertCursors("y where " + filter, "x where " + filter);
+            }
+        });
+    }
+
+    @Test
+    public void testRenameColumn() throws Exception {
+        assertMemoryLeak(() -> {
+            createXY();
+            compiler.compile("alter table x rename column px to price", sqlExecutionContext);
+            assertStats("2018-01-03", "px", false);
+            assertStats("2018-01-03", "price", true);
+            assertMatchingPartitions("price > 45", "7,8");
+            assertCursors("select px from y where px > 45", "select price px from x where price > 45");
+        });
+    }
+
+    @Test
+    public void testStatsDisabled() throws Exception {
+        assertMemoryLeak(() -> {
+            configOverridePartitionStatsEnabled = false;
+            createXY();
+            assertStats("2018-01-03", "px", false);
+            assertStats("2018-01-03", "sym", false);
+            assertCursors("y where px > 45", "x where px > 45");
+        });
+    }
+
+    @Test
+    public void testStatsFiles() throws Exception {
+        assertMemoryLeak(() -> {
+            createXY();
+            for (String column : new String[]{"i", "sym", "timestamp", "d", "e", "f", "g", "ik", "j", "k", "l", "seq", "px"}) {
+                assertStats("2018-01-01", column, true);
+                assertStats("2018-01-08", column, true);
+                // last partition is being appended to
+                assertStats("2018-01-09", column, false);
+            }
+            // variable length and boolean columns have no statistics
+            for (String column : new String[]{"b", "c", "m", "n"}) {
+                assertStats("2018-01-01", column, false);
+            }
+
+            try (
+                    TableReader reader = engine.getReader(AllowAllCairoSecurityContext.INSTANCE, "x");
+                    Path path = new Path()
+            ) {
+                final long buf = Unsafe.malloc(PartitionStats.SIZE);
+                try {
+                    path.of(root).concat("x").concat("2018-01-08");
+                    Assert.assertTrue(PartitionStats.read(FilesFacadeImpl.INSTANCE, path, "seq", reader.openPartition(7), buf));
+                    Assert.assertEquals(reader.openPartition(7), Unsafe.getUnsafe().getLong(buf + PartitionStats.OFFSET_ROW_COUNT));
+                    Assert.assertEquals(2520, Unsafe.getUnsafe().getLong(buf + PartitionStats.OFFSET_MIN));
+                    Assert.assertEquals(2877, Unsafe.getUnsafe().getLong(buf + PartitionStats.OFFSET_MAX));
+                    Assert.assertEquals(0, Unsafe.getUnsafe().getLong(buf + PartitionStats.OFFSET_NULL_COUNT));
+
+                    Assert.assertTrue(PartitionStats.read(FilesFacadeImpl.INSTANCE, path, "sym", reader.openPartition(7), buf));
+                    Assert.assertEquals(0, Unsafe.getUnsafe().getLong(buf + PartitionStats.OFFSET_MIN));
+                    Assert.assertEquals(2, Unsafe.getUnsafe().getLong(buf + PartitionStats.OFFSET_MAX));
+                    Assert.assertEquals(3, Unsafe.getUnsafe().getLong(buf + PartitionStats.OFFSET_DISTINCT_COUNT));
+
+                    // row count mismatch
+                    Assert.assertFalse(PartitionStats.read(FilesFacadeImpl.INSTANCE, path, "seq", reader.openPartition(7) + 1, buf));
+                } finally {
+                    Unsafe.free(buf, PartitionStats.SIZE);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testZoneMapColumnTop() throws Exception {
+        assertMemoryLeak(() -> {
+            configOverridePartitionZoneMapBlockSize = 16;
+            createXY();
+            compiler.compile("alter table x add column z int", sqlExecutionContext);
+            // column top is in the middle of block 2 of partition 2018-01-09
+            compiler.compile(
+                    "insert into x select" +
+                            " i, sym, amt, cast(1515488400000000L + i * 60000000L as timestamp) timestamp," +
+                            " b, c, d, e, f, g, ik, j, k, l, m, n, seq, px, i z" +
+                            " from y where i <= 30",
+                    sqlExecutionContext
+            );
+            compiler.compile(
+                    "insert into x select" +
+                            " i, sym, amt, cast(1515542400000000L as timestamp) timestamp," +
+                            " b, c, d, e, f, g, ik, j, k, l, m, n, seq, px, i z" +
+                            " from y where i = 1",
+                    sqlExecutionContext
+            );
+            assertDataFrames("z = 20", "8:48-64,9:0-1");
+            assertDataFrames("z > 28", "8:64-71,9:0-1");
+            assertSql("select z from x where z = 20", "z\n20\n");
+            assertSql("select count() from x where z > 25", "count\n5\n");
+        });
+    }
+
+    @Test
+    public void testZoneMapDataFrames() throws Exception {
+        assertMemoryLeak(() -> {
+            configOverridePartitionZoneMapBlockSize = 16;
+            createXY();
+            assertDataFrames("seq = 30", "0:0-16,8:0-41");
+            assertDataFrames("seq > 2700 and seq < 2760", "7:48-80,8:0-41");
+            assertDataFrames("seq < 100 and px < 2", "0:0-48,8:0-41");
+            assertDataFrames("k > 0", "0:0-119,1:0-120,2:0-120,3:0-120,4:0-120,5:0-120,6:0-120,7:0-120,8:0-41");
+        });
+    }
+
+    @Test
+    public void testZoneMapFiles() throws Exception {
+        assertMemoryLeak(() -> {
+            configOverridePartitionZoneMapBlockSize = 16;
+            createXY();
+            assertZoneMap("2018-01-08", "seq", true);
+            assertZoneMap("2018-01-09", "seq", false);
+            assertZoneMap("2018-01-08", "c", false);
+
+            try (
+                    TableReader reader = engine.getReader(AllowAllCairoSecurityContext.INSTANCE, "x");
+                    DirectLongList zoneMap = new DirectLongList(16)
+            ) {
+                Assert.assertTrue(reader.readColumnZoneMap(7, reader.getMetadata().getColumnIndex("seq"), zoneMap));
+                Assert.assertEquals(16, PartitionStats.getBlockSize(zoneMap));
+
+                long block = PartitionStats.getBlockAddress(zoneMap, 0);
+                Assert.assertEquals(16, Unsafe.getUnsafe().getLong(block + PartitionStats.OFFSET_ROW_COUNT));
+                Assert.assertEquals(2520, Unsafe.getUnsafe().getLong(block + PartitionStats.OFFSET_MIN));
+                Assert.assertEquals(2565, Unsafe.getUnsafe().getLong(block + PartitionStats.OFFSET_MAX));
+
+                block = PartitionStats.getBlockAddress(zoneMap, 119);
+                Assert.assertEquals(8, Unsafe.getUnsafe().getLong(block + PartitionStats.OFFSET_ROW_COUNT));
+                Assert.assertEquals(2856, Unsafe.getUnsafe().getLong(block + PartitionStats.OFFSET_MIN));
+                Assert.assertEquals(2877, Unsafe.getUnsafe().getLong(block + PartitionStats.OFFSET_MAX));
+                Assert.assertEquals(0, PartitionStats.getBlockAddress(zoneMap, 128));
+
+                // partition statistics are merged from blocks
+                final long buf = Unsafe.malloc(PartitionStats.SIZE);
+                try {
+                    Assert.assertTrue(reader.readColumnStats(7, reader.getMetadata().getColumnIndex("seq"), buf));
+                    Assert.assertEquals(2520, Unsafe.getUnsafe().getLong(buf + PartitionStats.OFFSET_MIN));
+                    Assert.assertEquals(2877, Unsafe.getUnsafe().getLong(buf + PartitionStats.OFFSET_MAX));
+                } finally {
+                    Unsafe.free(buf, PartitionStats.SIZE);
+                }
+
+                // last partition
+                Assert.assertFalse(reader.readColumnZoneMap(8, reader.getMetadata().getColumnIndex("seq"), zoneMap));
+            }
+
+            compiler.compile("alter table x rename column seq to sq", sqlExecutionContext);
+            assertZoneMap("2018-01-08", "seq", false);
+            assertZoneMap("2018-01-08", "sq", true);
+            compiler.compile("alter table x drop column sq", sqlExecutionContext);
+            assertZoneMap("2018-01-08", "sq", false);
+        });
+    }
+
+    @Test
+    public void testZoneMapQueries() throws Exception {
+        assertMemoryLeak(() -> {
+            configOverridePartitionZoneMapBlockSize = 16;
+            createXY();
+            final String[] filters = {
+                    "seq = 30",
+                    "seq > 2700 and seq < 2760",
+                    "px > 45.3",
+                    "i < 10 or i > 990",
+                    "sym = 'msft' and seq < 700",
+                    "d > 0.99",
+                    "e < 0.01",
+                    "j < 0",
+                    "l = 20",
+            };
+            for (String filter : filters) {
+                assertCursors("y where " + filter, "x where " + filter);
+            }
+        });
+    }
+
+    private static void assertStats(String partition, String column, boolean exists) {
+        try (Path path = new Path()) {
+            path.of(root).concat("x").concat(partition).concat(column).put(".st").$();
+            Assert.assertEquals(path.toString(), exists, FilesFacadeImpl.INSTANCE.exists(path));
+        }
+    }
+
+    private static void assertZoneMap(String partition, String column, boolean exists) {
+        try (Path path = new Path()) {
+            path.of(root).concat("x").concat(partition).concat(column).put(".zm").$();
+            Assert.assertEquals(path.toString(), exists, FilesFacadeImpl.INSTANCE.exists(path));
+        }
+    }
+
+    private void assertCursors(String expected, String actual) throws SqlException {
+        TestUtils.assertSqlCursors(compiler, sqlExecutionContext, expected, actual, LOG);
+    }
+
+    private void assertMatchingPartitions(String filter, String expected) throws SqlException {
+        queryModel.clear();
+        try (TableReader reader = engine.getReader(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+            final PartitionStatsFilter statsFilter = PartitionStatsFilter.of(
+                    compiler.testParseExpression(filter, queryModel),
+                    column -> column,
+                    reader.getMetadata()
+            );
+            if (expected == null) {
+                Assert.assertNull(statsFilter);
+                return;
+            }
+            Assert.assertNotNull(statsFilter);
+            statsFilter.of(reader);
+
+            final StringSink sink = new StringSink();
+            final long buf = Unsafe.malloc(PartitionStats.SIZE);
+            try {
+                for (int i = 0, n = reader.getPartitionCount(); i < n; i++) {
+                    if (statsFilter.mayMatch(reader, i, buf)) {
+                        if (sink.length() > 0) {
+                            sink.put(',');
+                        }
+                        sink.put(i);
+                    }
+                }
+            } finally {
+                Unsafe.free(buf, PartitionStats.SIZE);
+            }
+            TestUtils.assertEquals(expected, sink);
+        }
+    }
+
+    private void assertDataFrames(String filter, String expected) throws SqlException {
+        queryModel.clear();
+        final PartitionStatsFilter statsFilter;
+        try (TableReader reader = engine.getReader(AllowAllCairoSecurityContext.INSTANCE, "x")) {
+            statsFilter = PartitionStatsFilter.of(compiler.testParseExpression(filter, queryModel), column -> column, reader.getMetadata());
+        }
+        Assert.assertNotNull(statsFilter);
+
+        final StringSink sink = new StringSink();
+        try (
+                PartitionStatsDataFrameCursorFactory factory = new PartitionStatsDataFrameCursorFactory(
+                        new FullFwdDataFrameCursorFactory(engine, "x", TableUtils.ANY_TABLE_VERSION),
+                        statsFilter
+                );
+                DataFrameCursor cursor = factory.getCursor(sqlExecutionContext)
+        ) {
+            DataFrame frame;
+            while ((frame = cursor.next()) != null) {
+                if (sink.length() > 0) {
+                    sink.put(',');
+                }
+                sink.put(frame.getPartitionIndex()).put(':').put(frame.getRowLo()).put('-').put(frame.getRowHi());
+            }
+        }
+        TestUtils.assertEquals(expected, sink);
+    }
+
+    private void createXY() throws SqlException {
+        // y is not partitioned, queries against it are never pruned
+        compiler.compile(
+                "create table y as (" +
+                        "select" +
+                        " cast(x as int) i," +
+                        " rnd_symbol('msft','ibm', 'googl') sym," +
+                        " round(rnd_double(0)*100, 3) amt," +
+                        " to_timestamp('2018-01', 'yyyy-MM') + x * 720000000 timestamp," +
+                        " rnd_boolean() b," +
+                        " rnd_str('ABC', 'CDE', null, 'XYZ') c," +
+                        " rnd_double(2) d," +
+                        " rnd_float(2) e," +
+                        " rnd_short(10,1024) f," +
+                        " rnd_date(to_date('2015', 'yyyy'), to_date('2016', 'yyyy'), 2) g," +
+                        " rnd_symbol(4,4,4,2) ik," +
+                        " rnd_long() j," +
+                        " timestamp_sequence(0, 1000000000) k," +
+                        " rnd_byte(2,50) l," +
+                        " rnd_bin(10, 20, 2) m," +
+                        " rnd_str(5,16,2) n," +
+                        " x * 3 seq," +
+                        " cast(x / 20 as double) px" +
+                        " from long_sequence(1000)" +
+                        ") timestamp (timestamp)",
+                sqlExecutionContext
+        );
+        compiler.compile("create table x as (select * from y) timestamp (timestamp) partition by DAY", sqlExecutionContext);
+    }
+}
@@ -0,0 +1,197 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin;
+
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.griffin.engine.functions.rnd.SharedRandom;
+import io.questdb.griffin.engine.orderby.RadixSortLightRecordCursorFactory;
+import io.questdb.griffin.engine.orderby.SortedLightRecordCursorFactory;
+import io.questdb.std.Rnd;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RadixSortTest extends AbstractGriffinTest {
+    private static final StringSink expectedSink = new StringSink();
+
+    @Before
+    public void setUp3() {
+        SharedRandom.RANDOM.set(new Rnd());
+    }
+
+    @Test
+    public void testFactory() throws Exception {
+        assertMemoryLeak(() -> {
+            compiler.compile("create table x (sym symbol, s string, l long, d double, ts timestamp) timestamp(ts)", sqlExecutionContext);
+            assertFactory("select * from x order by l", RadixSortLightRecordCursorFactory.class);
+            assertFactory("select * from x order by d desc, l", RadixSortLightRecordCursorFactory.class);
+            assertFactory("select * from x order by ts desc", RadixSortLightRecordCursorFactory.class);
+            assertFactory("select * from x order by sym", SortedLightRecordCursorFactory.class);
+            assertFactory("select * from x order by l, s", SortedLightRecordCursorFactory.class);
+
+            configOverrideSqlSortRadixEnabled = false;
+            assertFactory("select * from x order by l", SortedLightRecordCursorFactory.class);
+        });
+    }
+
+    @Test
+    public void testMatchesTreeSort() throws Exception {
+        assertMemoryLeak(() -> {
+            compiler.compile(
+                    "create table x as (" +
+                            "select rnd_boolean() bo," +
+                            " rnd_byte(-3, 3) b," +
+                            " rnd_short(-5, 5) sh," +
+                            " rnd_char() c," +
+                            " rnd_int(-10, 10, 2) i," +
+                            " rnd_long(-1000, 1000, 2) l," +
+                            " rnd_float() f," +
+                            " rnd_double() d," +
+                            " rnd_date(to_date('2015', 'yyyy'), to_date('2016', 'yyyy'), 2) dt," +
+                            " timestamp_sequence(0, 100000000) ts" +
+                            " from long_sequence(2000)" +
+                            ") timestamp(ts) partition by DAY",
+                    sqlExecutionContext
+            );
+            assertMatchesTreeSort("select * from x order by l");
+            assertMatchesTreeSort("select * from x order by l desc");
+            assertMatchesTreeSort("select * from x order by i, l desc");
+            assertMatchesTreeSort("select * from x order by bo, b desc");
+            assertMatchesTreeSort("select * from x order by sh, c");
+            assertMatchesTreeSort("select * from x order by f desc");
+            assertMatchesTreeSort("select * from x order by d");
+            assertMatchesTreeSort("select * from x order by dt desc, ts");
+            assertMatchesTreeSort("select * from x order by ts desc");
+            assertMatchesTreeSort("select * from x where i > 0 order by b, sh desc, i");
+        });
+    }
+
+    @Test
+    public void testMatchesTreeSortNulls() throws Exception {
+        assertMemoryLeak(() -> {
+            compiler.compile(
+                    "create table x as (" +
+                            "select rnd_int(-10, 10, 2) i," +
+                            " rnd_long(-1000, 1000, 2) l," +
+                            " cast(rnd_int(-3, 3, 2) as float) f," +
+                            " cast(rnd_int(-3, 3, 2) as double) d," +
+                            " rnd_int(-3, 3, 2) * -0.0 z," +
+                            " rnd_double(2) * 200 - 100 d2," +
+                            " timestamp_sequence(0, 100000000) ts" +
+                            " from long_sequence(2000)" +
+                            ") timestamp(ts) partition by DAY",
+                    sqlExecutionContext
+            );
+            assertMatchesTreeSort("select * from x order by i");
+            assertMatchesTreeSort("select * from x order by l desc");
+            assertMatchesTreeSort("select * from x order by f");
+            assertMatchesTreeSort("select * from x order by f desc, i");
+            assertMatchesTreeSort("select * from x order by d");
+            assertMatchesTreeSort("select * from x order by d desc, l");
+            assertMatchesTreeSort("select * from x order by z, l");
+            assertMatchesTreeSort("select * from x order by z desc, i desc");
+            assertMatchesTreeSort("select * from x order by d2");
+            assertMatchesTreeSort("select * from x order by d2 desc");
+            assertMatchesTreeSort("select * from x order by i, d, f desc");
+        });
+    }
+
+    @Test
+    public void testNullsAndSigns() throws Exception {
+        assertQuery(
+                "l\td\n" +
+                        "NaN\t0.5\n" +
+                        "-9223372036854775807\t-1.0E10\n" +
+                        "-3\tNaN\n" +
+                        "0\t-0.25\n" +
+                        "3\t1.0E10\n" +
+                        "9223372036854775807\t-1.5\n",
+                "select l, d from x order by l",
+                "create table x as (" +
+                        "select cast(null as long) l, 0.5 d from long_sequence(1)" +
+                        " union all select cast(3 as long), 1e10 from long_sequence(1)" +
+                        " union all select cast(-3 as long), cast(null as double) from long_sequence(1)" +
+                        " union all select 9223372036854775807, -1.5 from long_sequence(1)" +
+                        " union all select cast(0 as long), -0.25 from long_sequence(1)" +
+                        " union all select -9223372036854775807, -1e10 from long_sequence(1)" +
+                        ")",
+                null,
+                true,
+                true,
+                true
+        );
+        assertQuery(
+                "l\td\n" +
+                        "3\t1.0E10\n" +
+                        "NaN\t0.5\n" +
+                        "0\t-0.25\n" +
+                        "9223372036854775807\t-1.5\n" +
+                        "-9223372036854775807\t-1.0E10\n" +
+                        "-3\tNaN\n",
+                "select l, d from x order by d desc",
+                null,
+                true,
+                true,
+                true
+        );
+    }
+
+    @Test
+    public void testTies() throws Exception {
+        // rows with equal keys come out in reverse order of the base cursor, same as with tree sort
+        assertQuery(
+                "k\tv\n" +
+                        "1\t5\n" +
+                        "1\t3\n" +
+                        "1\t1\n" +
+                        "2\t6\n" +
+                        "2\t4\n" +
+                        "2\t2\n",
+                "select k, v from x order by k",
+                "create table x as (select cast(2 - x % 2 as int) k, x v from long_sequence(6))",
+                null,
+                true,
+                true,
+                true
+        );
+    }
+
+    private static void assertFactory(String query, Class<?> expected) throws SqlException {
+        try (RecordCursorFactory factory = compiler.compile(query, sqlExecutionContext).getRecordCursorFactory()) {
+            Assert.assertSame(expected, factory.getClass());
+        }
+    }
+
+    private static void assertMatchesTreeSort(String query) throws SqlException {
+        configOverrideSqlSortRadixEnabled = false;
+        TestUtils.printSql(compiler, sqlExecutionContext, query, expectedSink);
+        configOverrideSqlSortRadixEnabled = true;
+        assertFactory(query, RadixSortLightRecordCursorFactory.class);
+        TestUtils.assertSql(compiler, sqlExecutionContext, query, sink, expectedSink);
+    }
+}
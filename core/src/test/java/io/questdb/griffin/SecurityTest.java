@@ -288,7 +288,7 @@ public class SecurityTest extends AbstractGriffinTest {
                 assertQuery(
                         memoryRestrictedCompiler,
                         "sym\td\nVTJW\t0.1985581797355932\nVTJW\t0.21583224269349388\nPEHN\t0.3288176907679504\n",
-                        "select sym, d from tb1 where d < 0.5 ORDER BY d",
+                        "select sym, d from tb1 ORDER BY d",
                         null,
                         true, readOnlyExecutionContext);
                 Assert.fail();
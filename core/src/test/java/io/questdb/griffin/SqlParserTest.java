@@ -1285,7 +1285,7 @@ public class SqlParserTest extends AbstractGriffinTest {
                         "timestamp(t) " +
                         "partition by EPOCH",
                 128,
-                "'NONE', 'DAY', 'MONTH' or 'YEAR' expected"
+                "'NONE', 'HOUR', 'DAY', 'MONTH' or 'YEAR' expected"
         );
     }
 
@@ -0,0 +1,147 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.griffin;
+
+import io.questdb.cairo.sql.RecordCursorFactory;
+import io.questdb.griffin.engine.LimitRecordCursorFactory;
+import io.questdb.griffin.engine.functions.rnd.SharedRandom;
+import io.questdb.griffin.engine.orderby.TopKRecordCursorFactory;
+import io.questdb.griffin.engine.table.SelectedRecordCursorFactory;
+import io.questdb.std.Rnd;
+import io.questdb.std.str.StringSink;
+import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TopKTest extends AbstractGriffinTest {
+    private static final StringSink expectedSink = new StringSink();
+
+    @Before
+    public void setUp3() {
+        SharedRandom.RANDOM.set(new Rnd());
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        assertMemoryLeak(() -> {
+            compiler.compile("create table x (k int, v long)", sqlExecutionContext);
+            assertSql("select k, v from x order by k limit 4", "k\tv\n");
+        });
+    }
+
+    @Test
+    public void testFactory() throws Exception {
+        assertMemoryLeak(() -> {
+            compiler.compile("create table x (sym symbol, s string, l long, d double, ts timestamp) timestamp(ts)", sqlExecutionContext);
+            assertFactory("select * from x order by l limit 10", true);
+            assertFactory("select * from x order by d desc, l limit 5, 10", true);
+            assertFactory("select l, d from x order by ts desc limit 1", true);
+            // variable length keys, no limit, limit from the end and negative limit are not supported
+            assertFactory("select * from x order by s limit 10", false);
+            assertFactory("select * from x order by l", false);
+            assertFactory("select * from x order by l limit -10", false);
+
+            configOverrideSqlSortTopKMaxRows = 100;
+            assertFactory("select * from x order by l limit 100", true);
+            assertFactory("select * from x order by l limit 101", false);
+        });
+    }
+
+    @Test
+    public void testMatchesFullSort() throws Exception {
+        assertMemoryLeak(() -> {
+            compiler.compile(
+                    "create table x as (" +
+                            "select rnd_symbol('A','B','C') sym," +
+                            " rnd_int(0, 10, 2) i," +
+                            " rnd_long(-1000, 1000, 2) l," +
+                            " rnd_double(2) d," +
+                            " timestamp_sequence(0, 100000000) ts" +
+                            " from long_sequence(2000)" +
+                            ") timestamp(ts) partition by DAY",
+                    sqlExecutionContext
+            );
+            assertMatchesFullSort("select * from x order by i limit 10");
+            assertMatchesFullSort("select * from x order by i desc, l limit 25");
+            assertMatchesFullSort("select * from x order by d limit 5");
+            assertMatchesFullSort("select * from x order by ts desc limit 7");
+            assertMatchesFullSort("select * from x order by i, ts desc limit 1");
+            assertMatchesFullSort("select * from x order by l limit 3, 12");
+            assertMatchesFullSort("select * from x order by i limit 5000");
+            assertMatchesFullSort("select * from x where sym = 'A' order by l desc limit 20");
+            assertMatchesFullSort("select i, l from x order by l limit 15");
+        });
+    }
+
+    @Test
+    public void testTies() throws Exception {
+        // rows with equal keys come out in reverse order of the base cursor, same as with full sort
+        assertQuery(
+                "k\tv\n" +
+                        "1\t9\n" +
+                        "1\t7\n" +
+                        "1\t5\n" +
+                        "1\t3\n",
+                "select k, v from x order by k limit 4",
+                "create table x as (select cast(2 - x % 2 as int) k, x v from long_sequence(10))",
+                null,
+                true,
+                true,
+                true
+        );
+    }
+
+    private static void assertFactory(String query, boolean expectTopK) throws SqlException {
+        try (RecordCursorFactory factory = compiler.compile(query, sqlExecutionContext).getRecordCursorFactory()) {
+            Assert.assertEquals(query, expectTopK, isTopK(factory));
+        }
+    }
+
+    private static void assertMatchesFullSort(String query) throws SqlException {
+        configOverrideSqlSortTopKMaxRows = 0;
+        assertFactory(query, false);
+        TestUtils.printSql(compiler, sqlExecutionContext, query, expectedSink);
+        configOverrideSqlSortTopKMaxRows = -1;
+        assertFactory(query, true);
+        TestUtils.assertSql(compiler, sqlExecutionContext, query, sink, expectedSink);
+    }
+
+    private static boolean isTopK(RecordCursorFactory factory) {
+        while (true) {
+            if (factory instanceof TopKRecordCursorFactory) {
+                return true;
+            }
+            if (factory instanceof LimitRecordCursorFactory) {
+                factory = ((LimitRecordCursorFactory) factory).getBaseFactory();
+            } else if (factory instanceof SelectedRecordCursorFactory) {
+                factory = ((SelectedRecordCursorFactory) factory).getBaseFactory();
+            } else {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+package io.questdb.griffin.engine.join;
+
+import io.questdb.std.Rnd;
+import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JoinKeyBloomFilterTest {
+
+    @Test
+    public void testEmpty() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            try (JoinKeyBloomFilter filter = new JoinKeyBloomFilter()) {
+                filter.of(0, 10);
+                final Rnd rnd = new Rnd();
+                for (int i = 0; i < 1000; i++) {
+                    Assert.assertFalse(filter.mightContain(rnd.nextLong()));
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testNoFalseNegatives() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            try (JoinKeyBloomFilter filter = new JoinKeyBloomFilter()) {
+                final int n = 100_000;
+                final Rnd rnd = new Rnd();
+                filter.of(n, 10);
+                for (int i = 0; i < n; i++) {
+                    filter.add(rnd.nextLong());
+                }
+
+                rnd.reset();
+                for (int i = 0; i < n; i++) {
+                    Assert.assertTrue(filter.mightContain(rnd.nextLong()));
+                }
+
+                // keys that were not added are mostly rejected
+                int falsePositives = 0;
+                for (int i = 0; i < n; i++) {
+                    if (filter.mightContain(rnd.nextLong())) {
+                        falsePositives++;
+                    }
+                }
+                Assert.assertTrue("false positives: " + falsePositives, falsePositives < n / 20);
+            }
+        });
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            try (JoinKeyBloomFilter filter = new JoinKeyBloomFilter()) {
+                filter.of(10, 10);
+                filter.add(42);
+                Assert.assertTrue(filter.mightContain(42));
+
+                // resize clears the filter
+                filter.of(10_000, 10);
+                Assert.assertFalse(filter.mightContain(42));
+                filter.add(42);
+
+                // same size clears the filter too
+                filter.of(10_000, 10);
+                Assert.assertFalse(filter.mightContain(42));
+            }
+        });
+    }
+}
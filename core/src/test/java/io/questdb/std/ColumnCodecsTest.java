@@ -0,0 +1,246 @@
+/*******************************************************************************
+ *     ___                  _   ____  ____
+ *    / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *   | | | | | | |/ _ \/ __| __| | | |  _ \
+ *   | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *    \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ *  Copyright (c) 2014-2019 Appsicle
+ *  Copyright (c) 2019-2020 QuestDB
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package io.questdb.std;
+
+import io.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ColumnCodecsTest {
+
+    private static final Rnd rnd = new Rnd();
+
+    @Before
+    public void setUp() {
+        rnd.reset();
+    }
+
+    @Test
+    public void testBitPackAllNulls() throws Exception {
+        assertInts(1000, Numbers.INT_NaN, Numbers.INT_NaN, 5);
+    }
+
+    @Test
+    public void testBitPackConstant() throws Exception {
+        assertInts(1000, 7, 7, 5 + 1000 / 8);
+    }
+
+    @Test
+    public void testBitPackEmpty() throws Exception {
+        assertInts(0, 0, 10, 0);
+    }
+
+    @Test
+    public void testBitPackFullRange() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final int count = 1001;
+            final long size = (long) count * Integer.BYTES;
+            final long src = Unsafe.malloc(size);
+            final long dst = Unsafe.malloc(size);
+            final long maxEncodedSize = ColumnCodecs.getMaxEncodedSize(ColumnCodecs.CODEC_BIT_PACK, count);
+            final long buf = Unsafe.malloc(maxEncodedSize);
+            try {
+                for (int i = 0; i < count; i++) {
+                    Unsafe.getUnsafe().putInt(src + (long) i * Integer.BYTES, rnd.nextInt());
+                }
+                Unsafe.getUnsafe().putInt(src, Integer.MIN_VALUE + 1);
+                Unsafe.getUnsafe().putInt(src + Integer.BYTES, Integer.MAX_VALUE);
+                Unsafe.getUnsafe().putInt(src + 2 * Integer.BYTES, Numbers.INT_NaN);
+                final long len = ColumnCodecs.encode(ColumnCodecs.CODEC_BIT_PACK, src, count, buf);
+                Assert.assertTrue(len <= maxEncodedSize);
+                ColumnCodecs.decode(ColumnCodecs.CODEC_BIT_PACK, buf, count, dst);
+                assertEquals(src, dst, size);
+            } finally {
+                Unsafe.free(src, size);
+                Unsafe.free(dst, size);
+                Unsafe.free(buf, maxEncodedSize);
+            }
+        });
+    }
+
+    @Test
+    public void testBitPackSymbolKeys() throws Exception {
+        // 3 bits per value, offset 0 is reserved for null
+        assertInts(10_000, 0, 6, 5 + (10_000 * 3 + 7) / 8);
+    }
+
+    @Test
+    public void testBitPackSymbolKeysWithNulls() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final int count = 1000;
+            final long size = (long) count * Integer.BYTES;
+            final long src = Unsafe.malloc(size);
+            final long dst = Unsafe.malloc(size);
+            final long maxEncodedSize = ColumnCodecs.getMaxEncodedSize(ColumnCodecs.CODEC_BIT_PACK, count);
+            final long buf = Unsafe.malloc(maxEncodedSize);
+            try {
+                for (int i = 0; i < count; i++) {
+                    Unsafe.getUnsafe().putInt(src + (long) i * Integer.BYTES, i % 5 == 0 ? Numbers.INT_NaN : rnd.nextPositiveInt() % 3);
+                }
+                // 0..2 and null fit 2 bits
+                Assert.assertEquals(5 + count * 2 / 8, ColumnCodecs.encode(ColumnCodecs.CODEC_BIT_PACK, src, count, buf));
+                ColumnCodecs.decode(ColumnCodecs.CODEC_BIT_PACK, buf, count, dst);
+                assertEquals(src, dst, size);
+            } finally {
+                Unsafe.free(src, size);
+                Unsafe.free(dst, size);
+                Unsafe.free(buf, maxEncodedSize);
+            }
+        });
+    }
+
+    @Test
+    public void testDeltaOfDeltaRandom() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final int count = 10_000;
+            final long size = (long) count * Long.BYTES;
+            final long src = Unsafe.malloc(size);
+            try {
+                for (int i = 0; i < count; i++) {
+                    Unsafe.getUnsafe().putLong(src + (long) i * Long.BYTES, rnd.nextLong());
+                }
+                Unsafe.getUnsafe().putLong(src + Long.BYTES, Long.MIN_VALUE);
+                Unsafe.getUnsafe().putLong(src + 2 * Long.BYTES, Long.MAX_VALUE);
+                Unsafe.getUnsafe().putLong(src + 3 * Long.BYTES, Long.MIN_VALUE);
+                assertRoundTrip(ColumnCodecs.CODEC_DELTA_OF_DELTA, src, count, size);
+            } finally {
+                Unsafe.free(src, size);
+            }
+        });
+    }
+
+    @Test
+    public void testDeltaOfDeltaTimestamps() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final int count = 10_000;
+            final long size = (long) count * Long.BYTES;
+            final long src = Unsafe.malloc(size);
+            try {
+                long ts = 1_600_000_000_000_000L;
+                for (int i = 0; i < count; i++) {
+                    // regular interval with occasional jitter
+                    ts += i % 100 == 0 ? 1_000_000 + rnd.nextInt(1000) : 1_000_000;
+                    Unsafe.getUnsafe().putLong(src + (long) i * Long.BYTES, ts);
+                }
+                final long len = assertRoundTrip(ColumnCodecs.CODEC_DELTA_OF_DELTA, src, count, size);
+                Assert.assertTrue(len < 2L * count);
+            } finally {
+                Unsafe.free(src, size);
+            }
+        });
+    }
+
+    @Test
+    public void testXor() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final int count = 10_000;
+            final long size = (long) count * Long.BYTES;
+            final long src = Unsafe.malloc(size);
+            try {
+                double price = 100.0;
+                for (int i = 0; i < count; i++) {
+                    if (i % 7 == 0) {
+                        price = Math.round((price + rnd.nextDouble() - 0.5) * 100) / 100.0;
+                    }
+                    Unsafe.getUnsafe().putDouble(src + (long) i * Long.BYTES, i % 101 == 0 ? Double.NaN : price);
+                }
+                final long len = assertRoundTrip(ColumnCodecs.CODEC_XOR, src, count, size);
+                Assert.assertTrue(len < size / 2);
+            } finally {
+                Unsafe.free(src, size);
+            }
+        });
+    }
+
+    @Test
+    public void testXorRandom() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final int count = 10_000;
+            final long size = (long) count * Long.BYTES;
+            final long src = Unsafe.malloc(size);
+            try {
+                for (int i = 0; i < count; i++) {
+                    Unsafe.getUnsafe().putDouble(src + (long) i * Long.BYTES, rnd.nextDouble());
+                }
+                Unsafe.getUnsafe().putLong(src, -1L);
+                assertRoundTrip(ColumnCodecs.CODEC_XOR, src, count, size);
+            } finally {
+                Unsafe.free(src, size);
+            }
+        });
+    }
+
+    private static void assertEquals(long expected, long actual, long size) {
+        for (long i = 0; i < size; i += Byte.BYTES) {
+            if (Unsafe.getUnsafe().getByte(expected + i) != Unsafe.getUnsafe().getByte(actual + i)) {
+                Assert.fail("mismatch at offset " + i);
+            }
+        }
+    }
+
+    private static long assertRoundTrip(int codec, long src, int count, long size) {
+        final long maxEncodedSize = ColumnCodecs.getMaxEncodedSize(codec, count);
+        final long buf = Unsafe.malloc(maxEncodedSize);
+        final long dst = Unsafe.malloc(size);
+        try {
+            final long len = ColumnCodecs.encode(codec, src, count, buf);
+            Assert.assertTrue(len <= maxEncodedSize);
+            ColumnCodecs.decode(codec, buf, count, dst);
+            assertEquals(src, dst, size);
+            return len;
+        } finally {
+            Unsafe.free(buf, maxEncodedSize);
+            Unsafe.free(dst, size);
+        }
+    }
+
+    private void assertInts(int count, int lo, int hi, long expectedLen) throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final long size = (long) count * Integer.BYTES;
+            final long src = Unsafe.malloc(size);
+            final long dst = Unsafe.malloc(size);
+            final long maxEncodedSize = ColumnCodecs.getMaxEncodedSize(ColumnCodecs.CODEC_BIT_PACK, count);
+            final long buf = Unsafe.malloc(maxEncodedSize);
+            try {
+                for (int i = 0; i < count; i++) {
+                    Unsafe.getUnsafe().putInt(src + (long) i * Integer.BYTES, lo == hi ? lo : lo + rnd.nextPositiveInt() % (hi - lo + 1));
+                }
+                if (count > 1 && lo != hi) {
+                    Unsafe.getUnsafe().putInt(src, lo);
+                    Unsafe.getUnsafe().putInt(src + Integer.BYTES, hi);
+                }
+                Assert.assertEquals(expectedLen, ColumnCodecs.encode(ColumnCodecs.CODEC_BIT_PACK, src, count, buf));
+                ColumnCodecs.decode(ColumnCodecs.CODEC_BIT_PACK, buf, count, dst);
+                assertEquals(src, dst, size);
+            } finally {
+                Unsafe.free(src, size);
+                Unsafe.free(dst, size);
+                Unsafe.free(buf, maxEncodedSize);
+            }
+        });
+    }
+}